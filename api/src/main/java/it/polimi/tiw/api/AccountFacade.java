@@ -7,8 +7,10 @@ import it.polimi.tiw.api.dbaccess.ConnectionRetriever;
 import it.polimi.tiw.api.dbaccess.UserDAO;
 import it.polimi.tiw.api.error.Errors;
 import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.functional.Tuple;
 
 import java.sql.Connection;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Function;
@@ -84,6 +86,40 @@ public class AccountFacade {
         return accountDAOGenerator.apply(connection).byId(id);
     }
 
+    /**
+     * Returns the {@link Account}s with the given ids, in the same order, together with the ids that could not be
+     * found.
+     *
+     * @param ids the base64 encoded ids of the accounts
+     * @return an {@link ApiResult} containing a {@link Tuple} with the accounts found and the missing ids or an error
+     * @see AccountDAO#byIds(Collection)
+     */
+    public ApiResult<Tuple<List<Account>, List<String>>> byIds(Collection<String> ids) {
+        return accountDAOGenerator.apply(connection).byIds(ids);
+    }
+
+    /**
+     * Returns the owner and the version of the {@link Account} with the given id
+     *
+     * @param id the base64 encoded id of the account
+     * @return an {@link ApiResult} containing a {@link Tuple} with the id of the owner and the version or an error
+     * @see AccountDAO#ownerAndVersionOf(String)
+     */
+    public ApiResult<Tuple<String, Long>> versionOf(String id) {
+        return accountDAOGenerator.apply(connection).ownerAndVersionOf(id);
+    }
+
+    /**
+     * Returns the version of the list of {@link Account}s of the {@link User} with the given id
+     *
+     * @param base64Id the id of the owner of the {@link Account}s
+     * @return an {@link ApiResult} containing the version or an error
+     * @see UserDAO#accountsVersionOf(String)
+     */
+    public ApiResult<Long> listVersionOf(String base64Id) {
+        return userDAOGenerator.apply(connection).accountsVersionOf(base64Id);
+    }
+
     /**
      * Creates a new AccountFacade using the default objects
      *
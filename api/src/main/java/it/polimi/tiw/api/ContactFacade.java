@@ -1,9 +1,12 @@
 package it.polimi.tiw.api;
 
 import it.polimi.tiw.api.beans.Contact;
+import it.polimi.tiw.api.beans.ContactProfile;
 import it.polimi.tiw.api.beans.User;
 import it.polimi.tiw.api.dbaccess.ContactDAO;
+import it.polimi.tiw.api.dbaccess.ContactIndex;
 import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.functional.Tuple;
 
 import java.sql.Connection;
 import java.util.List;
@@ -54,6 +57,46 @@ public class ContactFacade {
         return contactDAOGenerator.apply(connection).ofUser(userId);
     }
 
+    /**
+     * Fetches the contacts owned by the {@link User} with the given id, together with their public details and the
+     * ids of their accounts.
+     *
+     * @param userId the user's base64 id
+     * @return an {@link ApiResult} containing the list of {@link ContactProfile}s of this user or an error if one
+     * happened
+     * @see ContactDAO#profilesOf(String, String, int)
+     */
+    public ApiResult<List<ContactProfile>> ofUserWithProfiles(String userId) {
+        return ofUserWithProfiles(userId, null, ContactDAO.MAX_PROFILES);
+    }
+
+    /**
+     * Fetches at most {@code limit} contacts owned by the {@link User} with the given id whose username starts with
+     * the given prefix, together with their public details and the ids of their accounts.
+     *
+     * @param userId the user's base64 id
+     * @param prefix the prefix of the usernames, null to match every contact
+     * @param limit  the maximum number of contacts to return
+     * @return an {@link ApiResult} containing the list of {@link ContactProfile}s of this user or an error if one
+     * happened
+     * @see ContactDAO#profilesOf(String, String, int)
+     */
+    public ApiResult<List<ContactProfile>> ofUserWithProfiles(String userId, String prefix, int limit) {
+        return contactDAOGenerator.apply(connection).profilesOf(userId, prefix, limit);
+    }
+
+    /**
+     * Fetches the ids and usernames of all the contacts owned by the {@link User} with the given id, e.g. for loading
+     * them in the {@link ContactIndex}.
+     *
+     * @param userId the user's base64 id
+     * @return an {@link ApiResult} containing a list of tuples with the base64 id and the username of each contact or
+     * an error if one happened
+     */
+    public ApiResult<List<Tuple<String, String>>> usernamesOf(String userId) {
+        return contactDAOGenerator.apply(connection).usernamesOf(userId);
+    }
+
     /**
      * Creates a new ContactFacade using the default objects
      *
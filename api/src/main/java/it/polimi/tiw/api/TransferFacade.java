@@ -2,13 +2,16 @@ package it.polimi.tiw.api;
 
 import it.polimi.tiw.api.beans.NewTransferRequest;
 import it.polimi.tiw.api.beans.Transfer;
+import it.polimi.tiw.api.beans.TransferDelta;
 import it.polimi.tiw.api.dbaccess.AccountDAO;
+import it.polimi.tiw.api.dbaccess.TransferCursor;
 import it.polimi.tiw.api.dbaccess.TransferDAO;
 import it.polimi.tiw.api.error.Errors;
 import it.polimi.tiw.api.functional.ApiResult;
 import it.polimi.tiw.api.functional.Tuple;
 
 import java.sql.Connection;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Function;
@@ -40,6 +43,18 @@ public class TransferFacade {
         return transferDAOGenerator.apply(connection).byId(id);
     }
 
+    /**
+     * Returns the {@link Transfer}s with the given base64 encoded ids, in the same order, together with the ids that
+     * could not be found.
+     *
+     * @param ids the ids of the Transfers to get
+     * @return an {@link ApiResult} containing a {@link Tuple} with the Transfers found and the missing ids or an error
+     * @see TransferDAO#byIds(Collection)
+     */
+    public ApiResult<Tuple<List<Transfer>, List<String>>> byIds(Collection<String> ids) {
+        return transferDAOGenerator.apply(connection).byIds(ids);
+    }
+
     /**
      * Checks the validity of the given {@link NewTransferRequest} and executes it.
      *
@@ -90,6 +105,35 @@ public class TransferFacade {
         return transferDAOGenerator.apply(connection).inAndOutOf(accountId);
     }
 
+    /**
+     * Returns the transfers of the account with the given id committed after the given cursor, together with the
+     * current balance of the account and the cursor of the next request.
+     *
+     * @param accountId the id of the account to query
+     * @param cursor    the cursor returned by the previous request
+     * @return an {@link ApiResult} containing the {@link TransferDelta} or an error
+     * @see TransferDAO#since(String, long)
+     */
+    public ApiResult<TransferDelta> since(String accountId, long cursor) {
+        return transferDAOGenerator.apply(connection).since(accountId, cursor);
+    }
+
+    /**
+     * Returns lazy cursors over the incoming and outgoing transfers of the account with the given id. Both cursors use
+     * the connection of this facade and must be closed after use; the outgoing one should only be iterated after the
+     * incoming one.
+     *
+     * @param accountId the id of the account to query
+     * @return and {@link ApiResult} containing a {@link Tuple} with, in order, the cursors over the incoming and
+     * outgoing transfers or an error
+     * @see TransferCursor
+     */
+    public ApiResult<Tuple<TransferCursor, TransferCursor>> cursorsOf(String accountId) {
+        TransferDAO dao = transferDAOGenerator.apply(connection);
+        return dao.incomingTo(accountId)
+                .flatMap(in -> dao.outgoingFrom(accountId).map(out -> new Tuple<>(in, out)));
+    }
+
     /**
      * Creates a new TransferFacade using the default objects
      *
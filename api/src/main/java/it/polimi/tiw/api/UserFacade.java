@@ -10,9 +10,12 @@ import it.polimi.tiw.api.error.ApiSubError;
 import it.polimi.tiw.api.error.Errors;
 import it.polimi.tiw.api.functional.ApiResult;
 import it.polimi.tiw.api.functional.Tuple;
+import it.polimi.tiw.api.jfr.AuthorizationEvent;
+import it.polimi.tiw.api.jfr.Events;
 import it.polimi.tiw.api.utils.PasswordUtils;
 
 import java.sql.Connection;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Function;
@@ -60,6 +63,17 @@ public class UserFacade {
         return userDAOGenerator.apply(connection).byId(id);
     }
 
+    /**
+     * Returns the {@link User}s with the given ids, in the same order, together with the ids that could not be found.
+     *
+     * @param ids the ids to search
+     * @return an {@link ApiResult} containing a {@link Tuple} with the users found and the missing ids or an error
+     * @see UserDAO#byIds(Collection)
+     */
+    public ApiResult<Tuple<List<User>, List<String>>> byIds(Collection<String> ids) {
+        return userDAOGenerator.apply(connection).byIds(ids);
+    }
+
     /**
      * Handles a user registration request encoded by a {@link RegistrationRequest}. All fields are required to be
      * non-null and have a valid value. In case of success, an {@link ApiResult} containing the {@link User}
@@ -94,6 +108,21 @@ public class UserFacade {
      * @return An {@link ApiResult} containing the User in case of success
      */
     public ApiResult<User> authorize(LoginRequest req) {
+        AuthorizationEvent event = new AuthorizationEvent();
+        event.begin();
+        ApiResult<User> res = checkCredentials(req, event);
+        event.end();
+        if (event.shouldCommit()) {
+            event.outcome = Events.outcome(res);
+            event.commit();
+        }
+        return res;
+    }
+
+    /**
+     * Checks the credentials in the given request, recording the time spent hashing the password in {@code event}
+     */
+    private ApiResult<User> checkCredentials(LoginRequest req, AuthorizationEvent event) {
         if (req == null) return ApiResult.error(Errors.fromNullParameter("req"));
         Tuple<String, String> username = new Tuple<>(req.getUsername(), "username");
         Tuple<String, String> clearPassword = new Tuple<>(req.getClearPassword(), "clearPassword");
@@ -107,7 +136,10 @@ public class UserFacade {
         return userDAOGenerator.apply(connection)
                 .byUsername(username.getFirst())
                 .flatMap(u -> {
-                    if (PasswordUtils.match(u.getSaltedPassword(), clearPassword.getFirst()))
+                    long start = System.nanoTime();
+                    boolean matches = PasswordUtils.match(u.getSaltedPassword(), clearPassword.getFirst());
+                    event.hashTime = System.nanoTime() - start;
+                    if (matches)
                         return ApiResult.ok(u);
                     return ApiResult.error(new ApiError(
                             409,
@@ -0,0 +1,55 @@
+package it.polimi.tiw.api.beans;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import static it.polimi.tiw.api.beans.BeanTypeAdapters.*;
+
+/**
+ * Streaming {@link Account} type adapter for Gson. Since accounts are validated on construction, reading an account
+ * without owner or with a negative balance fails with a {@link JsonParseException}.
+ *
+ * @see BeanTypeAdapters
+ */
+public class AccountTypeAdapter extends TypeAdapter<Account> {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(JsonWriter out, Account value) throws IOException {
+        out.beginObject();
+        writeString(out, "base64Id", value.getBase64Id());
+        writeString(out, "ownerId", value.getOwnerId());
+        out.name("balance").value(value.getBalance());
+        out.endObject();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Account read(JsonReader in) throws IOException {
+        String base64Id = null;
+        String ownerId = null;
+        double balance = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "base64Id" -> base64Id = readString(in);
+                case "ownerId" -> ownerId = readString(in);
+                case "balance" -> balance = readDouble(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        try {
+            return new Account(base64Id, ownerId, balance);
+        } catch (NullPointerException | IllegalArgumentException e) {
+            throw new JsonParseException("Invalid account", e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package it.polimi.tiw.api.beans;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Registers the streaming type adapters of the beans, so that they are (de)serialized without reflection. The JSON
+ * produced is the same as the one produced by a reflective {@link Gson}: fields in declaration order and null fields
+ * omitted.
+ */
+public final class BeanTypeAdapters {
+    private BeanTypeAdapters() {
+    }
+
+    /**
+     * Registers the adapters of every bean in the given builder
+     *
+     * @param builder the {@link GsonBuilder} to configure
+     * @return {@code builder}
+     * @throws NullPointerException if {@code builder} is null
+     */
+    public static GsonBuilder registerAll(GsonBuilder builder) {
+        return builder
+                .registerTypeAdapter(Instant.class, new InstantTypeAdapter().nullSafe())
+                .registerTypeAdapter(Account.class, new AccountTypeAdapter().nullSafe())
+                .registerTypeAdapter(Contact.class, new ContactTypeAdapter().nullSafe())
+                .registerTypeAdapter(ContactProfile.class, new ContactProfileTypeAdapter().nullSafe())
+                .registerTypeAdapter(Transfer.class, new TransferTypeAdapter().nullSafe())
+                .registerTypeAdapter(User.class, new UserTypeAdapter().nullSafe())
+                .registerTypeAdapter(LoginRequest.class, new LoginRequestTypeAdapter().nullSafe())
+                .registerTypeAdapter(NewTransferRequest.class, new NewTransferRequestTypeAdapter().nullSafe())
+                .registerTypeAdapter(RegistrationRequest.class, new RegistrationRequestTypeAdapter().nullSafe());
+    }
+
+    /**
+     * Creates a new {@link Gson} with the adapters of every bean registered. The returned instance is thread-safe and
+     * meant to be shared.
+     *
+     * @return a new {@link Gson}
+     */
+    public static Gson newGson() {
+        return registerAll(new GsonBuilder()).create();
+    }
+
+    /**
+     * Writes the given property, unless its value is null
+     */
+    static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) out.name(name).value(value);
+    }
+
+    /**
+     * Reads a string or a null value
+     */
+    static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    /**
+     * Reads a number or a null value, which is read as 0 like reflective Gson does for primitive fields
+     */
+    static double readDouble(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+        try {
+            return in.nextDouble();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+}
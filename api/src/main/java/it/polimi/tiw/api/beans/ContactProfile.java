@@ -0,0 +1,107 @@
+package it.polimi.tiw.api.beans;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bean representing a {@link Contact} together with the public details of the {@link User} it refers to and the ids
+ * of its {@link Account}s.
+ */
+public class ContactProfile {
+    private String contactBase64Id;
+    private String username;
+    private String name;
+    private String surname;
+    private List<String> accountIds = new ArrayList<>();
+
+    /**
+     * Getter for the base64 encoded id of the user this contact refers to.
+     *
+     * @return the base64 encoded id of the user this contact refers to
+     */
+    public String getContactBase64Id() {
+        return contactBase64Id;
+    }
+
+    /**
+     * Sets the base64 encoded id of the user this contact refers to.
+     *
+     * @param contactBase64Id the new base64 encoded id
+     */
+    public void setContactBase64Id(String contactBase64Id) {
+        this.contactBase64Id = contactBase64Id;
+    }
+
+    /**
+     * Getter for the username of the contact.
+     *
+     * @return the username of the contact
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Sets the username of the contact.
+     *
+     * @param username the new username
+     */
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    /**
+     * Getter for the name of the contact.
+     *
+     * @return the name of the contact
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the name of the contact.
+     *
+     * @param name the new name
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Getter for the surname of the contact.
+     *
+     * @return the surname of the contact
+     */
+    public String getSurname() {
+        return surname;
+    }
+
+    /**
+     * Sets the surname of the contact.
+     *
+     * @param surname the new surname
+     */
+    public void setSurname(String surname) {
+        this.surname = surname;
+    }
+
+    /**
+     * Getter for the base64 encoded ids of the accounts of the contact. The returned list is modifiable.
+     *
+     * @return the ids of the accounts of the contact
+     */
+    public List<String> getAccountIds() {
+        return accountIds;
+    }
+
+    /**
+     * Sets the base64 encoded ids of the accounts of the contact.
+     *
+     * @param accountIds the new list of ids
+     * @throws NullPointerException if {@code accountIds} is null
+     */
+    public void setAccountIds(List<String> accountIds) {
+        this.accountIds = new ArrayList<>(accountIds);
+    }
+}
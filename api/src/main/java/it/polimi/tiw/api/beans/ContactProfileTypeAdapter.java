@@ -0,0 +1,64 @@
+package it.polimi.tiw.api.beans;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import static it.polimi.tiw.api.beans.BeanTypeAdapters.*;
+
+/**
+ * Streaming {@link ContactProfile} type adapter for Gson.
+ *
+ * @see BeanTypeAdapters
+ */
+public class ContactProfileTypeAdapter extends TypeAdapter<ContactProfile> {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(JsonWriter out, ContactProfile value) throws IOException {
+        out.beginObject();
+        writeString(out, "contactBase64Id", value.getContactBase64Id());
+        writeString(out, "username", value.getUsername());
+        writeString(out, "name", value.getName());
+        writeString(out, "surname", value.getSurname());
+        out.name("accountIds").beginArray();
+        for (String id : value.getAccountIds())
+            out.value(id);
+        out.endArray();
+        out.endObject();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ContactProfile read(JsonReader in) throws IOException {
+        ContactProfile p = new ContactProfile();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "contactBase64Id" -> p.setContactBase64Id(readString(in));
+                case "username" -> p.setUsername(readString(in));
+                case "name" -> p.setName(readString(in));
+                case "surname" -> p.setSurname(readString(in));
+                case "accountIds" -> {
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        break;
+                    }
+                    in.beginArray();
+                    while (in.hasNext())
+                        p.getAccountIds().add(in.nextString());
+                    in.endArray();
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return p;
+    }
+}
@@ -0,0 +1,45 @@
+package it.polimi.tiw.api.beans;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import static it.polimi.tiw.api.beans.BeanTypeAdapters.*;
+
+/**
+ * Streaming {@link Contact} type adapter for Gson.
+ *
+ * @see BeanTypeAdapters
+ */
+public class ContactTypeAdapter extends TypeAdapter<Contact> {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(JsonWriter out, Contact value) throws IOException {
+        out.beginObject();
+        writeString(out, "ownerBase64Id", value.getOwnerBase64Id());
+        writeString(out, "contactBase64Id", value.getContactBase64Id());
+        out.endObject();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Contact read(JsonReader in) throws IOException {
+        Contact c = new Contact();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "ownerBase64Id" -> c.setOwnerBase64Id(readString(in));
+                case "contactBase64Id" -> c.setContactBase64Id(readString(in));
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return c;
+    }
+}
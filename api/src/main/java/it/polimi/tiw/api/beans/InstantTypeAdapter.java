@@ -1,24 +1,43 @@
 package it.polimi.tiw.api.beans;
 
-import com.google.gson.JsonElement;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
 
 /**
- * {@link Instant} type adapter for Gson.
+ * {@link Instant} type adapter for Gson. Instants are written as ISO-8601 strings.
  *
- * @see JsonSerializer
+ * @see TypeAdapter
  */
-public class InstantTypeAdapter implements JsonSerializer<Instant> {
+public class InstantTypeAdapter extends TypeAdapter<Instant> {
     /**
      * {@inheritDoc}
      */
     @Override
-    public JsonElement serialize(Instant src, Type typeOfSrc, JsonSerializationContext context) {
-        return new JsonPrimitive(src.toString());
+    public void write(JsonWriter out, Instant value) throws IOException {
+        if (value == null) out.nullValue();
+        else out.value(value.toString());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Instant read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        try {
+            return Instant.parse(in.nextString());
+        } catch (DateTimeParseException e) {
+            throw new JsonParseException(e);
+        }
     }
 }
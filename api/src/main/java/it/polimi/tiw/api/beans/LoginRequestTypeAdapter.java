@@ -0,0 +1,45 @@
+package it.polimi.tiw.api.beans;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import static it.polimi.tiw.api.beans.BeanTypeAdapters.*;
+
+/**
+ * Streaming {@link LoginRequest} type adapter for Gson.
+ *
+ * @see BeanTypeAdapters
+ */
+public class LoginRequestTypeAdapter extends TypeAdapter<LoginRequest> {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(JsonWriter out, LoginRequest value) throws IOException {
+        out.beginObject();
+        writeString(out, "username", value.getUsername());
+        writeString(out, "clearPassword", value.getClearPassword());
+        out.endObject();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LoginRequest read(JsonReader in) throws IOException {
+        LoginRequest r = new LoginRequest();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "username" -> r.setUsername(readString(in));
+                case "clearPassword" -> r.setClearPassword(readString(in));
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return r;
+    }
+}
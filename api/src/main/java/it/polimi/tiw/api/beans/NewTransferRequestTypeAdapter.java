@@ -0,0 +1,53 @@
+package it.polimi.tiw.api.beans;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import static it.polimi.tiw.api.beans.BeanTypeAdapters.*;
+
+/**
+ * Streaming {@link NewTransferRequest} type adapter for Gson.
+ *
+ * @see BeanTypeAdapters
+ */
+public class NewTransferRequestTypeAdapter extends TypeAdapter<NewTransferRequest> {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(JsonWriter out, NewTransferRequest value) throws IOException {
+        out.beginObject();
+        writeString(out, "fromUserId", value.getFromUserId());
+        writeString(out, "fromAccountId", value.getFromAccountId());
+        writeString(out, "toUserId", value.getToUserId());
+        writeString(out, "toAccountId", value.getToAccountId());
+        out.name("amount").value(value.getAmount());
+        writeString(out, "causal", value.getCausal());
+        out.endObject();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NewTransferRequest read(JsonReader in) throws IOException {
+        NewTransferRequest r = new NewTransferRequest();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "fromUserId" -> r.setFromUserId(readString(in));
+                case "fromAccountId" -> r.setFromAccountId(readString(in));
+                case "toUserId" -> r.setToUserId(readString(in));
+                case "toAccountId" -> r.setToAccountId(readString(in));
+                case "amount" -> r.setAmount(readDouble(in));
+                case "causal" -> r.setCausal(readString(in));
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return r;
+    }
+}
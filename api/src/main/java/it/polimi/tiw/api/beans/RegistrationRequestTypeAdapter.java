@@ -0,0 +1,53 @@
+package it.polimi.tiw.api.beans;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import static it.polimi.tiw.api.beans.BeanTypeAdapters.*;
+
+/**
+ * Streaming {@link RegistrationRequest} type adapter for Gson.
+ *
+ * @see BeanTypeAdapters
+ */
+public class RegistrationRequestTypeAdapter extends TypeAdapter<RegistrationRequest> {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(JsonWriter out, RegistrationRequest value) throws IOException {
+        out.beginObject();
+        writeString(out, "username", value.getUsername());
+        writeString(out, "clearPassword", value.getClearPassword());
+        writeString(out, "repeatPassword", value.getRepeatPassword());
+        writeString(out, "email", value.getEmail());
+        writeString(out, "name", value.getName());
+        writeString(out, "surname", value.getSurname());
+        out.endObject();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RegistrationRequest read(JsonReader in) throws IOException {
+        RegistrationRequest r = new RegistrationRequest();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "username" -> r.setUsername(readString(in));
+                case "clearPassword" -> r.setClearPassword(readString(in));
+                case "repeatPassword" -> r.setRepeatPassword(readString(in));
+                case "email" -> r.setEmail(readString(in));
+                case "name" -> r.setName(readString(in));
+                case "surname" -> r.setSurname(readString(in));
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return r;
+    }
+}
@@ -0,0 +1,108 @@
+package it.polimi.tiw.api.beans;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bean representing the {@link Transfer}s of an {@link Account} committed after a given cursor, together with the
+ * state of the {@link Account} they lead to. The cursor is the version of the {@link Account}, which increases by one
+ * with every {@link Transfer} involving it.
+ */
+public class TransferDelta {
+    private String ownerId;
+    private double balance;
+    private long cursor;
+    private List<Transfer> incoming = new ArrayList<>();
+    private List<Transfer> outgoing = new ArrayList<>();
+
+    /**
+     * Getter for the base64 encoded id of the owner of the account.
+     *
+     * @return the base64 encoded id of the owner of the account
+     */
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    /**
+     * Sets the base64 encoded id of the owner of the account.
+     *
+     * @param ownerId the new base64 encoded id
+     */
+    public void setOwnerId(String ownerId) {
+        this.ownerId = ownerId;
+    }
+
+    /**
+     * Getter for the balance of the account after the transfers of this delta.
+     *
+     * @return the balance of the account
+     */
+    public double getBalance() {
+        return balance;
+    }
+
+    /**
+     * Sets the balance of the account.
+     *
+     * @param balance the new balance
+     */
+    public void setBalance(double balance) {
+        this.balance = balance;
+    }
+
+    /**
+     * Getter for the cursor to pass to the next request, i.e. the version of the account after the transfers of this
+     * delta.
+     *
+     * @return the cursor of the next request
+     */
+    public long getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Sets the cursor of the next request.
+     *
+     * @param cursor the new cursor
+     */
+    public void setCursor(long cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * Getter for the transfers received by the account, ordered by descending date.
+     *
+     * @return the transfers received by the account
+     */
+    public List<Transfer> getIncoming() {
+        return incoming;
+    }
+
+    /**
+     * Sets the transfers received by the account.
+     *
+     * @param incoming the new list of transfers
+     */
+    public void setIncoming(List<Transfer> incoming) {
+        this.incoming = incoming;
+    }
+
+    /**
+     * Getter for the transfers sent by the account, ordered by descending date.
+     *
+     * @return the transfers sent by the account
+     */
+    public List<Transfer> getOutgoing() {
+        return outgoing;
+    }
+
+    /**
+     * Sets the transfers sent by the account.
+     *
+     * @param outgoing the new list of transfers
+     */
+    public void setOutgoing(List<Transfer> outgoing) {
+        this.outgoing = outgoing;
+    }
+}
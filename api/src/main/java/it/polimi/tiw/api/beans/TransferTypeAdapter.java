@@ -0,0 +1,62 @@
+package it.polimi.tiw.api.beans;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import static it.polimi.tiw.api.beans.BeanTypeAdapters.*;
+
+/**
+ * Streaming {@link Transfer} type adapter for Gson.
+ *
+ * @see BeanTypeAdapters
+ */
+public class TransferTypeAdapter extends TypeAdapter<Transfer> {
+    private final InstantTypeAdapter instants = new InstantTypeAdapter();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(JsonWriter out, Transfer value) throws IOException {
+        out.beginObject();
+        writeString(out, "base64Id", value.getBase64Id());
+        if (value.getDate() != null) {
+            out.name("date");
+            instants.write(out, value.getDate());
+        }
+        out.name("amount").value(value.getAmount());
+        writeString(out, "toId", value.getToId());
+        out.name("toBalance").value(value.getToBalance());
+        writeString(out, "fromId", value.getFromId());
+        out.name("fromBalance").value(value.getFromBalance());
+        writeString(out, "causal", value.getCausal());
+        out.endObject();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Transfer read(JsonReader in) throws IOException {
+        Transfer t = new Transfer();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "base64Id" -> t.setBase64Id(readString(in));
+                case "date" -> t.setDate(instants.read(in));
+                case "amount" -> t.setAmount(readDouble(in));
+                case "toId" -> t.setToId(readString(in));
+                case "toBalance" -> t.setToBalance(readDouble(in));
+                case "fromId" -> t.setFromId(readString(in));
+                case "fromBalance" -> t.setFromBalance(readDouble(in));
+                case "causal" -> t.setCausal(readString(in));
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return t;
+    }
+}
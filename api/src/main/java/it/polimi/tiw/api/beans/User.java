@@ -1,6 +1,5 @@
 package it.polimi.tiw.api.beans;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import it.polimi.tiw.api.error.ApiError;
 import it.polimi.tiw.api.error.ApiSubError;
@@ -20,6 +19,8 @@ import static java.util.Objects.isNull;
  * Bean representing a User
  */
 public class User implements PersistedObject {
+    private static final UserTypeAdapter JSON_ADAPTER = new UserTypeAdapter();
+
     private String base64Id;
     private String username;
     private String saltedPassword;
@@ -165,9 +166,7 @@ public class User implements PersistedObject {
      * @return a JSON object
      */
     public JsonObject toJson() {
-        JsonObject ret = new Gson().toJsonTree(this).getAsJsonObject();
-        ret.remove("saltedPassword");
-        return ret;
+        return JSON_ADAPTER.toJsonTree(this).getAsJsonObject();
     }
 
     public static class Builder {
@@ -0,0 +1,57 @@
+package it.polimi.tiw.api.beans;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import static it.polimi.tiw.api.beans.BeanTypeAdapters.*;
+
+/**
+ * Streaming {@link User} type adapter for Gson. The salted password is never written. Users are read through
+ * {@link User.Builder}, so reading fails with a {@link JsonParseException} if the user would not be valid, e.g. because
+ * the object contains no {@code saltedPassword}.
+ *
+ * @see BeanTypeAdapters
+ */
+public class UserTypeAdapter extends TypeAdapter<User> {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(JsonWriter out, User value) throws IOException {
+        out.beginObject();
+        writeString(out, "base64Id", value.getBase64Id());
+        writeString(out, "username", value.getUsername());
+        writeString(out, "email", value.getEmail());
+        writeString(out, "name", value.getName());
+        writeString(out, "surname", value.getSurname());
+        out.endObject();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public User read(JsonReader in) throws IOException {
+        User.Builder builder = new User.Builder();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "base64Id" -> builder = builder.addId(readString(in));
+                case "username" -> builder = builder.addUsername(readString(in));
+                case "saltedPassword" -> builder = builder.addPassword(readString(in));
+                case "email" -> builder = builder.addEmail(readString(in));
+                case "name" -> builder = builder.addName(readString(in));
+                case "surname" -> builder = builder.addSurname(readString(in));
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build().match(u -> u, e -> {
+            throw new JsonParseException(e.errorMessage());
+        });
+    }
+}
@@ -4,6 +4,7 @@ import it.polimi.tiw.api.beans.Account;
 import it.polimi.tiw.api.beans.User;
 import it.polimi.tiw.api.error.Errors;
 import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.functional.Tuple;
 import it.polimi.tiw.api.utils.IdUtils;
 
 import java.sql.Connection;
@@ -11,6 +12,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import static java.util.Objects.isNull;
@@ -20,6 +23,8 @@ import static java.util.Objects.requireNonNull;
  * Class for retrieving {@link Account} instances from a database.
  */
 public class AccountDAO implements DatabaseAccessObject<Account> {
+    private static final DAOMetrics METRICS = new DAOMetrics("AccountDAO");
+
     private final Connection connection;
 
     /**
@@ -42,10 +47,12 @@ public class AccountDAO implements DatabaseAccessObject<Account> {
      */
     @Override
     public ApiResult<Account> byId(String base64Id) {
-        if (isNull(base64Id)) return ApiResult.error(Errors.fromNullParameter("base64Id"));
-        if (!IdUtils.isValidBase64(base64Id)) return ApiResult.error(Errors.fromMalformedParameter("base64Id"));
-        long id = IdUtils.fromBase64(base64Id);
-        return byId(id);
+        return METRICS.record("byId", () -> {
+            if (isNull(base64Id)) return ApiResult.error(Errors.fromNullParameter("base64Id"));
+            if (!IdUtils.isValidBase64(base64Id)) return ApiResult.error(Errors.fromMalformedParameter("base64Id"));
+            long id = IdUtils.fromBase64(base64Id);
+            return byId(id);
+        });
     }
 
     /**
@@ -59,12 +66,9 @@ public class AccountDAO implements DatabaseAccessObject<Account> {
         try (PreparedStatement p = connection.prepareStatement("select * from tiw_app.accounts where id = ?")) {
             p.setLong(1, id);
             try (ResultSet r = p.executeQuery()) {
-                if (r.next()) {
-                    long ownerId = r.getLong("ownerId");
-                    double balance = r.getDouble("balance");
-                    Account a = new Account(IdUtils.toBase64(id), IdUtils.toBase64(ownerId), balance);
-                    return ApiResult.ok(a);
-                } else
+                if (r.next())
+                    return ApiResult.ok(fromRow(id, r));
+                else
                     return ApiResult.error(Errors.fromNotFound("id"));
             }
         } catch (SQLException e) {
@@ -72,6 +76,72 @@ public class AccountDAO implements DatabaseAccessObject<Account> {
         }
     }
 
+    /**
+     * Finds and retrieves the data for the Accounts with the given ids, with one query every
+     * {@value DAOUtils#IN_CHUNK_SIZE} ids.
+     *
+     * @param base64Ids the ids to search
+     * @return an {@link ApiResult} containing a {@link Tuple} whose first element are the Accounts found, in the
+     * order of the given ids, and whose second element are the ids that could not be found
+     */
+    @Override
+    public ApiResult<Tuple<List<Account>, List<String>>> byIds(Collection<String> base64Ids) {
+        return METRICS.record("byIds", () -> DAOUtils.byIds(connection, "tiw_app.accounts", base64Ids,
+                (id, r) -> ApiResult.ok(fromRow(id, r))));
+    }
+
+    /**
+     * Creates the Account with the given id from the current row of the given {@link ResultSet}
+     */
+    private static Account fromRow(long id, ResultSet r) throws SQLException {
+        long ownerId = r.getLong("ownerId");
+        double balance = r.getDouble("balance");
+        return new Account(IdUtils.toBase64(id), IdUtils.toBase64(ownerId), balance);
+    }
+
+    /**
+     * Returns the owner and the version of the Account with the given id. The version is increased each time the
+     * Account is updated, e.g. by a transfer, so it changes whenever its balance or its transfers do.
+     *
+     * @param base64Id the id of the Account
+     * @return an {@link ApiResult} containing a {@link Tuple} with the base64 encoded id of the owner and the version
+     * or an error
+     */
+    public ApiResult<Tuple<String, Long>> ownerAndVersionOf(String base64Id) {
+        return METRICS.record("ownerAndVersionOf", () -> {
+            if (isNull(base64Id)) return ApiResult.error(Errors.fromNullParameter("base64Id"));
+            if (!IdUtils.isValidBase64(base64Id)) return ApiResult.error(Errors.fromMalformedParameter("base64Id"));
+            String sql = "select ownerId, version from tiw_app.accounts where id = ?";
+            try (PreparedStatement p = connection.prepareStatement(sql)) {
+                p.setLong(1, IdUtils.fromBase64(base64Id));
+                try (ResultSet r = p.executeQuery()) {
+                    if (!r.next()) return ApiResult.error(Errors.fromNotFound("id"));
+                    return ApiResult.ok(new Tuple<>(IdUtils.toBase64(r.getLong("ownerId")), r.getLong("version")));
+                }
+            } catch (SQLException e) {
+                return ApiResult.error(Errors.fromSQLException(e));
+            }
+        });
+    }
+
+    /**
+     * Increases the version of the account list of the given {@link User}s, which must change each time one of their
+     * Accounts is created or updated. It is not committed: callers must run it in their own transaction.
+     *
+     * @param base64OwnerIds the ids of the owners
+     * @throws SQLException if the update failed
+     * @see UserDAO#accountsVersionOf(String)
+     */
+    void touchOwners(String... base64OwnerIds) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(base64OwnerIds.length, "?"));
+        String sql = "update tiw_app.users set accountsVersion = accountsVersion + 1 where id in (" + placeholders + ")";
+        try (PreparedStatement p = connection.prepareStatement(sql)) {
+            for (int i = 0; i < base64OwnerIds.length; i++)
+                p.setLong(i + 1, IdUtils.fromBase64(base64OwnerIds[i]));
+            p.executeUpdate();
+        }
+    }
+
     /**
      * Returns an ApiResult containing all the Accounts associated with the {@link User} with the given id
      *
@@ -79,26 +149,28 @@ public class AccountDAO implements DatabaseAccessObject<Account> {
      * @return an ApiResult containing all the Accounts associated with the given {@link User}
      */
     public ApiResult<List<Account>> ofUser(String ownerId) {
-        if (isNull(ownerId)) return ApiResult.error(Errors.fromNullParameter("owner"));
-        if (!IdUtils.isValidBase64(ownerId))
-            return ApiResult.error(Errors.fromMalformedParameter("owner"));
-        long userId = IdUtils.fromBase64(ownerId);
-        String sql = "select * from tiw_app.accounts where ownerId = ?";
-        ArrayList<Account> accs = new ArrayList<>();
-        try (PreparedStatement p = connection.prepareStatement(sql)) {
-            p.setLong(1, userId);
-            try (ResultSet r = p.executeQuery()) {
-                while (r.next()) {
-                    String id = IdUtils.toBase64(r.getLong("id"));
-                    double balance = r.getDouble("balance");
-                    Account a = new Account(id, ownerId, balance);
-                    accs.add(a);
+        return METRICS.record("ofUser", () -> {
+            if (isNull(ownerId)) return ApiResult.error(Errors.fromNullParameter("owner"));
+            if (!IdUtils.isValidBase64(ownerId))
+                return ApiResult.error(Errors.fromMalformedParameter("owner"));
+            long userId = IdUtils.fromBase64(ownerId);
+            String sql = "select * from tiw_app.accounts where ownerId = ?";
+            ArrayList<Account> accs = new ArrayList<>();
+            try (PreparedStatement p = connection.prepareStatement(sql)) {
+                p.setLong(1, userId);
+                try (ResultSet r = p.executeQuery()) {
+                    while (r.next()) {
+                        String id = IdUtils.toBase64(r.getLong("id"));
+                        double balance = r.getDouble("balance");
+                        Account a = new Account(id, ownerId, balance);
+                        accs.add(a);
+                    }
+                    return ApiResult.ok(accs);
                 }
-                return ApiResult.ok(accs);
+            } catch (SQLException e) {
+                return ApiResult.error(Errors.fromSQLException(e));
             }
-        } catch (SQLException e) {
-            return ApiResult.error(Errors.fromSQLException(e));
-        }
+        });
     }
 
     /**
@@ -126,33 +198,35 @@ public class AccountDAO implements DatabaseAccessObject<Account> {
      */
     @Override
     public ApiResult<Account> update(Account account) {
-        if (isNull(account)) return ApiResult.error(Errors.fromNullParameter("account"));
-        String wrongProp = getWrongProperty(account, true);
-        if (wrongProp != null) return ApiResult.error(Errors.fromMalformedParameter(wrongProp));
-        if (!isPersisted(account)) return ApiResult.error(Errors.fromMalformedParameter("account"));
-
-        try {
-            String sql = "update tiw_app.accounts set ownerId = ?, balance = ? where id = ?";
-            boolean prevAutoCommit = connection.getAutoCommit();
-            connection.setAutoCommit(false);
+        return METRICS.record("update", () -> {
+            if (isNull(account)) return ApiResult.error(Errors.fromNullParameter("account"));
+            String wrongProp = getWrongProperty(account, true);
+            if (wrongProp != null) return ApiResult.error(Errors.fromMalformedParameter(wrongProp));
+            if (!isPersisted(account)) return ApiResult.error(Errors.fromMalformedParameter("account"));
+
             try {
-                try (PreparedStatement p = connection.prepareStatement(sql)) {
-                    p.setLong(1, IdUtils.fromBase64(account.getOwnerId()));
-                    p.setDouble(2, account.getBalance());
-                    p.setLong(3, IdUtils.fromBase64(account.getBase64Id()));
-                    p.executeUpdate();
+                String sql = "update tiw_app.accounts set ownerId = ?, balance = ?, version = version + 1 where id = ?";
+                boolean prevAutoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    try (PreparedStatement p = connection.prepareStatement(sql)) {
+                        p.setLong(1, IdUtils.fromBase64(account.getOwnerId()));
+                        p.setDouble(2, account.getBalance());
+                        p.setLong(3, IdUtils.fromBase64(account.getBase64Id()));
+                        p.executeUpdate();
+                    }
+                    if (prevAutoCommit) connection.commit();
+                    return ApiResult.ok(account);
+                } catch (SQLException e) {
+                    if (prevAutoCommit) connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(prevAutoCommit);
                 }
-                if (prevAutoCommit) connection.commit();
-                return ApiResult.ok(account);
             } catch (SQLException e) {
-                if (prevAutoCommit) connection.rollback();
-                throw e;
-            } finally {
-                connection.setAutoCommit(prevAutoCommit);
+                return ApiResult.error(Errors.fromSQLException(e));
             }
-        } catch (SQLException e) {
-            return ApiResult.error(Errors.fromSQLException(e));
-        }
+        });
     }
 
     /**
@@ -168,35 +242,38 @@ public class AccountDAO implements DatabaseAccessObject<Account> {
      */
     @Override
     public ApiResult<Account> insert(Account account) {
-        if (isNull(account)) return ApiResult.error(Errors.fromNullParameter("account"));
-        String wrongProp = getWrongProperty(account, false);
-        if (wrongProp != null) return ApiResult.error(Errors.fromMalformedParameter(wrongProp));
-        if (isPersisted(account)) return ApiResult.error(Errors.fromMalformedParameter("account"));
-
-        try {
-            String sql = "insert into tiw_app.accounts(id, ownerId, balance) values(?, ?, ?);";
-            boolean prevAutoCommit = connection.getAutoCommit();
-            connection.setAutoCommit(false);
+        return METRICS.record("insert", () -> {
+            if (isNull(account)) return ApiResult.error(Errors.fromNullParameter("account"));
+            String wrongProp = getWrongProperty(account, false);
+            if (wrongProp != null) return ApiResult.error(Errors.fromMalformedParameter(wrongProp));
+            if (isPersisted(account)) return ApiResult.error(Errors.fromMalformedParameter("account"));
+
             try {
-                long id = DAOUtils.genNewId(connection, "tiw_app.accounts", "id");
-                try (PreparedStatement p = connection.prepareStatement(sql)) {
-                    p.setLong(1, id);
-                    p.setLong(2, IdUtils.fromBase64(account.getOwnerId()));
-                    p.setDouble(3, account.getBalance());
-                    p.executeUpdate();
+                String sql = "insert into tiw_app.accounts(id, ownerId, balance) values(?, ?, ?);";
+                boolean prevAutoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    long id = DAOUtils.genNewId(connection, "tiw_app.accounts", "id");
+                    try (PreparedStatement p = connection.prepareStatement(sql)) {
+                        p.setLong(1, id);
+                        p.setLong(2, IdUtils.fromBase64(account.getOwnerId()));
+                        p.setDouble(3, account.getBalance());
+                        p.executeUpdate();
+                    }
+                    touchOwners(account.getOwnerId());
+                    if (prevAutoCommit) connection.commit();
+                    account.setBase64Id(IdUtils.toBase64(id));
+                    return ApiResult.ok(account);
+                } catch (SQLException e) {
+                    if (prevAutoCommit) connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(prevAutoCommit);
                 }
-                if (prevAutoCommit) connection.commit();
-                account.setBase64Id(IdUtils.toBase64(id));
-                return ApiResult.ok(account);
             } catch (SQLException e) {
-                if (prevAutoCommit) connection.rollback();
-                throw e;
-            } finally {
-                connection.setAutoCommit(prevAutoCommit);
+                return ApiResult.error(Errors.fromSQLException(e));
             }
-        } catch (SQLException e) {
-            return ApiResult.error(Errors.fromSQLException(e));
-        }
+        });
     }
 
     /**
@@ -0,0 +1,160 @@
+package it.polimi.tiw.api.dbaccess;
+
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.metrics.MetricRegistry;
+import it.polimi.tiw.api.metrics.Timer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * {@link ConnectionRetriever} allowing at most a fixed number of connections to be open at the same time. Each
+ * connection takes a permit, given back when it is closed; callers wait for a permit in arrival order and receive a
+ * 503 error if none is freed within the timeout.
+ * <p>
+ * It keeps a large number of threads, e.g. virtual threads, from queueing inside the connection pool and failing with
+ * its own timeout. Waiting on the permit blocks with {@link java.util.concurrent.locks.LockSupport}, so a virtual
+ * thread does not pin its carrier thread. The time spent waiting is recorded in the
+ * {@code tiw_db_permit_acquire_seconds} metric.
+ */
+public class BoundedConnectionRetriever implements ConnectionRetriever {
+    private static final Timer permitTimer = MetricRegistry.getDefault()
+            .timer("tiw_db_permit_acquire", "Permits taken to open a database connection");
+
+    private final Supplier<ApiResult<Connection>> source;
+    private final Semaphore permits;
+    private final long timeoutNanos;
+
+    /**
+     * Creates a new BoundedConnectionRetriever
+     *
+     * @param delegate the {@link ConnectionRetriever} opening the connections
+     * @param permits  the maximum number of connections open at the same time
+     * @param timeout  the maximum time to wait for a permit
+     * @throws NullPointerException     if any parameter is null
+     * @throws IllegalArgumentException if {@code permits} is not positive
+     */
+    public BoundedConnectionRetriever(ConnectionRetriever delegate, int permits, Duration timeout) {
+        this(Objects.requireNonNull(delegate)::get, permits, timeout);
+    }
+
+    BoundedConnectionRetriever(Supplier<ApiResult<Connection>> source, int permits, Duration timeout) {
+        if (permits <= 0) throw new IllegalArgumentException("permits must be positive");
+        this.source = Objects.requireNonNull(source);
+        this.permits = new Semaphore(permits, true);
+        this.timeoutNanos = Objects.requireNonNull(timeout).toNanos();
+    }
+
+    /**
+     * Returns a new {@link ApiResult} containing a new {@link Connection} to the database, once a permit is available.
+     * The permit is given back when the connection is closed.
+     *
+     * @return a new database connection or an error with status code 503 if no permit was available in time
+     */
+    @Override
+    public ApiResult<Connection> get() {
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                permitTimer.error();
+                return ApiResult.error(Errors.fromServiceUnavailable());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            permitTimer.error();
+            return ApiResult.error(Errors.fromServiceUnavailable());
+        }
+        permitTimer.observeNanos(System.nanoTime() - start);
+        ApiResult<Connection> conn;
+        try {
+            conn = source.get();
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        return conn.match(c -> ApiResult.ok(PermitConnection.wrap(c, permits)), e -> {
+            permits.release();
+            return ApiResult.error(e);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> ApiResult<T> with(Function<Connection, ApiResult<T>> mapper) {
+        return get().match(c -> {
+            try {
+                return mapper.apply(c);
+            } finally {
+                close(c);
+            }
+        }, ApiResult::error);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /**
+     * Returns the number of connections that can still be opened without waiting
+     *
+     * @return the number of available permits
+     */
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    /**
+     * Dynamic proxy of a {@link Connection} giving its permit back the first time it is closed
+     */
+    private static final class PermitConnection implements InvocationHandler {
+        private final Connection target;
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private PermitConnection(Connection target, Semaphore permits) {
+            this.target = target;
+            this.permits = permits;
+        }
+
+        static Connection wrap(Connection connection, Semaphore permits) {
+            return (Connection) Proxy.newProxyInstance(
+                    PermitConnection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new PermitConnection(connection, permits));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (method.getName().equals("close") && method.getParameterCount() == 0
+                        && released.compareAndSet(false, true))
+                    permits.release();
+            }
+        }
+    }
+}
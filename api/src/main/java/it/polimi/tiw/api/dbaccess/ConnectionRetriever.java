@@ -7,6 +7,9 @@ import java.util.function.Function;
 
 /**
  * Interface for classes that create or retrieve a {@link Connection} from a data source.
+ * <p>
+ * Implementations should pass the connections they hand out through
+ * {@link it.polimi.tiw.api.tracing.QueryTracing#wrap(Connection)}, so that statements can be traced when needed.
  */
 public interface ConnectionRetriever {
     /**
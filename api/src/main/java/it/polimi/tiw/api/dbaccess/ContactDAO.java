@@ -1,11 +1,13 @@
 package it.polimi.tiw.api.dbaccess;
 
 import it.polimi.tiw.api.beans.Contact;
+import it.polimi.tiw.api.beans.ContactProfile;
 import it.polimi.tiw.api.beans.User;
 import it.polimi.tiw.api.error.ApiError;
 import it.polimi.tiw.api.error.ApiSubError;
 import it.polimi.tiw.api.error.Errors;
 import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.functional.Tuple;
 import it.polimi.tiw.api.utils.IdUtils;
 
 import java.sql.Connection;
@@ -13,7 +15,10 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import static java.util.Objects.isNull;
@@ -23,23 +28,26 @@ import static java.util.Objects.requireNonNull;
  * Class for retrieving/sending {@link Contact} beans to the database
  */
 public class ContactDAO implements DatabaseAccessObject<Contact> {
+    /**
+     * Maximum number of profiles returned by {@link #profilesOf(String, String, int)}
+     */
+    public static final int MAX_PROFILES = 100;
+    private static final DAOMetrics METRICS = new DAOMetrics("ContactDAO");
+
     private static final ApiError operationNotPermitted = new ApiError(400,
             "Operation not permitted",
             new ApiSubError("UnsupportedOperationException", "The operation requested is not allowed"));
 
     private final Connection connection;
-    private final UserDAO userDAO;
 
     /**
-     * Creates a new ContactDAO using the given {@link Connection} and {@link UserDAO} instances.
+     * Creates a new ContactDAO using the given {@link Connection}.
      *
      * @param connection the {@link Connection}
-     * @param userDAO    the {@link UserDAO}
-     * @throws NullPointerException if any parameter is null
+     * @throws NullPointerException if {@code connection} is null
      */
-    public ContactDAO(Connection connection, UserDAO userDAO) {
+    public ContactDAO(Connection connection) {
         this.connection = requireNonNull(connection);
-        this.userDAO = requireNonNull(userDAO);
     }
 
     /**
@@ -54,6 +62,18 @@ public class ContactDAO implements DatabaseAccessObject<Contact> {
         return ApiResult.error(operationNotPermitted);
     }
 
+    /**
+     * Always returns an error since a {@link Contact} does not have a queryable ID.
+     *
+     * @param base64Ids the ids to search
+     * @return an {@link ApiResult} containing an error
+     */
+    @Override
+    public ApiResult<Tuple<List<Contact>, List<String>>> byIds(Collection<String> base64Ids) {
+        if (isNull(base64Ids)) return ApiResult.error(Errors.fromNullParameter("base64Ids"));
+        return ApiResult.error(operationNotPermitted);
+    }
+
     /**
      * Finds and retrieves all {@link Contact}s relative to the {@link User} with the given id.
      *
@@ -61,82 +81,154 @@ public class ContactDAO implements DatabaseAccessObject<Contact> {
      * @return an {@link ApiResult} containing the list of contacts or an error if one happened
      */
     public ApiResult<List<Contact>> ofUser(String base64Id) {
-        if (isNull(base64Id)) return ApiResult.error(Errors.fromNullParameter("base64Id"));
-        if (!IdUtils.isValidBase64(base64Id)) return ApiResult.error(Errors.fromMalformedParameter("base64Id"));
-        try {
-            String sql = "select ownerId, contactId from tiw_app.contacts where ownerId = ?";
+        return METRICS.record("ofUser", () -> {
+            if (isNull(base64Id)) return ApiResult.error(Errors.fromNullParameter("base64Id"));
+            if (!IdUtils.isValidBase64(base64Id)) return ApiResult.error(Errors.fromMalformedParameter("base64Id"));
+            try {
+                String sql = "select ownerId, contactId from tiw_app.contacts where ownerId = ?";
+                try (PreparedStatement s = connection.prepareStatement(sql)) {
+                    s.setLong(1, IdUtils.fromBase64(base64Id));
+                    try (ResultSet r = s.executeQuery()) {
+                        List<Contact> contacts = new ArrayList<>();
+                        while (r.next()) {
+                            Contact c = new Contact();
+                            c.setOwnerBase64Id(IdUtils.toBase64(r.getLong(1)));
+                            c.setContactBase64Id(IdUtils.toBase64(r.getLong(2)));
+                            contacts.add(c);
+                        }
+                        return ApiResult.ok(contacts);
+                    }
+                }
+            } catch (SQLException e) {
+                return ApiResult.error(Errors.fromSQLException(e));
+            }
+        });
+    }
+
+    /**
+     * Finds the contacts of the {@link User} with the given id, together with their username, name, surname and
+     * account ids, using a single query. Contacts are sorted by username; only the ones whose username starts with the
+     * given prefix are returned, at most {@code limit} of them.
+     *
+     * @param base64Id the id of the user
+     * @param prefix   the prefix of the usernames to return, null or empty to return every contact
+     * @param limit    the maximum number of contacts to return, at most {@value #MAX_PROFILES}
+     * @return an {@link ApiResult} containing the list of profiles or an error if one happened
+     */
+    public ApiResult<List<ContactProfile>> profilesOf(String base64Id, String prefix, int limit) {
+        return METRICS.record("profilesOf", () -> {
+            if (isNull(base64Id)) return ApiResult.error(Errors.fromNullParameter("base64Id"));
+            if (!IdUtils.isValidBase64(base64Id)) return ApiResult.error(Errors.fromMalformedParameter("base64Id"));
+            if (limit <= 0) return ApiResult.error(Errors.fromMalformedParameter("limit"));
+            String sql = "select p.id, p.username, p.name, p.surname, a.id " +
+                    "from (select u.id, u.username, u.name, u.surname " +
+                    "      from tiw_app.contacts c join tiw_app.users u on u.id = c.contactId " +
+                    "      where c.ownerId = ? and u.username like ? escape '!' " +
+                    "      order by u.username limit ?) p " +
+                    "left join tiw_app.accounts a on a.ownerId = p.id " +
+                    "order by p.username, a.id";
             try (PreparedStatement s = connection.prepareStatement(sql)) {
                 s.setLong(1, IdUtils.fromBase64(base64Id));
+                s.setString(2, likePrefix(prefix));
+                s.setInt(3, Math.min(limit, MAX_PROFILES));
                 try (ResultSet r = s.executeQuery()) {
-                    List<Contact> contacts = new ArrayList<>();
+                    Map<Long, ContactProfile> profiles = new LinkedHashMap<>();
                     while (r.next()) {
-                        Contact c = new Contact();
-                        c.setOwnerBase64Id(IdUtils.toBase64(r.getLong(1)));
-                        c.setContactBase64Id(IdUtils.toBase64(r.getLong(2)));
-                        contacts.add(c);
+                        long contactId = r.getLong(1);
+                        ContactProfile p = profiles.computeIfAbsent(contactId, __ -> new ContactProfile());
+                        if (p.getContactBase64Id() == null) {
+                            p.setContactBase64Id(IdUtils.toBase64(contactId));
+                            p.setUsername(r.getString(2));
+                            p.setName(r.getString(3));
+                            p.setSurname(r.getString(4));
+                        }
+                        long accountId = r.getLong(5);
+                        if (!r.wasNull())
+                            p.getAccountIds().add(IdUtils.toBase64(accountId));
                     }
+                    return ApiResult.ok(new ArrayList<>(profiles.values()));
+                }
+            } catch (SQLException e) {
+                return ApiResult.error(Errors.fromSQLException(e));
+            }
+        });
+    }
+
+    /**
+     * Finds the ids and usernames of all the contacts of the {@link User} with the given id.
+     *
+     * @param base64Id the id of the user
+     * @return an {@link ApiResult} containing a list of tuples with the base64 id and the username of each contact or
+     * an error if one happened
+     */
+    public ApiResult<List<Tuple<String, String>>> usernamesOf(String base64Id) {
+        return METRICS.record("usernamesOf", () -> {
+            if (isNull(base64Id)) return ApiResult.error(Errors.fromNullParameter("base64Id"));
+            if (!IdUtils.isValidBase64(base64Id)) return ApiResult.error(Errors.fromMalformedParameter("base64Id"));
+            String sql = "select u.id, u.username from tiw_app.contacts c join tiw_app.users u on u.id = c.contactId " +
+                    "where c.ownerId = ?";
+            try (PreparedStatement s = connection.prepareStatement(sql)) {
+                s.setLong(1, IdUtils.fromBase64(base64Id));
+                try (ResultSet r = s.executeQuery()) {
+                    List<Tuple<String, String>> contacts = new ArrayList<>();
+                    while (r.next())
+                        contacts.add(new Tuple<>(IdUtils.toBase64(r.getLong(1)), r.getString(2)));
                     return ApiResult.ok(contacts);
                 }
+            } catch (SQLException e) {
+                return ApiResult.error(Errors.fromSQLException(e));
             }
-        } catch (SQLException e) {
-            return ApiResult.error(Errors.fromSQLException(e));
-        }
+        });
     }
 
     /**
-     * Inserts this object into the database. If the object is already present, it returns an error, otherwise the object
-     * inserted.
+     * Returns the pattern for a LIKE clause matching the strings starting with the given prefix
+     */
+    private static String likePrefix(String prefix) {
+        if (prefix == null) return "%";
+        return prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+    }
+
+    /**
+     * Inserts this object into the database. If the object is already present or any of the two users does not
+     * exist, it returns a conflict error, otherwise the object inserted.
      * <p>
-     * The operation will be done atomically using transactions. If automatic transaction management has been turned
-     * off, e.g. with {@link Connection#setAutoCommit(boolean)}, it is the caller's responsibility to commit
-     * or rollback the changes.
+     * The object is inserted with a single statement, relying on the constraints of the table to detect duplicates
+     * and missing users. Once the contact is committed, the contacts of the owner are dropped from the
+     * {@link ContactIndex}, so that they are reloaded on the next search. If automatic transaction management has been
+     * turned off, e.g. with {@link java.sql.Connection#setAutoCommit(boolean)}, it is the caller's responsibility to
+     * call {@link ContactIndex#invalidate(long)} after committing: dropping them earlier would let a concurrent search
+     * load the contacts again without the new one.
      *
      * @param contact the object to insert
      * @return an {@link ApiResult} containing an error or the saved object
      */
     @Override
     public ApiResult<Contact> insert(Contact contact) {
-        if (isNull(contact)) return ApiResult.error(Errors.fromNullParameter("contact"));
-        if (contact.hasNullProperties(false)) return ApiResult.error(Errors.fromMalformedParameter("contact"));
-        if (Objects.equals(contact.getContactBase64Id(), contact.getOwnerBase64Id()))
-            return ApiResult.error(Errors.fromMalformedParameter("contact"));
-        if (!IdUtils.isValidBase64(contact.getContactBase64Id()) || !IdUtils.isValidBase64(contact.getOwnerBase64Id()))
-            return ApiResult.error(Errors.fromMalformedParameter("contact"));
-        if (isPersisted(contact))
-            return ApiResult.error(Errors.fromConflict("contact"));
-
-        try {
-            String sql = "insert into tiw_app.contacts(ownerId, contactId) values (?, ?)";
-            boolean prevAutocommit = connection.getAutoCommit();
-            connection.setAutoCommit(false);
-            try {
-                long ownerId = IdUtils.fromBase64(contact.getOwnerBase64Id());
-                long contactId = IdUtils.fromBase64(contact.getContactBase64Id());
-
-                boolean validUsers = userDAO.byId(ownerId)
-                        .then(() -> userDAO.byId(contactId))
-                        .match(__ -> true, __ -> false);
-                if (!validUsers) {
-                    if (prevAutocommit) connection.rollback();
-                    return ApiResult.error(Errors.fromConflict("contact"));
-                }
+        return METRICS.record("insert", () -> {
+            if (isNull(contact)) return ApiResult.error(Errors.fromNullParameter("contact"));
+            if (contact.hasNullProperties(false)) return ApiResult.error(Errors.fromMalformedParameter("contact"));
+            if (Objects.equals(contact.getContactBase64Id(), contact.getOwnerBase64Id()))
+                return ApiResult.error(Errors.fromMalformedParameter("contact"));
+            if (!IdUtils.isValidBase64(contact.getContactBase64Id()) || !IdUtils.isValidBase64(contact.getOwnerBase64Id()))
+                return ApiResult.error(Errors.fromMalformedParameter("contact"));
 
-                try (PreparedStatement s = connection.prepareStatement(sql)) {
-                    s.setLong(1, ownerId);
-                    s.setLong(2, contactId);
-                    s.executeUpdate();
-                }
-                if (prevAutocommit) connection.commit();
+            long ownerId = IdUtils.fromBase64(contact.getOwnerBase64Id());
+            String sql = "insert into tiw_app.contacts(ownerId, contactId) values (?, ?)";
+            try (PreparedStatement s = connection.prepareStatement(sql)) {
+                s.setLong(1, ownerId);
+                s.setLong(2, IdUtils.fromBase64(contact.getContactBase64Id()));
+                s.executeUpdate();
+                if (connection.getAutoCommit())
+                    ContactIndex.getInstance().invalidate(ownerId);
                 return ApiResult.ok(contact);
             } catch (SQLException e) {
-                if (prevAutocommit) connection.rollback();
-                throw e;
-            } finally {
-                connection.setAutoCommit(prevAutocommit);
+                // Class 23 is integrity constraint violation: duplicate key or missing user
+                if (e.getSQLState() != null && e.getSQLState().startsWith("23"))
+                    return ApiResult.error(Errors.fromConflict("contact"));
+                return ApiResult.error(Errors.fromSQLException(e));
             }
-        } catch (SQLException e) {
-            return ApiResult.error(Errors.fromSQLException(e));
-        }
+        });
     }
 
     /**
@@ -185,7 +277,6 @@ public class ContactDAO implements DatabaseAccessObject<Contact> {
      * @throws NullPointerException if {@code connection} is null
      */
     public static ContactDAO withNewObjects(Connection connection) {
-        requireNonNull(connection);
-        return new ContactDAO(connection, new UserDAO(connection));
+        return new ContactDAO(connection);
     }
 }
@@ -0,0 +1,272 @@
+package it.polimi.tiw.api.dbaccess;
+
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.functional.Tuple;
+import it.polimi.tiw.api.metrics.MetricRegistry;
+import it.polimi.tiw.api.utils.IdUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Singleton keeping, for recently active users, the usernames of their contacts in sorted arrays, so that username
+ * prefixes can be completed without querying the database.
+ * <p>
+ * The contacts of a user are loaded the first time they are searched and dropped by
+ * {@link ContactDAO#insert(it.polimi.tiw.api.beans.Contact)} when a new one is committed, so that they are reloaded on
+ * the next search. That only happens on the node where the contact is added, so the contacts of a user are also
+ * reloaded {@link #TTL} after they have been loaded: on the other nodes, suggestions are never staler than that. At
+ * most {@value #CAPACITY} contacts are kept in total: when the limit is exceeded, the users searched least recently
+ * are evicted. Matching ignores case.
+ */
+public class ContactIndex {
+    /**
+     * Maximum number of suggestions returned by a search
+     */
+    public static final int MAX_SUGGESTIONS = 20;
+    /**
+     * How long the contacts of a user are kept after being loaded
+     */
+    public static final Duration TTL = Duration.ofSeconds(30);
+    static final int CAPACITY = 100_000;
+    private static ContactIndex instance;
+
+    private final int capacity;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Map<Long, Owner> owners = new LinkedHashMap<>(16, 0.75f, true);
+    private int size;
+    private long version;
+
+    /**
+     * Creates a new ContactIndex holding at most {@code capacity} contacts
+     */
+    ContactIndex(int capacity) {
+        this(capacity, TTL, System::nanoTime);
+    }
+
+    /**
+     * Creates a new ContactIndex holding at most {@code capacity} contacts for {@code ttl} each, reading the time in
+     * nanoseconds from {@code clock}
+     */
+    ContactIndex(int capacity, Duration ttl, LongSupplier clock) {
+        this.capacity = capacity;
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the singleton instance
+     *
+     * @return the singleton instance
+     */
+    public static synchronized ContactIndex getInstance() {
+        if (instance == null) {
+            instance = new ContactIndex(CAPACITY);
+            MetricRegistry.getDefault().gauge("tiw_contact_index_entries",
+                    "Contacts held in the username index", instance::size);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns at most {@code limit} contacts of the given user whose username starts with the given prefix, sorted by
+     * username. If the contacts of the user are not indexed, they are read with {@code loader}, which must return a
+     * tuple containing the base64 id and the username of every contact.
+     *
+     * @param ownerBase64Id the base64 id of the user
+     * @param prefix        the prefix to complete, null or empty to match every contact
+     * @param limit         the maximum number of contacts to return, at most {@value #MAX_SUGGESTIONS}
+     * @param loader        a {@link Supplier} reading all the contacts of the user
+     * @return an {@link ApiResult} containing a list of tuples with the base64 id and the username of the matching
+     * contacts or an error
+     * @throws NullPointerException if {@code loader} is null
+     */
+    public ApiResult<List<Tuple<String, String>>> suggest(String ownerBase64Id, String prefix, int limit,
+                                                          Supplier<ApiResult<List<Tuple<String, String>>>> loader) {
+        Objects.requireNonNull(loader);
+        return checkParameters(ownerBase64Id, limit).flatMap(ownerId -> {
+            Owner owner;
+            long loadedVersion;
+            synchronized (this) {
+                owner = lookup(ownerId);
+                loadedVersion = version;
+            }
+            if (owner != null)
+                return ApiResult.ok(owner.search(normalizedPrefix(prefix), Math.min(limit, MAX_SUGGESTIONS)));
+            return loader.get().map(contacts -> {
+                Owner loaded = Owner.of(contacts, clock.getAsLong());
+                synchronized (this) {
+                    // Contacts may have been added while loading, so the result is not kept
+                    if (version == loadedVersion && !owners.containsKey(ownerId))
+                        put(ownerId, loaded);
+                }
+                return loaded.search(normalizedPrefix(prefix), Math.min(limit, MAX_SUGGESTIONS));
+            });
+        });
+    }
+
+    /**
+     * Like {@link #suggest(String, String, int, Supplier)}, but only looks at the contacts already indexed. An
+     * {@link it.polimi.tiw.api.error.ApiError} with code 404 is returned if the contacts of the user are not indexed,
+     * so that the caller can load them where it is allowed to query the database.
+     *
+     * @param ownerBase64Id the base64 id of the user
+     * @param prefix        the prefix to complete, null or empty to match every contact
+     * @param limit         the maximum number of contacts to return, at most {@value #MAX_SUGGESTIONS}
+     * @return an {@link ApiResult} containing a list of tuples with the base64 id and the username of the matching
+     * contacts or an error
+     */
+    public ApiResult<List<Tuple<String, String>>> cached(String ownerBase64Id, String prefix, int limit) {
+        return checkParameters(ownerBase64Id, limit).flatMap(ownerId -> {
+            Owner owner;
+            synchronized (this) {
+                owner = lookup(ownerId);
+            }
+            return owner == null
+                    ? ApiResult.error(Errors.fromNotFound("contacts"))
+                    : ApiResult.ok(owner.search(normalizedPrefix(prefix), Math.min(limit, MAX_SUGGESTIONS)));
+        });
+    }
+
+    /**
+     * Drops the contacts of the given user from the index, if present
+     *
+     * @param ownerId the id of the owner
+     */
+    public synchronized void invalidate(long ownerId) {
+        version++;
+        Owner removed = owners.remove(ownerId);
+        if (removed != null)
+            size -= removed.ids.length;
+    }
+
+    /**
+     * Returns the number of contacts currently indexed
+     *
+     * @return the number of contacts currently indexed
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the contacts of the given owner, or null if they are not indexed or have expired. Must be called while
+     * holding the lock of the index.
+     */
+    private Owner lookup(long ownerId) {
+        Owner owner = owners.get(ownerId);
+        if (owner != null && clock.getAsLong() - owner.loadedAt >= ttlNanos) {
+            owners.remove(ownerId);
+            size -= owner.ids.length;
+            return null;
+        }
+        return owner;
+    }
+
+    /**
+     * Replaces the contacts of the given owner, evicting the least recently used owners if the capacity is exceeded
+     */
+    private void put(long ownerId, Owner owner) {
+        if (owner.ids.length > capacity) {
+            invalidate(ownerId);
+            return;
+        }
+        Owner old = owners.put(ownerId, owner);
+        size += owner.ids.length - (old == null ? 0 : old.ids.length);
+        Iterator<Map.Entry<Long, Owner>> it = owners.entrySet().iterator();
+        while (size > capacity && it.hasNext()) {
+            Map.Entry<Long, Owner> eldest = it.next();
+            if (eldest.getKey() == ownerId) continue;
+            size -= eldest.getValue().ids.length;
+            it.remove();
+        }
+    }
+
+    private static ApiResult<Long> checkParameters(String ownerBase64Id, int limit) {
+        if (isNull(ownerBase64Id)) return ApiResult.error(Errors.fromNullParameter("ownerBase64Id"));
+        if (!IdUtils.isValidBase64(ownerBase64Id))
+            return ApiResult.error(Errors.fromMalformedParameter("ownerBase64Id"));
+        if (limit <= 0) return ApiResult.error(Errors.fromMalformedParameter("limit"));
+        return ApiResult.ok(IdUtils.fromBase64(ownerBase64Id));
+    }
+
+    private static String normalizedPrefix(String prefix) {
+        return isNull(prefix) ? "" : normalize(prefix);
+    }
+
+    private static String normalize(String s) {
+        return s.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Immutable set of contacts of a user, sorted by normalized username
+     */
+    private static final class Owner {
+        private final String[] keys;
+        private final String[] usernames;
+        private final long[] ids;
+        private final long loadedAt;
+
+        private Owner(String[] keys, String[] usernames, long[] ids, long loadedAt) {
+            this.keys = keys;
+            this.usernames = usernames;
+            this.ids = ids;
+            this.loadedAt = loadedAt;
+        }
+
+        static Owner of(List<Tuple<String, String>> contacts, long loadedAt) {
+            Integer[] order = new Integer[contacts.size()];
+            String[] unsortedKeys = new String[order.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+                unsortedKeys[i] = normalize(contacts.get(i).getSecond());
+            }
+            Arrays.sort(order, (a, b) -> unsortedKeys[a].compareTo(unsortedKeys[b]));
+            String[] keys = new String[order.length];
+            String[] usernames = new String[order.length];
+            long[] ids = new long[order.length];
+            for (int i = 0; i < order.length; i++) {
+                Tuple<String, String> c = contacts.get(order[i]);
+                keys[i] = unsortedKeys[order[i]];
+                usernames[i] = c.getSecond();
+                ids[i] = IdUtils.fromBase64(c.getFirst());
+            }
+            return new Owner(keys, usernames, ids, loadedAt);
+        }
+
+        List<Tuple<String, String>> search(String prefix, int limit) {
+            List<Tuple<String, String>> found = new ArrayList<>(Math.min(limit, 8));
+            for (int i = lowerBound(prefix); i < keys.length && found.size() < limit; i++) {
+                if (!keys[i].startsWith(prefix)) break;
+                found.add(new Tuple<>(IdUtils.toBase64(ids[i]), usernames[i]));
+            }
+            return found;
+        }
+
+        /**
+         * Returns the index of the first key not smaller than the given one
+         */
+        private int lowerBound(String key) {
+            int lo = 0, hi = keys.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid].compareTo(key) < 0) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+}
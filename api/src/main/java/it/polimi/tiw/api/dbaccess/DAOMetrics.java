@@ -0,0 +1,36 @@
+package it.polimi.tiw.api.dbaccess;
+
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.metrics.MetricRegistry;
+import it.polimi.tiw.api.metrics.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Times the methods of a DAO, recording them in the {@code tiw_dao_call_seconds} and {@code tiw_dao_call_errors_total}
+ * metrics.
+ */
+class DAOMetrics {
+    private final String dao;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new DAOMetrics for the DAO with the given name
+     */
+    DAOMetrics(String dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Executes the body of the given method, recording its duration and whether it failed
+     */
+    <T> ApiResult<T> record(String method, Supplier<ApiResult<T>> body) {
+        Timer timer = timers.get(method);
+        if (timer == null)
+            timer = timers.computeIfAbsent(method, m -> MetricRegistry.getDefault()
+                    .timer("tiw_dao_call", "Calls to DAO methods", "dao", dao, "method", m));
+        return timer.record(body);
+    }
+}
@@ -1,14 +1,34 @@
 package it.polimi.tiw.api.dbaccess;
 
+import it.polimi.tiw.api.error.ApiError;
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.functional.Tuple;
+import it.polimi.tiw.api.utils.IdUtils;
+
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.isNull;
 
 /**
  * Some internal utilities
  */
 class DAOUtils {
+    /**
+     * Maximum number of ids bound in a single {@code in} clause
+     */
+    static final int IN_CHUNK_SIZE = 128;
+
     /**
      * Mocks mysql's AutoIncrement
      */
@@ -20,4 +40,63 @@ class DAOUtils {
             }
         }
     }
+
+    /**
+     * Reads the object with the given id from the current row of a {@link ResultSet}
+     */
+    @FunctionalInterface
+    interface RowMapper<T> {
+        ApiResult<T> map(long id, ResultSet r) throws SQLException;
+    }
+
+    /**
+     * Implements {@link DatabaseAccessObject#byIds(Collection)} for the given table, whose primary key must be the
+     * {@code id} column. Ids are queried in chunks of at most {@value #IN_CHUNK_SIZE}; chunks are padded to a power of
+     * two by repeating their last id, so that only a few distinct statements are ever prepared.
+     */
+    static <T> ApiResult<Tuple<List<T>, List<String>>> byIds(Connection connection, String table,
+                                                             Collection<String> base64Ids, RowMapper<T> mapper) {
+        if (isNull(base64Ids)) return ApiResult.error(Errors.fromNullParameter("base64Ids"));
+        LinkedHashSet<Long> ids = new LinkedHashSet<>();
+        for (String base64Id : base64Ids) {
+            if (!IdUtils.isValidBase64(base64Id)) return ApiResult.error(Errors.fromMalformedParameter("base64Ids"));
+            ids.add(IdUtils.fromBase64(base64Id));
+        }
+
+        List<Long> ordered = new ArrayList<>(ids);
+        Map<Long, T> found = new HashMap<>();
+        try {
+            for (int from = 0; from < ordered.size(); from += IN_CHUNK_SIZE) {
+                List<Long> chunk = ordered.subList(from, Math.min(ordered.size(), from + IN_CHUNK_SIZE));
+                int size = Integer.highestOneBit(chunk.size() * 2 - 1);
+                String sql = "select * from " + table + " where id in (" +
+                        String.join(", ", Collections.nCopies(size, "?")) + ")";
+                try (PreparedStatement p = connection.prepareStatement(sql)) {
+                    for (int i = 0; i < size; i++)
+                        p.setLong(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+                    try (ResultSet r = p.executeQuery()) {
+                        while (r.next()) {
+                            long id = r.getLong("id");
+                            ApiError error = mapper.map(id, r).match(t -> {
+                                found.put(id, t);
+                                return null;
+                            }, e -> e);
+                            if (error != null) return ApiResult.error(error);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            return ApiResult.error(Errors.fromSQLException(e));
+        }
+
+        List<T> objects = new ArrayList<>(found.size());
+        List<String> missing = new ArrayList<>();
+        for (long id : ordered) {
+            T t = found.get(id);
+            if (t != null) objects.add(t);
+            else missing.add(IdUtils.toBase64(id));
+        }
+        return ApiResult.ok(new Tuple<>(objects, missing));
+    }
 }
@@ -2,6 +2,10 @@ package it.polimi.tiw.api.dbaccess;
 
 import it.polimi.tiw.api.beans.PersistedObject;
 import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.functional.Tuple;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Represents a generic object that retrieves
@@ -18,6 +22,16 @@ public interface DatabaseAccessObject<T extends PersistedObject> {
      */
     ApiResult<T> byId(String base64Id);
 
+    /**
+     * Finds and retrieves the data for the objects with the given ids, with as few queries as possible. Duplicated ids
+     * are only returned once.
+     *
+     * @param base64Ids the ids to search
+     * @return an {@link ApiResult} containing a {@link Tuple} whose first element are the objects found, in the order
+     * of the given ids, and whose second element are the ids that could not be found
+     */
+    ApiResult<Tuple<List<T>, List<String>>> byIds(Collection<String> base64Ids);
+
     /**
      * Inserts this object into the database. If the object is already present, it returns an error, otherwise the object
      * inserted.
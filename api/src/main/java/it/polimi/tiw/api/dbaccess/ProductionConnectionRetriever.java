@@ -3,20 +3,34 @@ package it.polimi.tiw.api.dbaccess;
 import it.polimi.tiw.api.error.ApiError;
 import it.polimi.tiw.api.error.ApiSubError;
 import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.jfr.ConnectionAcquireEvent;
+import it.polimi.tiw.api.metrics.MetricRegistry;
+import it.polimi.tiw.api.metrics.Timer;
+import it.polimi.tiw.api.tracing.QueryTracing;
 
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.function.Function;
 
 /**
  * Singleton that gets a new connection from the pool of connections to the production database.
+ * <p>
+ * The time spent waiting for a connection is recorded in the {@code tiw_db_connection_acquire_seconds} metric.
+ * Connections are traced if {@link QueryTracing} is enabled, and each acquisition emits a
+ * {@link ConnectionAcquireEvent}.
+ * <p>
+ * When requests run on virtual threads, {@link #limitConnections(int, Duration)} should be called with the size of
+ * the pool, so that connections are handed out through a {@link BoundedConnectionRetriever}.
  */
 public class ProductionConnectionRetriever implements ConnectionRetriever {
-    private static ProductionConnectionRetriever instance;
-    private DataSource ds;
+    private static final Timer acquireTimer = MetricRegistry.getDefault()
+            .timer("tiw_db_connection_acquire", "Connections taken from the pool");
+    private volatile DataSource ds;
+    private volatile BoundedConnectionRetriever bounded;
 
     private ProductionConnectionRetriever() {
     }
@@ -27,9 +41,21 @@ public class ProductionConnectionRetriever implements ConnectionRetriever {
      * @return the singleton instance
      */
     public static ProductionConnectionRetriever getInstance() {
-        if (instance == null)
-            instance = new ProductionConnectionRetriever();
-        return instance;
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Limits the number of connections open at the same time to {@code permits}: further requests wait at most
+     * {@code timeout} for a connection to be closed, then fail with a 503.
+     *
+     * @param permits the maximum number of connections open at the same time
+     * @param timeout the maximum time to wait for a connection to be closed
+     * @throws NullPointerException     if {@code timeout} is null
+     * @throws IllegalArgumentException if {@code permits} is not positive
+     * @see BoundedConnectionRetriever
+     */
+    public void limitConnections(int permits, Duration timeout) {
+        bounded = new BoundedConnectionRetriever(this::open, permits, timeout);
     }
 
     /**
@@ -39,16 +65,45 @@ public class ProductionConnectionRetriever implements ConnectionRetriever {
      * @throws IllegalStateException if a generic error occurred
      */
     public ApiResult<Connection> get() {
-        ProductionConnectionRetriever i = getInstance();
-        try {
-            if (i.ds == null) {
+        BoundedConnectionRetriever b = bounded;
+        return b == null ? open() : b.get();
+    }
+
+    /**
+     * Returns the pool of connections to the database, looking it up the first time
+     *
+     * @return the {@link DataSource} bound to {@code jdbc/productionDb}
+     * @throws IllegalStateException if the data source cannot be looked up
+     */
+    public DataSource getDataSource() {
+        DataSource d = ds;
+        if (d == null) {
+            try {
                 InitialContext ctx = new InitialContext();
-                i.ds = (DataSource) ctx.lookup("java:/comp/env/jdbc/productionDb");
+                d = (DataSource) ctx.lookup("java:/comp/env/jdbc/productionDb");
+            } catch (NamingException e) {
+                throw new IllegalStateException("jndi i setup improperly", e);
             }
-            return ApiResult.ok(i.ds.getConnection());
-        } catch (NamingException e) {
-            throw new IllegalStateException("jndi i setup improperly", e);
+            ds = d;
+        }
+        return d;
+    }
+
+    private ApiResult<Connection> open() {
+        DataSource d = getDataSource();
+        ConnectionAcquireEvent event = new ConnectionAcquireEvent();
+        try {
+            long start = System.nanoTime();
+            event.begin();
+            Connection c = d.getConnection();
+            event.end();
+            acquireTimer.observeNanos(System.nanoTime() - start);
+            event.success = true;
+            event.commit();
+            return ApiResult.ok(QueryTracing.wrap(c));
         } catch (SQLException e) {
+            acquireTimer.error();
+            event.commit();
             ApiError error = new ApiError(500,
                     "Error while fetching data",
                     new ApiSubError("SQLException", e.getMessage() == null ? "" : e.getMessage()));
@@ -66,11 +121,12 @@ public class ProductionConnectionRetriever implements ConnectionRetriever {
      */
     @Override
     public <T> ApiResult<T> with(Function<Connection, ApiResult<T>> mapper) {
-        ApiResult<Connection> conn = getInstance().get();
-        ApiResult<T> res = conn.flatMap(mapper);
-        return conn.match(c -> {
-            getInstance().close(c);
-            return res;
+        return get().match(c -> {
+            try {
+                return mapper.apply(c);
+            } finally {
+                close(c);
+            }
         }, ApiResult::error);
     }
 
@@ -86,4 +142,11 @@ public class ProductionConnectionRetriever implements ConnectionRetriever {
         } catch (SQLException ignored) {
         }
     }
+
+    /**
+     * Lazily creates the singleton the first time it is requested, without locking
+     */
+    private static final class Holder {
+        private static final ProductionConnectionRetriever INSTANCE = new ProductionConnectionRetriever();
+    }
 }
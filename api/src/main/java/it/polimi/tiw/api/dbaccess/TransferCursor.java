@@ -0,0 +1,105 @@
+package it.polimi.tiw.api.dbaccess;
+
+import it.polimi.tiw.api.beans.Transfer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily iterates over the {@link Transfer}s returned by a query. The query is executed on the first call to
+ * {@link #hasNext()} and rows are turned into {@link Transfer}s one at a time, so the whole result is never kept in
+ * memory by the application. Rows are requested from the database {@value #FETCH_SIZE} at a time; with MySQL this
+ * needs {@code useCursorFetch=true} in the connection URL, otherwise the driver buffers the whole result.
+ * <p>
+ * A cursor does not own its {@link Connection}: it must be closed before the connection is, and the connection cannot
+ * be used for anything else while the cursor is being iterated. Errors raised by the database while iterating are
+ * thrown as {@link IllegalStateException}s.
+ */
+public class TransferCursor implements Iterator<Transfer>, AutoCloseable {
+    /**
+     * Number of rows requested to the database at a time
+     */
+    public static final int FETCH_SIZE = 256;
+
+    private final Connection connection;
+    private final String sql;
+    private final long[] parameters;
+    private PreparedStatement statement;
+    private ResultSet rows;
+    private Transfer next;
+    private boolean exhausted;
+
+    /**
+     * Creates a new cursor that will run the given query, binding the parameters in order
+     */
+    TransferCursor(Connection connection, String sql, long... parameters) {
+        this.connection = connection;
+        this.sql = sql;
+        this.parameters = parameters;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if the query could not be executed
+     */
+    @Override
+    public boolean hasNext() {
+        if (next != null) return true;
+        if (exhausted) return false;
+        try {
+            if (rows == null) open();
+            if (rows.next()) {
+                next = TransferDAO.fromRow(rows);
+                return true;
+            }
+        } catch (SQLException e) {
+            close();
+            throw new IllegalStateException("Cannot read transfers", e);
+        }
+        close();
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if the query could not be executed
+     */
+    @Override
+    public Transfer next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Transfer t = next;
+        next = null;
+        return t;
+    }
+
+    /**
+     * Releases the statement used by this cursor. Closing a cursor more than once has no effect.
+     */
+    @Override
+    public void close() {
+        exhausted = true;
+        next = null;
+        try {
+            if (statement != null) statement.close();
+        } catch (SQLException ignored) {
+            // The statement is gone either way
+        } finally {
+            statement = null;
+            rows = null;
+        }
+    }
+
+    private void open() throws SQLException {
+        statement = connection.prepareStatement(sql);
+        statement.setFetchSize(FETCH_SIZE);
+        for (int i = 0; i < parameters.length; i++)
+            statement.setLong(i + 1, parameters[i]);
+        rows = statement.executeQuery();
+    }
+}
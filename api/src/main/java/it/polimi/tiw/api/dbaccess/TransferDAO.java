@@ -2,17 +2,22 @@ package it.polimi.tiw.api.dbaccess;
 
 import it.polimi.tiw.api.beans.Account;
 import it.polimi.tiw.api.beans.Transfer;
+import it.polimi.tiw.api.beans.TransferDelta;
 import it.polimi.tiw.api.error.ApiError;
 import it.polimi.tiw.api.error.ApiSubError;
 import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.events.TransferEventBus;
 import it.polimi.tiw.api.functional.ApiResult;
 import it.polimi.tiw.api.functional.Result;
 import it.polimi.tiw.api.functional.Tuple;
+import it.polimi.tiw.api.jfr.Events;
+import it.polimi.tiw.api.jfr.TransferEvent;
 import it.polimi.tiw.api.utils.IdUtils;
 
 import java.sql.*;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Function;
@@ -24,6 +29,8 @@ import static java.util.Objects.requireNonNull;
  * Class for retrieving/sending {@link Transfer} instances to a database.
  */
 public class TransferDAO implements DatabaseAccessObject<Transfer> {
+    private static final DAOMetrics METRICS = new DAOMetrics("TransferDAO");
+
     private final Connection connection;
     private final AccountDAO accountDAO;
 
@@ -50,37 +57,53 @@ public class TransferDAO implements DatabaseAccessObject<Transfer> {
      */
     @Override
     public ApiResult<Transfer> byId(String base64Id) {
-        if (isNull(base64Id)) return ApiResult.error(Errors.fromNullParameter("base64Id"));
-        if (!IdUtils.isValidBase64(base64Id)) return ApiResult.error(Errors.fromMalformedParameter("base64Id"));
-
-        long id = IdUtils.fromBase64(base64Id);
-        try (PreparedStatement p = connection.prepareStatement("select * from tiw_app.transfers where id = ?")) {
-            p.setLong(1, id);
-            try (ResultSet r = p.executeQuery()) {
-                if (r.next()) {
-                    Instant date = r.getTimestamp("date").toInstant();
-                    double amount = r.getDouble("amount");
-                    long toId = r.getLong("toId");
-                    double toBalance = r.getDouble("toBalance");
-                    long fromId = r.getLong("fromId");
-                    double fromBalance = r.getDouble("fromBalance");
-                    String causal = r.getString("causal");
-                    Transfer t = new Transfer();
-                    t.setDate(date);
-                    t.setAmount(amount);
-                    t.setBase64Id(base64Id);
-                    t.setToId(IdUtils.toBase64(toId));
-                    t.setToBalance(toBalance);
-                    t.setFromId(IdUtils.toBase64(fromId));
-                    t.setFromBalance(fromBalance);
-                    t.setCausal(causal);
-                    return ApiResult.ok(t);
-                } else
-                    return ApiResult.error(Errors.fromNotFound("id"));
+        return METRICS.record("byId", () -> {
+            if (isNull(base64Id)) return ApiResult.error(Errors.fromNullParameter("base64Id"));
+            if (!IdUtils.isValidBase64(base64Id)) return ApiResult.error(Errors.fromMalformedParameter("base64Id"));
+
+            long id = IdUtils.fromBase64(base64Id);
+            try (PreparedStatement p = connection.prepareStatement("select * from tiw_app.transfers where id = ?")) {
+                p.setLong(1, id);
+                try (ResultSet r = p.executeQuery()) {
+                    if (r.next()) {
+                        Instant date = r.getTimestamp("date").toInstant();
+                        double amount = r.getDouble("amount");
+                        long toId = r.getLong("toId");
+                        double toBalance = r.getDouble("toBalance");
+                        long fromId = r.getLong("fromId");
+                        double fromBalance = r.getDouble("fromBalance");
+                        String causal = r.getString("causal");
+                        Transfer t = new Transfer();
+                        t.setDate(date);
+                        t.setAmount(amount);
+                        t.setBase64Id(base64Id);
+                        t.setToId(IdUtils.toBase64(toId));
+                        t.setToBalance(toBalance);
+                        t.setFromId(IdUtils.toBase64(fromId));
+                        t.setFromBalance(fromBalance);
+                        t.setCausal(causal);
+                        return ApiResult.ok(t);
+                    } else
+                        return ApiResult.error(Errors.fromNotFound("id"));
+                }
+            } catch (SQLException e) {
+                return ApiResult.error(Errors.fromSQLException(e));
             }
-        } catch (SQLException e) {
-            return ApiResult.error(Errors.fromSQLException(e));
-        }
+        });
+    }
+
+    /**
+     * Finds and retrieves the data for the Transfers with the given ids, with one query every
+     * {@value DAOUtils#IN_CHUNK_SIZE} ids.
+     *
+     * @param base64Ids the ids to search
+     * @return an {@link ApiResult} containing a {@link Tuple} whose first element are the Transfers found, in the
+     * order of the given ids, and whose second element are the ids that could not be found
+     */
+    @Override
+    public ApiResult<Tuple<List<Transfer>, List<String>>> byIds(Collection<String> base64Ids) {
+        return METRICS.record("byIds", () -> DAOUtils.byIds(connection, "tiw_app.transfers", base64Ids,
+                (id, r) -> ApiResult.ok(fromRow(r))));
     }
 
     /**
@@ -92,43 +115,156 @@ public class TransferDAO implements DatabaseAccessObject<Transfer> {
      * @return an {@link ApiResult} containing the tuple with the transfers or an error if something went wrong.
      */
     public ApiResult<Tuple<List<Transfer>, List<Transfer>>> inAndOutOf(String accountId) {
-        if (isNull(accountId)) return ApiResult.error(Errors.fromNullParameter("account"));
-        if (!IdUtils.isValidBase64(accountId))
-            return ApiResult.error(Errors.fromMalformedParameter("account"));
+        return METRICS.record("inAndOutOf", () -> {
+            if (isNull(accountId)) return ApiResult.error(Errors.fromNullParameter("account"));
+            if (!IdUtils.isValidBase64(accountId))
+                return ApiResult.error(Errors.fromMalformedParameter("account"));
 
-        long id = IdUtils.fromBase64(accountId);
-        try {
-            ArrayList<Transfer> ins = new ArrayList<>();
-            ArrayList<Transfer> outs = new ArrayList<>();
-            String sql = "select * from tiw_app.transfers where toId = ? or fromId = ? order by date desc";
-            try (PreparedStatement s = connection.prepareStatement(sql)) {
-                s.setLong(1, id);
-                s.setLong(2, id);
-                try (ResultSet r = s.executeQuery()) {
-                    while (r.next()) {
-                        Transfer t = new Transfer();
-                        t.setBase64Id(IdUtils.toBase64(r.getLong("id")));
-                        t.setDate(r.getTimestamp("date").toInstant());
-                        t.setAmount(r.getDouble("amount"));
-                        t.setToId(IdUtils.toBase64(r.getLong("toId")));
-                        t.setToBalance(r.getDouble("toBalance"));
-                        t.setFromId(IdUtils.toBase64(r.getLong("fromId")));
-                        t.setFromBalance(r.getDouble("fromBalance"));
-                        t.setCausal(r.getString("causal"));
-                        if (t.getToId().equals(accountId)) ins.add(t);
-                        else outs.add(t);
+            long id = IdUtils.fromBase64(accountId);
+            try {
+                ArrayList<Transfer> ins = new ArrayList<>();
+                ArrayList<Transfer> outs = new ArrayList<>();
+                String sql = "select * from tiw_app.transfers where toId = ? or fromId = ? order by date desc";
+                try (PreparedStatement s = connection.prepareStatement(sql)) {
+                    s.setLong(1, id);
+                    s.setLong(2, id);
+                    try (ResultSet r = s.executeQuery()) {
+                        while (r.next()) {
+                            Transfer t = fromRow(r);
+                            if (t.getToId().equals(accountId)) ins.add(t);
+                            else outs.add(t);
+                        }
+                        return ApiResult.ok(new Tuple<>(ins, outs));
                     }
-                    return ApiResult.ok(new Tuple<>(ins, outs));
                 }
+            } catch (SQLException e) {
+                return ApiResult.error(Errors.fromSQLException(e));
             }
-        } catch (SQLException e) {
-            return ApiResult.error(Errors.fromSQLException(e));
-        }
+        });
+    }
+
+    /**
+     * Returns the {@link Transfer}s of the {@link Account} with the given id committed after {@code cursor}, along with
+     * the current balance and version of the {@link Account}. Each {@link Transfer} records the version its
+     * {@link Account}s reached when it was created, so only the new {@link Transfer}s are read. Transfers committed
+     * after the {@link Account} has been read are left to the next call, so that the balance and the cursor returned
+     * always match the transfers.
+     *
+     * @param accountId the {@link Account} of which to get the transfers
+     * @param cursor    the version of the {@link Account} up to which the caller has already read the transfers
+     * @return an {@link ApiResult} containing the {@link TransferDelta}, with each {@link Transfer} list ordered by
+     * descending date, or an error if something went wrong
+     */
+    public ApiResult<TransferDelta> since(String accountId, long cursor) {
+        return METRICS.record("since", () -> {
+            if (isNull(accountId)) return ApiResult.error(Errors.fromNullParameter("account"));
+            if (!IdUtils.isValidBase64(accountId))
+                return ApiResult.error(Errors.fromMalformedParameter("account"));
+            if (cursor < 0) return ApiResult.error(Errors.fromMalformedParameter("cursor"));
+
+            long id = IdUtils.fromBase64(accountId);
+            try {
+                TransferDelta delta = new TransferDelta();
+                String accountSql = "select ownerId, balance, version from tiw_app.accounts where id = ?";
+                try (PreparedStatement s = connection.prepareStatement(accountSql)) {
+                    s.setLong(1, id);
+                    try (ResultSet r = s.executeQuery()) {
+                        if (!r.next()) return ApiResult.error(Errors.fromNotFound("account"));
+                        delta.setOwnerId(IdUtils.toBase64(r.getLong("ownerId")));
+                        delta.setBalance(r.getDouble("balance"));
+                        delta.setCursor(r.getLong("version"));
+                    }
+                }
+                if (delta.getCursor() <= cursor) return ApiResult.ok(delta);
+
+                String sql = "select * from tiw_app.transfers where toId = ? and toSeq > ? and toSeq <= ? " +
+                        "union all " +
+                        "select * from tiw_app.transfers where fromId = ? and toId <> ? and fromSeq > ? and fromSeq <= ? " +
+                        "order by date desc";
+                try (PreparedStatement s = connection.prepareStatement(sql)) {
+                    s.setLong(1, id);
+                    s.setLong(2, cursor);
+                    s.setLong(3, delta.getCursor());
+                    s.setLong(4, id);
+                    s.setLong(5, id);
+                    s.setLong(6, cursor);
+                    s.setLong(7, delta.getCursor());
+                    try (ResultSet r = s.executeQuery()) {
+                        while (r.next()) {
+                            Transfer t = fromRow(r);
+                            if (t.getToId().equals(accountId)) delta.getIncoming().add(t);
+                            else delta.getOutgoing().add(t);
+                        }
+                    }
+                }
+                return ApiResult.ok(delta);
+            } catch (SQLException e) {
+                return ApiResult.error(Errors.fromSQLException(e));
+            }
+        });
+    }
+
+    /**
+     * Returns a {@link TransferCursor} over the {@link Transfer}s received by the {@link Account} with the given id,
+     * ordered by descending date. The query is executed lazily by the cursor, which must be closed after use.
+     *
+     * @param accountId the {@link Account} of which to get the transfers
+     * @return an {@link ApiResult} containing the cursor or an error if the id is not valid
+     */
+    public ApiResult<TransferCursor> incomingTo(String accountId) {
+        return checkAccountId(accountId).map(id -> new TransferCursor(connection,
+                "select * from tiw_app.transfers where toId = ? order by date desc",
+                id));
+    }
+
+    /**
+     * Returns a {@link TransferCursor} over the {@link Transfer}s sent by the {@link Account} with the given id,
+     * ordered by descending date. Transfers the account sent to itself are only returned by
+     * {@link #incomingTo(String)}, as in {@link #inAndOutOf(String)}. The query is executed lazily by the cursor, which
+     * must be closed after use.
+     *
+     * @param accountId the {@link Account} of which to get the transfers
+     * @return an {@link ApiResult} containing the cursor or an error if the id is not valid
+     */
+    public ApiResult<TransferCursor> outgoingFrom(String accountId) {
+        return checkAccountId(accountId).map(id -> new TransferCursor(connection,
+                "select * from tiw_app.transfers where fromId = ? and toId <> ? order by date desc",
+                id, id));
+    }
+
+    private static ApiResult<Long> checkAccountId(String accountId) {
+        if (isNull(accountId)) return ApiResult.error(Errors.fromNullParameter("account"));
+        if (!IdUtils.isValidBase64(accountId))
+            return ApiResult.error(Errors.fromMalformedParameter("account"));
+        return ApiResult.ok(IdUtils.fromBase64(accountId));
+    }
+
+    /**
+     * Creates a {@link Transfer} from the current row of the given {@link ResultSet}
+     */
+    static Transfer fromRow(ResultSet r) throws SQLException {
+        Transfer t = new Transfer();
+        t.setBase64Id(IdUtils.toBase64(r.getLong("id")));
+        t.setDate(r.getTimestamp("date").toInstant());
+        t.setAmount(r.getDouble("amount"));
+        t.setToId(IdUtils.toBase64(r.getLong("toId")));
+        t.setToBalance(r.getDouble("toBalance"));
+        t.setFromId(IdUtils.toBase64(r.getLong("fromId")));
+        t.setFromBalance(r.getDouble("fromBalance"));
+        t.setCausal(r.getString("causal"));
+        return t;
     }
 
     /**
      * Creates a new {@link Transfer} between two {@link Account} with the given ids anda the specified amount. If a
      * {@link Transfer} could be created, it is returned in an {@link ApiResult}, otherwise an error is returned.
+     * <p>
+     * Both {@link Account}s are locked for the duration of the transaction, so that concurrent transfers involving the
+     * same accounts are serialized and no balance update is lost. The time spent waiting for the locks is recorded in
+     * the {@link TransferEvent} emitted for the transfer.
+     * <p>
+     * Once committed, the {@link Transfer} is published on the default {@link TransferEventBus} to the owner of the
+     * receiving {@link Account}. Transfers created inside a transaction managed by the caller are not published.
      *
      * @param fromId the base64 encoded id of the {@link Account} from which the money will be taken
      * @param toId   the base64 encoded id of the {@link Account} on which the money will be deposited
@@ -137,35 +273,66 @@ public class TransferDAO implements DatabaseAccessObject<Transfer> {
      * @return an {@link ApiResult} containing the created {@link Transfer} or an error.
      */
     public ApiResult<Transfer> newTransfer(String fromId, String toId, double amount, String causal) {
-        if (isNull(fromId)) return ApiResult.error(Errors.fromNullParameter("fromId"));
-        if (isNull(toId)) return ApiResult.error(Errors.fromNullParameter("toId"));
-        if (isNull(causal)) return ApiResult.error(Errors.fromNullParameter("causal"));
-        if (!IdUtils.isValidBase64(fromId)) return ApiResult.error(Errors.fromMalformedParameter("fromId"));
-        if (!IdUtils.isValidBase64(toId)) return ApiResult.error(Errors.fromMalformedParameter("toId"));
-        if (fromId.equals(toId)) return ApiResult.error(Errors.fromMalformedParameter("toId"));
-        if (amount <= 0) return ApiResult.error(Errors.fromMalformedParameter("amount"));
-        if (causal.length() < 1 || causal.length() > Transfer.CAUSAL_LENGTH)
-            return ApiResult.error(Errors.fromMalformedParameter("causal"));
+        TransferEvent event = new TransferEvent();
+        event.begin();
+        ApiResult<Transfer> res = METRICS.record("newTransfer", () -> {
+            if (isNull(fromId)) return ApiResult.error(Errors.fromNullParameter("fromId"));
+            if (isNull(toId)) return ApiResult.error(Errors.fromNullParameter("toId"));
+            if (isNull(causal)) return ApiResult.error(Errors.fromNullParameter("causal"));
+            if (!IdUtils.isValidBase64(fromId)) return ApiResult.error(Errors.fromMalformedParameter("fromId"));
+            if (!IdUtils.isValidBase64(toId)) return ApiResult.error(Errors.fromMalformedParameter("toId"));
+            if (fromId.equals(toId)) return ApiResult.error(Errors.fromMalformedParameter("toId"));
+            if (amount <= 0) return ApiResult.error(Errors.fromMalformedParameter("amount"));
+            if (causal.length() < 1 || causal.length() > Transfer.CAUSAL_LENGTH)
+                return ApiResult.error(Errors.fromMalformedParameter("causal"));
 
-        try {
-            boolean prevAutoCommit = connection.getAutoCommit();
-            connection.setAutoCommit(false);
             try {
-                ApiResult<Tuple<Transfer, Tuple<Account, Account>>> objs = checkNotSame(new Tuple<>(toId, fromId))
-                        .flatMap(t -> getToAndFrom(t.getFirst(), t.getSecond()))
-                        .flatMap(t -> checkToBalance(t, amount))
-                        .flatMap(t -> createTransfer(t, amount, causal));
-                if (objs.match(__ -> true, __ -> false)) {
-                    return commitChanges(objs.get(), prevAutoCommit);
-                } else {
+                boolean prevAutoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    ApiResult<Tuple<Transfer, Tuple<Account, Account>>> objs = checkNotSame(new Tuple<>(toId, fromId))
+                            .flatMap(t -> lockAccounts(t, event))
+                            .flatMap(t -> getToAndFrom(t.getFirst(), t.getSecond()))
+                            .flatMap(t -> checkToBalance(t, amount))
+                            .flatMap(t -> createTransfer(t, amount, causal));
+                    if (objs.match(__ -> true, __ -> false)) {
+                        return commitChanges(objs.get(), prevAutoCommit);
+                    } else {
+                        if (prevAutoCommit) connection.rollback();
+                        return ApiResult.error(objs.getError());
+                    }
+                } catch (SQLException e) {
                     if (prevAutoCommit) connection.rollback();
-                    return ApiResult.error(objs.getError());
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(prevAutoCommit);
                 }
             } catch (SQLException e) {
-                if (prevAutoCommit) connection.rollback();
-                throw e;
-            } finally {
-                connection.setAutoCommit(prevAutoCommit);
+                return ApiResult.error(Errors.fromSQLException(e));
+            }
+        });
+        event.end();
+        if (event.shouldCommit()) {
+            event.outcome = Events.outcome(res);
+            event.amountBucket = TransferEvent.bucket(amount);
+            event.commit();
+        }
+        return res;
+    }
+
+    /**
+     * Locks the rows of the two accounts until the end of the transaction. Rows are always locked in ascending id order
+     * to avoid deadlocks between transfers going in opposite directions.
+     */
+    private ApiResult<Tuple<String, String>> lockAccounts(Tuple<String, String> accounts, TransferEvent event) {
+        String sql = "select id from tiw_app.accounts where id in (?, ?) order by id for update";
+        try (PreparedStatement p = connection.prepareStatement(sql)) {
+            p.setLong(1, IdUtils.fromBase64(accounts.getFirst()));
+            p.setLong(2, IdUtils.fromBase64(accounts.getSecond()));
+            long start = System.nanoTime();
+            try (ResultSet ignored = p.executeQuery()) {
+                event.lockWait = System.nanoTime() - start;
+                return ApiResult.ok(accounts);
             }
         } catch (SQLException e) {
             return ApiResult.error(Errors.fromSQLException(e));
@@ -231,9 +398,13 @@ public class TransferDAO implements DatabaseAccessObject<Transfer> {
         Account from = transferToAndFrom.getSecond().getSecond();
         return accountDAO.update(to)
                 .then(() -> accountDAO.update(from))
+                .then(() -> touchOwners(to, from))
                 .then(() -> insert(transfer))
                 .match(t -> Result.of(() -> {
-                            if (prevAutoCommit) connection.commit();
+                            if (prevAutoCommit) {
+                                connection.commit();
+                                TransferEventBus.getDefault().publish(to.getOwnerId(), t);
+                            }
                             return ApiResult.ok(t);
                         }),
                         (Function<ApiError, Result<SQLException, ApiResult<Transfer>>>) e -> Result.of(() -> {
@@ -243,6 +414,18 @@ public class TransferDAO implements DatabaseAccessObject<Transfer> {
                 .get();
     }
 
+    /**
+     * Increases the account list version of the owners of the two accounts
+     */
+    private ApiResult<Boolean> touchOwners(Account to, Account from) {
+        try {
+            accountDAO.touchOwners(to.getOwnerId(), from.getOwnerId());
+            return ApiResult.ok(true);
+        } catch (SQLException e) {
+            return ApiResult.error(Errors.fromSQLException(e));
+        }
+    }
+
     /**
      * Inserts this {@link Transfer} into the database. If the object is already present, it returns an error, otherwise
      * the {@link Transfer} inserted.
@@ -254,50 +437,59 @@ public class TransferDAO implements DatabaseAccessObject<Transfer> {
      * Note: inserting {@link Transfer} objects directly is highly discouraged and could break data consistency since
      * nor the receiving nor the transmitting {@link Account}s will be updated. If you intend to create a new
      * {@link Transfer}, use {@link #newTransfer(String, String, double, String)}.
+     * <p>
+     * The current versions of the two {@link Account}s are stored with the {@link Transfer}, to be read by
+     * {@link #since(String, long)}.
      *
      * @param transfer the {@link Transfer} to insert
      * @return an {@link ApiResult} containing an error or the saved object
      */
     @Override
     public ApiResult<Transfer> insert(Transfer transfer) {
-        if (transfer == null) return ApiResult.error(Errors.fromNullParameter("transfer"));
-        if (transfer.hasNullProperties(false)) return ApiResult.error(Errors.fromMalformedParameter("transfer"));
-        if (!IdUtils.isValidBase64(transfer.getFromId()))
-            return ApiResult.error(Errors.fromMalformedParameter("transfer.fromId"));
-        if (!IdUtils.isValidBase64(transfer.getToId()))
-            return ApiResult.error(Errors.fromMalformedParameter("transfer.toId"));
-        if (transfer.getAmount() <= 0) return ApiResult.error(Errors.fromMalformedParameter("transfer.amount"));
-        if (isPersisted(transfer)) return ApiResult.error(Errors.fromConflict("transfer"));
+        return METRICS.record("insert", () -> {
+            if (transfer == null) return ApiResult.error(Errors.fromNullParameter("transfer"));
+            if (transfer.hasNullProperties(false)) return ApiResult.error(Errors.fromMalformedParameter("transfer"));
+            if (!IdUtils.isValidBase64(transfer.getFromId()))
+                return ApiResult.error(Errors.fromMalformedParameter("transfer.fromId"));
+            if (!IdUtils.isValidBase64(transfer.getToId()))
+                return ApiResult.error(Errors.fromMalformedParameter("transfer.toId"));
+            if (transfer.getAmount() <= 0) return ApiResult.error(Errors.fromMalformedParameter("transfer.amount"));
+            if (isPersisted(transfer)) return ApiResult.error(Errors.fromConflict("transfer"));
 
-        try {
-            String sql = "insert into tiw_app.transfers(id, date, amount, toId, toBalance, fromId, fromBalance, causal) values(?, ?, ?, ?, ?, ?, ?, ?)";
-            boolean prevAutoCommit = connection.getAutoCommit();
-            connection.setAutoCommit(false);
             try {
-                long id = DAOUtils.genNewId(connection, "tiw_app.transfers", "id");
-                try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                    statement.setLong(1, id);
-                    statement.setTimestamp(2, Timestamp.from(transfer.getDate()));
-                    statement.setDouble(3, transfer.getAmount());
-                    statement.setLong(4, IdUtils.fromBase64(transfer.getToId()));
-                    statement.setDouble(5, transfer.getToBalance());
-                    statement.setLong(6, IdUtils.fromBase64(transfer.getFromId()));
-                    statement.setDouble(7, transfer.getFromBalance());
-                    statement.setString(8, transfer.getCausal());
-                    statement.executeUpdate();
+                String sql = "insert into tiw_app.transfers(id, date, amount, toId, toBalance, fromId, fromBalance, causal, toSeq, fromSeq) " +
+                        "values(?, ?, ?, ?, ?, ?, ?, ?, " +
+                        "(select version from tiw_app.accounts where id = ?), (select version from tiw_app.accounts where id = ?))";
+                boolean prevAutoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    long id = DAOUtils.genNewId(connection, "tiw_app.transfers", "id");
+                    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                        statement.setLong(1, id);
+                        statement.setTimestamp(2, Timestamp.from(transfer.getDate()));
+                        statement.setDouble(3, transfer.getAmount());
+                        statement.setLong(4, IdUtils.fromBase64(transfer.getToId()));
+                        statement.setDouble(5, transfer.getToBalance());
+                        statement.setLong(6, IdUtils.fromBase64(transfer.getFromId()));
+                        statement.setDouble(7, transfer.getFromBalance());
+                        statement.setString(8, transfer.getCausal());
+                        statement.setLong(9, IdUtils.fromBase64(transfer.getToId()));
+                        statement.setLong(10, IdUtils.fromBase64(transfer.getFromId()));
+                        statement.executeUpdate();
+                    }
+                    if (prevAutoCommit) connection.commit();
+                    transfer.setBase64Id(IdUtils.toBase64(id));
+                    return ApiResult.ok(transfer);
+                } catch (SQLException e) {
+                    if (prevAutoCommit) connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(prevAutoCommit);
                 }
-                if (prevAutoCommit) connection.commit();
-                transfer.setBase64Id(IdUtils.toBase64(id));
-                return ApiResult.ok(transfer);
             } catch (SQLException e) {
-                if (prevAutoCommit) connection.rollback();
-                throw e;
-            } finally {
-                connection.setAutoCommit(prevAutoCommit);
+                return ApiResult.error(Errors.fromSQLException(e));
             }
-        } catch (SQLException e) {
-            return ApiResult.error(Errors.fromSQLException(e));
-        }
+        });
     }
 
     /**
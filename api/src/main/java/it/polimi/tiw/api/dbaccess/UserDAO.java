@@ -4,12 +4,15 @@ import it.polimi.tiw.api.beans.User;
 import it.polimi.tiw.api.error.ApiError;
 import it.polimi.tiw.api.error.Errors;
 import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.functional.Tuple;
 import it.polimi.tiw.api.utils.IdUtils;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
 
 import static java.util.Objects.isNull;
 import static java.util.Objects.requireNonNull;
@@ -18,6 +21,8 @@ import static java.util.Objects.requireNonNull;
  * Class for retrieving {@link User} instances from a database.
  */
 public class UserDAO implements DatabaseAccessObject<User> {
+    private static final DAOMetrics METRICS = new DAOMetrics("UserDAO");
+
 
     private final Connection connection;
 
@@ -66,9 +71,24 @@ public class UserDAO implements DatabaseAccessObject<User> {
      */
     @Override
     public ApiResult<User> byId(String base64Id) {
-        if (isNull(base64Id)) return ApiResult.error(Errors.fromNullParameter("base64Id"));
-        if (!IdUtils.isValidBase64(base64Id)) return ApiResult.error(Errors.fromMalformedParameter("base64Id"));
-        return byId(IdUtils.fromBase64(base64Id));
+        return METRICS.record("byId", () -> {
+            if (isNull(base64Id)) return ApiResult.error(Errors.fromNullParameter("base64Id"));
+            if (!IdUtils.isValidBase64(base64Id)) return ApiResult.error(Errors.fromMalformedParameter("base64Id"));
+            return byId(IdUtils.fromBase64(base64Id));
+        });
+    }
+
+    /**
+     * Finds and retrieves the data for the Users with the given ids, with one query every
+     * {@value DAOUtils#IN_CHUNK_SIZE} ids.
+     *
+     * @param base64Ids the ids to search
+     * @return an {@link ApiResult} containing a {@link Tuple} whose first element are the Users found, in the order
+     * of the given ids, and whose second element are the ids that could not be found
+     */
+    @Override
+    public ApiResult<Tuple<List<User>, List<String>>> byIds(Collection<String> base64Ids) {
+        return METRICS.record("byIds", () -> DAOUtils.byIds(connection, "tiw_app.users", base64Ids, UserDAO::fromRow));
     }
 
     /**
@@ -79,14 +99,40 @@ public class UserDAO implements DatabaseAccessObject<User> {
      * @return an {@link ApiResult} containing the constructed User
      */
     public ApiResult<User> byUsername(String username) {
-        if (isNull(username)) return ApiResult.error(Errors.fromNullParameter("username"));
-        String sql = "select * from tiw_app.users where username = ?";
-        try (PreparedStatement p = connection.prepareStatement(sql)) {
-            injectStringParameters(p, username);
-            return packageApiResult(p, username);
-        } catch (SQLException e) {
-            return ApiResult.error(Errors.fromSQLException(e));
-        }
+        return METRICS.record("byUsername", () -> {
+            if (isNull(username)) return ApiResult.error(Errors.fromNullParameter("username"));
+            String sql = "select * from tiw_app.users where username = ?";
+            try (PreparedStatement p = connection.prepareStatement(sql)) {
+                injectStringParameters(p, username);
+                return packageApiResult(p, username);
+            } catch (SQLException e) {
+                return ApiResult.error(Errors.fromSQLException(e));
+            }
+        });
+    }
+
+    /**
+     * Returns the version of the account list of the User with the given id. It changes each time one of the accounts
+     * of the User is created or takes part in a transfer.
+     *
+     * @param base64Id the id of the User
+     * @return an {@link ApiResult} containing the version or an error
+     */
+    public ApiResult<Long> accountsVersionOf(String base64Id) {
+        return METRICS.record("accountsVersionOf", () -> {
+            if (isNull(base64Id)) return ApiResult.error(Errors.fromNullParameter("base64Id"));
+            if (!IdUtils.isValidBase64(base64Id)) return ApiResult.error(Errors.fromMalformedParameter("base64Id"));
+            String sql = "select accountsVersion from tiw_app.users where id = ?";
+            try (PreparedStatement p = connection.prepareStatement(sql)) {
+                p.setLong(1, IdUtils.fromBase64(base64Id));
+                try (ResultSet r = p.executeQuery()) {
+                    if (!r.next()) return ApiResult.error(Errors.fromNotFound("id"));
+                    return ApiResult.ok(r.getLong("accountsVersion"));
+                }
+            } catch (SQLException e) {
+                return ApiResult.error(Errors.fromSQLException(e));
+            }
+        });
     }
 
     /**
@@ -95,20 +141,27 @@ public class UserDAO implements DatabaseAccessObject<User> {
     private ApiResult<User> packageApiResult(PreparedStatement p, String specifier) throws SQLException {
         try (ResultSet r = p.executeQuery()) {
             if (r.next()) {
-                return new User.Builder()
-                        .addId(IdUtils.toBase64(r.getLong("id")))
-                        .addUsername(r.getString("username"))
-                        .addPassword(r.getString("password"))
-                        .addEmail(r.getString("email"))
-                        .addName(r.getString("name"))
-                        .addSurname(r.getString("surname"))
-                        .build();
+                return fromRow(r.getLong("id"), r);
             } else {
                 return ApiResult.error(Errors.fromNotFound(specifier));
             }
         }
     }
 
+    /**
+     * Creates the User with the given id from the current row of the given {@link ResultSet}
+     */
+    private static ApiResult<User> fromRow(long id, ResultSet r) throws SQLException {
+        return new User.Builder()
+                .addId(IdUtils.toBase64(id))
+                .addUsername(r.getString("username"))
+                .addPassword(r.getString("password"))
+                .addEmail(r.getString("email"))
+                .addName(r.getString("name"))
+                .addSurname(r.getString("surname"))
+                .build();
+    }
+
     /**
      * Checks whether the given User is stored in the database or not
      *
@@ -134,33 +187,35 @@ public class UserDAO implements DatabaseAccessObject<User> {
      */
     @Override
     public ApiResult<User> update(User user) {
-        if (isNull(user)) return ApiResult.error(Errors.fromNullParameter("user"));
-        if (user.hasNullProperties(true)) return ApiResult.error(Errors.fromMalformedParameter("user"));
-        if (!IdUtils.isValidBase64(user.getBase64Id()))
-            return ApiResult.error(Errors.fromMalformedParameter("user.base64Id"));
-        if (!isPersisted(user)) return ApiResult.error(Errors.fromMalformedParameter("user"));
-
-        try {
-            boolean prevAutoCommit = connection.getAutoCommit();
-            connection.setAutoCommit(false);
+        return METRICS.record("update", () -> {
+            if (isNull(user)) return ApiResult.error(Errors.fromNullParameter("user"));
+            if (user.hasNullProperties(true)) return ApiResult.error(Errors.fromMalformedParameter("user"));
+            if (!IdUtils.isValidBase64(user.getBase64Id()))
+                return ApiResult.error(Errors.fromMalformedParameter("user.base64Id"));
+            if (!isPersisted(user)) return ApiResult.error(Errors.fromMalformedParameter("user"));
+
             try {
-                try (PreparedStatement p = connection.prepareStatement(
-                        "update tiw_app.users set username = ?, password = ?, email = ?, name = ?, surname = ? where id = ?")) {
-                    injectStringParameters(p, user.getUsername(), user.getSaltedPassword(), user.getEmail(), user.getName(), user.getSurname());
-                    p.setLong(6, IdUtils.fromBase64(user.getBase64Id()));
-                    p.executeUpdate();
+                boolean prevAutoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    try (PreparedStatement p = connection.prepareStatement(
+                            "update tiw_app.users set username = ?, password = ?, email = ?, name = ?, surname = ? where id = ?")) {
+                        injectStringParameters(p, user.getUsername(), user.getSaltedPassword(), user.getEmail(), user.getName(), user.getSurname());
+                        p.setLong(6, IdUtils.fromBase64(user.getBase64Id()));
+                        p.executeUpdate();
+                    }
+                    if (prevAutoCommit) connection.commit();
+                    return ApiResult.ok(user);
+                } catch (SQLException e) {
+                    if (prevAutoCommit) connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(prevAutoCommit);
                 }
-                if (prevAutoCommit) connection.commit();
-                return ApiResult.ok(user);
             } catch (SQLException e) {
-                if (prevAutoCommit) connection.rollback();
-                throw e;
-            } finally {
-                connection.setAutoCommit(prevAutoCommit);
+                return ApiResult.error(Errors.fromSQLException(e));
             }
-        } catch (SQLException e) {
-            return ApiResult.error(Errors.fromSQLException(e));
-        }
+        });
     }
 
     /**
@@ -176,34 +231,36 @@ public class UserDAO implements DatabaseAccessObject<User> {
      */
     @Override
     public ApiResult<User> insert(User user) {
-        if (isNull(user)) return ApiResult.error(Errors.fromNullParameter("user"));
-        if (user.hasNullProperties(false)) return ApiResult.error(Errors.fromMalformedParameter("user"));
-        if (isPersisted(user)) return ApiResult.error(Errors.fromMalformedParameter("user"));
-        if (byUsername(user.getUsername()).match(__ -> true, __ -> false))
-            return ApiResult.error(Errors.fromConflict("user.username"));
-
-        try {
-            boolean prevAutoCommit = connection.getAutoCommit();
-            connection.setAutoCommit(false);
+        return METRICS.record("insert", () -> {
+            if (isNull(user)) return ApiResult.error(Errors.fromNullParameter("user"));
+            if (user.hasNullProperties(false)) return ApiResult.error(Errors.fromMalformedParameter("user"));
+            if (isPersisted(user)) return ApiResult.error(Errors.fromMalformedParameter("user"));
+            if (byUsername(user.getUsername()).match(__ -> true, __ -> false))
+                return ApiResult.error(Errors.fromConflict("user.username"));
+
             try {
-                long id = DAOUtils.genNewId(connection, "tiw_app.users", "id");
-                try (PreparedStatement p = connection.prepareStatement(
-                        "insert into tiw_app.users(username, password, email, name, surname, id) values (?, ?, ?, ?, ?, ?)")) {
-                    injectStringParameters(p, user.getUsername(), user.getSaltedPassword(), user.getEmail(), user.getName(), user.getSurname());
-                    p.setLong(6, id);
-                    p.executeUpdate();
+                boolean prevAutoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    long id = DAOUtils.genNewId(connection, "tiw_app.users", "id");
+                    try (PreparedStatement p = connection.prepareStatement(
+                            "insert into tiw_app.users(username, password, email, name, surname, id) values (?, ?, ?, ?, ?, ?)")) {
+                        injectStringParameters(p, user.getUsername(), user.getSaltedPassword(), user.getEmail(), user.getName(), user.getSurname());
+                        p.setLong(6, id);
+                        p.executeUpdate();
+                    }
+                    if (prevAutoCommit) connection.commit();
+                    user.setBase64Id(IdUtils.toBase64(id));
+                    return ApiResult.ok(user);
+                } catch (SQLException e) {
+                    if (prevAutoCommit) connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(prevAutoCommit);
                 }
-                if (prevAutoCommit) connection.commit();
-                user.setBase64Id(IdUtils.toBase64(id));
-                return ApiResult.ok(user);
             } catch (SQLException e) {
-                if (prevAutoCommit) connection.rollback();
-                throw e;
-            } finally {
-                connection.setAutoCommit(prevAutoCommit);
+                return ApiResult.error(Errors.fromSQLException(e));
             }
-        } catch (SQLException e) {
-            return ApiResult.error(Errors.fromSQLException(e));
-        }
+        });
     }
 }
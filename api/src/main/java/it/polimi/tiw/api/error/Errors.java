@@ -1,5 +1,7 @@
 package it.polimi.tiw.api.error;
 
+import it.polimi.tiw.api.metrics.MetricRegistry;
+
 import java.sql.SQLException;
 
 /**
@@ -11,11 +13,21 @@ public class Errors {
 
     /**
      * Create a new {@link ApiError} wrapping a {@link SQLException}. The status code is 500.
+     * <p>
+     * Each call is counted in the {@code tiw_sql_exceptions_total} metric, labelled by the class of the SQL state.
      *
      * @param exception the {@link SQLException} to wrap
      * @return a new {@link ApiError}
      */
     public static ApiError fromSQLException(SQLException exception) {
+        MetricRegistry registry = MetricRegistry.getDefault();
+        if (registry.isEnabled()) {
+            String state = exception.getSQLState();
+            registry.counter("tiw_sql_exceptions_total",
+                            "SQLExceptions turned into API errors",
+                            "class", state == null || state.length() < 2 ? "unknown" : state.substring(0, 2))
+                    .inc();
+        }
         return new ApiError(500,
                 "Error while fetching data",
                 new ApiSubError("SQLException", exception.getMessage() == null ? "" : exception.getMessage()));
@@ -91,4 +103,14 @@ public class Errors {
     public static ApiError fromUnauthorized() {
         return new ApiError(401, "You are not authenticated");
     }
+
+    /**
+     * Creates a new {@link ApiError} for when the request cannot be processed because the server is overloaded. Status
+     * code is 503.
+     *
+     * @return a new {@link ApiError}
+     */
+    public static ApiError fromServiceUnavailable() {
+        return new ApiError(503, "The server is too busy, retry later");
+    }
 }
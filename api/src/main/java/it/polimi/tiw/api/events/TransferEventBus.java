@@ -0,0 +1,118 @@
+package it.polimi.tiw.api.events;
+
+import it.polimi.tiw.api.beans.Transfer;
+import it.polimi.tiw.api.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+/**
+ * In-process channel through which committed {@link Transfer}s are delivered to the users receiving them. Listeners
+ * subscribe to the transfers of a user and are called on the thread publishing them, so they must not block: e.g.
+ * they should only queue the transfer to be sent later.
+ */
+public class TransferEventBus {
+    private static final Logger logger = LoggerFactory.getLogger(TransferEventBus.class);
+    private static final TransferEventBus defaultBus = new TransferEventBus();
+
+    static {
+        MetricRegistry.getDefault().gauge("tiw_transfer_event_subscribers",
+                "Listeners subscribed to the transfer event bus", defaultBus::subscriberCount);
+    }
+
+    private final Map<String, Set<Consumer<Transfer>>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new empty TransferEventBus
+     */
+    TransferEventBus() {
+    }
+
+    /**
+     * Returns the bus shared by the whole application
+     *
+     * @return the default bus
+     */
+    public static TransferEventBus getDefault() {
+        return defaultBus;
+    }
+
+    /**
+     * Subscribes the given listener to the transfers received by the user with the given id, until the returned
+     * {@link Subscription} is closed
+     *
+     * @param userBase64Id the base64 id of the user
+     * @param listener     the listener to call for each transfer
+     * @return the {@link Subscription} of the listener
+     * @throws NullPointerException if any parameter is null
+     */
+    public Subscription subscribe(String userBase64Id, Consumer<Transfer> listener) {
+        Objects.requireNonNull(userBase64Id);
+        Objects.requireNonNull(listener);
+        subscribers.compute(userBase64Id, (__, set) -> {
+            Set<Consumer<Transfer>> s = set == null ? new CopyOnWriteArraySet<>() : set;
+            s.add(listener);
+            return s;
+        });
+        return () -> subscribers.computeIfPresent(userBase64Id, (__, set) -> {
+            set.remove(listener);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * Delivers the given transfer to the listeners of the user with the given id. Exceptions thrown by listeners are
+     * logged and do not prevent the others from being called.
+     *
+     * @param userBase64Id the base64 id of the user receiving the transfer
+     * @param transfer     the transfer
+     * @return the number of listeners to which the transfer has been delivered
+     * @throws NullPointerException if any parameter is null
+     */
+    public int publish(String userBase64Id, Transfer transfer) {
+        Objects.requireNonNull(userBase64Id);
+        Objects.requireNonNull(transfer);
+        Set<Consumer<Transfer>> listeners = subscribers.get(userBase64Id);
+        if (listeners == null) return 0;
+        int delivered = 0;
+        for (Consumer<Transfer> l : listeners) {
+            try {
+                l.accept(transfer);
+                delivered++;
+            } catch (RuntimeException e) {
+                logger.warn("Transfer listener failed", e);
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * Returns the number of listeners currently subscribed
+     *
+     * @return the number of listeners currently subscribed
+     */
+    public int subscriberCount() {
+        int count = 0;
+        for (Set<Consumer<Transfer>> s : subscribers.values())
+            count += s.size();
+        return count;
+    }
+
+    /**
+     * Subscription of a listener to a {@link TransferEventBus}
+     */
+    @FunctionalInterface
+    public interface Subscription extends AutoCloseable {
+        /**
+         * Unsubscribes the listener. Closing a subscription more than once has no effect.
+         */
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,23 @@
+package it.polimi.tiw.api.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Emitted by {@link it.polimi.tiw.api.UserFacade#authorize(it.polimi.tiw.api.beans.LoginRequest)}. The duration
+ * of the event is the whole login, {@code hashTime} the part of it spent hashing the password.
+ */
+@Name("it.polimi.tiw.Authorization")
+@Label("Authorization")
+@Description("A login attempt")
+@Category({"TIW", "Security"})
+@StackTrace(false)
+@Threshold("10 ms")
+public class AuthorizationEvent extends Event {
+    @Label("Outcome")
+    @Description("\"ok\" or the status code of the error")
+    public String outcome;
+
+    @Label("Hash Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long hashTime;
+}
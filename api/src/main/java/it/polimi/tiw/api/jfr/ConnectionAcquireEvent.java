@@ -0,0 +1,17 @@
+package it.polimi.tiw.api.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Emitted when a connection is taken from the pool. The duration of the event is the time spent waiting for it.
+ */
+@Name("it.polimi.tiw.ConnectionAcquire")
+@Label("Connection Acquire")
+@Description("A connection taken from the pool")
+@Category({"TIW", "Database"})
+@StackTrace(false)
+@Threshold("1 ms")
+public class ConnectionAcquireEvent extends Event {
+    @Label("Success")
+    public boolean success;
+}
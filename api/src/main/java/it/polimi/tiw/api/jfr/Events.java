@@ -0,0 +1,54 @@
+package it.polimi.tiw.api.jfr;
+
+import it.polimi.tiw.api.functional.ApiResult;
+import jdk.jfr.Configuration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+
+/**
+ * Helpers shared by the Flight Recorder events of the application.
+ * <p>
+ * Events are emitted only while a recording that enables them is running, and only if they last longer than their
+ * threshold; otherwise, they cost little more than two reads of {@link System#nanoTime()}. The
+ * {@code it/polimi/tiw/api/jfr/tiw.jfc} settings file bundled with the api jar enables all of them.
+ */
+public final class Events {
+    private static final String SETTINGS = "tiw.jfc";
+
+    private Events() {
+    }
+
+    /**
+     * Returns the bundled settings enabling the events of the application, e.g. to start a
+     * {@link jdk.jfr.Recording} programmatically
+     *
+     * @return the bundled {@link Configuration}
+     * @throws IllegalStateException if the settings file is missing or malformed
+     */
+    public static Configuration configuration() {
+        try (InputStream in = Events.class.getResourceAsStream(SETTINGS)) {
+            if (in == null) throw new IllegalStateException(SETTINGS + " is missing");
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                return Configuration.create(reader);
+            }
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Cannot read " + SETTINGS, e);
+        }
+    }
+
+    /**
+     * Returns the outcome of an operation as recorded by events: {@code "ok"} if it succeeded, the status code of the
+     * error otherwise.
+     *
+     * @param result the result of the operation
+     * @return the outcome of the operation
+     */
+    public static String outcome(ApiResult<?> result) {
+        return result.match(__ -> "ok", e -> String.valueOf(e.statusCode()));
+    }
+}
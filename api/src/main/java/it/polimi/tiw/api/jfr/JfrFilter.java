@@ -0,0 +1,61 @@
+package it.polimi.tiw.api.jfr;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Emits a {@link RequestEvent} for every request, so that the other events of the application can be grouped by the
+ * request that caused them. Events of asynchronous requests are emitted when they complete.
+ */
+public class JfrFilter extends HttpFilter {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doFilter(HttpServletRequest req, HttpServletResponse res, FilterChain chain) throws IOException, ServletException {
+        RequestEvent event = new RequestEvent();
+        if (!event.isEnabled()) {
+            chain.doFilter(req, res);
+            return;
+        }
+        event.begin();
+        try {
+            chain.doFilter(req, res);
+        } finally {
+            if (req.isAsyncStarted())
+                req.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent asyncEvent) {
+                        commit(event, req, res);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent asyncEvent) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent asyncEvent) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent asyncEvent) {
+                    }
+                });
+            else
+                commit(event, req, res);
+        }
+    }
+
+    private void commit(RequestEvent event, HttpServletRequest req, HttpServletResponse res) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.servlet = req.getHttpServletMapping() == null ? "" : req.getHttpServletMapping().getServletName();
+        event.method = req.getMethod();
+        event.path = req.getRequestURI();
+        event.status = res.getStatus();
+        event.commit();
+    }
+}
@@ -0,0 +1,26 @@
+package it.polimi.tiw.api.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Emitted by {@link JfrFilter} for every HTTP request. The duration of the event is the time spent handling it.
+ */
+@Name("it.polimi.tiw.Request")
+@Label("HTTP Request")
+@Description("An HTTP request handled by a servlet")
+@Category({"TIW", "HTTP"})
+@StackTrace(false)
+@Threshold("20 ms")
+public class RequestEvent extends Event {
+    @Label("Servlet")
+    public String servlet;
+
+    @Label("Method")
+    public String method;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Status")
+    public int status;
+}
@@ -0,0 +1,41 @@
+package it.polimi.tiw.api.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Emitted by {@link it.polimi.tiw.api.dbaccess.TransferDAO#newTransfer(String, String, double, String)}. The duration
+ * of the event is the whole transfer, {@code lockWait} the part of it spent waiting for the row locks of the two
+ * accounts.
+ */
+@Name("it.polimi.tiw.Transfer")
+@Label("Transfer")
+@Description("A money transfer between two accounts")
+@Category({"TIW", "Database"})
+@StackTrace(false)
+@Threshold("10 ms")
+public class TransferEvent extends Event {
+    @Label("Outcome")
+    @Description("\"ok\" or the status code of the error")
+    public String outcome;
+
+    @Label("Amount")
+    @Description("Order of magnitude of the amount transferred")
+    public String amountBucket;
+
+    @Label("Lock Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    public long lockWait;
+
+    /**
+     * Returns the order of magnitude of the given amount, e.g. {@code "10-100"}. Exact amounts are not recorded.
+     *
+     * @param amount the amount transferred
+     * @return a label for the order of magnitude of {@code amount}
+     */
+    public static String bucket(double amount) {
+        if (amount < 10) return "<10";
+        if (amount < 100) return "10-100";
+        if (amount < 1000) return "100-1000";
+        return ">=1000";
+    }
+}
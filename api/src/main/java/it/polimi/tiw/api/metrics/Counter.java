@@ -0,0 +1,40 @@
+package it.polimi.tiw.api.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonically increasing counter. Updates are lock-free and scale with the number of threads.
+ */
+public class Counter {
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    /**
+     * Increments the counter by one
+     */
+    public void inc() {
+        value.increment();
+    }
+
+    /**
+     * Increments the counter by the given amount
+     *
+     * @param amount the amount to add
+     * @throws IllegalArgumentException if {@code amount} is negative
+     */
+    public void add(long amount) {
+        if (amount < 0) throw new IllegalArgumentException("Counters can only increase");
+        value.add(amount);
+    }
+
+    /**
+     * Returns the current value of the counter
+     *
+     * @return the current value of the counter
+     */
+    public long get() {
+        return value.sum();
+    }
+}
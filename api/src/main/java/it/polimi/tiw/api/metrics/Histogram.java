@@ -0,0 +1,89 @@
+package it.polimi.tiw.api.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations with fixed buckets. Each bucket is a striped counter, so concurrent observations do not
+ * contend on a single memory location.
+ */
+public class Histogram {
+    /**
+     * Default upper bounds of the buckets, in seconds
+     */
+    static final double[] DEFAULT_BUCKETS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private final double[] bounds;
+    private final long[] boundsNanos;
+    private final LongAdder[] buckets;
+    private final LongAdder sumNanos = new LongAdder();
+
+    Histogram(double[] bounds) {
+        this.bounds = bounds.clone();
+        Arrays.sort(this.bounds);
+        this.boundsNanos = Arrays.stream(this.bounds).mapToLong(b -> Math.round(b * 1e9)).toArray();
+        this.buckets = new LongAdder[this.bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++)
+            buckets[i] = new LongAdder();
+    }
+
+    /**
+     * Records a duration
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void observeNanos(long nanos) {
+        int i = 0;
+        while (i < boundsNanos.length && nanos > boundsNanos[i])
+            i++;
+        buckets[i].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * Returns the upper bounds of the buckets in seconds, excluding the implicit infinite one
+     *
+     * @return the upper bounds of the buckets
+     */
+    double[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * Returns the cumulative count of each bucket, the last one being the total count
+     *
+     * @return the cumulative counts
+     */
+    long[] getCumulativeCounts() {
+        long[] ret = new long[buckets.length];
+        long sum = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            sum += buckets[i].sum();
+            ret[i] = sum;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the total number of observations
+     *
+     * @return the total number of observations
+     */
+    public long getCount() {
+        long sum = 0;
+        for (LongAdder b : buckets)
+            sum += b.sum();
+        return sum;
+    }
+
+    /**
+     * Returns the sum of all observations in seconds
+     *
+     * @return the sum of all observations in seconds
+     */
+    public double getSum() {
+        return sumNanos.sum() / 1e9;
+    }
+}
@@ -0,0 +1,183 @@
+package it.polimi.tiw.api.metrics;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+
+/**
+ * Holds all the metrics of the application. Metrics are grouped in families sharing a name, each member of a family
+ * being distinguished by its labels, e.g. {@code tiw_dao_call_seconds{dao="UserDAO",method="byId"}}.
+ * <p>
+ * Looking up a metric is relatively expensive, so callers on hot paths should look it up once and keep a reference to
+ * it. Metrics are collected by default; collection can be turned off with the {@code tiw.metrics.enabled} system
+ * property or with {@link #setEnabled(boolean)}.
+ */
+public class MetricRegistry {
+    private static final MetricRegistry defaultRegistry = new MetricRegistry();
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+    private volatile boolean enabled = Boolean.parseBoolean(System.getProperty("tiw.metrics.enabled", "true"));
+
+    /**
+     * Creates a new, empty, MetricRegistry
+     */
+    public MetricRegistry() {
+    }
+
+    /**
+     * Returns the registry used by the application
+     *
+     * @return the default registry
+     */
+    public static MetricRegistry getDefault() {
+        return defaultRegistry;
+    }
+
+    /**
+     * Returns true if metrics are being collected
+     *
+     * @return true if metrics are being collected
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns collection of metrics on or off
+     *
+     * @param enabled whether metrics should be collected
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the {@link Counter} with the given name and labels, creating it if necessary.
+     *
+     * @param name   the name of the counter
+     * @param help   the description of the counter
+     * @param labels label names and values, alternated
+     * @return a {@link Counter}
+     * @throws NullPointerException     if any parameter is null
+     * @throws IllegalArgumentException if labels are not in pairs or the name is already used by another type
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return family(name, help, "counter").get(labels, __ -> new Counter());
+    }
+
+    /**
+     * Returns the {@link Histogram} with the given name and labels, creating it with the default buckets if necessary.
+     *
+     * @param name   the name of the histogram
+     * @param help   the description of the histogram
+     * @param labels label names and values, alternated
+     * @return a {@link Histogram}
+     * @throws NullPointerException     if any parameter is null
+     * @throws IllegalArgumentException if labels are not in pairs or the name is already used by another type
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        return family(name, help, "histogram").get(labels, __ -> new Histogram(Histogram.DEFAULT_BUCKETS));
+    }
+
+    /**
+     * Registers a gauge whose value is computed by the given supplier each time metrics are read. If a gauge with the
+     * same name and labels exists, it is replaced.
+     *
+     * @param name   the name of the gauge
+     * @param help   the description of the gauge
+     * @param value  supplier of the value of the gauge
+     * @param labels label names and values, alternated
+     * @throws NullPointerException     if any parameter is null
+     * @throws IllegalArgumentException if labels are not in pairs or the name is already used by another type
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        Objects.requireNonNull(value);
+        family(name, help, "gauge").put(labels, value);
+    }
+
+    /**
+     * Returns a {@link Timer} made of the histogram {@code <name>_seconds} and the counter {@code <name>_errors_total},
+     * both with the given labels.
+     *
+     * @param name   the base name of the metrics
+     * @param help   the description of the timed operation
+     * @param labels label names and values, alternated
+     * @return a {@link Timer}
+     * @throws NullPointerException     if any parameter is null
+     * @throws IllegalArgumentException if labels are not in pairs or the names are already used by another type
+     */
+    public Timer timer(String name, String help, String... labels) {
+        return new Timer(this,
+                histogram(name + "_seconds", help + ", in seconds", labels),
+                counter(name + "_errors_total", help + ", that failed", labels));
+    }
+
+    /**
+     * Returns a snapshot of all the families, sorted by name
+     */
+    Collection<Family> families() {
+        return new TreeMap<>(families).values();
+    }
+
+    private Family family(String name, String help, String type) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(help);
+        Family f = families.computeIfAbsent(name, n -> new Family(n, help, type));
+        if (!f.type.equals(type))
+            throw new IllegalArgumentException("Metric " + name + " is a " + f.type);
+        return f;
+    }
+
+    /**
+     * A group of metrics with the same name and type
+     */
+    static class Family {
+        final String name;
+        final String help;
+        final String type;
+        final Map<String, Object> children = new ConcurrentHashMap<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> T get(String[] labels, Function<String, T> factory) {
+            return (T) children.computeIfAbsent(formatLabels(labels), factory);
+        }
+
+        void put(String[] labels, Object metric) {
+            children.put(formatLabels(labels), metric);
+        }
+
+        /**
+         * Returns a snapshot of the members of the family, keyed by their formatted labels
+         */
+        Map<String, Object> members() {
+            return new TreeMap<>(children);
+        }
+    }
+
+    /**
+     * Formats the labels as they appear in the text exposition format, e.g. {@code a="1",b="2"}
+     */
+    static String formatLabels(String... labels) {
+        if (labels.length % 2 != 0)
+            throw new IllegalArgumentException("Labels must be given as name-value pairs");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) sb.append(',');
+            sb.append(Objects.requireNonNull(labels[i]))
+                    .append("=\"")
+                    .append(Objects.requireNonNull(labels[i + 1])
+                            .replace("\\", "\\\\")
+                            .replace("\"", "\\\"")
+                            .replace("\n", "\\n"))
+                    .append('"');
+        }
+        return sb.toString();
+    }
+}
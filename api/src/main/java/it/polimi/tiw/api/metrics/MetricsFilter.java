@@ -0,0 +1,81 @@
+package it.polimi.tiw.api.metrics;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the latency of every request in the {@code tiw_http_request_seconds} histogram, labelled with the name of
+ * the servlet that handled it, the HTTP method and the class of the status code (e.g. {@code 2xx}). Histograms are
+ * looked up in the registry once for each combination of labels and kept by the filter.
+ * <p>
+ * It should be mapped before every other filter, so that their time is accounted too.
+ */
+public class MetricsFilter extends HttpFilter {
+    private transient MetricRegistry registry;
+    private transient Map<Labels, Histogram> histograms;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init() {
+        registry = MetricRegistry.getDefault();
+        histograms = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doFilter(HttpServletRequest req, HttpServletResponse res, FilterChain chain) throws IOException, ServletException {
+        if (!registry.isEnabled()) {
+            chain.doFilter(req, res);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(req, res);
+        } finally {
+            if (req.isAsyncStarted())
+                req.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        record(req, res, start);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            else
+                record(req, res, start);
+        }
+    }
+
+    private void record(HttpServletRequest req, HttpServletResponse res, long start) {
+        String servlet = req.getHttpServletMapping() == null ? "" : req.getHttpServletMapping().getServletName();
+        histograms.computeIfAbsent(new Labels(servlet, req.getMethod(), res.getStatus() / 100),
+                        l -> registry.histogram("tiw_http_request_seconds",
+                                "Time spent handling HTTP requests, in seconds",
+                                "servlet", l.servlet,
+                                "method", l.method,
+                                "status", l.statusClass + "xx"))
+                .observeNanos(System.nanoTime() - start);
+    }
+
+    private record Labels(String servlet, String method, int statusClass) {
+    }
+}
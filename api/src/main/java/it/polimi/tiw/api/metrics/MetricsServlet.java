@@ -0,0 +1,23 @@
+package it.polimi.tiw.api.metrics;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Exposes the metrics of the default {@link MetricRegistry} in the Prometheus text format. It accepts only GET
+ * requests.
+ */
+public class MetricsServlet extends HttpServlet {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setStatus(200);
+        resp.setContentType(PrometheusWriter.CONTENT_TYPE);
+        resp.setHeader("Cache-Control", "no-store");
+        PrometheusWriter.write(MetricRegistry.getDefault(), resp.getWriter());
+    }
+}
@@ -0,0 +1,74 @@
+package it.polimi.tiw.api.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Writes the contents of a {@link MetricRegistry} in the Prometheus text exposition format (version 0.0.4).
+ */
+public class PrometheusWriter {
+    /**
+     * Content type of the produced text
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private PrometheusWriter() {
+    }
+
+    /**
+     * Writes all metrics of the given registry
+     *
+     * @param registry the {@link MetricRegistry} to write
+     * @param out      where to write
+     * @throws IOException if writing failed
+     */
+    public static void write(MetricRegistry registry, Writer out) throws IOException {
+        for (MetricRegistry.Family f : registry.families()) {
+            Map<String, Object> members = f.members();
+            if (members.isEmpty()) continue;
+            out.write("# HELP " + f.name + " " + f.help.replace("\\", "\\\\").replace("\n", "\\n") + "\n");
+            out.write("# TYPE " + f.name + " " + f.type + "\n");
+            for (Map.Entry<String, Object> m : members.entrySet()) {
+                String labels = m.getKey();
+                Object metric = m.getValue();
+                if (metric instanceof Counter c)
+                    sample(out, f.name, labels, c.get());
+                else if (metric instanceof DoubleSupplier g)
+                    sample(out, f.name, labels, g.getAsDouble());
+                else if (metric instanceof Histogram h)
+                    writeHistogram(out, f.name, labels, h);
+            }
+        }
+        out.flush();
+    }
+
+    private static void writeHistogram(Writer out, String name, String labels, Histogram h) throws IOException {
+        double[] bounds = h.getBounds();
+        long[] counts = h.getCumulativeCounts();
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        for (int i = 0; i < bounds.length; i++)
+            sample(out, name + "_bucket", prefix + "le=\"" + format(bounds[i]) + "\"", counts[i]);
+        sample(out, name + "_bucket", prefix + "le=\"+Inf\"", counts[counts.length - 1]);
+        sample(out, name + "_sum", labels, h.getSum());
+        sample(out, name + "_count", labels, counts[counts.length - 1]);
+    }
+
+    private static void sample(Writer out, String name, String labels, double value) throws IOException {
+        out.write(name);
+        if (!labels.isEmpty())
+            out.write("{" + labels + "}");
+        out.write(' ');
+        out.write(format(value));
+        out.write('\n');
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) return "NaN";
+        if (Double.isInfinite(value)) return value > 0 ? "+Inf" : "-Inf";
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long) value);
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,57 @@
+package it.polimi.tiw.api.metrics;
+
+import it.polimi.tiw.api.functional.ApiResult;
+
+import java.util.function.Supplier;
+
+/**
+ * Measures how long an operation takes and how many times it failed.
+ */
+public class Timer {
+    private final MetricRegistry registry;
+    private final Histogram histogram;
+    private final Counter errors;
+
+    Timer(MetricRegistry registry, Histogram histogram, Counter errors) {
+        this.registry = registry;
+        this.histogram = histogram;
+        this.errors = errors;
+    }
+
+    /**
+     * Executes the given operation, recording its duration. If the returned {@link ApiResult} is an error, the
+     * failure is counted as well. If metrics are disabled, the operation is simply executed.
+     *
+     * @param operation the operation to execute
+     * @param <T>       the type contained in the {@link ApiResult}
+     * @return the result of the operation
+     */
+    public <T> ApiResult<T> record(Supplier<ApiResult<T>> operation) {
+        if (!registry.isEnabled())
+            return operation.get();
+        long start = System.nanoTime();
+        ApiResult<T> res = operation.get();
+        histogram.observeNanos(System.nanoTime() - start);
+        if (res.match(__ -> false, __ -> true))
+            errors.inc();
+        return res;
+    }
+
+    /**
+     * Records a duration measured elsewhere
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void observeNanos(long nanos) {
+        if (registry.isEnabled())
+            histogram.observeNanos(nanos);
+    }
+
+    /**
+     * Counts a failure
+     */
+    public void error() {
+        if (registry.isEnabled())
+            errors.inc();
+    }
+}
@@ -0,0 +1,140 @@
+package it.polimi.tiw.api.tracing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Accumulates the statements executed by the current thread between {@link #start()} and {@link #close()}, usually
+ * for the duration of an HTTP request. Statements are recorded only if they are executed on a connection obtained
+ * from {@link QueryTracing#wrap(java.sql.Connection)}.
+ * <p>
+ * Tracers are bound to the thread that started them. Statements executed on other threads (e.g. by asynchronous
+ * servlets) are accounted only if the task running them is wrapped with {@link #propagate(Runnable)}.
+ */
+public class QueryTracer implements AutoCloseable {
+    private static final ThreadLocal<QueryTracer> current = new ThreadLocal<>();
+
+    private final QueryTracer previous;
+    private final Map<String, Integer> executions = new LinkedHashMap<>();
+    private int statements;
+    private long nanos;
+
+    private QueryTracer(QueryTracer previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Starts a new tracer on the current thread. Tracers can be nested: closing the inner one restores the outer one.
+     *
+     * @return the new tracer
+     */
+    public static QueryTracer start() {
+        QueryTracer tracer = new QueryTracer(current.get());
+        current.set(tracer);
+        return tracer;
+    }
+
+    /**
+     * Returns the tracer active on the current thread
+     *
+     * @return the active tracer, or null if there is none
+     */
+    public static QueryTracer current() {
+        return current.get();
+    }
+
+    /**
+     * Returns a task running the given one with the tracer active on the current thread, so that the statements it
+     * executes are accounted to the same tracer on whatever thread it runs. The previous tracer of that thread is
+     * restored afterwards. The task must not execute statements while the current thread is still executing others.
+     *
+     * @param task the task to wrap
+     * @return the wrapped task, or {@code task} itself if no tracer is active
+     * @throws NullPointerException if {@code task} is null
+     */
+    public static Runnable propagate(Runnable task) {
+        Objects.requireNonNull(task);
+        QueryTracer tracer = current.get();
+        if (tracer == null) return task;
+        return () -> {
+            QueryTracer previous = current.get();
+            current.set(tracer);
+            try {
+                task.run();
+            } finally {
+                if (previous == null)
+                    current.remove();
+                else
+                    current.set(previous);
+            }
+        };
+    }
+
+    void record(String sql, long nanos) {
+        statements++;
+        this.nanos += nanos;
+        executions.merge(sql == null ? "" : sql, 1, Integer::sum);
+    }
+
+    /**
+     * Returns the number of statements executed
+     *
+     * @return the number of statements executed
+     */
+    public int getStatementCount() {
+        return statements;
+    }
+
+    /**
+     * Returns the time spent executing statements
+     *
+     * @return the time spent executing statements in nanoseconds
+     */
+    public long getTotalNanos() {
+        return nanos;
+    }
+
+    /**
+     * Returns how many times each distinct SQL string was executed, in order of first execution
+     *
+     * @return an unmodifiable map from SQL to number of executions
+     */
+    public Map<String, Integer> getExecutions() {
+        return Collections.unmodifiableMap(executions);
+    }
+
+    /**
+     * Returns how many executions repeated an SQL string already executed. A high number usually points to an N+1
+     * access pattern.
+     *
+     * @return the number of repeated executions
+     */
+    public int getRepeatedCount() {
+        return statements - executions.size();
+    }
+
+    /**
+     * Returns a one line summary of the traced statements, suitable for an HTTP header
+     *
+     * @return a summary of the traced statements
+     */
+    public String summary() {
+        return String.format(Locale.ROOT, "statements=%d; repeated=%d; time=%.3fms",
+                statements, getRepeatedCount(), nanos / 1e6);
+    }
+
+    /**
+     * Stops this tracer, restoring the one that was active when it was started
+     */
+    @Override
+    public void close() {
+        if (current.get() != this) return;
+        if (previous == null)
+            current.remove();
+        else
+            current.set(previous);
+    }
+}
@@ -0,0 +1,115 @@
+package it.polimi.tiw.api.tracing;
+
+import it.polimi.tiw.api.metrics.Counter;
+import it.polimi.tiw.api.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.util.regex.Pattern;
+
+/**
+ * Entry point of query tracing. When tracing is enabled, {@link #wrap(Connection)} returns a proxy of the given
+ * {@link Connection} whose statements are timed: each execution is added to the {@link QueryTracer} of the current
+ * thread, if any, and executions slower than the threshold are logged with their literals and bound parameters
+ * redacted.
+ * <p>
+ * Tracing is disabled by default. It can be enabled with the {@code tiw.tracing.enabled} system property or with
+ * {@link #setEnabled(boolean)}; the slow query threshold is read from {@code tiw.tracing.slowQueryMillis} and defaults
+ * to 100 milliseconds.
+ */
+public final class QueryTracing {
+    private static final Logger logger = LoggerFactory.getLogger(QueryTracing.class);
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Counter slowQueries = MetricRegistry.getDefault()
+            .counter("tiw_db_slow_queries_total", "Statements slower than the slow query threshold");
+
+    private static volatile boolean enabled = Boolean.getBoolean("tiw.tracing.enabled");
+    private static volatile long slowQueryNanos = Long.getLong("tiw.tracing.slowQueryMillis", 100) * 1_000_000;
+
+    private QueryTracing() {
+    }
+
+    /**
+     * Returns true if connections are being traced
+     *
+     * @return true if connections are being traced
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns tracing on or off. Only connections wrapped after the change are affected.
+     *
+     * @param enabled whether connections should be traced
+     */
+    public static void setEnabled(boolean enabled) {
+        QueryTracing.enabled = enabled;
+    }
+
+    /**
+     * Returns the duration above which a statement is logged as slow
+     *
+     * @return the slow query threshold in milliseconds
+     */
+    public static long getSlowQueryMillis() {
+        return slowQueryNanos / 1_000_000;
+    }
+
+    /**
+     * Sets the duration above which a statement is logged as slow
+     *
+     * @param millis the slow query threshold in milliseconds
+     * @throws IllegalArgumentException if {@code millis} is negative
+     */
+    public static void setSlowQueryMillis(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("Threshold cannot be negative");
+        slowQueryNanos = millis * 1_000_000;
+    }
+
+    /**
+     * Returns a traced view of the given connection if tracing is enabled, the connection itself otherwise.
+     * {@link it.polimi.tiw.api.dbaccess.ConnectionRetriever} implementations should pass every connection they hand
+     * out through this method.
+     *
+     * @param connection the connection to wrap
+     * @return a traced connection, or {@code connection} if tracing is disabled or it is null
+     */
+    public static Connection wrap(Connection connection) {
+        if (!enabled || connection == null)
+            return connection;
+        return TracingConnection.wrap(connection);
+    }
+
+    /**
+     * Replaces string and numeric literals in the given SQL with {@code ?}, so that it can be logged safely.
+     *
+     * @param sql the SQL to redact
+     * @return the redacted SQL
+     */
+    public static String redact(String sql) {
+        if (sql == null) return null;
+        String noStrings = STRING_LITERAL.matcher(sql).replaceAll("?");
+        return NUMBER_LITERAL.matcher(noStrings).replaceAll("?");
+    }
+
+    /**
+     * Records an execution of a statement
+     *
+     * @param sql        the SQL executed
+     * @param parameters the number of parameters bound to the statement
+     * @param nanos      the duration of the execution
+     */
+    static void record(String sql, int parameters, long nanos) {
+        QueryTracer tracer = QueryTracer.current();
+        if (tracer != null)
+            tracer.record(sql, nanos);
+        if (nanos >= slowQueryNanos) {
+            slowQueries.inc();
+            logger.warn("Slow query ({} ms, {} bound parameters redacted): {}",
+                    nanos / 1_000_000, parameters, redact(sql));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package it.polimi.tiw.api.tracing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Traces the statements executed while handling each request with a {@link QueryTracer}, logging a summary at debug
+ * level. Does nothing if {@link QueryTracing} is disabled.
+ * <p>
+ * In debug mode, enabled with the {@code debug} init parameter or the {@code tiw.tracing.debug} system property, the
+ * summary is also sent to the client in the {@value #HEADER} header. Since headers cannot be added once the response is
+ * committed, the header is added as soon as the body starts being written: statements executed afterwards are only
+ * accounted in the log.
+ * <p>
+ * If the request goes asynchronous, the summary is logged when it completes. Statements executed on other threads are
+ * accounted only if their tasks are wrapped with {@link QueryTracer#propagate(Runnable)}.
+ */
+public class QueryTracingFilter extends HttpFilter {
+    /**
+     * Name of the header containing the query summary
+     */
+    public static final String HEADER = "X-Query-Summary";
+    private static final Logger logger = LoggerFactory.getLogger(QueryTracingFilter.class);
+
+    private boolean debug;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init() {
+        debug = Boolean.parseBoolean(getInitParameter("debug")) || Boolean.getBoolean("tiw.tracing.debug");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doFilter(HttpServletRequest req, HttpServletResponse res, FilterChain chain) throws IOException, ServletException {
+        if (!QueryTracing.isEnabled()) {
+            chain.doFilter(req, res);
+            return;
+        }
+        try (QueryTracer tracer = QueryTracer.start()) {
+            SummaryResponse wrapped = debug ? new SummaryResponse(res, tracer) : null;
+            chain.doFilter(req, wrapped == null ? res : wrapped);
+            if (req.isAsyncStarted())
+                req.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        finish(req, tracer, wrapped);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            else
+                finish(req, tracer, wrapped);
+        }
+    }
+
+    private static void finish(HttpServletRequest req, QueryTracer tracer, SummaryResponse wrapped) {
+        if (wrapped != null)
+            wrapped.addSummary();
+        logger.debug("{} {}: {}", req.getMethod(), req.getRequestURI(), tracer.summary());
+    }
+
+    /**
+     * Response that adds the query summary header right before it gets committed
+     */
+    private static class SummaryResponse extends HttpServletResponseWrapper {
+        private final QueryTracer tracer;
+        private boolean added;
+
+        SummaryResponse(HttpServletResponse response, QueryTracer tracer) {
+            super(response);
+            this.tracer = tracer;
+        }
+
+        void addSummary() {
+            if (added || isCommitted()) return;
+            added = true;
+            setHeader(HEADER, tracer.summary());
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            addSummary();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addSummary();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addSummary();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addSummary();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addSummary();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            addSummary();
+            super.sendRedirect(location);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package it.polimi.tiw.api.tracing;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * Dynamic proxy of a {@link Connection} that returns traced statements. Every other call is forwarded as is.
+ */
+final class TracingConnection implements InvocationHandler {
+    private final Connection target;
+
+    private TracingConnection(Connection target) {
+        this.target = target;
+    }
+
+    static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                TracingConnection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new TracingConnection(connection));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Object result = forward(target, method, args);
+        switch (method.getName()) {
+            case "prepareStatement":
+            case "prepareCall":
+            case "createStatement":
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return TracingStatement.wrap((Statement) result, sql);
+            default:
+                return result;
+        }
+    }
+
+    static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Dynamic proxy of a {@link Statement} that times its executions
+     */
+    private static final class TracingStatement implements InvocationHandler {
+        private final Statement target;
+        private final String sql;
+        private int parameters;
+
+        private TracingStatement(Statement target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        static Statement wrap(Statement statement, String sql) {
+            Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                    : statement instanceof PreparedStatement ? PreparedStatement.class
+                    : Statement.class;
+            return (Statement) Proxy.newProxyInstance(
+                    TracingConnection.class.getClassLoader(),
+                    new Class<?>[]{type},
+                    new TracingStatement(statement, sql));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                String executed = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+                long start = System.nanoTime();
+                try {
+                    return forward(target, method, args);
+                } finally {
+                    QueryTracing.record(executed, parameters, System.nanoTime() - start);
+                }
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer)
+                parameters = Math.max(parameters, (Integer) args[0]);
+            else if (name.equals("clearParameters"))
+                parameters = 0;
+            return forward(target, method, args);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package it.polimi.tiw.api.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Static class giving access to virtual threads when the running JVM supports them (Java 21 or later). The project is
+ * compiled for Java 17, so they are looked up through reflection.
+ */
+public class VirtualThreads {
+    private static final Method NEW_EXECUTOR = lookup();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Returns true if the running JVM supports virtual threads
+     *
+     * @return true if the running JVM supports virtual threads
+     */
+    public static boolean isAvailable() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /**
+     * Returns a new {@link ExecutorService} starting a new virtual thread for each task
+     *
+     * @return a new {@link ExecutorService} using virtual threads
+     * @throws UnsupportedOperationException if the running JVM does not support virtual threads
+     */
+    public static ExecutorService newExecutor() {
+        if (NEW_EXECUTOR == null)
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+        try {
+            return (ExecutorService) NEW_EXECUTOR.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new UnsupportedOperationException("Cannot create a virtual thread executor", e);
+        }
+    }
+
+    private static Method lookup() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package it.polimi.tiw.api.beans;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BeanTypeAdaptersTest {
+    private final Gson gson = BeanTypeAdapters.newGson();
+    private final Gson reflective = new GsonBuilder()
+            .registerTypeAdapter(Instant.class, new InstantTypeAdapter())
+            .create();
+
+    @Test
+    void transfer_sameJsonAsReflective() {
+        Transfer t = transfer();
+        assertEquals(reflective.toJson(t), gson.toJson(t));
+        t.setCausal(null);
+        t.setDate(null);
+        assertEquals(reflective.toJson(t), gson.toJson(t));
+    }
+
+    @Test
+    void transfer_roundTrip() {
+        Transfer t = transfer();
+        Transfer read = gson.fromJson(gson.toJson(t), Transfer.class);
+        assertEquals(t.getBase64Id(), read.getBase64Id());
+        assertEquals(t.getDate(), read.getDate());
+        assertEquals(t.getAmount(), read.getAmount());
+        assertEquals(t.getToId(), read.getToId());
+        assertEquals(t.getToBalance(), read.getToBalance());
+        assertEquals(t.getFromId(), read.getFromId());
+        assertEquals(t.getFromBalance(), read.getFromBalance());
+        assertEquals(t.getCausal(), read.getCausal());
+    }
+
+    @Test
+    void account_sameJsonAsReflective() {
+        Account a = new Account("AAAAAAAAAAE", "AAAAAAAAAAI", 12.5);
+        assertEquals(reflective.toJson(a), gson.toJson(a));
+        Account read = gson.fromJson(gson.toJson(a), Account.class);
+        assertEquals(a.getBase64Id(), read.getBase64Id());
+        assertEquals(a.getOwnerId(), read.getOwnerId());
+        assertEquals(a.getBalance(), read.getBalance());
+    }
+
+    @Test
+    void account_invalid() {
+        assertThrows(JsonParseException.class, () -> gson.fromJson("{\"balance\":1}", Account.class));
+        assertThrows(JsonParseException.class,
+                () -> gson.fromJson("{\"ownerId\":\"AAAAAAAAAAI\",\"balance\":-1}", Account.class));
+    }
+
+    @Test
+    void contact_sameJsonAsReflective() {
+        Contact c = new Contact();
+        c.setOwnerBase64Id("AAAAAAAAAAE");
+        c.setContactBase64Id("AAAAAAAAAAI");
+        assertEquals(reflective.toJson(c), gson.toJson(c));
+    }
+
+    @Test
+    void user_passwordNotWritten() {
+        User u = new User.Builder()
+                .addId("AAAAAAAAAAE")
+                .addUsername("pippo")
+                .addPassword("salted")
+                .addEmail("pippo@email.com")
+                .addName("Pippo")
+                .addSurname("Pluto")
+                .build()
+                .get();
+        JsonObject expected = reflective.toJsonTree(u).getAsJsonObject();
+        expected.remove("saltedPassword");
+        assertEquals(expected, u.toJson());
+        assertEquals(expected.toString(), gson.toJson(u));
+        assertThrows(JsonParseException.class, () -> gson.fromJson(gson.toJson(u), User.class));
+    }
+
+    @Test
+    void requests_read() {
+        LoginRequest login = gson.fromJson("{\"username\":\"pippo\",\"clearPassword\":\"pw\",\"extra\":[1]}",
+                LoginRequest.class);
+        assertEquals("pippo", login.getUsername());
+        assertEquals("pw", login.getClearPassword());
+
+        NewTransferRequest transfer = gson.fromJson("{\"fromUserId\":\"a\",\"fromAccountId\":\"b\"," +
+                "\"toUserId\":\"c\",\"toAccountId\":\"d\",\"amount\":\"10.5\",\"causal\":null}", NewTransferRequest.class);
+        assertEquals("a", transfer.getFromUserId());
+        assertEquals("d", transfer.getToAccountId());
+        assertEquals(10.5, transfer.getAmount());
+        assertNull(transfer.getCausal());
+
+        RegistrationRequest registration = gson.fromJson("{\"username\":\"pippo\",\"repeatPassword\":\"pw\"}",
+                RegistrationRequest.class);
+        assertEquals("pippo", registration.getUsername());
+        assertEquals("pw", registration.getRepeatPassword());
+        assertNull(registration.getEmail());
+    }
+
+    @Test
+    void requests_invalidTypes() {
+        assertThrows(JsonParseException.class, () -> gson.fromJson("{\"username\":{}}", LoginRequest.class));
+        assertThrows(JsonParseException.class, () -> gson.fromJson("{\"amount\":\"ten\"}", NewTransferRequest.class));
+    }
+
+    private static Transfer transfer() {
+        Transfer t = new Transfer();
+        t.setBase64Id("AAAAAAAAAAE");
+        t.setDate(Instant.parse("2022-05-01T10:15:30.123Z"));
+        t.setAmount(10.25);
+        t.setToId("AAAAAAAAAAI");
+        t.setToBalance(100);
+        t.setFromId("AAAAAAAAAAM");
+        t.setFromBalance(200.5);
+        t.setCausal("Rent \"May\" è");
+        return t;
+    }
+}
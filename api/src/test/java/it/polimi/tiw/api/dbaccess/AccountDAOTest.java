@@ -17,6 +17,9 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -77,6 +80,24 @@ class AccountDAOTest {
         assertTrue(res.match((Account a) -> true, (ApiError e) -> false));
     }
 
+    @Test
+    void ownerAndVersionOf_notInDb() throws SQLException {
+        when(results.next()).thenReturn(false);
+        new AccountDAO(mockConnection).ownerAndVersionOf("AAAAAAAAAAA")
+                .consume(__ -> fail(), e -> assertEquals(404, e.statusCode()));
+    }
+
+    @Test
+    void ownerAndVersionOf_inDb() throws SQLException {
+        when(results.next()).thenReturn(true);
+        when(results.getLong("ownerId")).thenReturn(1L);
+        when(results.getLong("version")).thenReturn(7L);
+        new AccountDAO(mockConnection).ownerAndVersionOf("AAAAAAAAAAA").consume(t -> {
+            assertEquals(IdUtils.toBase64(1L), t.getFirst());
+            assertEquals(7L, t.getSecond());
+        }, e -> fail());
+    }
+
     @Test
     void isPersisted_notInDbNullId() throws SQLException {
         Account a = mock(Account.class);
@@ -231,4 +252,55 @@ class AccountDAOTest {
         verify(statement).executeQuery();
         verify(results, times(2)).next();
     }
-}
\ No newline at end of file
+
+    @Test
+    void byIds_invalidParameters() {
+        AccountDAO dao = new AccountDAO(mockConnection);
+        dao.byIds(null).consume(__ -> fail(), e -> assertEquals(400, e.statusCode()));
+        dao.byIds(List.of(IdUtils.toBase64(1L), "asd")).consume(__ -> fail(), e -> assertEquals(400, e.statusCode()));
+        dao.byIds(Arrays.asList(IdUtils.toBase64(1L), null)).consume(__ -> fail(), e -> assertEquals(400, e.statusCode()));
+    }
+
+    @Test
+    void byIds_preservesOrderAndReportsMissing() throws SQLException {
+        when(results.next()).thenReturn(true, true, false);
+        when(results.getLong("id")).thenReturn(1L, 3L);
+        when(results.getLong("ownerId")).thenReturn(10L, 30L);
+        List<String> ids = List.of(IdUtils.toBase64(3L), IdUtils.toBase64(1L), IdUtils.toBase64(2L), IdUtils.toBase64(3L));
+        new AccountDAO(mockConnection).byIds(ids).consume(t -> {
+            assertEquals(List.of(IdUtils.toBase64(3L), IdUtils.toBase64(1L)),
+                    t.getFirst().stream().map(Account::getBase64Id).toList());
+            assertEquals(IdUtils.toBase64(30L), t.getFirst().get(0).getOwnerId());
+            assertEquals(List.of(IdUtils.toBase64(2L)), t.getSecond());
+        }, e -> fail());
+        // Three distinct ids, padded to four by repeating the last one
+        verify(mockConnection).prepareStatement("select * from tiw_app.accounts where id in (?, ?, ?, ?)");
+        verify(statement).setLong(3, 2L);
+        verify(statement).setLong(4, 2L);
+    }
+
+    @Test
+    void byIds_chunksLargeRequests() throws SQLException {
+        when(results.next()).thenReturn(false);
+        List<String> ids = new ArrayList<>();
+        for (long i = 0; i < DAOUtils.IN_CHUNK_SIZE + 2; i++)
+            ids.add(IdUtils.toBase64(i));
+        new AccountDAO(mockConnection).byIds(ids).consume(t -> {
+            assertTrue(t.getFirst().isEmpty());
+            assertEquals(ids, t.getSecond());
+        }, e -> fail());
+        verify(mockConnection, times(2)).prepareStatement(anyString());
+        verify(mockConnection).prepareStatement("select * from tiw_app.accounts where id in (" +
+                String.join(", ", Collections.nCopies(DAOUtils.IN_CHUNK_SIZE, "?")) + ")");
+        verify(mockConnection).prepareStatement("select * from tiw_app.accounts where id in (?, ?)");
+    }
+
+    @Test
+    void byIds_withEmptyCollection() throws SQLException {
+        new AccountDAO(mockConnection).byIds(List.of()).consume(t -> {
+            assertTrue(t.getFirst().isEmpty());
+            assertTrue(t.getSecond().isEmpty());
+        }, e -> fail());
+        verify(mockConnection, never()).prepareStatement(anyString());
+    }
+}
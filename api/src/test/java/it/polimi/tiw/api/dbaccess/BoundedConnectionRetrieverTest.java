@@ -0,0 +1,90 @@
+package it.polimi.tiw.api.dbaccess;
+
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.testdb.EmbeddedDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedConnectionRetrieverTest {
+    private EmbeddedDatabase database;
+    private EmbeddedConnectionRetriever delegate;
+
+    @BeforeEach
+    void setup() {
+        database = EmbeddedDatabase.create();
+        delegate = new EmbeddedConnectionRetriever(database);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void constructor_invalidParameters() {
+        assertThrows(NullPointerException.class,
+                () -> new BoundedConnectionRetriever((ConnectionRetriever) null, 1, Duration.ZERO));
+        assertThrows(NullPointerException.class, () -> new BoundedConnectionRetriever(delegate, 1, null));
+        assertThrows(IllegalArgumentException.class, () -> new BoundedConnectionRetriever(delegate, 0, Duration.ZERO));
+    }
+
+    @Test
+    void get_releasesPermitOnceOnClose() throws SQLException {
+        BoundedConnectionRetriever retriever = new BoundedConnectionRetriever(delegate, 2, Duration.ZERO);
+        Connection c = retriever.get().get();
+        assertEquals(1, retriever.availablePermits());
+        assertFalse(c.isClosed());
+        c.close();
+        c.close();
+        assertEquals(2, retriever.availablePermits());
+    }
+
+    @Test
+    void get_failsWith503WhenNoPermitIsFreed() {
+        BoundedConnectionRetriever retriever = new BoundedConnectionRetriever(delegate, 1, Duration.ofMillis(10));
+        Connection c = retriever.get().get();
+        retriever.get().consume(__ -> fail(), e -> assertEquals(503, e.statusCode()));
+        retriever.close(c);
+        retriever.get().consume(retriever::close, e -> fail());
+        assertEquals(1, retriever.availablePermits());
+    }
+
+    @Test
+    void get_releasesPermitWhenSourceFails() {
+        AtomicInteger calls = new AtomicInteger();
+        BoundedConnectionRetriever retriever = new BoundedConnectionRetriever(() -> {
+            if (calls.incrementAndGet() == 1)
+                return ApiResult.error(Errors.fromSQLException(new SQLException("down")));
+            throw new IllegalStateException();
+        }, 1, Duration.ZERO);
+        retriever.get().consume(__ -> fail(), e -> assertEquals(500, e.statusCode()));
+        assertThrows(IllegalStateException.class, retriever::get);
+        assertEquals(1, retriever.availablePermits());
+    }
+
+    @Test
+    void with_closesConnection() {
+        BoundedConnectionRetriever retriever = new BoundedConnectionRetriever(delegate, 1, Duration.ZERO);
+        retriever.with(c -> new UserDAO(c).byUsername("alexbradd"))
+                .consume(u -> assertEquals("alexbradd", u.getUsername()), e -> fail());
+        assertEquals(1, retriever.availablePermits());
+    }
+
+    @Test
+    void with_releasesPermitWhenMapperThrows() {
+        BoundedConnectionRetriever retriever = new BoundedConnectionRetriever(delegate, 2, Duration.ZERO);
+        assertThrows(IllegalStateException.class, () -> retriever.with(c -> {
+            throw new IllegalStateException();
+        }));
+        assertEquals(2, retriever.availablePermits());
+    }
+}
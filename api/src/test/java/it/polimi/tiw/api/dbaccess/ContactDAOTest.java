@@ -1,8 +1,6 @@
 package it.polimi.tiw.api.dbaccess;
 
 import it.polimi.tiw.api.beans.Contact;
-import it.polimi.tiw.api.beans.User;
-import it.polimi.tiw.api.error.Errors;
 import it.polimi.tiw.api.functional.ApiResult;
 import it.polimi.tiw.api.utils.IdUtils;
 import org.junit.jupiter.api.BeforeEach;
@@ -20,6 +18,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -45,8 +44,8 @@ class ContactDAOTest {
 
     @Test
     void all_withNull() {
-        assertThrows(NullPointerException.class, () -> new ContactDAO(null, null));
-        assertThrows(NullPointerException.class, () -> new ContactDAO(connection, null));
+        assertThrows(NullPointerException.class, () -> new ContactDAO(null));
+        assertThrows(NullPointerException.class, () -> ContactDAO.withNewObjects(null));
         ContactDAO.withNewObjects(connection).insert(null).consume(a -> fail(), e -> {
         });
         ContactDAO.withNewObjects(connection).update(null).consume(a -> fail(), e -> {
@@ -129,59 +128,61 @@ class ContactDAOTest {
         return Stream.of(withNull, withInvalidOwnerId, withInvalidContactId, withEqualOwnerContact);
     }
 
-    @Test
-    void insert_withAlreadyPersistedContact() {
+    private static Contact validContact() {
         Contact mock = mock(Contact.class);
-        ContactDAO dao = spy(ContactDAO.withNewObjects(connection));
-
-        when(mock.hasNullProperties(anyBoolean())).thenReturn(false);
         when(mock.hasNullProperties(anyBoolean())).thenReturn(false);
         when(mock.getOwnerBase64Id()).thenReturn(IdUtils.toBase64(0L));
         when(mock.getContactBase64Id()).thenReturn(IdUtils.toBase64(1L));
-
-        doReturn(true).when(dao).isPersisted(mock);
-        dao.insert(mock).consume(__ -> fail(), __ -> {
-        });
+        return mock;
     }
 
     @Test
-    void insert_withNonPresentUser() {
-        UserDAO mockUserDAO = mock(UserDAO.class);
-        Contact mockContact = mock(Contact.class);
-        ContactDAO dao = spy(new ContactDAO(connection, mockUserDAO));
-
-        when(mockUserDAO.byId(0L)).thenReturn(ApiResult.error(Errors.fromNotFound("id")));
-        when(mockContact.hasNullProperties(anyBoolean())).thenReturn(false);
-        when(mockContact.getOwnerBase64Id()).thenReturn(IdUtils.toBase64(0L));
-        when(mockContact.getContactBase64Id()).thenReturn(IdUtils.toBase64(1L));
-        doReturn(false).when(dao).isPersisted(mockContact);
-
-        ApiResult<Contact> res = dao.insert(mockContact);
-        res.consume(__ -> fail(), e -> {
-        });
+    void insert_singleStatement() throws SQLException {
+        Contact mock = validContact();
+        ContactDAO.withNewObjects(connection).insert(mock).consume(c -> assertSame(mock, c), e -> fail());
+        verify(connection, times(1)).prepareStatement(any(String.class));
+        verify(statement).setLong(1, 0L);
+        verify(statement).setLong(2, 1L);
+        verify(connection, never()).setAutoCommit(anyBoolean());
     }
 
     @Test
-    void insert_atomic() throws SQLException {
-        Boolean prevAutoCommit = true;
-        User mockUser = mock(User.class);
-        Contact mock = mock(Contact.class);
-        UserDAO userDAO = mock(UserDAO.class);
-        ContactDAO dao = spy(new ContactDAO(connection, userDAO));
+    void insert_invalidatesIndexOnlyWhenCommitted() throws SQLException {
+        ContactIndex index = ContactIndex.getInstance();
+        String owner = IdUtils.toBase64(0L);
+        index.suggest(owner, "", 10, () -> ApiResult.ok(List.of()));
 
-        when(userDAO.byId(anyLong())).thenReturn(ApiResult.ok(mockUser));
-        when(connection.getAutoCommit()).thenReturn(prevAutoCommit);
-        when(mock.hasNullProperties(anyBoolean())).thenReturn(false);
-        when(mock.getOwnerBase64Id()).thenReturn(IdUtils.toBase64(0L));
-        when(mock.getContactBase64Id()).thenReturn(IdUtils.toBase64(1L));
-        doReturn(false).when(dao).isPersisted(mock);
-        when(statement.executeUpdate()).thenThrow(SQLException.class);
+        ContactDAO.withNewObjects(connection).insert(validContact()).consume(__ -> {
+        }, e -> fail());
+        index.cached(owner, "", 10).consume(__ -> {
+        }, e -> fail("Invalidated before commit"));
 
-        ApiResult<Contact> res = dao.insert(mock);
-        res.consume(__ -> fail(), e -> assertEquals(500, e.statusCode()));
-        verify(connection).setAutoCommit(prevAutoCommit);
-        verify(connection).setAutoCommit(false);
-        verify(connection).rollback();
+        when(connection.getAutoCommit()).thenReturn(true);
+        ContactDAO.withNewObjects(connection).insert(validContact()).consume(__ -> {
+        }, e -> fail());
+        index.cached(owner, "", 10).consume(__ -> fail(), e -> assertEquals(404, e.statusCode()));
+    }
+
+    @ParameterizedTest
+    @MethodSource("insert_constraintViolationSource")
+    void insert_withConstraintViolation(String sqlState) throws SQLException {
+        when(statement.executeUpdate()).thenThrow(new SQLException("violation", sqlState));
+        ContactDAO.withNewObjects(connection)
+                .insert(validContact())
+                .consume(__ -> fail(), e -> assertEquals(409, e.statusCode()));
+    }
+
+    static Stream<String> insert_constraintViolationSource() {
+        // MySQL reports both duplicates and foreign keys as 23000, H2 distinguishes them
+        return Stream.of("23000", "23505", "23506");
+    }
+
+    @Test
+    void insert_withSQLError() throws SQLException {
+        when(statement.executeUpdate()).thenThrow(new SQLException("connection lost", "08S01"));
+        ContactDAO.withNewObjects(connection)
+                .insert(validContact())
+                .consume(__ -> fail(), e -> assertEquals(500, e.statusCode()));
     }
 
     @Test
@@ -217,4 +218,58 @@ class ContactDAOTest {
                     assertEquals(IdUtils.toBase64(1L), cs.get(0).getContactBase64Id());
                 }, e -> fail());
     }
-}
\ No newline at end of file
+
+    @Test
+    void profilesOf_invalidParameters() {
+        ContactDAO dao = ContactDAO.withNewObjects(connection);
+        dao.profilesOf(null, null, 10).consume(__ -> fail(), e -> assertEquals(400, e.statusCode()));
+        dao.profilesOf("asd", null, 10).consume(__ -> fail(), e -> assertEquals(400, e.statusCode()));
+        dao.profilesOf(IdUtils.toBase64(1L), null, 0).consume(__ -> fail(), e -> assertEquals(400, e.statusCode()));
+    }
+
+    @Test
+    void profilesOf_escapesPrefixAndCapsLimit() throws SQLException {
+        when(results.next()).thenReturn(false);
+        ContactDAO.withNewObjects(connection)
+                .profilesOf(IdUtils.toBase64(1L), "a_b%", 1000)
+                .consume(ps -> assertTrue(ps.isEmpty()), e -> fail());
+        verify(statement).setString(2, "a!_b!%%");
+        verify(statement).setInt(3, ContactDAO.MAX_PROFILES);
+    }
+
+    @Test
+    void profilesOf_groupsAccounts() throws SQLException {
+        when(results.next()).thenReturn(true, true, true, false);
+        when(results.getLong(1)).thenReturn(2L, 2L, 3L);
+        when(results.getString(2)).thenReturn("mario-rossi", "luigi");
+        when(results.getString(3)).thenReturn("Mario", "Luigi");
+        when(results.getString(4)).thenReturn("Rossi", "Verdi");
+        when(results.getLong(5)).thenReturn(3L, 5L, 0L);
+        when(results.wasNull()).thenReturn(false, false, true);
+        ContactDAO.withNewObjects(connection)
+                .profilesOf(IdUtils.toBase64(1L), null, 10)
+                .consume(ps -> {
+                    assertEquals(2, ps.size());
+                    assertEquals(IdUtils.toBase64(2L), ps.get(0).getContactBase64Id());
+                    assertEquals("mario-rossi", ps.get(0).getUsername());
+                    assertEquals(List.of(IdUtils.toBase64(3L), IdUtils.toBase64(5L)), ps.get(0).getAccountIds());
+                    assertEquals("Verdi", ps.get(1).getSurname());
+                    assertTrue(ps.get(1).getAccountIds().isEmpty());
+                }, e -> fail());
+        verify(statement).setString(2, "%");
+    }
+
+    @Test
+    void usernamesOf_readsContacts() throws SQLException {
+        when(results.next()).thenReturn(true, true, false);
+        when(results.getLong(1)).thenReturn(2L, 3L);
+        when(results.getString(2)).thenReturn("mario-rossi", "luigi");
+        ContactDAO dao = ContactDAO.withNewObjects(connection);
+        dao.usernamesOf(null).consume(__ -> fail(), e -> assertEquals(400, e.statusCode()));
+        dao.usernamesOf(IdUtils.toBase64(1L)).consume(cs -> {
+            assertEquals(2, cs.size());
+            assertEquals(IdUtils.toBase64(3L), cs.get(1).getFirst());
+            assertEquals("luigi", cs.get(1).getSecond());
+        }, e -> fail());
+    }
+}
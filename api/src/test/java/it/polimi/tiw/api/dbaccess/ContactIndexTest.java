@@ -0,0 +1,137 @@
+package it.polimi.tiw.api.dbaccess;
+
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.functional.Tuple;
+import it.polimi.tiw.api.utils.IdUtils;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContactIndexTest {
+    private static final String OWNER = IdUtils.toBase64(1L);
+
+    private static Supplier<ApiResult<List<Tuple<String, String>>>> loader(AtomicInteger calls, String... usernames) {
+        return () -> {
+            calls.incrementAndGet();
+            List<Tuple<String, String>> contacts = new ArrayList<>();
+            for (int i = 0; i < usernames.length; i++)
+                contacts.add(new Tuple<>(IdUtils.toBase64(100L + i), usernames[i]));
+            return ApiResult.ok(contacts);
+        };
+    }
+
+    private static List<String> usernames(ApiResult<List<Tuple<String, String>>> res) {
+        return res.get().stream().map(Tuple::getSecond).toList();
+    }
+
+    @Test
+    void suggest_invalidParameters() {
+        ContactIndex index = new ContactIndex(10);
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(NullPointerException.class, () -> index.suggest(OWNER, "", 1, null));
+        index.suggest(null, "", 1, loader(calls)).consume(__ -> fail(), e -> assertEquals(400, e.statusCode()));
+        index.suggest("asd", "", 1, loader(calls)).consume(__ -> fail(), e -> assertEquals(400, e.statusCode()));
+        index.suggest(OWNER, "", 0, loader(calls)).consume(__ -> fail(), e -> assertEquals(400, e.statusCode()));
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void suggest_loadsOnceAndMatchesPrefixIgnoringCase() {
+        ContactIndex index = new ContactIndex(10);
+        AtomicInteger calls = new AtomicInteger();
+        var load = loader(calls, "marta", "Mario", "luigi", "marco");
+        assertEquals(List.of("marco", "Mario", "marta"), usernames(index.suggest(OWNER, "MAR", 10, load)));
+        assertEquals(List.of("marco", "Mario"), usernames(index.suggest(OWNER, "mar", 2, load)));
+        assertEquals(List.of(), usernames(index.suggest(OWNER, "z", 10, load)));
+        assertEquals(4, usernames(index.suggest(OWNER, null, 10, load)).size());
+        assertEquals(1, calls.get());
+        assertEquals(IdUtils.toBase64(102L), index.suggest(OWNER, "l", 1, load).get().get(0).getFirst());
+    }
+
+    @Test
+    void suggest_doesNotCacheErrors() {
+        ContactIndex index = new ContactIndex(10);
+        index.suggest(OWNER, "", 1, () -> ApiResult.error(Errors.fromNotFound("user")))
+                .consume(__ -> fail(), e -> assertEquals(404, e.statusCode()));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void invalidate_reloadsOnNextSearch() {
+        ContactIndex index = new ContactIndex(10);
+        AtomicInteger calls = new AtomicInteger();
+        index.invalidate(2L);
+        index.suggest(OWNER, "", 10, loader(calls, "b", "d"));
+        assertEquals(2, index.size());
+
+        index.invalidate(1L);
+        assertEquals(0, index.size());
+        assertEquals(List.of("b", "c", "d"), usernames(index.suggest(OWNER, "", 10, loader(calls, "d", "c", "b"))));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void suggest_evictsLeastRecentlyUsedOwners() {
+        ContactIndex index = new ContactIndex(4);
+        AtomicInteger calls = new AtomicInteger();
+        String a = IdUtils.toBase64(1L), b = IdUtils.toBase64(2L), c = IdUtils.toBase64(3L);
+        index.suggest(a, "", 1, loader(calls, "x", "y"));
+        index.suggest(b, "", 1, loader(calls, "x", "y"));
+        index.suggest(a, "", 1, loader(calls, "x", "y"));
+        index.suggest(c, "", 1, loader(calls, "x", "y"));
+        assertEquals(3, calls.get());
+        assertEquals(4, index.size());
+
+        index.suggest(a, "", 1, loader(calls, "x", "y"));
+        assertEquals(3, calls.get());
+        index.suggest(b, "", 1, loader(calls, "x", "y"));
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void suggest_doesNotKeepOwnersLargerThanCapacity() {
+        ContactIndex index = new ContactIndex(2);
+        AtomicInteger calls = new AtomicInteger();
+        var load = loader(calls, "a", "b", "c");
+        assertEquals(3, index.suggest(OWNER, "", 10, load).get().size());
+        assertEquals(0, index.size());
+        index.suggest(OWNER, "", 10, load);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void suggest_reloadsAfterTtl() {
+        AtomicLong now = new AtomicLong();
+        ContactIndex index = new ContactIndex(10, Duration.ofNanos(100), now::get);
+        AtomicInteger calls = new AtomicInteger();
+        index.suggest(OWNER, "", 10, loader(calls, "a"));
+        now.set(99);
+        assertEquals(List.of("a"), usernames(index.suggest(OWNER, "", 10, loader(calls, "a", "b"))));
+        assertEquals(1, calls.get());
+        now.set(100);
+        assertEquals(List.of("a", "b"), usernames(index.suggest(OWNER, "", 10, loader(calls, "a", "b"))));
+        assertEquals(2, calls.get());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void cached_onlyReturnsIndexedContacts() {
+        AtomicLong now = new AtomicLong();
+        ContactIndex index = new ContactIndex(10, Duration.ofNanos(100), now::get);
+        index.cached("asd", "", 1).consume(__ -> fail(), e -> assertEquals(400, e.statusCode()));
+        index.cached(OWNER, "", 1).consume(__ -> fail(), e -> assertEquals(404, e.statusCode()));
+        index.suggest(OWNER, "", 10, loader(new AtomicInteger(), "marta", "luigi"));
+        assertEquals(List.of("marta"), usernames(index.cached(OWNER, "m", 10)));
+        now.set(100);
+        index.cached(OWNER, "m", 10).consume(__ -> fail(), e -> assertEquals(404, e.statusCode()));
+        assertEquals(0, index.size());
+    }
+}
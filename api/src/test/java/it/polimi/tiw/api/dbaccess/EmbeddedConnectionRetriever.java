@@ -0,0 +1,65 @@
+package it.polimi.tiw.api.dbaccess;
+
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.tracing.QueryTracing;
+import it.polimi.tiw.testdb.EmbeddedDatabase;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * {@link ConnectionRetriever} that opens a new connection to an {@link EmbeddedDatabase} each time. Connections are
+ * traced if {@link QueryTracing} is enabled.
+ */
+public class EmbeddedConnectionRetriever implements ConnectionRetriever {
+    private final EmbeddedDatabase database;
+
+    /**
+     * Creates a new EmbeddedConnectionRetriever for the given database
+     *
+     * @param database the {@link EmbeddedDatabase} to connect to
+     * @throws NullPointerException if {@code database} is null
+     */
+    public EmbeddedConnectionRetriever(EmbeddedDatabase database) {
+        this.database = Objects.requireNonNull(database);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ApiResult<Connection> get() {
+        try {
+            return ApiResult.ok(QueryTracing.wrap(database.getConnection()));
+        } catch (SQLException e) {
+            return ApiResult.error(Errors.fromSQLException(e));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> ApiResult<T> with(Function<Connection, ApiResult<T>> mapper) {
+        ApiResult<Connection> conn = get();
+        ApiResult<T> res = conn.flatMap(mapper);
+        return conn.match(c -> {
+            close(c);
+            return res;
+        }, ApiResult::error);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
@@ -18,6 +18,7 @@ import org.mockito.stubbing.Answer;
 
 import java.sql.*;
 import java.time.Instant;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.stream.Stream;
 
@@ -273,6 +274,96 @@ class TransferDAOTest {
                 }, e -> fail());
     }
 
+    @Test
+    void cursors_withInvalidId() {
+        TransferDAO.withNewObjects(connection).incomingTo(null)
+                .consume(__ -> fail(), e -> assertEquals(400, e.statusCode()));
+        TransferDAO.withNewObjects(connection).outgoingFrom("asd")
+                .consume(__ -> fail(), e -> assertEquals(400, e.statusCode()));
+    }
+
+    @Test
+    void incomingTo_isLazy() throws SQLException {
+        when(results.next()).thenReturn(true, true, false);
+        when(results.getLong(anyString())).thenReturn(1L);
+        when(results.getDouble(anyString())).thenReturn(100.0);
+        when(results.getTimestamp(anyString())).thenReturn(Timestamp.from(Instant.now()));
+        TransferCursor cursor = TransferDAO.withNewObjects(connection).incomingTo(IdUtils.toBase64(1L)).get();
+        verify(statement, never()).executeQuery();
+
+        assertTrue(cursor.hasNext());
+        assertTrue(cursor.hasNext());
+        assertEquals(100, cursor.next().getAmount());
+        assertNotNull(cursor.next());
+        assertFalse(cursor.hasNext());
+        assertThrows(NoSuchElementException.class, cursor::next);
+        verify(statement).setFetchSize(TransferCursor.FETCH_SIZE);
+        verify(statement).setLong(1, 1L);
+        verify(statement).close();
+        cursor.close();
+    }
+
+    @Test
+    void outgoingFrom_withSQLException() throws SQLException {
+        when(statement.executeQuery()).thenThrow(SQLException.class);
+        TransferCursor cursor = TransferDAO.withNewObjects(connection).outgoingFrom(IdUtils.toBase64(1L)).get();
+        assertThrows(IllegalStateException.class, cursor::hasNext);
+        verify(statement).close();
+        assertFalse(cursor.hasNext());
+    }
+
+    @Test
+    void since_invalidParameters() {
+        TransferDAO dao = TransferDAO.withNewObjects(connection);
+        dao.since(null, 0).consume(__ -> fail(), e -> assertEquals(400, e.statusCode()));
+        dao.since("asd", 0).consume(__ -> fail(), e -> assertEquals(400, e.statusCode()));
+        dao.since(IdUtils.toBase64(1L), -1).consume(__ -> fail(), e -> assertEquals(400, e.statusCode()));
+    }
+
+    @Test
+    void since_accountNotInDb() throws SQLException {
+        when(results.next()).thenReturn(false);
+        TransferDAO.withNewObjects(connection).since(IdUtils.toBase64(1L), 0)
+                .consume(__ -> fail(), e -> assertEquals(404, e.statusCode()));
+    }
+
+    @Test
+    void since_upToDate() throws SQLException {
+        when(results.next()).thenReturn(true);
+        when(results.getLong("ownerId")).thenReturn(2L);
+        when(results.getDouble("balance")).thenReturn(50.0);
+        when(results.getLong("version")).thenReturn(5L);
+        TransferDAO.withNewObjects(connection).since(IdUtils.toBase64(1L), 5)
+                .consume(d -> {
+                    assertEquals(IdUtils.toBase64(2L), d.getOwnerId());
+                    assertEquals(50, d.getBalance());
+                    assertEquals(5, d.getCursor());
+                    assertTrue(d.getIncoming().isEmpty());
+                    assertTrue(d.getOutgoing().isEmpty());
+                }, e -> fail());
+        verify(connection, times(1)).prepareStatement(anyString());
+    }
+
+    @Test
+    void since_readsOnlyNewTransfers() throws SQLException {
+        when(results.next()).thenReturn(true, true, true, false);
+        when(results.getLong(anyString())).thenReturn(1L);
+        when(results.getLong("version")).thenReturn(7L);
+        when(results.getLong("toId")).thenReturn(1L, 2L);
+        when(results.getDouble(anyString())).thenReturn(100.0);
+        when(results.getTimestamp(anyString())).thenReturn(Timestamp.from(Instant.now()));
+        TransferDAO.withNewObjects(connection).since(IdUtils.toBase64(1L), 3)
+                .consume(d -> {
+                    assertEquals(7, d.getCursor());
+                    assertEquals(1, d.getIncoming().size());
+                    assertEquals(1, d.getOutgoing().size());
+                }, e -> fail());
+        verify(statement).setLong(2, 3L);
+        verify(statement).setLong(3, 7L);
+        verify(statement).setLong(6, 3L);
+        verify(statement).setLong(7, 7L);
+    }
+
     @ParameterizedTest
     @MethodSource("newTransfer_invalidParameterSource")
     void newTransfer_withInvalidParameters(NewTransferParameters params) {
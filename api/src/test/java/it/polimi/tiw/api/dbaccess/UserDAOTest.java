@@ -15,6 +15,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -111,6 +112,20 @@ public class UserDAOTest {
         }, __ -> fail());
     }
 
+    @Test
+    void accountsVersionOf_withKnownId() throws SQLException {
+        when(results.next()).thenReturn(true);
+        when(results.getLong("accountsVersion")).thenReturn(3L);
+        new UserDAO(mockConnection).accountsVersionOf(IdUtils.toBase64(1L))
+                .consume(v -> assertEquals(3L, v), e -> fail());
+    }
+
+    @Test
+    void accountsVersionOf_withInvalidId() {
+        new UserDAO(mockConnection).accountsVersionOf("asd")
+                .consume(__ -> fail(), e -> assertEquals(400, e.statusCode()));
+    }
+
     @Test
     void byId_withInvalidBase64Id() {
         ApiResult<User> res = new UserDAO(mockConnection).byId("asdf");
@@ -298,4 +313,21 @@ public class UserDAOTest {
         verify(mockConnection).setAutoCommit(false);
         verify(mockConnection).rollback();
     }
+
+    @Test
+    void byIds_readsUsers() throws SQLException {
+        when(results.next()).thenReturn(true, false);
+        when(results.getLong("id")).thenReturn(2L);
+        when(results.getString(anyString())).thenAnswer(invocation -> switch ((String) invocation.getArgument(0)) {
+            case "password" -> "AA:AA";
+            case "email" -> "email@email.com";
+            default -> "pippo";
+        });
+        new UserDAO(mockConnection).byIds(List.of(IdUtils.toBase64(1L), IdUtils.toBase64(2L))).consume(t -> {
+            assertEquals(1, t.getFirst().size());
+            assertEquals(IdUtils.toBase64(2L), t.getFirst().get(0).getBase64Id());
+            assertEquals("pippo", t.getFirst().get(0).getUsername());
+            assertEquals(List.of(IdUtils.toBase64(1L)), t.getSecond());
+        }, __ -> fail());
+    }
 }
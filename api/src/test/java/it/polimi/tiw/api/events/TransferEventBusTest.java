@@ -0,0 +1,74 @@
+package it.polimi.tiw.api.events;
+
+import it.polimi.tiw.api.beans.Transfer;
+import it.polimi.tiw.api.utils.IdUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class TransferEventBusTest {
+    private static final String USER = IdUtils.toBase64(1L);
+    private static final String OTHER = IdUtils.toBase64(2L);
+
+    @Test
+    void invalidParameters() {
+        TransferEventBus bus = new TransferEventBus();
+        assertThrows(NullPointerException.class, () -> bus.subscribe(null, t -> {
+        }));
+        assertThrows(NullPointerException.class, () -> bus.subscribe(USER, null));
+        assertThrows(NullPointerException.class, () -> bus.publish(null, mock(Transfer.class)));
+        assertThrows(NullPointerException.class, () -> bus.publish(USER, null));
+    }
+
+    @Test
+    void publish_deliversOnlyToRecipient() {
+        TransferEventBus bus = new TransferEventBus();
+        List<Transfer> received = new ArrayList<>();
+        List<Transfer> other = new ArrayList<>();
+        bus.subscribe(USER, received::add);
+        bus.subscribe(OTHER, other::add);
+        Transfer t = mock(Transfer.class);
+
+        assertEquals(1, bus.publish(USER, t));
+        assertEquals(List.of(t), received);
+        assertTrue(other.isEmpty());
+        assertEquals(0, bus.publish(IdUtils.toBase64(3L), t));
+    }
+
+    @Test
+    void close_unsubscribes() {
+        TransferEventBus bus = new TransferEventBus();
+        List<Transfer> received = new ArrayList<>();
+        TransferEventBus.Subscription first = bus.subscribe(USER, received::add);
+        TransferEventBus.Subscription second = bus.subscribe(USER, received::add);
+        assertEquals(2, bus.subscriberCount());
+
+        first.close();
+        first.close();
+        assertEquals(1, bus.subscriberCount());
+        assertEquals(1, bus.publish(USER, mock(Transfer.class)));
+        second.close();
+        assertEquals(0, bus.subscriberCount());
+        assertEquals(0, bus.publish(USER, mock(Transfer.class)));
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    void publish_withFailingListener() {
+        TransferEventBus bus = new TransferEventBus();
+        List<Transfer> received = new ArrayList<>();
+        Consumer<Transfer> failing = t -> {
+            throw new IllegalStateException();
+        };
+        bus.subscribe(USER, failing);
+        bus.subscribe(USER, received::add);
+
+        assertEquals(1, bus.publish(USER, mock(Transfer.class)));
+        assertEquals(1, received.size());
+    }
+}
@@ -0,0 +1,85 @@
+package it.polimi.tiw.api.jfr;
+
+import it.polimi.tiw.api.UserFacade;
+import it.polimi.tiw.api.beans.LoginRequest;
+import it.polimi.tiw.api.dbaccess.TransferDAO;
+import it.polimi.tiw.api.utils.IdUtils;
+import it.polimi.tiw.testdb.EmbeddedDatabase;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventsTest {
+    private EmbeddedDatabase database;
+
+    @BeforeEach
+    void setup() {
+        database = EmbeddedDatabase.create();
+    }
+
+    @AfterEach
+    void teardown() {
+        database.close();
+    }
+
+    @Test
+    void configuration_enablesAllEvents() {
+        var settings = Events.configuration().getSettings();
+        for (String name : List.of("Transfer", "Authorization", "ConnectionAcquire", "Request"))
+            assertEquals("true", settings.get("it.polimi.tiw." + name + "#enabled"));
+    }
+
+    @Test
+    void transferAndAuthorization_areRecorded() throws IOException, SQLException {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording();
+             Connection c = database.getConnection()) {
+            recording.enable(TransferEvent.class).withThreshold(null);
+            recording.enable(AuthorizationEvent.class).withThreshold(null);
+            recording.start();
+            TransferDAO.withNewObjects(c).newTransfer(IdUtils.toBase64(1), IdUtils.toBase64(2), 1, "jfr");
+            LoginRequest login = new LoginRequest();
+            login.setUsername("nonexistent");
+            login.setClearPassword("password");
+            UserFacade.withDefaultObjects(c).authorize(login);
+            recording.stop();
+            Path file = Files.createTempFile("events", ".jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+            Files.delete(file);
+        }
+
+        RecordedEvent transfer = find(events, "it.polimi.tiw.Transfer");
+        assertEquals("ok", transfer.getString("outcome"));
+        assertEquals("<10", transfer.getString("amountBucket"));
+        assertTrue(transfer.getDuration("lockWait").toNanos() > 0);
+        assertEquals("404", find(events, "it.polimi.tiw.Authorization").getString("outcome"));
+    }
+
+    @Test
+    void bucket_hidesExactAmount() {
+        assertEquals("<10", TransferEvent.bucket(9.99));
+        assertEquals("10-100", TransferEvent.bucket(10));
+        assertEquals("100-1000", TransferEvent.bucket(999));
+        assertEquals(">=1000", TransferEvent.bucket(1e6));
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(e -> e.getEventType().getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError(name + " not recorded"));
+    }
+}
@@ -0,0 +1,213 @@
+package it.polimi.tiw.api.load;
+
+import it.polimi.tiw.api.beans.Account;
+import it.polimi.tiw.api.beans.Transfer;
+import it.polimi.tiw.api.beans.User;
+import it.polimi.tiw.api.dbaccess.AccountDAO;
+import it.polimi.tiw.api.dbaccess.EmbeddedConnectionRetriever;
+import it.polimi.tiw.api.dbaccess.TransferDAO;
+import it.polimi.tiw.api.dbaccess.UserDAO;
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.tracing.QueryTracing;
+import it.polimi.tiw.api.utils.IdUtils;
+import it.polimi.tiw.api.utils.PasswordUtils;
+import it.polimi.tiw.testdb.EmbeddedDatabase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DAOLoadTest {
+    private static final int ACCOUNTS = 16;
+    private static final double INITIAL_BALANCE = 1000;
+    /*
+     * Maximum number of statements a single operation may execute. Raising them should be a deliberate choice.
+     */
+    private static final int TRANSFER_BUDGET = 10;
+    private static final int REGISTRATION_BUDGET = 3;
+    private static final int HISTORY_READ_BUDGET = 1;
+
+    private EmbeddedDatabase database;
+    private EmbeddedConnectionRetriever retriever;
+    private List<String> accounts;
+    private long lastSeedTransfer;
+
+    @BeforeAll
+    static void enableTracing() {
+        QueryTracing.setEnabled(true);
+    }
+
+    @AfterAll
+    static void disableTracing() {
+        QueryTracing.setEnabled(false);
+    }
+
+    @BeforeEach
+    void setupDatabase() throws SQLException {
+        database = EmbeddedDatabase.create();
+        retriever = new EmbeddedConnectionRetriever(database);
+        accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Account a = new Account(IdUtils.toBase64(1L), INITIAL_BALANCE);
+            retriever.with(c -> new AccountDAO(c).insert(a))
+                    .consume(inserted -> accounts.add(inserted.getBase64Id()), e -> fail(e.errorMessage()));
+        }
+        lastSeedTransfer = queryLong("select max(id) from tiw_app.transfers");
+    }
+
+    @AfterEach
+    void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    void concurrentTransfers_preserveLedger() throws SQLException {
+        Map<String, Double> before = balances();
+
+        LoadReport report = LoadHarness.run("transfers", (thread, iteration) -> randomTransfer());
+
+        assertTrue(report.operations() - report.errors() > 0);
+        assertTrue(report.maxStatements() <= TRANSFER_BUDGET);
+        assertEquals(report.operations() - report.errors(),
+                queryLong("select count(*) from tiw_app.transfers where id > " + lastSeedTransfer));
+        assertLedgerConsistent(before);
+    }
+
+    @Test
+    void concurrentRegistrations_areAllPersisted() throws SQLException {
+        String password = PasswordUtils.toHash("password");
+        long usersBefore = queryLong("select count(*) from tiw_app.users");
+        List<String> registered = new ArrayList<>();
+
+        LoadReport report = LoadHarness.run("registrations", (thread, iteration) -> {
+            String username = "load-" + thread + "-" + iteration;
+            ApiResult<User> res = new User.Builder()
+                    .addUsername(username)
+                    .addPassword(password)
+                    .addEmail(username + "@mail.com")
+                    .addName("Load")
+                    .addSurname("Test")
+                    .build()
+                    .flatMap(u -> retriever.with(c -> new UserDAO(c).insert(u)));
+            res.consume(u -> {
+                synchronized (registered) {
+                    registered.add(u.getUsername());
+                }
+            }, e -> {
+            });
+            return res;
+        });
+
+        assertTrue(registered.size() > 0);
+        assertTrue(report.maxStatements() <= REGISTRATION_BUDGET);
+        assertEquals(usersBefore + report.operations() - report.errors(),
+                queryLong("select count(*) from tiw_app.users"));
+        for (String username : registered)
+            retriever.with(c -> new UserDAO(c).byUsername(username)).consume(u -> {
+            }, e -> fail(e.errorMessage()));
+    }
+
+    @Test
+    void historyReadsDuringTransfers_areConsistent() throws SQLException {
+        Map<String, Double> before = balances();
+        AtomicInteger failedReads = new AtomicInteger();
+
+        LoadReport report = LoadHarness.run("history reads", (thread, iteration) -> {
+            if (thread % 2 == 0)
+                return randomTransfer();
+            String account = accounts.get(iteration % ACCOUNTS);
+            return retriever.with(c -> TransferDAO.withNewObjects(c).inAndOutOf(account))
+                    .peek(t -> {
+                        if (!isSortedByDateDesc(t.getFirst()) || !isSortedByDateDesc(t.getSecond()))
+                            failedReads.incrementAndGet();
+                        return ApiResult.ok(t);
+                    });
+        });
+
+        assertEquals(0, failedReads.get());
+        assertTrue(report.maxStatements() <= Math.max(TRANSFER_BUDGET, HISTORY_READ_BUDGET));
+        assertLedgerConsistent(before);
+    }
+
+    /**
+     * Transfers a small random amount between two random accounts
+     */
+    private ApiResult<Transfer> randomTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String from = accounts.get(random.nextInt(ACCOUNTS));
+        String to = accounts.get(random.nextInt(ACCOUNTS - 1));
+        if (to.equals(from)) to = accounts.get(ACCOUNTS - 1);
+        String toId = to;
+        int amount = random.nextInt(1, 10);
+        return retriever.with(c -> TransferDAO.withNewObjects(c).newTransfer(from, toId, amount, "load test"));
+    }
+
+    /**
+     * Checks that the sum of all balances did not change, that no balance is negative and that each balance is equal to
+     * the starting one plus the transfers received minus the transfers sent
+     */
+    private void assertLedgerConsistent(Map<String, Double> before) throws SQLException {
+        Map<String, Double> after = balances();
+        double totalBefore = before.values().stream().mapToDouble(Double::doubleValue).sum();
+        double totalAfter = after.values().stream().mapToDouble(Double::doubleValue).sum();
+        assertEquals(totalBefore, totalAfter, 1e-3);
+
+        Map<String, Double> expected = new HashMap<>(before);
+        try (Connection c = database.getConnection();
+             PreparedStatement p = c.prepareStatement("select * from tiw_app.transfers where id > ?")) {
+            p.setLong(1, lastSeedTransfer);
+            try (ResultSet r = p.executeQuery()) {
+                while (r.next()) {
+                    double amount = r.getDouble("amount");
+                    expected.merge(IdUtils.toBase64(r.getLong("toId")), amount, Double::sum);
+                    expected.merge(IdUtils.toBase64(r.getLong("fromId")), -amount, Double::sum);
+                }
+            }
+        }
+        for (Map.Entry<String, Double> e : after.entrySet()) {
+            assertTrue(e.getValue() >= 0);
+            assertEquals(expected.get(e.getKey()), e.getValue(), 1e-3);
+        }
+    }
+
+    private Map<String, Double> balances() throws SQLException {
+        Map<String, Double> ret = new HashMap<>();
+        try (Connection c = database.getConnection();
+             PreparedStatement p = c.prepareStatement("select id, balance from tiw_app.accounts");
+             ResultSet r = p.executeQuery()) {
+            while (r.next())
+                ret.put(IdUtils.toBase64(r.getLong("id")), r.getDouble("balance"));
+        }
+        return ret;
+    }
+
+    private long queryLong(String sql) throws SQLException {
+        try (Connection c = database.getConnection();
+             PreparedStatement p = c.prepareStatement(sql);
+             ResultSet r = p.executeQuery()) {
+            r.next();
+            return r.getLong(1);
+        }
+    }
+
+    private static boolean isSortedByDateDesc(List<Transfer> transfers) {
+        for (int i = 1; i < transfers.size(); i++)
+            if (transfers.get(i - 1).getDate().isBefore(transfers.get(i).getDate()))
+                return false;
+        return true;
+    }
+}
@@ -0,0 +1,122 @@
+package it.polimi.tiw.api.load;
+
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.tracing.QueryTracer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs an operation concurrently from a fixed number of threads, measuring the latency of each invocation.
+ * <p>
+ * The number of threads and the number of operations each thread executes default to small values so that the load
+ * tests can be run as part of the normal build. They can be raised with the {@code load.threads} and
+ * {@code load.operations} system properties.
+ * <p>
+ * Each operation runs inside a {@link QueryTracer}, so if {@link it.polimi.tiw.api.tracing.QueryTracing} is enabled
+ * the report also contains how many statements each operation executed.
+ */
+public class LoadHarness {
+    /**
+     * Number of concurrent threads
+     */
+    public static final int THREADS = Integer.getInteger("load.threads", 8);
+    /**
+     * Number of operations executed by each thread
+     */
+    public static final int OPERATIONS = Integer.getInteger("load.operations", 100);
+
+    private LoadHarness() {
+    }
+
+    /**
+     * An operation executed by the harness. The operation is considered failed if it returns an error.
+     */
+    @FunctionalInterface
+    public interface Operation {
+        /**
+         * Executes the operation
+         *
+         * @param thread    the index of the thread executing the operation
+         * @param iteration the index of the operation inside the thread
+         * @return the result of the operation
+         */
+        ApiResult<?> run(int thread, int iteration);
+    }
+
+    /**
+     * Runs the given operation with the default number of threads and operations
+     *
+     * @param name      the name of the scenario
+     * @param operation the operation to run
+     * @return a {@link LoadReport} of the run
+     * @throws NullPointerException if any parameter is null
+     */
+    public static LoadReport run(String name, Operation operation) {
+        return run(name, THREADS, OPERATIONS, operation);
+    }
+
+    /**
+     * Runs the given operation {@code operations} times on each of the {@code threads} threads. All threads start at
+     * the same time.
+     *
+     * @param name       the name of the scenario
+     * @param threads    the number of concurrent threads
+     * @param operations the number of operations each thread executes
+     * @param operation  the operation to run
+     * @return a {@link LoadReport} of the run
+     * @throws NullPointerException     if any parameter is null
+     * @throws IllegalArgumentException if {@code threads} or {@code operations} is not positive
+     * @throws IllegalStateException    if any operation threw an exception
+     */
+    public static LoadReport run(String name, int threads, int operations, Operation operation) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(operation);
+        if (threads <= 0 || operations <= 0)
+            throw new IllegalArgumentException("threads and operations must be positive");
+
+        long[] latencies = new long[threads * operations];
+        int[] statements = new int[threads * operations];
+        AtomicLong errors = new AtomicLong();
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < operations; i++) {
+                        boolean ok;
+                        try (QueryTracer tracer = QueryTracer.start()) {
+                            long begin = System.nanoTime();
+                            ok = operation.run(thread, i).match(__ -> true, __ -> false);
+                            latencies[thread * operations + i] = System.nanoTime() - begin;
+                            statements[thread * operations + i] = tracer.getStatementCount();
+                        }
+                        if (!ok) errors.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.await();
+            long begin = System.nanoTime();
+            for (Future<?> f : futures)
+                f.get();
+            long elapsed = System.nanoTime() - begin;
+            LoadReport report = new LoadReport(name, threads, errors.get(), elapsed, latencies, statements);
+            System.out.println(report);
+            return report;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running " + name, e);
+        } catch (ExecutionException | BrokenBarrierException e) {
+            throw new IllegalStateException("Scenario " + name + " failed", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
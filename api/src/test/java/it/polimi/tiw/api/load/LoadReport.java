@@ -0,0 +1,112 @@
+package it.polimi.tiw.api.load;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Results of a load scenario run by {@link LoadHarness}: throughput, error count and latency percentiles.
+ */
+public class LoadReport {
+    private final String name;
+    private final int threads;
+    private final long errors;
+    private final long elapsedNanos;
+    private final long[] latencies;
+    private final int[] statements;
+
+    /**
+     * Creates a new LoadReport
+     *
+     * @param name         the name of the scenario
+     * @param threads      the number of concurrent threads used
+     * @param errors       how many operations returned an error
+     * @param elapsedNanos the wall clock duration of the scenario
+     * @param latencies    the latency of each operation in nanoseconds
+     * @param statements   the number of statements executed by each operation
+     */
+    LoadReport(String name, int threads, long errors, long elapsedNanos, long[] latencies, int[] statements) {
+        this.name = name;
+        this.threads = threads;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+        this.latencies = latencies.clone();
+        Arrays.sort(this.latencies);
+        this.statements = statements.clone();
+    }
+
+    /**
+     * Returns the total number of operations executed
+     *
+     * @return the total number of operations executed
+     */
+    public int operations() {
+        return latencies.length;
+    }
+
+    /**
+     * Returns the number of operations that returned an error
+     *
+     * @return the number of operations that returned an error
+     */
+    public long errors() {
+        return errors;
+    }
+
+    /**
+     * Returns the number of operations completed per second
+     *
+     * @return the throughput of the scenario
+     */
+    public double throughput() {
+        return elapsedNanos == 0 ? 0 : latencies.length / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * Returns the latency below which the given percentage of operations falls
+     *
+     * @param percentile a number between 0 and 100
+     * @return the latency in nanoseconds
+     * @throws IllegalArgumentException if {@code percentile} is out of range
+     */
+    public long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        if (latencies.length == 0) return 0;
+        int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+        return latencies[Math.max(index, 0)];
+    }
+
+    /**
+     * Returns the highest number of statements executed by a single operation. It is always zero if query tracing is
+     * disabled.
+     *
+     * @return the highest number of statements per operation
+     */
+    public int maxStatements() {
+        return Arrays.stream(statements).max().orElse(0);
+    }
+
+    /**
+     * Returns the average number of statements executed by an operation. It is always zero if query tracing is
+     * disabled.
+     *
+     * @return the average number of statements per operation
+     */
+    public double meanStatements() {
+        return Arrays.stream(statements).average().orElse(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        String ret = String.format(Locale.ROOT,
+                "%s: %d ops on %d threads, %d errors, %.1f ops/s, p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms",
+                name, operations(), threads, errors, throughput(),
+                percentile(50) / 1e6, percentile(90) / 1e6, percentile(99) / 1e6, percentile(100) / 1e6);
+        if (maxStatements() > 0)
+            ret += String.format(Locale.ROOT, ", statements/op mean=%.1f max=%d", meanStatements(), maxStatements());
+        return ret;
+    }
+}
@@ -0,0 +1,85 @@
+package it.polimi.tiw.api.metrics;
+
+import it.polimi.tiw.api.error.ApiError;
+import it.polimi.tiw.api.functional.ApiResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricRegistryTest {
+    @Test
+    void counter_sameNameAndLabels_isShared() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("c", "help", "a", "1").inc();
+        registry.counter("c", "help", "a", "1").add(2);
+        registry.counter("c", "help", "a", "2").inc();
+        assertEquals(3, registry.counter("c", "help", "a", "1").get());
+        assertEquals(1, registry.counter("c", "help", "a", "2").get());
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("c", "help").add(-1));
+    }
+
+    @Test
+    void family_withDifferentType_throws() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("m", "help");
+        assertThrows(IllegalArgumentException.class, () -> registry.histogram("m", "help"));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("m", "help", "unpaired"));
+    }
+
+    @Test
+    void histogram_countsInCumulativeBuckets() {
+        Histogram h = new MetricRegistry().histogram("h", "help");
+        h.observeNanos(100_000);
+        h.observeNanos(2_000_000);
+        h.observeNanos(20_000_000_000L);
+        long[] counts = h.getCumulativeCounts();
+        assertEquals(1, counts[0]);
+        assertEquals(2, counts[2]);
+        assertEquals(2, counts[counts.length - 2]);
+        assertEquals(3, counts[counts.length - 1]);
+        assertEquals(3, h.getCount());
+        assertEquals(20.0021, h.getSum(), 1e-9);
+    }
+
+    @Test
+    void timer_countsErrors() {
+        MetricRegistry registry = new MetricRegistry();
+        Timer t = registry.timer("op", "help");
+        t.record(() -> ApiResult.ok(1));
+        t.record(() -> ApiResult.error(new ApiError(500, "")));
+        assertEquals(2, registry.histogram("op_seconds", "").getCount());
+        assertEquals(1, registry.counter("op_errors_total", "").get());
+    }
+
+    @Test
+    void timer_whenDisabled_recordsNothing() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.setEnabled(false);
+        Timer t = registry.timer("op", "help");
+        assertEquals(1, t.record(() -> ApiResult.ok(1)).get());
+        t.error();
+        assertEquals(0, registry.histogram("op_seconds", "").getCount());
+        assertEquals(0, registry.counter("op_errors_total", "").get());
+    }
+
+    @Test
+    void prometheusWriter_format() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("requests_total", "Requests", "path", "/a\"b").add(5);
+        registry.gauge("temperature", "Temperature", () -> 1.5);
+        registry.histogram("latency_seconds", "Latency").observeNanos(1_000_000);
+        StringWriter out = new StringWriter();
+        PrometheusWriter.write(registry, out);
+        String text = out.toString();
+        assertTrue(text.contains("# TYPE requests_total counter\n"));
+        assertTrue(text.contains("requests_total{path=\"/a\\\"b\"} 5\n"));
+        assertTrue(text.contains("temperature 1.5\n"));
+        assertTrue(text.contains("latency_seconds_bucket{le=\"0.0005\"} 0\n"));
+        assertTrue(text.contains("latency_seconds_bucket{le=\"0.001\"} 1\n"));
+        assertTrue(text.contains("latency_seconds_bucket{le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains("latency_seconds_count 1\n"));
+    }
+}
@@ -0,0 +1,102 @@
+package it.polimi.tiw.api.tracing;
+
+import it.polimi.tiw.api.dbaccess.EmbeddedConnectionRetriever;
+import it.polimi.tiw.api.dbaccess.UserDAO;
+import it.polimi.tiw.testdb.EmbeddedDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class QueryTracingFilterTest {
+    private EmbeddedDatabase database;
+    private ExecutorService worker;
+
+    @BeforeEach
+    void setup() {
+        database = EmbeddedDatabase.create();
+        worker = Executors.newSingleThreadExecutor();
+        QueryTracing.setEnabled(true);
+    }
+
+    @AfterEach
+    void teardown() {
+        QueryTracing.setEnabled(false);
+        worker.shutdownNow();
+        database.close();
+    }
+
+    @Test
+    void doFilter_asyncRequest_countsStatementsOfPropagatedTask() throws Exception {
+        QueryTracingFilter filter = new QueryTracingFilter();
+        FilterConfig config = mock(FilterConfig.class);
+        when(config.getInitParameter("debug")).thenReturn("true");
+        filter.init(config);
+
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        HttpServletResponse res = mock(HttpServletResponse.class);
+        AsyncContext ctx = mock(AsyncContext.class);
+        when(req.isAsyncStarted()).thenReturn(true);
+        when(req.getAsyncContext()).thenReturn(ctx);
+        when(res.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+
+        EmbeddedConnectionRetriever retriever = new EmbeddedConnectionRetriever(database);
+        AtomicReference<Future<?>> task = new AtomicReference<>();
+        FilterChain chain = (request, response) -> task.set(worker.submit(QueryTracer.propagate(() -> {
+            retriever.with(c -> new UserDAO(c).byUsername("alexbradd"));
+            retriever.with(c -> new UserDAO(c).byUsername("mario-rossi"));
+            try {
+                response.getWriter();
+            } catch (IOException e) {
+                fail(e);
+            }
+        })));
+        filter.doFilter(req, res, chain);
+        task.get().get();
+        assertNull(QueryTracer.current());
+
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(ctx).addListener(listener.capture());
+        listener.getValue().onComplete(new AsyncEvent(ctx));
+        ArgumentCaptor<String> summary = ArgumentCaptor.forClass(String.class);
+        verify(res).setHeader(eq(QueryTracingFilter.HEADER), summary.capture());
+        assertTrue(summary.getValue().startsWith("statements=2;"), summary.getValue());
+    }
+
+    @Test
+    void propagate_withoutTracer_returnsSameTask() {
+        Runnable task = () -> {
+        };
+        assertSame(task, QueryTracer.propagate(task));
+        assertThrows(NullPointerException.class, () -> QueryTracer.propagate(null));
+    }
+
+    @Test
+    void propagate_restoresTracerOfWorker() {
+        try (QueryTracer outer = QueryTracer.start()) {
+            Runnable task = QueryTracer.propagate(() -> assertSame(outer, QueryTracer.current()));
+            try (QueryTracer inner = QueryTracer.start()) {
+                task.run();
+                assertSame(inner, QueryTracer.current());
+            }
+        }
+    }
+}
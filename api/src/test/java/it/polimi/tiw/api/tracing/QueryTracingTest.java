@@ -0,0 +1,87 @@
+package it.polimi.tiw.api.tracing;
+
+import it.polimi.tiw.api.dbaccess.EmbeddedConnectionRetriever;
+import it.polimi.tiw.api.dbaccess.TransferDAO;
+import it.polimi.tiw.api.utils.IdUtils;
+import it.polimi.tiw.testdb.EmbeddedDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryTracingTest {
+    private EmbeddedDatabase database;
+
+    @BeforeEach
+    void setup() {
+        database = EmbeddedDatabase.create();
+        QueryTracing.setEnabled(true);
+    }
+
+    @AfterEach
+    void teardown() {
+        QueryTracing.setEnabled(false);
+        database.close();
+    }
+
+    @Test
+    void wrap_whenDisabled_returnsSameConnection() throws SQLException {
+        QueryTracing.setEnabled(false);
+        try (Connection c = database.getConnection()) {
+            assertSame(c, QueryTracing.wrap(c));
+        }
+    }
+
+    @Test
+    void tracer_countsStatementsOnCurrentThread() throws SQLException {
+        try (QueryTracer tracer = QueryTracer.start();
+             Connection c = QueryTracing.wrap(database.getConnection())) {
+            for (int i = 0; i < 3; i++)
+                try (PreparedStatement p = c.prepareStatement("select * from tiw_app.users where id = ?")) {
+                    p.setLong(1, i);
+                    try (ResultSet r = p.executeQuery()) {
+                        assertNotNull(r);
+                    }
+                }
+            assertSame(tracer, QueryTracer.current());
+            assertEquals(3, tracer.getStatementCount());
+            assertEquals(2, tracer.getRepeatedCount());
+            assertEquals(1, tracer.getExecutions().size());
+            assertTrue(tracer.summary().startsWith("statements=3; repeated=2;"));
+        }
+        assertNull(QueryTracer.current());
+    }
+
+    @Test
+    void tracer_nested_restoresOuter() {
+        try (QueryTracer outer = QueryTracer.start()) {
+            try (QueryTracer inner = QueryTracer.start()) {
+                assertSame(inner, QueryTracer.current());
+            }
+            assertSame(outer, QueryTracer.current());
+        }
+    }
+
+    @Test
+    void tracer_seesStatementsOfDAOs() {
+        EmbeddedConnectionRetriever retriever = new EmbeddedConnectionRetriever(database);
+        try (QueryTracer tracer = QueryTracer.start()) {
+            retriever.with(c -> TransferDAO.withNewObjects(c).inAndOutOf(IdUtils.toBase64(1)));
+            assertEquals(1, tracer.getStatementCount());
+        }
+    }
+
+    @Test
+    void redact_removesLiterals() {
+        assertEquals("select * from tiw_app.users where username = ? and id = ? or id = ?",
+                QueryTracing.redact("select * from tiw_app.users where username = 'o''brien' and id = 42 or id = ?"));
+        assertEquals("select max(id) from tiw_app.transfers",
+                QueryTracing.redact("select max(id) from tiw_app.transfers"));
+    }
+}
@@ -0,0 +1,162 @@
+package it.polimi.tiw.assets;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Build step that prepares the static resources of the application for long-term caching. Every file in the
+ * {@code js}, {@code css} and {@code img} directories of the web application is:
+ *
+ * <ol>
+ *     <li>minified, if it is a script or a style sheet (see {@link Minifier})</li>
+ *     <li>copied to {@code WEB-INF/assets} with the first {@value #HASH_LENGTH} hex digits of its SHA-256 in the
+ *     name, e.g. {@code js/index.0123456789.js}</li>
+ *     <li>compressed next to the copy with gzip at the highest level ({@code .gz}), if it is a text resource and
+ *     compression makes it smaller</li>
+ * </ol>
+ * <p>
+ * The references in {@code index.html} and {@code login.html} are then rewritten to point to the fingerprinted copies,
+ * which the ria webapp serves under {@code /assets}. The JDK has no Brotli encoder, so no {@code .br} variant is
+ * generated here; the webapp serves one if it is placed next to the other variants.
+ * <p>
+ * It is run by Maven during the {@code prepare-package} phase of the ria module with the web application directory
+ * and the output directory as arguments. It lives in its own module so that it is not shipped with the webapp.
+ */
+public class AssetPipeline {
+    /**
+     * Number of hex digits of the content hash used in file names
+     */
+    public static final int HASH_LENGTH = 10;
+    private static final List<String> ASSET_DIRECTORIES = List.of("js", "css", "img");
+    private static final List<String> PAGES = List.of("index.html", "login.html");
+    private static final List<String> COMPRESSIBLE = List.of(".js", ".css", ".svg", ".ico");
+    private static final Pattern REFERENCE = Pattern.compile("(src|href)=\"(/(?:js|css|img)/[^\"]+)\"");
+
+    private final Path source;
+    private final Path output;
+    private final Map<String, String> renamed = new TreeMap<>();
+
+    /**
+     * Creates a new pipeline
+     *
+     * @param source the web application directory
+     * @param output the directory in which the processed files are written
+     */
+    public AssetPipeline(Path source, Path output) {
+        this.source = source;
+        this.output = output;
+    }
+
+    /**
+     * Processes all the assets and rewrites the pages
+     *
+     * @return a map from the original path of each asset to the path it is served from
+     * @throws IOException if a file cannot be read or written
+     */
+    public Map<String, String> run() throws IOException {
+        Files.createDirectories(output);
+        for (String dir : ASSET_DIRECTORIES) {
+            Path root = source.resolve(dir);
+            if (!Files.isDirectory(root)) continue;
+            try (Stream<Path> files = Files.walk(root)) {
+                for (Path f : files.filter(Files::isRegularFile).sorted().toList())
+                    process(f);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        for (String page : PAGES) {
+            Path file = source.resolve(page);
+            if (Files.isRegularFile(file))
+                Files.writeString(output.resolve(page), rewrite(Files.readString(file)));
+        }
+        return renamed;
+    }
+
+    private void process(Path file) throws IOException {
+        String relative = source.relativize(file).toString().replace('\\', '/');
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String extension = dot < 0 ? "" : name.substring(dot);
+        byte[] content = Files.readAllBytes(file);
+        if (extension.equals(".js"))
+            content = Minifier.js(new String(content, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+        else if (extension.equals(".css"))
+            content = Minifier.css(new String(content, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+
+        String base = dot < 0 ? relative : relative.substring(0, relative.length() - extension.length());
+        String hashed = base + "." + hash(content) + extension;
+        Path target = output.resolve("WEB-INF/assets").resolve(hashed);
+        Files.createDirectories(target.getParent());
+        Files.write(target, content);
+        if (COMPRESSIBLE.contains(extension)) {
+            byte[] gzipped = gzip(content);
+            if (gzipped.length < content.length)
+                Files.write(target.resolveSibling(target.getFileName() + ".gz"), gzipped);
+        }
+        renamed.put("/" + relative, "/assets/" + hashed);
+    }
+
+    /**
+     * Replaces the references to assets in the given page with their fingerprinted paths
+     */
+    String rewrite(String page) {
+        Matcher m = REFERENCE.matcher(page);
+        StringBuilder out = new StringBuilder(page.length());
+        while (m.find()) {
+            String path = renamed.getOrDefault(m.group(2), m.group(2));
+            m.appendReplacement(out, Matcher.quoteReplacement(m.group(1) + "=\"" + path + "\""));
+        }
+        m.appendTail(out);
+        return out.toString();
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return HexFormat.of().formatHex(digest).substring(0, HASH_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length);
+        try (GZIPOutputStream gz = new GZIPOutputStream(bytes) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gz.write(content);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Runs the pipeline
+     *
+     * @param args the web application directory and the output directory
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2)
+            throw new IllegalArgumentException("Usage: AssetPipeline <webapp directory> <output directory>");
+        Map<String, String> renamed = new AssetPipeline(Path.of(args[0]), Path.of(args[1])).run();
+        renamed.forEach((from, to) -> System.out.println(from + " -> " + to));
+    }
+}
@@ -0,0 +1,146 @@
+package it.polimi.tiw.assets;
+
+/**
+ * Conservative minifier for the scripts and style sheets of the application. It only removes comments and whitespace
+ * that cannot change the meaning of the source: strings, template literals and regular expression literals are copied
+ * as they are, and line breaks in scripts are kept, so that automatic semicolon insertion behaves as before.
+ */
+final class Minifier {
+    private Minifier() {
+    }
+
+    /**
+     * Minifies a script: comments, indentation, trailing whitespace and empty lines are removed
+     *
+     * @param source the script
+     * @return the minified script
+     */
+    static String js(String source) {
+        StringBuilder out = new StringBuilder(source.length());
+        int i = 0;
+        int n = source.length();
+        char lastSignificant = '\n';
+        boolean lineStart = true;
+        while (i < n) {
+            char c = source.charAt(i);
+            if (c == '/' && i + 1 < n && source.charAt(i + 1) == '/') {
+                while (i < n && source.charAt(i) != '\n') i++;
+            } else if (c == '/' && i + 1 < n && source.charAt(i + 1) == '*') {
+                int end = source.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+            } else if (c == '\n') {
+                trimTrailing(out);
+                if (!lineStart) out.append('\n');
+                lineStart = true;
+                i++;
+            } else if (Character.isWhitespace(c)) {
+                if (!lineStart && !(i + 1 < n && Character.isWhitespace(source.charAt(i + 1))))
+                    out.append(' ');
+                i++;
+            } else if (c == '"' || c == '\'' || c == '`') {
+                i = copyQuoted(source, i, out);
+                lastSignificant = c;
+                lineStart = false;
+            } else if (c == '/' && startsRegex(lastSignificant)) {
+                i = copyRegex(source, i, out);
+                lastSignificant = '/';
+                lineStart = false;
+            } else {
+                out.append(c);
+                lastSignificant = c;
+                lineStart = false;
+                i++;
+            }
+        }
+        trimTrailing(out);
+        return out.toString();
+    }
+
+    /**
+     * Minifies a style sheet: comments are removed and whitespace is collapsed and dropped around punctuation
+     *
+     * @param source the style sheet
+     * @return the minified style sheet
+     */
+    static String css(String source) {
+        StringBuilder out = new StringBuilder(source.length());
+        int i = 0;
+        int n = source.length();
+        while (i < n) {
+            char c = source.charAt(i);
+            if (c == '/' && i + 1 < n && source.charAt(i + 1) == '*') {
+                int end = source.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+            } else if (c == '"' || c == '\'') {
+                i = copyQuoted(source, i, out);
+            } else if (Character.isWhitespace(c)) {
+                while (i < n && Character.isWhitespace(source.charAt(i))) i++;
+                char prev = out.length() == 0 ? '{' : out.charAt(out.length() - 1);
+                char next = i < n ? source.charAt(i) : '}';
+                if ("{};:,>".indexOf(prev) < 0 && "{};,>".indexOf(next) < 0)
+                    out.append(' ');
+            } else {
+                if (c == '}' && out.length() > 0 && out.charAt(out.length() - 1) == ';')
+                    out.setLength(out.length() - 1);
+                out.append(c);
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Returns true if a slash following the given character starts a regular expression literal rather than a division
+     */
+    private static boolean startsRegex(char lastSignificant) {
+        return "(,=:[!&|?{};+-*%<>~^\n".indexOf(lastSignificant) >= 0;
+    }
+
+    /**
+     * Copies the string starting at {@code start}, returning the index after its closing quote
+     */
+    private static int copyQuoted(String source, int start, StringBuilder out) {
+        char quote = source.charAt(start);
+        int i = start + 1;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (c == '\\') i += 2;
+            else if (c == quote) {
+                i++;
+                break;
+            } else i++;
+        }
+        i = Math.min(i, source.length());
+        out.append(source, start, i);
+        return i;
+    }
+
+    /**
+     * Copies the regular expression literal starting at {@code start}, returning the index after its flags
+     */
+    private static int copyRegex(String source, int start, StringBuilder out) {
+        int i = start + 1;
+        boolean inClass = false;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (c == '\\') i += 2;
+            else {
+                i++;
+                if (c == '[') inClass = true;
+                else if (c == ']') inClass = false;
+                else if (c == '/' && !inClass) break;
+                else if (c == '\n') break;
+            }
+        }
+        while (i < source.length() && Character.isLetter(source.charAt(i))) i++;
+        i = Math.min(i, source.length());
+        out.append(source, start, i);
+        return i;
+    }
+
+    private static void trimTrailing(StringBuilder out) {
+        int len = out.length();
+        while (len > 0 && out.charAt(len - 1) == ' ') len--;
+        out.setLength(len);
+    }
+}
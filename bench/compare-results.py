@@ -0,0 +1,63 @@
+#!/usr/bin/env python3
+"""Compares two JMH JSON result files and reports regressions.
+
+Usage: compare-results.py BASELINE CURRENT [--threshold PERCENT]
+
+Exits with status 1 if any benchmark got slower than the threshold (default 10%).
+"""
+import argparse
+import json
+import sys
+
+# For these modes a lower score is better, for the others (thrpt) a higher one is
+LOWER_IS_BETTER = {"avgt", "sample", "ss"}
+
+
+def load(path):
+    with open(path) as f:
+        results = json.load(f)
+    ret = {}
+    for r in results:
+        params = r.get("params") or {}
+        key = r["benchmark"]
+        if params:
+            key += "(" + ", ".join(f"{k}={v}" for k, v in sorted(params.items())) + ")"
+        ret[key] = (r["mode"], r["primaryMetric"]["score"], r["primaryMetric"]["scoreUnit"])
+    return ret
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Compare two JMH JSON result files")
+    parser.add_argument("baseline")
+    parser.add_argument("current")
+    parser.add_argument("--threshold", type=float, default=10.0,
+                        help="percentage after which a slowdown is considered a regression")
+    args = parser.parse_args()
+
+    baseline = load(args.baseline)
+    current = load(args.current)
+    regressions = 0
+    for key in sorted(set(baseline) | set(current)):
+        if key not in baseline:
+            print(f"NEW        {key}")
+            continue
+        if key not in current:
+            print(f"MISSING    {key}")
+            continue
+        mode, old, unit = baseline[key]
+        _, new, _ = current[key]
+        if old == 0:
+            continue
+        change = (new - old) / old * 100
+        slowdown = change if mode in LOWER_IS_BETTER else -change
+        status = "REGRESSION" if slowdown > args.threshold else "ok"
+        if slowdown > args.threshold:
+            regressions += 1
+        print(f"{status:<10} {key}: {old:.3f} -> {new:.3f} {unit} ({change:+.1f}%)")
+    if regressions:
+        print(f"{regressions} regression(s) above {args.threshold}%")
+    return 1 if regressions else 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
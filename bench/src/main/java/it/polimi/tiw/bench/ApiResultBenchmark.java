@@ -0,0 +1,45 @@
+package it.polimi.tiw.bench;
+
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of chaining {@link ApiResult}s, the way facades and servlets do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ApiResultBenchmark {
+    private int value;
+
+    @Setup
+    public void setup() {
+        value = 42;
+    }
+
+    @Benchmark
+    public int successChain() {
+        return ApiResult.ok(value)
+                .map(i -> i + 1)
+                .flatMap(i -> ApiResult.ok(i * 2))
+                .peek(i -> ApiResult.ok(i))
+                .then(() -> ApiResult.ok(value))
+                .match(i -> i, e -> -1);
+    }
+
+    @Benchmark
+    public int failureChain() {
+        return ApiResult.ok(value)
+                .flatMap(i -> ApiResult.<Integer>error(Errors.fromNotFound("id")))
+                .map(i -> i + 1)
+                .flatMap(i -> ApiResult.ok(i * 2))
+                .then(() -> ApiResult.ok(value))
+                .match(i -> i, e -> e.statusCode());
+    }
+}
@@ -0,0 +1,40 @@
+package it.polimi.tiw.bench;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import it.polimi.tiw.ria.auth.AuthUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures creation and verification of access tokens. Verification happens on every authenticated request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthUtilsBenchmark {
+    private static final String ISSUER = "bench";
+    private static final String SECRET = "bench-secret";
+
+    private String userId;
+    private String token;
+
+    @Setup
+    public void setup() {
+        userId = "AAAAAAAAAAE";
+        token = AuthUtils.newToken(userId, ISSUER, SECRET);
+    }
+
+    @Benchmark
+    public String newToken() {
+        return AuthUtils.newToken(userId, ISSUER, SECRET);
+    }
+
+    @Benchmark
+    public DecodedJWT verifyToken() {
+        return AuthUtils.verifyToken(token, ISSUER, SECRET);
+    }
+}
@@ -0,0 +1,38 @@
+package it.polimi.tiw.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar. It accepts the same arguments as JMH's own main, but if no result format is
+ * specified, results are written as JSON to {@code jmh-result.json} so that they can be fed to
+ * {@code compare-results.py}.
+ */
+public class BenchmarkMain {
+    /**
+     * Default file in which results are written
+     */
+    public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    /**
+     * Runs the benchmarks
+     *
+     * @param args JMH command line arguments
+     * @throws RunnerException             if something went wrong while running the benchmarks
+     * @throws CommandLineOptionException if the arguments are malformed
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        ChainedOptionsBuilder opts = new OptionsBuilder().parent(cmd);
+        if (!cmd.getResultFormat().hasValue())
+            opts.resultFormat(ResultFormatType.JSON);
+        if (!cmd.getResult().hasValue())
+            opts.result(DEFAULT_RESULT_FILE);
+        new Runner(opts.build()).run();
+    }
+}
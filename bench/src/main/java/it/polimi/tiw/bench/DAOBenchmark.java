@@ -0,0 +1,85 @@
+package it.polimi.tiw.bench;
+
+import it.polimi.tiw.api.beans.Account;
+import it.polimi.tiw.api.beans.Transfer;
+import it.polimi.tiw.api.beans.User;
+import it.polimi.tiw.api.dbaccess.AccountDAO;
+import it.polimi.tiw.testdb.EmbeddedDatabase;
+import it.polimi.tiw.api.dbaccess.TransferDAO;
+import it.polimi.tiw.api.dbaccess.UserDAO;
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.functional.Tuple;
+import it.polimi.tiw.api.utils.IdUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the DAO queries on the hot paths (login, account list, account details, new transfer) against an
+ * in-memory database populated from {@code testDB.sql}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DAOBenchmark {
+    private EmbeddedDatabase database;
+    private Connection connection;
+    private UserDAO userDAO;
+    private AccountDAO accountDAO;
+    private TransferDAO transferDAO;
+
+    private String userId;
+    private String firstAccount;
+    private String secondAccount;
+    private boolean forward;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        database = EmbeddedDatabase.create();
+        connection = database.getConnection();
+        userDAO = new UserDAO(connection);
+        accountDAO = new AccountDAO(connection);
+        transferDAO = new TransferDAO(connection, accountDAO);
+        userId = IdUtils.toBase64(1);
+        firstAccount = IdUtils.toBase64(1);
+        secondAccount = IdUtils.toBase64(2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+        database.close();
+    }
+
+    @Benchmark
+    public ApiResult<User> userByUsername() {
+        return userDAO.byUsername("alexbradd");
+    }
+
+    @Benchmark
+    public ApiResult<List<Account>> accountsOfUser() {
+        return accountDAO.ofUser(userId);
+    }
+
+    @Benchmark
+    public ApiResult<Tuple<List<Transfer>, List<Transfer>>> inAndOutOf() {
+        return transferDAO.inAndOutOf(firstAccount);
+    }
+
+    /**
+     * Money goes back and forth between the same two accounts, so that balances never run out
+     */
+    @Benchmark
+    public ApiResult<Transfer> newTransfer() {
+        forward = !forward;
+        return forward
+                ? transferDAO.newTransfer(firstAccount, secondAccount, 1, "bench")
+                : transferDAO.newTransfer(secondAccount, firstAccount, 1, "bench");
+    }
+}
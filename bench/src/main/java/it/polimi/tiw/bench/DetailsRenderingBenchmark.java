@@ -0,0 +1,170 @@
+package it.polimi.tiw.bench;
+
+import it.polimi.tiw.api.beans.Account;
+import it.polimi.tiw.api.dbaccess.AccountDAO;
+import it.polimi.tiw.api.dbaccess.TransferCursor;
+import it.polimi.tiw.api.dbaccess.TransferDAO;
+import it.polimi.tiw.api.utils.IdUtils;
+import it.polimi.tiw.templated.ChunkedRenderer;
+import it.polimi.tiw.templated.History;
+import it.polimi.tiw.templated.SessionPrincipal;
+import it.polimi.tiw.testdb.EmbeddedDatabase;
+import org.openjdk.jmh.annotations.*;
+import org.thymeleaf.IThrottledTemplateProcessor;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.extras.java8time.dialect.Java8TimeDialect;
+import org.thymeleaf.linkbuilder.StandardLinkBuilder;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the time to first byte of the account details page when transfers are read into lists before rendering and
+ * when they are read through {@link TransferCursor}s while rendering. The {@code firstChunk} benchmarks stop after the
+ * first chunk that {@link ChunkedRenderer} would flush to the client, the {@code full} ones render the whole page.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DetailsRenderingBenchmark {
+    private static final long FIRST_ID = 1_000_000;
+
+    @Param({"100", "10000"})
+    public int transfers;
+
+    private EmbeddedDatabase database;
+    private Connection connection;
+    private TransferDAO transferDAO;
+    private TemplateEngine engine;
+    private Account account;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        database = EmbeddedDatabase.create();
+        connection = database.getConnection();
+        String sql = "insert into tiw_app.transfers(id, date, amount, toId, toBalance, fromId, fromBalance, causal) " +
+                "values(?, ?, 1, ?, 1000, ?, 1000, 'bench')";
+        try (PreparedStatement s = connection.prepareStatement(sql)) {
+            Instant start = Instant.now();
+            for (int i = 0; i < transfers; i++) {
+                s.setLong(1, FIRST_ID + i);
+                s.setTimestamp(2, Timestamp.from(start.minusSeconds(i)));
+                s.setLong(3, i % 2 == 0 ? 1 : 2);
+                s.setLong(4, i % 2 == 0 ? 2 : 1);
+                s.addBatch();
+            }
+            s.executeBatch();
+        }
+        AccountDAO accountDAO = new AccountDAO(connection);
+        transferDAO = new TransferDAO(connection, accountDAO);
+        account = accountDAO.byId(IdUtils.toBase64(1)).get();
+
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        engine = new TemplateEngine();
+        engine.addDialect(new Java8TimeDialect());
+        engine.setTemplateResolver(resolver);
+        engine.setLinkBuilder(new StandardLinkBuilder() {
+            @Override
+            protected String computeContextPath(IExpressionContext context, String base,
+                                                Map<String, Object> parameters) {
+                return "";
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+        database.close();
+    }
+
+    @Benchmark
+    public String materialisedFirstChunk() {
+        var lists = transferDAO.inAndOutOf(account.getBase64Id()).get();
+        return firstChunk(new ListCursor<>(lists.getFirst()), new ListCursor<>(lists.getSecond()));
+    }
+
+    @Benchmark
+    public String streamingFirstChunk() {
+        try (TransferCursor in = transferDAO.incomingTo(account.getBase64Id()).get();
+             TransferCursor out = transferDAO.outgoingFrom(account.getBase64Id()).get()) {
+            return firstChunk(in, out);
+        }
+    }
+
+    @Benchmark
+    public void materialisedFull() throws IOException {
+        var lists = transferDAO.inAndOutOf(account.getBase64Id()).get();
+        ChunkedRenderer.render(engine, "details",
+                context(new ListCursor<>(lists.getFirst()), new ListCursor<>(lists.getSecond())),
+                Writer.nullWriter(), ChunkedRenderer.DEFAULT_CHUNK_SIZE);
+    }
+
+    @Benchmark
+    public void streamingFull() throws IOException {
+        try (TransferCursor in = transferDAO.incomingTo(account.getBase64Id()).get();
+             TransferCursor out = transferDAO.outgoingFrom(account.getBase64Id()).get()) {
+            ChunkedRenderer.render(engine, "details", context(in, out),
+                    Writer.nullWriter(), ChunkedRenderer.DEFAULT_CHUNK_SIZE);
+        }
+    }
+
+    private String firstChunk(Iterator<?> incoming, Iterator<?> outgoing) {
+        StringWriter out = new StringWriter();
+        IThrottledTemplateProcessor processor = engine.processThrottled("details", context(incoming, outgoing));
+        processor.process(ChunkedRenderer.DEFAULT_CHUNK_SIZE, out);
+        return out.toString();
+    }
+
+    private Context context(Iterator<?> incoming, Iterator<?> outgoing) {
+        Context ctx = new Context(Locale.ENGLISH);
+        ctx.setVariable("session", Map.of(
+                "history", new History(),
+                "user", new SessionPrincipal(1, "bench", "Bench User")));
+        ctx.setVariable("account", account);
+        ctx.setVariable("incoming", incoming);
+        ctx.setVariable("outgoing", outgoing);
+        ctx.setVariable("accountList", List.of());
+        return ctx;
+    }
+
+    /**
+     * Public iterator over a list, so that the template can call {@link #hasNext()} on it as it does on cursors
+     */
+    public static class ListCursor<T> implements Iterator<T> {
+        private final Iterator<T> iterator;
+
+        ListCursor(List<T> list) {
+            this.iterator = list.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return iterator.next();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package it.polimi.tiw.bench;
+
+import it.polimi.tiw.api.utils.IdUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding and decoding of ids, which happens for every row read or written by the DAOs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdUtilsBenchmark {
+    private long id;
+    private String base64Id;
+
+    @Setup
+    public void setup() {
+        id = 123456789L;
+        base64Id = IdUtils.toBase64(id);
+    }
+
+    @Benchmark
+    public String toBase64() {
+        return IdUtils.toBase64(id);
+    }
+
+    @Benchmark
+    public long fromBase64() {
+        return IdUtils.fromBase64(base64Id);
+    }
+
+    @Benchmark
+    public boolean isValidBase64() {
+        return IdUtils.isValidBase64(base64Id);
+    }
+}
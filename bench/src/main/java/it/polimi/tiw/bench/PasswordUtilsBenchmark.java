@@ -0,0 +1,36 @@
+package it.polimi.tiw.bench;
+
+import it.polimi.tiw.api.utils.PasswordUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures password hashing (done on registration) and matching (done on every login).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordUtilsBenchmark {
+    private String clear;
+    private String hashed;
+
+    @Setup
+    public void setup() {
+        clear = "a reasonably long password";
+        hashed = PasswordUtils.toHash(clear);
+    }
+
+    @Benchmark
+    public String toHash() {
+        return PasswordUtils.toHash(clear);
+    }
+
+    @Benchmark
+    public boolean match() {
+        return PasswordUtils.match(hashed, clear);
+    }
+}
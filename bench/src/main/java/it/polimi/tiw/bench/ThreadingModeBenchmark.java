@@ -0,0 +1,154 @@
+package it.polimi.tiw.bench;
+
+import it.polimi.tiw.api.beans.User;
+import it.polimi.tiw.api.dbaccess.BoundedConnectionRetriever;
+import it.polimi.tiw.api.dbaccess.ConnectionRetriever;
+import it.polimi.tiw.api.dbaccess.UserDAO;
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.utils.IdUtils;
+import it.polimi.tiw.api.utils.VirtualThreads;
+import it.polimi.tiw.testdb.EmbeddedDatabase;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Compares how long it takes to serve a burst of concurrent clients when requests run on a pool of platform threads,
+ * sized like the default connector of Tomcat, and when each request runs on its own virtual thread. Every request
+ * waits {@value #IO_MILLIS} ms outside the database, standing for reading the request and writing the response to a
+ * slow client, then reads a user holding one of {@value #CONNECTIONS} connections for {@value #QUERY_MILLIS} ms more,
+ * standing for the round trip to the database server.
+ * <p>
+ * The {@code virtual} mode needs Java 21 or later: on older JVMs its setup fails.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ThreadingModeBenchmark {
+    static final int PLATFORM_THREADS = 200;
+    static final int CONNECTIONS = 16;
+    static final long IO_MILLIS = 20;
+    static final long QUERY_MILLIS = 1;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"1000", "10000"})
+    public int clients;
+
+    private EmbeddedDatabase database;
+    private ConnectionRetriever retriever;
+    private ExecutorService executor;
+    private String[] userIds;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        database = EmbeddedDatabase.create();
+        retriever = new BoundedConnectionRetriever(new DatabaseRetriever(database), CONNECTIONS,
+                Duration.ofMinutes(1));
+        executor = switch (mode) {
+            case "platform" -> Executors.newFixedThreadPool(PLATFORM_THREADS);
+            case "virtual" -> VirtualThreads.newExecutor();
+            default -> throw new IllegalArgumentException("Unknown mode " + mode);
+        };
+        userIds = new String[]{IdUtils.toBase64(1), IdUtils.toBase64(2), IdUtils.toBase64(3)};
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        database.close();
+    }
+
+    /**
+     * Serves every client once and returns the number of requests that failed
+     */
+    @Benchmark
+    public int burst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(clients);
+        AtomicInteger failed = new AtomicInteger();
+        for (int i = 0; i < clients; i++) {
+            String userId = userIds[i % userIds.length];
+            executor.execute(() -> {
+                try {
+                    request(userId).consume(__ -> {
+                    }, __ -> failed.incrementAndGet());
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        return failed.get();
+    }
+
+    private ApiResult<User> request(String userId) {
+        if (!pause(IO_MILLIS)) return ApiResult.error(Errors.fromServiceUnavailable());
+        return retriever.with(c -> {
+            ApiResult<User> user = new UserDAO(c).byId(userId);
+            return pause(QUERY_MILLIS) ? user : ApiResult.error(Errors.fromServiceUnavailable());
+        });
+    }
+
+    private static boolean pause(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * {@link ConnectionRetriever} opening a new connection to the embedded database each time
+     */
+    private static final class DatabaseRetriever implements ConnectionRetriever {
+        private final EmbeddedDatabase database;
+
+        DatabaseRetriever(EmbeddedDatabase database) {
+            this.database = database;
+        }
+
+        @Override
+        public ApiResult<Connection> get() {
+            try {
+                return ApiResult.ok(database.getConnection());
+            } catch (SQLException e) {
+                return ApiResult.error(Errors.fromSQLException(e));
+            }
+        }
+
+        @Override
+        public <T> ApiResult<T> with(Function<Connection, ApiResult<T>> mapper) {
+            return get().match(c -> {
+                try {
+                    return mapper.apply(c);
+                } finally {
+                    close(c);
+                }
+            }, ApiResult::error);
+        }
+
+        @Override
+        public void close(Connection connection) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package it.polimi.tiw.bench;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import it.polimi.tiw.api.beans.BeanTypeAdapters;
+import it.polimi.tiw.api.beans.InstantTypeAdapter;
+import it.polimi.tiw.api.beans.Transfer;
+import it.polimi.tiw.api.utils.IdUtils;
+import it.polimi.tiw.ria.servlet.ServletUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the serialization of an account's history to JSON, as done by the account details endpoint, with the
+ * streaming adapters of {@link BeanTypeAdapters} and with reflection. Run it with {@code -prof gc} to compare the bytes
+ * allocated per operation ({@code gc.alloc.rate.norm}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferSerializationBenchmark {
+    @Param({"10", "100", "1000"})
+    private int size;
+
+    private Gson gson;
+    private Gson reflective;
+    private List<Transfer> transfers;
+
+    @Setup
+    public void setup() {
+        gson = BeanTypeAdapters.newGson();
+        reflective = new GsonBuilder()
+                .registerTypeAdapter(Instant.class, new InstantTypeAdapter())
+                .create();
+        transfers = new ArrayList<>(size);
+        Instant now = Instant.now();
+        for (int i = 0; i < size; i++) {
+            Transfer t = new Transfer();
+            t.setBase64Id(IdUtils.toBase64(i));
+            t.setDate(now.minusSeconds(i));
+            t.setAmount(i + 0.5);
+            t.setToId(IdUtils.toBase64(1));
+            t.setToBalance(1000 + i);
+            t.setFromId(IdUtils.toBase64(2));
+            t.setFromBalance(1000 - i);
+            t.setCausal("Transfer number " + i);
+            transfers.add(t);
+        }
+    }
+
+    @Benchmark
+    public String toJson() {
+        return gson.toJson(transfers);
+    }
+
+    @Benchmark
+    public JsonArray listToJsonArray() {
+        return ServletUtils.listToJsonArray(gson, transfers);
+    }
+
+    @Benchmark
+    public String singleToJson() {
+        return gson.toJson(transfers.get(0), Transfer.class);
+    }
+
+    @Benchmark
+    public String reflectiveToJson() {
+        return reflective.toJson(transfers);
+    }
+
+    @Benchmark
+    public JsonArray reflectiveListToJsonArray() {
+        return ServletUtils.listToJsonArray(reflective, transfers);
+    }
+
+    @Benchmark
+    public String reflectiveSingleToJson() {
+        return reflective.toJson(transfers.get(0), Transfer.class);
+    }
+}
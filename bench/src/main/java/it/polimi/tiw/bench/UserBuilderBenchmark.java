@@ -0,0 +1,58 @@
+package it.polimi.tiw.bench;
+
+import it.polimi.tiw.api.beans.User;
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.utils.PasswordUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the construction of {@link User}s: from database rows (salted password) and from registration requests
+ * (clear password, which gets hashed).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserBuilderBenchmark {
+    private String saltedPassword;
+
+    @Setup
+    public void setup() {
+        saltedPassword = PasswordUtils.toHash("password");
+    }
+
+    @Benchmark
+    public ApiResult<User> buildFromDatabase() {
+        return new User.Builder()
+                .addId("AAAAAAAAAAE")
+                .addUsername("mario-rossi")
+                .addPassword(saltedPassword)
+                .addEmail("mario.rossi@mail.com")
+                .addName("Mario")
+                .addSurname("Rossi")
+                .build();
+    }
+
+    @Benchmark
+    public ApiResult<User> buildFromRegistration() {
+        return new User.Builder()
+                .addUsername("mario-rossi")
+                .addPassword("password", "password")
+                .addEmail("mario.rossi@mail.com")
+                .addName("Mario")
+                .addSurname("Rossi")
+                .build();
+    }
+
+    @Benchmark
+    public ApiResult<User> buildInvalid() {
+        return new User.Builder()
+                .addUsername("mario-rossi")
+                .addEmail("not an email")
+                .build();
+    }
+}
@@ -0,0 +1,177 @@
+package it.polimi.tiw.loadtest;
+
+import it.polimi.tiw.api.utils.VirtualThreads;
+import it.polimi.tiw.ria.servlet.LoginServlet;
+import it.polimi.tiw.testdb.EmbeddedDatabase;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.loader.WebappLoader;
+import org.apache.catalina.startup.Constants;
+import org.apache.catalina.startup.ContextConfig;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.ApplicationParameter;
+import org.apache.tomcat.util.descriptor.web.ContextResource;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+
+import javax.servlet.annotation.WebInitParam;
+import javax.servlet.annotation.WebServlet;
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Embedded Tomcat running the ria webapp. The webapp is deployed from its sources, reading its {@code web.xml}, while
+ * servlets are registered from their {@link WebServlet} annotations. The {@code jdbc/productionDb} resource points to
+ * an {@link EmbeddedDatabase}.
+ * <p>
+ * If {@link LoadTestConfig#virtualThreads} is set and the JVM supports them, the connector and the database executor
+ * of the webapp run requests on virtual threads.
+ */
+public class EmbeddedServer implements AutoCloseable {
+    private static final String CLASSES_PACKAGE = "it/polimi/tiw/ria/";
+
+    private final Tomcat tomcat;
+
+    /**
+     * Creates and starts a new server
+     *
+     * @param config   the load test configuration
+     * @param database the database used by the webapp
+     * @throws LifecycleException if the server could not be started
+     * @throws IOException        if the working directory of the server could not be created
+     */
+    public EmbeddedServer(LoadTestConfig config, EmbeddedDatabase database) throws LifecycleException, IOException {
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("tiw-loadtest").toString());
+        tomcat.setPort(config.port);
+        boolean virtual = config.virtualThreads && VirtualThreads.isAvailable();
+        if (virtual)
+            tomcat.getConnector().setProperty("useVirtualThreads", "true");
+        else
+            tomcat.getConnector();
+        tomcat.enableNaming();
+
+        StandardContext ctx = new StandardContext();
+        ctx.setName("");
+        ctx.setPath("");
+        ctx.setDocBase(config.webapp.getAbsolutePath());
+
+        ContextConfig contextConfig = new ContextConfig();
+        contextConfig.setDefaultWebXml(Constants.NoDefaultWebXml);
+        ctx.addLifecycleListener(contextConfig);
+
+        StandardJarScanner scanner = new StandardJarScanner();
+        scanner.setScanClassPath(false);
+        ctx.setJarScanner(scanner);
+
+        WebappLoader loader = new WebappLoader();
+        loader.setDelegate(true);
+        ctx.setLoader(loader);
+        ctx.setParentClassLoader(EmbeddedServer.class.getClassLoader());
+
+        registerServlets(ctx);
+        if (virtual) {
+            ApplicationParameter executor = new ApplicationParameter();
+            executor.setName("DB_EXECUTOR");
+            executor.setValue("virtual");
+            executor.setOverride(false);
+            ctx.addApplicationParameter(executor);
+        }
+
+        ContextResource ds = new ContextResource();
+        ds.setName("jdbc/productionDb");
+        ds.setAuth("Container");
+        ds.setType(DataSource.class.getName());
+        ds.setProperty("driverClassName", "org.h2.Driver");
+        ds.setProperty("url", database.getUrl());
+        ds.setProperty("maxTotal", Integer.toString(config.poolSize));
+        ds.setProperty("maxIdle", Integer.toString(config.poolSize));
+        ds.setProperty("maxWaitMillis", "10000");
+        ctx.getNamingResources().addResource(ds);
+
+        tomcat.getHost().addChild(ctx);
+        tomcat.start();
+    }
+
+    /**
+     * Registers every servlet of the ria webapp as the container would do when scanning its annotations. The classes
+     * are looked up in the jar or directory containing the ria classes.
+     */
+    private static void registerServlets(Context ctx) throws IOException {
+        for (String className : findClasses()) {
+            Class<?> c;
+            try {
+                c = Class.forName(className, false, EmbeddedServer.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Cannot load " + className, e);
+            }
+            WebServlet annotation = c.getAnnotation(WebServlet.class);
+            if (annotation == null) continue;
+            String name = annotation.name().isEmpty() ? c.getName() : annotation.name();
+            Wrapper wrapper = Tomcat.addServlet(ctx, name, c.getName());
+            wrapper.setAsyncSupported(annotation.asyncSupported());
+            wrapper.setLoadOnStartup(annotation.loadOnStartup());
+            for (WebInitParam param : annotation.initParams())
+                wrapper.addInitParameter(param.name(), param.value());
+            for (String pattern : annotation.value())
+                ctx.addServletMappingDecoded(pattern, name);
+            for (String pattern : annotation.urlPatterns())
+                ctx.addServletMappingDecoded(pattern, name);
+        }
+    }
+
+    /**
+     * Lists the names of the classes inside the ria package
+     */
+    private static List<String> findClasses() throws IOException {
+        Path location;
+        try {
+            location = Path.of(LoginServlet.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Cannot locate the ria classes", e);
+        }
+        List<String> entries = new ArrayList<>();
+        if (Files.isDirectory(location)) {
+            try (Stream<Path> files = Files.walk(location)) {
+                files.map(f -> location.relativize(f).toString().replace(File.separatorChar, '/'))
+                        .forEach(entries::add);
+            }
+        } else {
+            try (JarFile jar = new JarFile(location.toFile())) {
+                jar.stream().map(JarEntry::getName).forEach(entries::add);
+            }
+        }
+        return entries.stream()
+                .filter(e -> e.startsWith(CLASSES_PACKAGE) && e.endsWith(".class"))
+                .map(e -> e.substring(0, e.length() - ".class".length()).replace('/', '.'))
+                .toList();
+    }
+
+    /**
+     * Returns the port on which the server is listening
+     *
+     * @return the port on which the server is listening
+     */
+    public int getPort() {
+        return tomcat.getConnector().getLocalPort();
+    }
+
+    /**
+     * Stops the server
+     */
+    @Override
+    public void close() throws LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+    }
+}
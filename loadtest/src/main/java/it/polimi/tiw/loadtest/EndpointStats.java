@@ -0,0 +1,93 @@
+package it.polimi.tiw.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency statistics of a single endpoint. Two histograms are kept, both in microseconds:
+ *
+ * <ul>
+ *     <li>
+ *         service time: measured from when the request was actually sent. This is what most load generators report
+ *         and it suffers from coordinated omission, since a slow server also delays the sending of later requests;
+ *     </li>
+ *     <li>
+ *         response time: measured from when the request should have been sent according to the arrival schedule.
+ *         This is corrected for coordinated omission and is what a user would experience.
+ *     </li>
+ * </ul>
+ */
+public class EndpointStats {
+    private static final long HIGHEST_TRACKABLE = TimeUnit.MINUTES.toMicros(5);
+
+    private final String endpoint;
+    private final Histogram serviceTime = new ConcurrentHistogram(HIGHEST_TRACKABLE, 3);
+    private final Histogram responseTime = new ConcurrentHistogram(HIGHEST_TRACKABLE, 3);
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Creates a new, empty, EndpointStats
+     *
+     * @param endpoint the path of the endpoint
+     */
+    public EndpointStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Records a request
+     *
+     * @param intendedStart when the request should have been sent, as given by {@link System#nanoTime()}
+     * @param actualStart   when the request was sent
+     * @param end           when the response was received
+     * @param ok            whether the request succeeded
+     */
+    public void record(long intendedStart, long actualStart, long end, boolean ok) {
+        serviceTime.recordValue(Math.min(toMicros(end - actualStart), HIGHEST_TRACKABLE));
+        responseTime.recordValue(Math.min(toMicros(end - Math.min(intendedStart, actualStart)), HIGHEST_TRACKABLE));
+        if (!ok) errors.increment();
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 0);
+    }
+
+    /**
+     * Returns the path of the endpoint
+     *
+     * @return the path of the endpoint
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Returns the histogram of the uncorrected latencies
+     *
+     * @return the histogram of the uncorrected latencies
+     */
+    public Histogram getServiceTime() {
+        return serviceTime;
+    }
+
+    /**
+     * Returns the histogram of the latencies corrected for coordinated omission
+     *
+     * @return the histogram of the corrected latencies
+     */
+    public Histogram getResponseTime() {
+        return responseTime;
+    }
+
+    /**
+     * Returns the number of requests that did not receive a 200 response
+     *
+     * @return the number of failed requests
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+}
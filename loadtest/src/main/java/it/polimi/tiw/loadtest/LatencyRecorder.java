@@ -0,0 +1,77 @@
+package it.polimi.tiw.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects the {@link EndpointStats} of every endpoint hit during a run and reports them.
+ */
+public class LatencyRecorder {
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Records a request made to the given endpoint
+     *
+     * @param endpoint      the path of the endpoint
+     * @param intendedStart when the request should have been sent, as given by {@link System#nanoTime()}
+     * @param actualStart   when the request was sent
+     * @param end           when the response was received
+     * @param ok            whether the request succeeded
+     */
+    public void record(String endpoint, long intendedStart, long actualStart, long end, boolean ok) {
+        stats.computeIfAbsent(endpoint, EndpointStats::new).record(intendedStart, actualStart, end, ok);
+    }
+
+    /**
+     * Prints a summary table with the uncorrected and corrected percentiles of each endpoint
+     *
+     * @param out where to print
+     */
+    public void print(PrintStream out) {
+        out.printf(Locale.ROOT, "%-28s %8s %6s | %-38s | %-38s%n",
+                "endpoint", "count", "errors", "service time p50/p99/p99.9/max (ms)", "response time p50/p99/p99.9/max (ms)");
+        for (EndpointStats s : new TreeMap<>(stats).values())
+            out.printf(Locale.ROOT, "%-28s %8d %6d | %-38s | %-38s%n",
+                    s.getEndpoint(),
+                    s.getServiceTime().getTotalCount(),
+                    s.getErrors(),
+                    summary(s.getServiceTime()),
+                    summary(s.getResponseTime()));
+    }
+
+    private static String summary(Histogram h) {
+        return String.format(Locale.ROOT, "%.2f / %.2f / %.2f / %.2f",
+                h.getValueAtPercentile(50) / 1000.0,
+                h.getValueAtPercentile(99) / 1000.0,
+                h.getValueAtPercentile(99.9) / 1000.0,
+                h.getMaxValue() / 1000.0);
+    }
+
+    /**
+     * Writes the full percentile distribution of each endpoint in the given directory, in the {@code .hgrm} format
+     * understood by the HdrHistogram plotter. Values are in milliseconds.
+     *
+     * @param directory the output directory
+     * @throws IOException if the files could not be written
+     */
+    public void write(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+        for (EndpointStats s : stats.values()) {
+            String name = s.getEndpoint().replaceAll("^/", "").replace('/', '_');
+            try (PrintStream out = new PrintStream(new File(directory, name + ".service.hgrm"))) {
+                s.getServiceTime().outputPercentileDistribution(out, 1000.0);
+            }
+            try (PrintStream out = new PrintStream(new File(directory, name + ".response.hgrm"))) {
+                s.getResponseTime().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+}
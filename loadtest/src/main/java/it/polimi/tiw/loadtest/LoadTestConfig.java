@@ -0,0 +1,103 @@
+package it.polimi.tiw.loadtest;
+
+import java.io.File;
+import java.time.Duration;
+
+/**
+ * Parameters of a load test run. Every parameter is read from a system property prefixed by {@code loadtest.}, e.g.
+ * {@code -Dloadtest.rate=100}.
+ */
+public class LoadTestConfig {
+    /**
+     * Port on which the server listens, 0 for a random one
+     */
+    public final int port = Integer.getInteger("loadtest.port", 0);
+    /**
+     * Directory containing the ria webapp (the one with {@code WEB-INF/web.xml})
+     */
+    public final File webapp = findWebapp(System.getProperty("loadtest.webapp"));
+    /**
+     * Directory where reports are written
+     */
+    public final File output = new File(System.getProperty("loadtest.output", "loadtest-results"));
+    /**
+     * Maximum number of connections in the database pool
+     */
+    public final int poolSize = Integer.getInteger("loadtest.poolSize", 20);
+    /**
+     * Number of users seeded
+     */
+    public final int users = Integer.getInteger("loadtest.users", 1000);
+    /**
+     * Number of accounts seeded for each user
+     */
+    public final int accountsPerUser = Integer.getInteger("loadtest.accountsPerUser", 2);
+    /**
+     * Number of transfers seeded for each account
+     */
+    public final int transfersPerAccount = Integer.getInteger("loadtest.transfersPerAccount", 20);
+    /**
+     * Number of contacts seeded for each user
+     */
+    public final int contactsPerUser = Integer.getInteger("loadtest.contactsPerUser", 3);
+    /**
+     * Average number of new user sessions started each second
+     */
+    public final double rate = Double.parseDouble(System.getProperty("loadtest.rate", "20"));
+    /**
+     * For how long new sessions are started
+     */
+    public final Duration duration = Duration.ofSeconds(Long.getLong("loadtest.duration", 30L));
+    /**
+     * Average pause between two requests of the same session
+     */
+    public final Duration thinkTime = Duration.ofMillis(Long.getLong("loadtest.thinkMs", 100L));
+    /**
+     * Maximum number of sessions running at the same time. Arrivals over this limit are dropped and reported
+     */
+    public final int maxSessions = Integer.getInteger("loadtest.maxSessions", 10000);
+    /**
+     * Number of threads used by the HTTP client
+     */
+    public final int clientThreads = Integer.getInteger("loadtest.clientThreads", 8);
+    /**
+     * Whether a Flight Recorder recording of the server is written to the output directory
+     */
+    public final boolean jfr = Boolean.getBoolean("loadtest.jfr");
+    /**
+     * Whether the server handles requests on virtual threads, both in the connector and in the database executor of
+     * the webapp. Ignored if the JVM does not support them
+     */
+    public final boolean virtualThreads = Boolean.getBoolean("loadtest.virtualThreads");
+
+    /**
+     * Looks for the webapp directory, either at the given path or at the default locations relative to the working
+     * directory
+     */
+    private static File findWebapp(String path) {
+        if (path != null)
+            return new File(path);
+        for (String candidate : new String[]{"ria/src/main/webapp", "../ria/src/main/webapp"}) {
+            File f = new File(candidate);
+            if (new File(f, "WEB-INF/web.xml").isFile())
+                return f;
+        }
+        throw new IllegalStateException("Cannot find the ria webapp, set it with -Dloadtest.webapp");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "users=" + users +
+                ", accountsPerUser=" + accountsPerUser +
+                ", transfersPerAccount=" + transfersPerAccount +
+                ", contactsPerUser=" + contactsPerUser +
+                ", rate=" + rate + "/s" +
+                ", duration=" + duration.toSeconds() + "s" +
+                ", thinkTime=" + thinkTime.toMillis() + "ms" +
+                ", poolSize=" + poolSize +
+                ", virtualThreads=" + virtualThreads;
+    }
+}
@@ -0,0 +1,92 @@
+package it.polimi.tiw.loadtest;
+
+import it.polimi.tiw.api.jfr.Events;
+import it.polimi.tiw.testdb.EmbeddedDatabase;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Starts the ria webapp on an embedded Tomcat backed by an in-memory database, seeds it and drives user sessions
+ * against it with an {@link OpenModelGenerator}. At the end, per-endpoint latencies are printed and their full
+ * distributions are written to the output directory, together with a Flight Recorder recording if requested.
+ * <p>
+ * See {@link LoadTestConfig} for the available parameters.
+ */
+public class LoadTestMain {
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(60);
+
+    /**
+     * Runs the load test
+     *
+     * @param args ignored, parameters are read from system properties
+     * @throws Exception if the test could not be set up
+     */
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = new LoadTestConfig();
+        System.out.println("Load test with " + config);
+
+        try (EmbeddedDatabase database = EmbeddedDatabase.create("loadtest")) {
+            List<SeededUser> users;
+            long seedStart = System.nanoTime();
+            try (Connection c = database.getConnection()) {
+                users = new Seeder(config).seed(c);
+            }
+            System.out.printf("Seeded %d users in %d ms%n", users.size(), (System.nanoTime() - seedStart) / 1_000_000);
+
+            ExecutorService executor = Executors.newFixedThreadPool(config.clientThreads);
+            try (EmbeddedServer server = new EmbeddedServer(config, database);
+                 Recording recording = startRecording(config)) {
+                URI base = URI.create("http://localhost:" + server.getPort() + "/");
+                HttpClient client = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .executor(executor)
+                        .connectTimeout(Duration.ofSeconds(10))
+                        .build();
+                LatencyRecorder recorder = new LatencyRecorder();
+                OpenModelGenerator generator = new OpenModelGenerator(config.rate, config.maxSessions,
+                        intendedStart -> new UserSession(client, base, recorder, executor,
+                                config.thinkTime.toNanos(), users).run(intendedStart));
+                generator.run(config.duration, DRAIN_TIMEOUT);
+
+                System.out.printf("Sessions: %d started, %d completed, %d dropped%n",
+                        generator.getStarted(), generator.getCompleted(), generator.getDropped());
+                recorder.print(System.out);
+                recorder.write(config.output);
+                System.out.println("Latency distributions written to " + config.output.getAbsolutePath());
+                if (recording != null) {
+                    File file = new File(config.output, "loadtest.jfr");
+                    recording.dump(file.toPath());
+                    System.out.println("Flight recording written to " + file.getAbsolutePath());
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Starts a recording with the JDK default settings plus the ones enabling the events of the application, if
+     * requested
+     */
+    private static Recording startRecording(LoadTestConfig config) throws Exception {
+        if (!config.jfr)
+            return null;
+        Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+        settings.putAll(Events.configuration().getSettings());
+        Recording recording = new Recording(settings);
+        recording.setName("loadtest");
+        recording.start();
+        return recording;
+    }
+}
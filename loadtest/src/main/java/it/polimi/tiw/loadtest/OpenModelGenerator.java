@@ -0,0 +1,102 @@
+package it.polimi.tiw.loadtest;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * Open-model load generator: new sessions arrive following a Poisson process with the given rate, independently of
+ * how fast the server answers. A slow server therefore causes sessions to pile up instead of slowing down the arrivals,
+ * just like it would happen with real users.
+ * <p>
+ * Each session is started with its scheduled arrival time, so that latencies can be measured from when the user
+ * actually wanted to send the request.
+ */
+public class OpenModelGenerator {
+    private final double rate;
+    private final int maxSessions;
+    private final LongFunction<CompletableFuture<Void>> sessionFactory;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Creates a new OpenModelGenerator
+     *
+     * @param rate           the average number of sessions started each second
+     * @param maxSessions    maximum number of sessions running at the same time, arrivals over the limit are dropped
+     * @param sessionFactory starts a new session given its scheduled start, as given by {@link System#nanoTime()}
+     * @throws IllegalArgumentException if {@code rate} or {@code maxSessions} is not positive
+     */
+    public OpenModelGenerator(double rate, int maxSessions, LongFunction<CompletableFuture<Void>> sessionFactory) {
+        if (rate <= 0 || maxSessions <= 0)
+            throw new IllegalArgumentException("rate and maxSessions must be positive");
+        this.rate = rate;
+        this.maxSessions = maxSessions;
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Generates sessions for the given duration, then waits up to {@code drainTimeout} for the running ones to end.
+     *
+     * @param duration     for how long sessions are started
+     * @param drainTimeout how long to wait for running sessions after the end
+     */
+    public void run(Duration duration, Duration drainTimeout) {
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long next = start;
+        while (next < end) {
+            long now = System.nanoTime();
+            if (next > now)
+                LockSupport.parkNanos(next - now);
+            if (inFlight.get() >= maxSessions) {
+                dropped.incrementAndGet();
+            } else {
+                inFlight.incrementAndGet();
+                started.incrementAndGet();
+                sessionFactory.apply(next).whenComplete((__, ex) -> {
+                    inFlight.decrementAndGet();
+                    completed.incrementAndGet();
+                });
+            }
+            next += (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) / rate * 1e9);
+        }
+        long drainEnd = System.nanoTime() + drainTimeout.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainEnd)
+            LockSupport.parkNanos(10_000_000);
+    }
+
+    /**
+     * Returns the number of sessions started
+     *
+     * @return the number of sessions started
+     */
+    public long getStarted() {
+        return started.get();
+    }
+
+    /**
+     * Returns the number of sessions that ended
+     *
+     * @return the number of sessions that ended
+     */
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * Returns the number of arrivals dropped because too many sessions were running
+     *
+     * @return the number of dropped arrivals
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+}
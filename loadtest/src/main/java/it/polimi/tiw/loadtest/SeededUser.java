@@ -0,0 +1,17 @@
+package it.polimi.tiw.loadtest;
+
+import java.util.List;
+
+/**
+ * A user created by the {@link Seeder}, together with the ids of their accounts.
+ *
+ * @param id         the base64 id of the user
+ * @param username   the username
+ * @param accountIds the base64 ids of the accounts owned by the user
+ */
+public record SeededUser(String id, String username, List<String> accountIds) {
+    /**
+     * Clear password shared by all seeded users
+     */
+    public static final String PASSWORD = "password";
+}
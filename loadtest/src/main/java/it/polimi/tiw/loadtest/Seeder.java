@@ -0,0 +1,153 @@
+package it.polimi.tiw.loadtest;
+
+import it.polimi.tiw.api.utils.IdUtils;
+import it.polimi.tiw.api.utils.PasswordUtils;
+
+import java.sql.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Populates the database with users, accounts, contacts and transfers using JDBC batches.
+ */
+public class Seeder {
+    private static final int BATCH_SIZE = 1000;
+    private static final double INITIAL_BALANCE = 100000;
+
+    private final LoadTestConfig config;
+    private final Random random = new Random(42);
+
+    /**
+     * Creates a new Seeder
+     *
+     * @param config the configuration specifying how much data to create
+     */
+    public Seeder(LoadTestConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Seeds the database reachable through the given connection
+     *
+     * @param connection the {@link Connection} to use
+     * @return the users created
+     * @throws SQLException if something went wrong while inserting the data
+     */
+    public List<SeededUser> seed(Connection connection) throws SQLException {
+        boolean prevAutoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            List<SeededUser> users = seedUsers(connection);
+            seedContacts(connection, users);
+            seedTransfers(connection, users);
+            connection.commit();
+            return users;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(prevAutoCommit);
+        }
+    }
+
+    private List<SeededUser> seedUsers(Connection connection) throws SQLException {
+        String password = PasswordUtils.toHash(SeededUser.PASSWORD);
+        long userId = nextId(connection, "tiw_app.users");
+        long accountId = nextId(connection, "tiw_app.accounts");
+        List<SeededUser> users = new ArrayList<>(config.users);
+        try (PreparedStatement u = connection.prepareStatement(
+                "insert into tiw_app.users(id, username, password, email, name, surname) values (?, ?, ?, ?, ?, ?)");
+             PreparedStatement a = connection.prepareStatement(
+                     "insert into tiw_app.accounts(id, ownerId, balance) values (?, ?, ?)")) {
+            for (int i = 0; i < config.users; i++, userId++) {
+                String username = "load-user-" + i;
+                u.setLong(1, userId);
+                u.setString(2, username);
+                u.setString(3, password);
+                u.setString(4, username + "@mail.com");
+                u.setString(5, "Load");
+                u.setString(6, "User " + i);
+                u.addBatch();
+                List<String> accounts = new ArrayList<>(config.accountsPerUser);
+                for (int j = 0; j < config.accountsPerUser; j++, accountId++) {
+                    a.setLong(1, accountId);
+                    a.setLong(2, userId);
+                    a.setDouble(3, INITIAL_BALANCE);
+                    a.addBatch();
+                    accounts.add(IdUtils.toBase64(accountId));
+                }
+                users.add(new SeededUser(IdUtils.toBase64(userId), username, accounts));
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    u.executeBatch();
+                    a.executeBatch();
+                }
+            }
+            u.executeBatch();
+            a.executeBatch();
+        }
+        return users;
+    }
+
+    private void seedContacts(Connection connection, List<SeededUser> users) throws SQLException {
+        if (users.size() < 2) return;
+        int perUser = Math.min(config.contactsPerUser, users.size() - 1);
+        try (PreparedStatement p = connection.prepareStatement(
+                "insert into tiw_app.contacts(ownerId, contactId) values (?, ?)")) {
+            int pending = 0;
+            for (int i = 0; i < users.size(); i++) {
+                long owner = IdUtils.fromBase64(users.get(i).id());
+                for (int j = 1; j <= perUser; j++) {
+                    p.setLong(1, owner);
+                    p.setLong(2, IdUtils.fromBase64(users.get((i + j) % users.size()).id()));
+                    p.addBatch();
+                    if (++pending % BATCH_SIZE == 0)
+                        p.executeBatch();
+                }
+            }
+            p.executeBatch();
+        }
+    }
+
+    /**
+     * Creates the history of each account. Balances are not touched, since the seeded history only serves to make
+     * reads realistic.
+     */
+    private void seedTransfers(Connection connection, List<SeededUser> users) throws SQLException {
+        List<String> accounts = users.stream().flatMap(u -> u.accountIds().stream()).toList();
+        if (accounts.size() < 2) return;
+        long id = nextId(connection, "tiw_app.transfers");
+        Instant now = Instant.now();
+        try (PreparedStatement p = connection.prepareStatement(
+                "insert into tiw_app.transfers(id, date, amount, toId, toBalance, fromId, fromBalance, causal) values (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            int pending = 0;
+            for (String from : accounts) {
+                for (int i = 0; i < config.transfersPerAccount; i++, id++) {
+                    String to = accounts.get(random.nextInt(accounts.size()));
+                    if (to.equals(from)) continue;
+                    p.setLong(1, id);
+                    p.setTimestamp(2, Timestamp.from(now.minusSeconds(random.nextInt(30 * 24 * 3600))));
+                    p.setDouble(3, 1 + random.nextInt(100));
+                    p.setLong(4, IdUtils.fromBase64(to));
+                    p.setDouble(5, INITIAL_BALANCE);
+                    p.setLong(6, IdUtils.fromBase64(from));
+                    p.setDouble(7, INITIAL_BALANCE);
+                    p.setString(8, "Seeded transfer " + i);
+                    p.addBatch();
+                    if (++pending % BATCH_SIZE == 0)
+                        p.executeBatch();
+                }
+            }
+            p.executeBatch();
+        }
+    }
+
+    private static long nextId(Connection connection, String table) throws SQLException {
+        try (PreparedStatement p = connection.prepareStatement("select max(id) from " + table);
+             ResultSet r = p.executeQuery()) {
+            r.next();
+            return r.getLong(1) + 1;
+        }
+    }
+}
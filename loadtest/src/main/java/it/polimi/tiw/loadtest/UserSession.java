@@ -0,0 +1,169 @@
+package it.polimi.tiw.loadtest;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+/**
+ * The requests made by a single user visiting the ria client: login, home page (accounts and contacts), account
+ * details, a new transfer to another user, saving that user as a contact and reloading the account details.
+ * <p>
+ * Requests are sent one after the other, separated by an exponentially distributed think time. If a request fails in a
+ * way that makes the following ones pointless (e.g. the login), the session ends early.
+ */
+public class UserSession {
+    private final HttpClient client;
+    private final URI base;
+    private final LatencyRecorder recorder;
+    private final Executor executor;
+    private final long meanThinkNanos;
+    private final SeededUser user;
+    private final SeededUser other;
+
+    private String token;
+
+    /**
+     * Creates a new session for a random seeded user
+     *
+     * @param client         the {@link HttpClient} to use
+     * @param base           the base URI of the webapp
+     * @param recorder       where latencies are recorded
+     * @param executor       the {@link Executor} on which think times are scheduled
+     * @param meanThinkNanos the average think time between requests
+     * @param users          the seeded users
+     */
+    public UserSession(HttpClient client, URI base, LatencyRecorder recorder, Executor executor,
+                       long meanThinkNanos, List<SeededUser> users) {
+        Random random = ThreadLocalRandom.current();
+        this.client = client;
+        this.base = base;
+        this.recorder = recorder;
+        this.executor = executor;
+        this.meanThinkNanos = meanThinkNanos;
+        this.user = users.get(random.nextInt(users.size()));
+        SeededUser o = users.get(random.nextInt(users.size()));
+        this.other = o == user && users.size() > 1 ? users.get((users.indexOf(user) + 1) % users.size()) : o;
+    }
+
+    /**
+     * Runs the session
+     *
+     * @param intendedStart when the session should have started, as given by {@link System#nanoTime()}
+     * @return a {@link CompletableFuture} completed when the session ends
+     */
+    public CompletableFuture<Void> run(long intendedStart) {
+        String account = user.accountIds().get(0);
+        return post("/api/auth/login", login(), intendedStart)
+                .thenCompose(res -> {
+                    if (res == null) return CompletableFuture.completedFuture(null);
+                    token = res.get("token").getAsString();
+                    return think(post("/api/accounts/ofUser", accountList()))
+                            .thenCompose(__ -> think(post("/api/contacts/ofUser", contacts())))
+                            .thenCompose(__ -> think(post("/api/accounts/transfers", accountDetails(account))))
+                            .thenCompose(__ -> think(post("/api/transfers", newTransfer(account))))
+                            .thenCompose(__ -> think(post("/api/contacts", newContact())))
+                            .thenCompose(__ -> think(post("/api/accounts/transfers", accountDetails(account))))
+                            .thenApply(__ -> null);
+                });
+    }
+
+    /**
+     * Waits for a random think time, then runs the next step, passing it the time at which it should start
+     */
+    private CompletableFuture<JsonObject> think(LongFunction<CompletableFuture<JsonObject>> step) {
+        long pause = (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanThinkNanos);
+        long intendedStart = System.nanoTime() + pause;
+        return CompletableFuture.supplyAsync(() -> null,
+                        CompletableFuture.delayedExecutor(pause, TimeUnit.NANOSECONDS, executor))
+                .thenCompose(__ -> step.apply(intendedStart));
+    }
+
+    private LongFunction<CompletableFuture<JsonObject>> post(String path, JsonObject body) {
+        return intendedStart -> post(path, body, intendedStart);
+    }
+
+    /**
+     * Sends a request and records its latency. The returned future contains the body of the response, or null if the
+     * request failed.
+     */
+    private CompletableFuture<JsonObject> post(String path, JsonObject body, long intendedStart) {
+        HttpRequest request = HttpRequest.newBuilder(base.resolve(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        long start = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((res, ex) -> {
+                    long end = System.nanoTime();
+                    boolean ok = ex == null && res.statusCode() == 200;
+                    recorder.record(path, intendedStart, start, end, ok);
+                    if (!ok) return null;
+                    try {
+                        return JsonParser.parseString(res.body()).getAsJsonObject();
+                    } catch (JsonParseException | IllegalStateException e) {
+                        return null;
+                    }
+                });
+    }
+
+    private JsonObject login() {
+        JsonObject o = new JsonObject();
+        o.addProperty("username", user.username());
+        o.addProperty("clearPassword", SeededUser.PASSWORD);
+        return o;
+    }
+
+    private JsonObject accountList() {
+        JsonObject o = withToken();
+        o.addProperty("userId", user.id());
+        o.addProperty("detailed", true);
+        return o;
+    }
+
+    private JsonObject contacts() {
+        JsonObject o = withToken();
+        o.addProperty("userId", user.id());
+        return o;
+    }
+
+    private JsonObject accountDetails(String account) {
+        JsonObject o = withToken();
+        o.addProperty("accountId", account);
+        return o;
+    }
+
+    private JsonObject newTransfer(String account) {
+        JsonObject o = withToken();
+        o.addProperty("fromUserId", user.id());
+        o.addProperty("fromAccountId", account);
+        o.addProperty("toUserId", other.id());
+        o.addProperty("toAccountId", other.accountIds().get(0));
+        o.addProperty("amount", 1);
+        o.addProperty("causal", "Load test");
+        return o;
+    }
+
+    private JsonObject newContact() {
+        JsonObject o = withToken();
+        o.addProperty("contactId", other.id());
+        return o;
+    }
+
+    private JsonObject withToken() {
+        JsonObject o = new JsonObject();
+        o.addProperty("token", token);
+        return o;
+    }
+}
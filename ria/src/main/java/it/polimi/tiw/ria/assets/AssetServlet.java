@@ -0,0 +1,98 @@
+package it.polimi.tiw.ria.assets;
+
+import it.polimi.tiw.ria.servlet.ServletUtils;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the fingerprinted assets produced at build time by the {@code assets} module from {@code WEB-INF/assets}.
+ * Since the name of an asset changes with its content, responses can be cached forever.
+ * <p>
+ * If the client accepts it, a precompressed variant of the asset is sent: Brotli ({@code .br}) if present, otherwise
+ * gzip ({@code .gz}). The file is handed to the container with sendfile when it supports it (e.g. Tomcat with the NIO
+ * connector), otherwise it is copied with {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+ */
+@WebServlet("/assets/*")
+public class AssetServlet extends HttpServlet {
+    private static final Pattern VALID_PATH = Pattern.compile("^(/[A-Za-z0-9_-][A-Za-z0-9._-]*)+$");
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse res) throws IOException {
+        serve(req, res, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doHead(HttpServletRequest req, HttpServletResponse res) throws IOException {
+        serve(req, res, false);
+    }
+
+    private void serve(HttpServletRequest req, HttpServletResponse res, boolean sendBody) throws IOException {
+        String path = req.getPathInfo();
+        String root = getServletContext().getRealPath("/WEB-INF/assets");
+        if (path == null || root == null || !VALID_PATH.matcher(path).matches()) {
+            res.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Path identity = Path.of(root, path.substring(1));
+        if (!Files.isRegularFile(identity)) {
+            res.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String etag = "W/\"" + identity.getFileName() + "\"";
+        res.setHeader("Cache-Control", CACHE_CONTROL);
+        res.setHeader("ETag", etag);
+        res.setHeader("Vary", "Accept-Encoding");
+        if (etag.equals(req.getHeader("If-None-Match")) || req.getHeader("If-Modified-Since") != null) {
+            res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String mime = getServletContext().getMimeType(identity.getFileName().toString());
+        res.setContentType(mime == null ? "application/octet-stream" : mime);
+        Path file = identity;
+        String accepted = req.getHeader("Accept-Encoding");
+        for (String encoding : new String[]{"br", "gzip"}) {
+            Path variant = identity.resolveSibling(identity.getFileName() + (encoding.equals("br") ? ".br" : ".gz"));
+            if (ServletUtils.acceptsEncoding(accepted, encoding) && Files.isRegularFile(variant)) {
+                res.setHeader("Content-Encoding", encoding);
+                file = variant;
+                break;
+            }
+        }
+
+        long size = Files.size(file);
+        res.setContentLengthLong(size);
+        if (!sendBody) return;
+        if (Boolean.TRUE.equals(req.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            req.setAttribute("org.apache.tomcat.sendfile.filename", file.toAbsolutePath().toString());
+            req.setAttribute("org.apache.tomcat.sendfile.start", 0L);
+            req.setAttribute("org.apache.tomcat.sendfile.end", size);
+            return;
+        }
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(res.getOutputStream());
+            long position = 0;
+            while (position < size)
+                position += in.transferTo(position, size - position, out);
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package it.polimi.tiw.ria.compression;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Response that buffers its body up to a threshold. If the body is larger, it is compressed on the fly with the
+ * negotiated encoding; otherwise it is sent as is, with its exact {@code Content-Length}.
+ * <p>
+ * Responses that already have a {@code Content-Encoding}, that have no body (204, 304) or that are explicitly flushed
+ * before reaching the threshold are never compressed. {@link #finish()} must be called once the body is complete.
+ */
+class CompressingResponse extends HttpServletResponseWrapper {
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final DeflaterPool pool;
+    private final int threshold;
+    private final String encoding;
+    private final boolean gzip;
+    private final CompressingStream stream = new CompressingStream();
+    private PrintWriter writer;
+
+    /**
+     * Creates a new CompressingResponse
+     *
+     * @param res       the response to wrap
+     * @param pool      the {@link DeflaterPool} to borrow deflaters and buffers from
+     * @param threshold the minimum size of a body to compress, at most {@link DeflaterPool#bufferSize()}
+     * @param encoding  {@code gzip} or {@code deflate}
+     */
+    CompressingResponse(HttpServletResponse res, DeflaterPool pool, int threshold, String encoding) {
+        super(res);
+        this.pool = pool;
+        this.threshold = Math.min(threshold, pool.bufferSize());
+        this.encoding = encoding;
+        this.gzip = encoding.equals("gzip");
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (writer != null) throw new IllegalStateException("getWriter() has already been called");
+        stream.usedDirectly = true;
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (stream.usedDirectly) throw new IllegalStateException("getOutputStream() has already been called");
+        if (writer == null) {
+            String charset = getCharacterEncoding();
+            setCharacterEncoding(charset);
+            writer = new PrintWriter(new OutputStreamWriter(stream, Charset.forName(charset)));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) writer.flush();
+        else stream.flush();
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        // The length is set by finish() if the body is not compressed
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        // The length is set by finish() if the body is not compressed
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (!"Content-Length".equalsIgnoreCase(name)) super.setHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (!"Content-Length".equalsIgnoreCase(name)) super.addHeader(name, value);
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        stream.discard();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        stream.discard();
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        stream.abandon();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        stream.abandon();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        stream.abandon();
+        super.sendRedirect(location);
+    }
+
+    /**
+     * Writes what is left of the body and returns the pooled resources. Further calls do nothing.
+     *
+     * @throws IOException if an IO error is encountered
+     */
+    void finish() throws IOException {
+        if (stream.finished) return;
+        stream.finishing = true;
+        try {
+            if (writer != null) writer.flush();
+        } finally {
+            stream.finish();
+        }
+    }
+
+    /**
+     * Returns true if the body has been compressed
+     */
+    boolean isCompressed() {
+        return stream.compressed;
+    }
+
+    /**
+     * Returns the size of the body before compression
+     */
+    long bytesIn() {
+        return stream.bytesIn;
+    }
+
+    /**
+     * Returns the size of the body after compression
+     */
+    long bytesOut() {
+        return stream.bytesOut;
+    }
+
+    /**
+     * Returns the time spent compressing the body, in nanoseconds
+     */
+    long compressionNanos() {
+        return stream.nanos;
+    }
+
+    private class CompressingStream extends ServletOutputStream {
+        private final CRC32 crc = new CRC32();
+        private byte[] buffer;
+        private byte[] out;
+        private int count;
+        private Deflater deflater;
+        private ServletOutputStream target;
+        private boolean compressed;
+        private boolean passthrough;
+        private boolean usedDirectly;
+        private boolean finishing;
+        private boolean finished;
+        private long bytesIn;
+        private long bytesOut;
+        private long nanos;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (finished) throw new IOException("Response already finished");
+            if (len == 0) return;
+            if (passthrough) {
+                target().write(b, off, len);
+            } else if (deflater != null) {
+                deflate(b, off, len);
+            } else if (count + len <= threshold) {
+                if (buffer == null) buffer = pool.borrowBuffer();
+                System.arraycopy(b, off, buffer, count, len);
+                count += len;
+            } else if (canCompress()) {
+                start();
+                if (count > 0) deflate(buffer, 0, count);
+                count = 0;
+                deflate(b, off, len);
+            } else {
+                passthrough();
+                target().write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (finishing || finished) return;
+            if (deflater != null) {
+                long start = System.nanoTime();
+                drain(Deflater.SYNC_FLUSH);
+                nanos += System.nanoTime() - start;
+            } else if (!passthrough) {
+                passthrough();
+            }
+            target().flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        @Override
+        public boolean isReady() {
+            try {
+                return target().isReady();
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            try {
+                target().setWriteListener(writeListener);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Drops the buffered body, if it has not been sent yet
+         */
+        void discard() {
+            if (deflater == null && !passthrough) count = 0;
+        }
+
+        /**
+         * Drops the buffered body and ignores anything written afterwards, because the container takes over the response
+         */
+        void abandon() {
+            discard();
+            release();
+            finished = true;
+        }
+
+        void finish() throws IOException {
+            if (finished) return;
+            finished = true;
+            try {
+                if (deflater != null) {
+                    long start = System.nanoTime();
+                    deflater.finish();
+                    drain(Deflater.NO_FLUSH);
+                    if (gzip) {
+                        byte[] trailer = new byte[8];
+                        writeIntLE(trailer, 0, (int) crc.getValue());
+                        writeIntLE(trailer, 4, (int) bytesIn);
+                        target().write(trailer);
+                        bytesOut += trailer.length;
+                    }
+                    nanos += System.nanoTime() - start;
+                } else if (!passthrough && count > 0) {
+                    if (!getResponse().isCommitted())
+                        getResponse().setContentLength(count);
+                    target().write(buffer, 0, count);
+                }
+            } finally {
+                release();
+            }
+        }
+
+        private boolean canCompress() {
+            HttpServletResponse res = (HttpServletResponse) getResponse();
+            int status = res.getStatus();
+            return !res.isCommitted()
+                    && status != HttpServletResponse.SC_NO_CONTENT
+                    && status != HttpServletResponse.SC_NOT_MODIFIED
+                    && status != HttpServletResponse.SC_PARTIAL_CONTENT
+                    && res.getHeader("Content-Encoding") == null;
+        }
+
+        private void start() throws IOException {
+            HttpServletResponse res = (HttpServletResponse) getResponse();
+            res.setHeader("Content-Encoding", encoding);
+            res.setHeader("Content-Length", null);
+            compressed = true;
+            deflater = pool.borrow(gzip);
+            out = pool.borrowBuffer();
+            if (gzip) {
+                crc.reset();
+                target().write(GZIP_HEADER);
+                bytesOut += GZIP_HEADER.length;
+            }
+        }
+
+        private void passthrough() throws IOException {
+            passthrough = true;
+            if (count > 0) target().write(buffer, 0, count);
+            count = 0;
+        }
+
+        private void deflate(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            bytesIn += len;
+            if (gzip) crc.update(b, off, len);
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput())
+                emit(deflater.deflate(out, 0, out.length, Deflater.NO_FLUSH));
+            nanos += System.nanoTime() - start;
+        }
+
+        private void drain(int flush) throws IOException {
+            int n;
+            do {
+                n = deflater.deflate(out, 0, out.length, flush);
+                emit(n);
+            } while (n == out.length || (flush == Deflater.NO_FLUSH && !deflater.finished()));
+        }
+
+        private void emit(int compressed) throws IOException {
+            if (compressed == 0) return;
+            target().write(out, 0, compressed);
+            bytesOut += compressed;
+        }
+
+        private ServletOutputStream target() throws IOException {
+            if (target == null) target = getResponse().getOutputStream();
+            return target;
+        }
+
+        private void release() {
+            if (deflater != null) pool.release(deflater, gzip);
+            if (buffer != null) pool.releaseBuffer(buffer);
+            if (out != null) pool.releaseBuffer(out);
+            buffer = null;
+            out = null;
+            deflater = null;
+        }
+    }
+
+    private static void writeIntLE(byte[] b, int off, int v) {
+        b[off] = (byte) v;
+        b[off + 1] = (byte) (v >>> 8);
+        b[off + 2] = (byte) (v >>> 16);
+        b[off + 3] = (byte) (v >>> 24);
+    }
+}
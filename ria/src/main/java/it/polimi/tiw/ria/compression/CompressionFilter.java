@@ -0,0 +1,147 @@
+package it.polimi.tiw.ria.compression;
+
+import it.polimi.tiw.api.metrics.Counter;
+import it.polimi.tiw.api.metrics.Histogram;
+import it.polimi.tiw.api.metrics.MetricRegistry;
+import it.polimi.tiw.ria.servlet.ServletUtils;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses responses with gzip or deflate, as negotiated with the {@code Accept-Encoding} header of the request.
+ * Bodies smaller than the threshold are sent uncompressed, since the headers would outweigh the saving. Deflaters and
+ * buffers are taken from a {@link DeflaterPool} shared by all requests.
+ * <p>
+ * It is configured with the following init parameters:
+ *
+ * <ol>
+ *     <li>{@code threshold}: minimum size in bytes of a compressed body (default 1024, at most 8192)</li>
+ *     <li>{@code level}: compression level, from 1 to 9 (default 6)</li>
+ *     <li>{@code poolSize}: number of idle deflaters of each kind kept in the pool (default 32)</li>
+ * </ol>
+ * <p>
+ * For each endpoint the sizes before and after compression are added to the
+ * {@code tiw_compression_bytes_in_total} and {@code tiw_compression_bytes_out_total} counters, whose ratio is the
+ * compression ratio, and the time spent compressing is recorded in the {@code tiw_compression_seconds} histogram.
+ * These metrics are looked up in the registry once for each endpoint and encoding and kept by the filter.
+ */
+public class CompressionFilter extends HttpFilter {
+    private static final int BUFFER_SIZE = 8192;
+
+    private transient DeflaterPool pool;
+    private transient MetricRegistry registry;
+    private transient Map<Labels, Metrics> metrics;
+    private int threshold;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init() {
+        threshold = Math.min(Integer.parseInt(initParameter("threshold", "1024")), BUFFER_SIZE);
+        int level = Integer.parseInt(initParameter("level", "6"));
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("Compression level must be between 1 and 9");
+        pool = new DeflaterPool(Integer.parseInt(initParameter("poolSize", "32")), level, BUFFER_SIZE);
+        registry = MetricRegistry.getDefault();
+        metrics = new ConcurrentHashMap<>();
+        registry.gauge("tiw_compression_deflaters_idle",
+                "Number of idle deflaters in the compression pool", pool::idle);
+        registry.gauge("tiw_compression_deflaters_created",
+                "Number of deflaters created by the compression pool", pool::created);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() {
+        pool.close();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doFilter(HttpServletRequest req, HttpServletResponse res, FilterChain chain) throws IOException, ServletException {
+        res.addHeader("Vary", "Accept-Encoding");
+        String encoding = negotiate(req.getHeader("Accept-Encoding"));
+        if (encoding == null || req.getMethod().equals("HEAD")) {
+            chain.doFilter(req, res);
+            return;
+        }
+        CompressingResponse wrapped = new CompressingResponse(res, pool, threshold, encoding);
+        try {
+            chain.doFilter(req, wrapped);
+        } finally {
+            if (req.isAsyncStarted())
+                req.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) throws IOException {
+                        complete(req, wrapped, encoding);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            else
+                complete(req, wrapped, encoding);
+        }
+    }
+
+    private void complete(HttpServletRequest req, CompressingResponse res, String encoding) throws IOException {
+        res.finish();
+        if (!res.isCompressed() || !registry.isEnabled()) return;
+        String servlet = req.getHttpServletMapping() == null ? "" : req.getHttpServletMapping().getServletName();
+        Metrics m = metrics.computeIfAbsent(new Labels(servlet, encoding), l -> new Metrics(
+                registry.counter("tiw_compression_bytes_in_total",
+                        "Bytes of response bodies before compression",
+                        "servlet", l.servlet, "encoding", l.encoding),
+                registry.counter("tiw_compression_bytes_out_total",
+                        "Bytes of response bodies after compression",
+                        "servlet", l.servlet, "encoding", l.encoding),
+                registry.histogram("tiw_compression_seconds",
+                        "Time spent compressing response bodies, in seconds",
+                        "servlet", l.servlet, "encoding", l.encoding)));
+        m.bytesIn.add(res.bytesIn());
+        m.bytesOut.add(res.bytesOut());
+        m.seconds.observeNanos(res.compressionNanos());
+    }
+
+    /**
+     * Returns the encoding to use for the given {@code Accept-Encoding} header, or null if the response must not be
+     * compressed
+     */
+    private static String negotiate(String acceptEncoding) {
+        if (ServletUtils.acceptsEncoding(acceptEncoding, "gzip")) return "gzip";
+        if (ServletUtils.acceptsEncoding(acceptEncoding, "deflate")) return "deflate";
+        return null;
+    }
+
+    private String initParameter(String name, String defaultValue) {
+        String value = getInitParameter(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private record Labels(String servlet, String encoding) {
+    }
+
+    private record Metrics(Counter bytesIn, Counter bytesOut, Histogram seconds) {
+    }
+}
@@ -0,0 +1,103 @@
+package it.polimi.tiw.ria.compression;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * Bounded pool of {@link Deflater}s and of the byte buffers used while compressing. Deflaters hold native memory that
+ * is only released by {@link Deflater#end()}, so creating one per response is both slow and a source of GC pressure.
+ * <p>
+ * Borrowing never blocks: if the pool is empty a new object is created, and objects returned to a full pool are
+ * discarded.
+ */
+class DeflaterPool {
+    private final int level;
+    private final int bufferSize;
+    private final BlockingQueue<Deflater> raw;
+    private final BlockingQueue<Deflater> zlib;
+    private final BlockingQueue<byte[]> buffers;
+    private final AtomicLong created = new AtomicLong();
+
+    /**
+     * Creates a new DeflaterPool
+     *
+     * @param size       the maximum number of idle deflaters of each kind
+     * @param level      the compression level of the deflaters
+     * @param bufferSize the size of the buffers
+     * @throws IllegalArgumentException if {@code size} or {@code bufferSize} are not positive
+     */
+    DeflaterPool(int size, int level, int bufferSize) {
+        if (size <= 0 || bufferSize <= 0) throw new IllegalArgumentException("Pool and buffer sizes must be positive");
+        this.level = level;
+        this.bufferSize = bufferSize;
+        this.raw = new ArrayBlockingQueue<>(size);
+        this.zlib = new ArrayBlockingQueue<>(size);
+        this.buffers = new ArrayBlockingQueue<>(size * 2);
+    }
+
+    /**
+     * Borrows a deflater. Raw deflaters ({@code nowrap}) produce the bare DEFLATE stream used inside gzip, the others
+     * produce the zlib format used by the {@code deflate} content coding.
+     */
+    Deflater borrow(boolean nowrap) {
+        Deflater d = (nowrap ? raw : zlib).poll();
+        if (d != null) return d;
+        created.incrementAndGet();
+        return new Deflater(level, nowrap);
+    }
+
+    /**
+     * Returns a deflater borrowed with the given {@code nowrap} flag to the pool
+     */
+    void release(Deflater d, boolean nowrap) {
+        d.reset();
+        if (!(nowrap ? raw : zlib).offer(d))
+            d.end();
+    }
+
+    /**
+     * Borrows a buffer of {@link #bufferSize()} bytes. Its content is undefined.
+     */
+    byte[] borrowBuffer() {
+        byte[] b = buffers.poll();
+        return b == null ? new byte[bufferSize] : b;
+    }
+
+    /**
+     * Returns a buffer to the pool
+     */
+    void releaseBuffer(byte[] b) {
+        if (b.length == bufferSize)
+            buffers.offer(b);
+    }
+
+    int bufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns the number of deflaters created since the pool was
+     */
+    long created() {
+        return created.get();
+    }
+
+    /**
+     * Returns the number of idle deflaters
+     */
+    int idle() {
+        return raw.size() + zlib.size();
+    }
+
+    /**
+     * Ends every idle deflater
+     */
+    void close() {
+        Deflater d;
+        while ((d = raw.poll()) != null) d.end();
+        while ((d = zlib.poll()) != null) d.end();
+        buffers.clear();
+    }
+}
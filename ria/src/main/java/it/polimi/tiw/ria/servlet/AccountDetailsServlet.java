@@ -3,13 +3,10 @@ package it.polimi.tiw.ria.servlet;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import it.polimi.tiw.api.AccountFacade;
 import it.polimi.tiw.api.TransferFacade;
-import it.polimi.tiw.api.beans.Account;
-import it.polimi.tiw.api.beans.InstantTypeAdapter;
 import it.polimi.tiw.api.dbaccess.ProductionConnectionRetriever;
 import it.polimi.tiw.api.error.Errors;
 import it.polimi.tiw.api.functional.ApiResult;
@@ -17,11 +14,9 @@ import it.polimi.tiw.api.functional.Tuple;
 import it.polimi.tiw.ria.auth.AuthUtils;
 
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.time.Instant;
 import java.util.Objects;
 
 import static it.polimi.tiw.ria.servlet.ServletUtils.*;
@@ -54,10 +49,19 @@ import static it.polimi.tiw.ria.servlet.ServletUtils.*;
  *     }
  * </pre>
  * <p>
+ * The response also contains, in its {@code cursor} property, the version of the account read before the transfers,
+ * which can be passed to {@link TransferDeltaServlet} to receive only the transfers committed afterwards. Transfers
+ * committed while the list was being read may be returned again by it.
+ * <p>
  * If any error has been encountered, an error object will be attached to the response.
+ * <p>
+ * Successful responses carry an {@code ETag} derived from the version of the account, which changes with every
+ * transfer. If the request has a matching {@code If-None-Match} header, the endpoint responds with a 304 and an empty
+ * body without querying the transfers. The version is read before the transfers, so a tag never claims a newer state
+ * than the body it is sent with.
  */
-@WebServlet("/api/accounts/transfers")
-public class AccountDetailsServlet extends HttpServlet {
+@WebServlet(value = "/api/accounts/transfers", asyncSupported = true)
+public class AccountDetailsServlet extends AsyncApiServlet {
     private String iss, tokenSecret;
     private Gson gson;
 
@@ -68,9 +72,7 @@ public class AccountDetailsServlet extends HttpServlet {
     public void init() {
         iss = getServletContext().getInitParameter("ISSUER");
         tokenSecret = getServletContext().getInitParameter("TOKEN_SECRET");
-        gson = new GsonBuilder()
-                .registerTypeAdapter(Instant.class, new InstantTypeAdapter())
-                .create();
+        gson = gsonOf(getServletContext());
     }
 
     /**
@@ -85,23 +87,32 @@ public class AccountDetailsServlet extends HttpServlet {
                             TransferFacade transfers = TransferFacade.withDefaultObjects(c);
                             return validateToken(request.token)
                                     .flatMap(userId -> accounts
-                                            .byId(request.accountId)
-                                            .flatMap(a -> checkPermissions(a, userId)))
-                                    .flatMap(a -> transfers.of(a.getBase64Id()));
+                                            .versionOf(request.accountId)
+                                            .flatMap(v -> checkPermissions(v.getFirst(), userId).map(__ -> v)))
+                                    .flatMap(v -> checkNotModified(req, resp, etagOf(request.accountId, v.getSecond()))
+                                            ? ApiResult.ok(null)
+                                            : transfers.of(request.accountId).map(t -> new Tuple<>(v.getSecond(), t)));
                         }))
                 .match(
                         data -> {
+                            if (data == null) return new Tuple<Integer, JsonObject>(304, null);
                             JsonObject obj = new JsonObject();
-                            JsonArray incoming = listToJsonArray(gson, data.getFirst());
-                            JsonArray outgoing = listToJsonArray(gson, data.getSecond());
+                            JsonArray incoming = listToJsonArray(gson, data.getSecond().getFirst());
+                            JsonArray outgoing = listToJsonArray(gson, data.getSecond().getSecond());
                             obj.addProperty("type", "OK");
                             obj.add("incoming", incoming);
                             obj.add("outgoing", outgoing);
+                            obj.addProperty("cursor", data.getFirst());
                             return new Tuple<>(200, obj);
                         },
                         err -> new Tuple<>(err.statusCode(), fromApiErrorToJSON(err))
                 );
-        sendJson(resp, res.getFirst(), res.getSecond());
+        if (res.getFirst() != HttpServletResponse.SC_NOT_MODIFIED)
+            sendJson(resp, res.getFirst(), res.getSecond());
+    }
+
+    private static String etagOf(String accountId, long version) {
+        return "\"transfers-" + accountId + "-" + version + "\"";
     }
 
     private ApiResult<String> validateToken(String token) {
@@ -117,9 +128,9 @@ public class AccountDetailsServlet extends HttpServlet {
         }
     }
 
-    private ApiResult<Account> checkPermissions(Account account, String userId) {
-        if (Objects.equals(account.getOwnerId(), userId))
-            return ApiResult.ok(account);
+    private ApiResult<String> checkPermissions(String ownerId, String userId) {
+        if (Objects.equals(ownerId, userId))
+            return ApiResult.ok(ownerId);
         return ApiResult.error(Errors.fromPermissionDenied("account"));
     }
 
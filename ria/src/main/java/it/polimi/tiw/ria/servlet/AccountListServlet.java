@@ -12,7 +12,6 @@ import it.polimi.tiw.api.functional.Tuple;
 import it.polimi.tiw.ria.auth.AuthUtils;
 
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -48,9 +47,13 @@ import static it.polimi.tiw.ria.servlet.ServletUtils.*;
  * </pre>
  * <p>
  * If any error has been encountered, a suitable JSON object describing the error is attached in the response.
+ * <p>
+ * Successful responses carry an {@code ETag} derived from the version of the user's account list, which changes when
+ * an account is created or takes part in a transfer. If the request has a matching {@code If-None-Match} header, the
+ * endpoint responds with a 304 and an empty body without querying the accounts.
  */
-@WebServlet("/api/accounts/ofUser")
-public class AccountListServlet extends HttpServlet {
+@WebServlet(value = "/api/accounts/ofUser", asyncSupported = true)
+public class AccountListServlet extends AsyncApiServlet {
     private String iss, tokenSecret;
     private Gson gson;
 
@@ -61,7 +64,7 @@ public class AccountListServlet extends HttpServlet {
     public void init() {
         iss = getServletContext().getInitParameter("ISSUER");
         tokenSecret = getServletContext().getInitParameter("TOKEN_SECRET");
-        gson = new Gson();
+        gson = gsonOf(getServletContext());
     }
 
     /**
@@ -72,18 +75,30 @@ public class AccountListServlet extends HttpServlet {
         Tuple<Integer, JsonObject> res = checkRequestFormat(gson, req, Request.class, r -> r.userId == null)
                 .peek(request -> checkPermissions(request.token, request.userId, request.detailed))
                 .flatMap(request -> ProductionConnectionRetriever.getInstance()
-                        .with(c -> AccountFacade.withDefaultObjects(c).ofUser(request.userId))
-                        .map(accounts -> listToJsonArray(gson, accounts, j -> {
+                        .with(c -> {
+                            AccountFacade facade = AccountFacade.withDefaultObjects(c);
+                            return facade.listVersionOf(request.userId)
+                                    .flatMap(v -> checkNotModified(req, resp, etagOf(request, v))
+                                            ? ApiResult.ok(null)
+                                            : facade.ofUser(request.userId));
+                        })
+                        .map(accounts -> accounts == null ? null : listToJsonArray(gson, accounts, j -> {
                             if (!request.detailed) j.remove("balance");
                         })))
                 .match(accountObjs -> {
+                            if (accountObjs == null) return new Tuple<Integer, JsonObject>(304, null);
                             JsonObject obj = new JsonObject();
                             obj.addProperty("type", "OK");
                             obj.add("accounts", accountObjs);
                             return new Tuple<>(200, obj);
                         },
                         e -> new Tuple<>(e.statusCode(), fromApiErrorToJSON(e)));
-        sendJson(resp, res.getFirst(), res.getSecond());
+        if (res.getFirst() != HttpServletResponse.SC_NOT_MODIFIED)
+            sendJson(resp, res.getFirst(), res.getSecond());
+    }
+
+    private static String etagOf(Request request, long version) {
+        return "\"accounts-" + request.userId + "-" + version + (request.detailed ? "-detailed" : "") + "\"";
     }
 
     private ApiResult<?> checkPermissions(String token, String userId, boolean detailed) {
@@ -0,0 +1,123 @@
+package it.polimi.tiw.ria.servlet;
+
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.tracing.QueryTracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static it.polimi.tiw.ria.servlet.ServletUtils.fromApiErrorToJSON;
+import static it.polimi.tiw.ria.servlet.ServletUtils.sendJson;
+
+/**
+ * Servlet whose requests are handled on the {@link DatabaseExecutor} of the application instead of the container
+ * thread, which is released as soon as the request is queued. Subclasses implement the {@code doXXX} methods as usual
+ * and must be declared with {@code asyncSupported = true}; if asynchronous processing is not supported by the request,
+ * it is handled on the container thread. Requests that do not need the database can be answered on the container
+ * thread by overriding {@link #serveInline(HttpServletRequest, HttpServletResponse)}.
+ * <p>
+ * If the queue of the executor is full, the request is rejected with a 503 and a {@code Retry-After} header. The same
+ * response is sent if the request is not handled within the request timeout of the executor, e.g. because a query is
+ * stuck: a task that has not started yet is then skipped, while a running one is detached from the request with a
+ * {@link RequestGuard} and left to fail. The {@link QueryTracer} of the request, if any, is carried over to the
+ * executor thread.
+ */
+public abstract class AsyncApiServlet extends HttpServlet {
+    /**
+     * Seconds after which clients are told to retry a rejected request
+     */
+    public static final int RETRY_AFTER_SECONDS = 1;
+    private static final Logger logger = LoggerFactory.getLogger(AsyncApiServlet.class);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (serveInline(req, resp))
+            return;
+        if (!req.isAsyncSupported()) {
+            super.service(req, resp);
+            return;
+        }
+        DatabaseExecutor executor = DatabaseExecutor.of(getServletContext());
+        AsyncContext ctx = req.startAsync();
+        // Set by whoever completes the request first, either the task or the timeout
+        AtomicBoolean finished = new AtomicBoolean();
+        RequestGuard guard = new RequestGuard(req, resp);
+        String method = req.getMethod(), uri = req.getRequestURI();
+        ctx.setTimeout(executor.getRequestTimeout().toMillis());
+        ctx.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                if (!finished.compareAndSet(false, true)) return;
+                guard.detach();
+                logger.warn("{} {} timed out after {}", method, uri, executor.getRequestTimeout());
+                if (!resp.isCommitted())
+                    reject(resp);
+                ctx.complete();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        boolean queued = executor.submit(QueryTracer.propagate(() -> {
+            if (finished.get()) return;
+            try {
+                super.service(guard.request(), guard.response());
+            } catch (ServletException | IOException | RuntimeException e) {
+                if (finished.get())
+                    logger.debug("Timed out {} {} failed", method, uri, e);
+                else {
+                    logger.error("Error while handling {} {}", method, uri, e);
+                    if (!resp.isCommitted())
+                        resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                }
+            } finally {
+                if (finished.compareAndSet(false, true))
+                    ctx.complete();
+            }
+        }));
+        if (!queued && finished.compareAndSet(false, true)) {
+            reject(resp);
+            ctx.complete();
+        }
+    }
+
+    /**
+     * Called on the container thread before the request is queued on the {@link DatabaseExecutor}. Subclasses can
+     * override it to answer the requests that do not need the database, e.g. those served from a cache, without
+     * taking a place in the queue. Does nothing by default.
+     *
+     * @param req  the {@link HttpServletRequest}
+     * @param resp the {@link HttpServletResponse}
+     * @return true if the request has been answered and must not be queued
+     * @throws IOException if an I/O error occurs while writing the response
+     */
+    protected boolean serveInline(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        return false;
+    }
+
+    private static void reject(HttpServletResponse resp) throws IOException {
+        resp.setHeader("Retry-After", Integer.toString(RETRY_AFTER_SECONDS));
+        sendJson(resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, fromApiErrorToJSON(Errors.fromServiceUnavailable()));
+    }
+}
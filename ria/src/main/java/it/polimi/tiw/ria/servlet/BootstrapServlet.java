@@ -0,0 +1,111 @@
+package it.polimi.tiw.ria.servlet;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import it.polimi.tiw.api.AccountFacade;
+import it.polimi.tiw.api.ContactFacade;
+import it.polimi.tiw.api.UserFacade;
+import it.polimi.tiw.api.beans.Account;
+import it.polimi.tiw.api.beans.ContactProfile;
+import it.polimi.tiw.api.beans.User;
+import it.polimi.tiw.api.dbaccess.ProductionConnectionRetriever;
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.functional.Tuple;
+import it.polimi.tiw.ria.auth.AuthUtils;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+import static it.polimi.tiw.ria.servlet.ServletUtils.*;
+
+/**
+ * Endpoint returning everything the home page needs after login in a single round trip. It accepts POST requests
+ * containing a JSON object with the following properties:
+ *
+ * <ol>
+ *     <li>{@code token} the authorization token</li>
+ * </ol>
+ * <p>
+ * The request must provide a valid authorization token or the request will be rejected with a 401. The token is
+ * verified once, then the user, its accounts and its contacts are queried one after the other on a single pooled
+ * connection, so that a request never takes more than one connection from the pool.
+ * <p>
+ * The response is a JSON object containing the user in its {@code user} property (as returned by login), the detailed
+ * accounts of the user in {@code accounts} and the profiles of its contacts in {@code contacts}, formatted as in
+ * {@link AccountListServlet} and {@link ContactProfilesServlet}. If any query fails, a suitable JSON object describing
+ * the error is sent instead.
+ */
+@WebServlet(value = "/api/session/bootstrap", asyncSupported = true)
+public class BootstrapServlet extends AsyncApiServlet {
+    private String iss, tokenSecret;
+    private Gson gson;
+    private RequestBinder<Request> binder;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init() {
+        iss = getServletContext().getInitParameter("ISSUER");
+        tokenSecret = getServletContext().getInitParameter("TOKEN_SECRET");
+        gson = gsonOf(getServletContext());
+        binder = RequestBinder.of(Request::new)
+                .string("token", (r, v) -> r.token = v);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Tuple<Integer, JsonObject> res = binder.bind(req)
+                .flatMap(request -> validateToken(request.token))
+                .flatMap(this::load)
+                .match(data -> {
+                            JsonObject obj = new JsonObject();
+                            obj.addProperty("type", "OK");
+                            obj.add("user", data.user.toJson());
+                            obj.add("accounts", listToJsonArray(gson, data.accounts));
+                            obj.add("contacts", listToJsonArray(gson, data.contacts));
+                            return new Tuple<>(200, obj);
+                        },
+                        err -> new Tuple<>(err.statusCode(), fromApiErrorToJSON(err)));
+        sendJson(resp, res.getFirst(), res.getSecond());
+    }
+
+    /**
+     * Runs the three queries on the same connection, stopping at the first error
+     */
+    private ApiResult<Bootstrap> load(String userId) {
+        return ProductionConnectionRetriever.getInstance().with(c -> UserFacade.withDefaultObjects(c).byId(userId)
+                .flatMap(u -> AccountFacade.withDefaultObjects(c).ofUser(userId)
+                        .flatMap(a -> ContactFacade.withDefaultObjects(c).ofUserWithProfiles(userId)
+                                .map(contacts -> new Bootstrap(u, a, contacts)))));
+    }
+
+    private ApiResult<String> validateToken(String token) {
+        try {
+            DecodedJWT jwt = AuthUtils.verifyToken(token, iss, tokenSecret);
+            String userId = jwt.getClaim("userId").asString();
+            if (userId != null)
+                return ApiResult.ok(userId);
+            else
+                return ApiResult.error(Errors.fromPermissionDenied("session"));
+        } catch (JWTVerificationException | NullPointerException e) {
+            return ApiResult.error(Errors.fromUnauthorized());
+        }
+    }
+
+    private record Bootstrap(User user, List<Account> accounts, List<ContactProfile> contacts) {
+    }
+
+    private static class Request {
+        private String token;
+    }
+}
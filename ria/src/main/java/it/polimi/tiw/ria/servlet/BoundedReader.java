@@ -0,0 +1,54 @@
+package it.polimi.tiw.ria.servlet;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * {@link Reader} that fails with a {@link TooLargeException} as soon as more than a given number of characters has been
+ * read, so that oversized bodies are rejected without reading them whole.
+ */
+class BoundedReader extends FilterReader {
+    private final long limit;
+    private long read;
+
+    BoundedReader(Reader in, long limit) {
+        super(in);
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int c = super.read();
+        if (c != -1) count(1);
+        return c;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        int n = super.read(cbuf, off, (int) Math.min(len, limit - read + 1));
+        if (n > 0) count(n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(Math.min(n, limit - read + 1));
+        count(skipped);
+        return skipped;
+    }
+
+    private void count(long n) throws TooLargeException {
+        read += n;
+        if (read > limit) throw new TooLargeException(limit);
+    }
+
+    /**
+     * Thrown when the body is larger than the limit
+     */
+    static class TooLargeException extends IOException {
+        TooLargeException(long limit) {
+            super("Body larger than " + limit + " characters");
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package it.polimi.tiw.ria.servlet;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import it.polimi.tiw.api.ContactFacade;
+import it.polimi.tiw.api.dbaccess.ContactIndex;
+import it.polimi.tiw.api.dbaccess.ProductionConnectionRetriever;
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.functional.Tuple;
+import it.polimi.tiw.ria.auth.AuthUtils;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+import static it.polimi.tiw.ria.servlet.ServletUtils.*;
+
+/**
+ * Endpoint completing a username prefix with the contacts of the logged user. Contacts are served from the
+ * {@link ContactIndex}, so the database is queried only when the contacts of a user are not indexed: requests whose
+ * contacts are indexed are answered on the container thread, and only the others are queued on the
+ * {@link DatabaseExecutor}. It accepts POST requests containing a JSON object with the following properties:
+ *
+ * <ol>
+ *     <li>{@code token} the authorization token</li>
+ *     <li>{@code prefix} the prefix of the usernames to return (optional)</li>
+ *     <li>{@code limit} the maximum number of contacts to return (optional, at most and by default 20)</li>
+ * </ol>
+ * <p>
+ * The request must provide a valid authorization token or the request will be rejected with a 401.
+ * <p>
+ * The response will contain JSON object containing an array of objects, sorted by username, in its
+ * {@code suggestions} property. The objects are formatted as such:
+ *
+ * <pre>
+ *     {
+ *       "contactBase64Id": ...,
+ *       "username": ...
+ *     }
+ * </pre>
+ * <p>
+ * If any error has been encountered, a suitable JSON object describing the error is attached in the response.
+ */
+@WebServlet(value = "/api/contacts/suggest", asyncSupported = true)
+public class ContactSuggestServlet extends AsyncApiServlet {
+    private static final String PARSED_REQUEST = ContactSuggestServlet.class.getName() + ".request";
+    private Gson gson;
+    private String iss, tokenSecret;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init() {
+        iss = getServletContext().getInitParameter("ISSUER");
+        tokenSecret = getServletContext().getInitParameter("TOKEN_SECRET");
+        gson = gsonOf(getServletContext());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Answers the request if it is malformed or if the contacts of the user are indexed; otherwise, the parsed request
+     * is kept for {@link #doPost(HttpServletRequest, HttpServletResponse)}, since the body can be read only once.
+     */
+    @Override
+    protected boolean serveInline(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (!"POST".equals(req.getMethod())) return false;
+        ApiResult<Tuple<String, Request>> parsed = parse(req);
+        ApiResult<List<Tuple<String, String>>> cached = parsed.flatMap(p ->
+                ContactIndex.getInstance().cached(p.getFirst(), p.getSecond().prefix, limitOf(p.getSecond())));
+        boolean answered = cached.match(__ -> true, e -> e.statusCode() != 404);
+        if (!answered) {
+            req.setAttribute(PARSED_REQUEST, parsed.get());
+            return false;
+        }
+        send(resp, cached);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        @SuppressWarnings("unchecked")
+        Tuple<String, Request> kept = (Tuple<String, Request>) req.getAttribute(PARSED_REQUEST);
+        ApiResult<Tuple<String, Request>> parsed = kept == null ? parse(req) : ApiResult.ok(kept);
+        send(resp, parsed.flatMap(p -> ContactIndex.getInstance().suggest(
+                p.getFirst(),
+                p.getSecond().prefix,
+                limitOf(p.getSecond()),
+                () -> ProductionConnectionRetriever.getInstance()
+                        .with(c -> ContactFacade.withDefaultObjects(c).usernamesOf(p.getFirst())))));
+    }
+
+    /**
+     * Reads the request and returns it together with the id of the logged user
+     */
+    private ApiResult<Tuple<String, Request>> parse(HttpServletRequest req) {
+        return checkRequestFormat(gson, req, Request.class, r -> false)
+                .flatMap(request -> userOf(request).map(userId -> new Tuple<>(userId, request)));
+    }
+
+    private void send(HttpServletResponse resp, ApiResult<List<Tuple<String, String>>> suggestions)
+            throws IOException {
+        Tuple<Integer, JsonObject> res = suggestions.match(list -> {
+                    JsonArray array = new JsonArray(list.size());
+                    for (Tuple<String, String> s : list) {
+                        JsonObject o = new JsonObject();
+                        o.addProperty("contactBase64Id", s.getFirst());
+                        o.addProperty("username", s.getSecond());
+                        array.add(o);
+                    }
+                    JsonObject obj = new JsonObject();
+                    obj.addProperty("type", "OK");
+                    obj.add("suggestions", array);
+                    return new Tuple<>(200, obj);
+                },
+                err -> new Tuple<>(err.statusCode(), fromApiErrorToJSON(err)));
+        sendJson(resp, res.getFirst(), res.getSecond());
+    }
+
+    private static int limitOf(Request request) {
+        return request.limit == null ? ContactIndex.MAX_SUGGESTIONS : request.limit;
+    }
+
+    private ApiResult<String> userOf(Request request) {
+        try {
+            return ApiResult.ok(AuthUtils.verifyToken(request.token, iss, tokenSecret)
+                    .getClaim("userId")
+                    .asString());
+        } catch (JWTVerificationException | NullPointerException e) {
+            return ApiResult.error(Errors.fromUnauthorized());
+        }
+    }
+
+    private static class Request {
+        private String token, prefix;
+        private Integer limit;
+    }
+}
@@ -13,7 +13,6 @@ import it.polimi.tiw.api.functional.Tuple;
 import it.polimi.tiw.ria.auth.AuthUtils;
 
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -47,8 +46,8 @@ import static java.util.Objects.isNull;
  * <p>
  * If any error has been encountered, a suitable JSON object describing the error is attached in the response.
  */
-@WebServlet("/api/contacts/ofUser")
-public class ContactsOfUserServlet extends HttpServlet {
+@WebServlet(value = "/api/contacts/ofUser", asyncSupported = true)
+public class ContactsOfUserServlet extends AsyncApiServlet {
     private Gson gson;
     private String iss, tokenSecret;
 
@@ -59,7 +58,7 @@ public class ContactsOfUserServlet extends HttpServlet {
     public void init() {
         iss = getServletContext().getInitParameter("ISSUER");
         tokenSecret = getServletContext().getInitParameter("TOKEN_SECRET");
-        gson = new Gson();
+        gson = gsonOf(getServletContext());
     }
 
     /**
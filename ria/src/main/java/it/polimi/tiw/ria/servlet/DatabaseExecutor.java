@@ -0,0 +1,234 @@
+package it.polimi.tiw.ria.servlet;
+
+import it.polimi.tiw.api.dbaccess.ProductionConnectionRetriever;
+import it.polimi.tiw.api.metrics.Counter;
+import it.polimi.tiw.api.metrics.Histogram;
+import it.polimi.tiw.api.metrics.MetricRegistry;
+import it.polimi.tiw.api.utils.VirtualThreads;
+import org.apache.tomcat.dbcp.dbcp2.BasicDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletContext;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of threads running the requests that use the database, so that a burst of slow queries does not take
+ * every container thread. It has as many threads as the connection pool has connections and a bounded queue: tasks
+ * submitted when the queue is full are rejected, and the request should be answered with a 503. Requests that are not
+ * answered within the request timeout should be answered with a 503 too.
+ * <p>
+ * When the {@code DB_EXECUTOR} context parameter is {@code virtual} and the JVM supports them, each task runs on a
+ * new virtual thread instead. At most {@code DB_MAX_REQUESTS} tasks are admitted at the same time, and the number of
+ * open connections is limited to {@code DB_THREADS} by
+ * {@link ProductionConnectionRetriever#limitConnections(int, Duration)}, so that waiting for a connection does not
+ * take a thread.
+ * <p>
+ * The time tasks spend in the queue is recorded in the {@code tiw_db_executor_queue_seconds} metric, rejected tasks
+ * in {@code tiw_db_executor_rejected_total}.
+ */
+public class DatabaseExecutor implements AutoCloseable {
+    /**
+     * Name of the {@link ServletContext} attribute containing the shared instance
+     */
+    public static final String ATTRIBUTE = "it.polimi.tiw.ria.dbExecutor";
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseExecutor.class);
+    private static final int DEFAULT_THREADS = 8;
+
+    private final ExecutorService executor;
+    private final Semaphore admission;
+    private final Duration requestTimeout;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final Histogram queueWait;
+    private final Counter rejected;
+
+    /**
+     * Creates a new DatabaseExecutor
+     *
+     * @param threads        the number of threads, which should match the size of the connection pool
+     * @param queueCapacity  the maximum number of tasks waiting for a thread
+     * @param requestTimeout the maximum time a request may wait for its task to finish
+     * @throws NullPointerException     if {@code requestTimeout} is null
+     * @throws IllegalArgumentException if any number is not positive
+     */
+    public DatabaseExecutor(int threads, int queueCapacity, Duration requestTimeout) {
+        this(platformExecutor(threads, queueCapacity), null, requestTimeout);
+    }
+
+    private DatabaseExecutor(ExecutorService executor, Semaphore admission, Duration requestTimeout) {
+        this.executor = executor;
+        this.admission = admission;
+        this.requestTimeout = Objects.requireNonNull(requestTimeout);
+        MetricRegistry registry = MetricRegistry.getDefault();
+        queueWait = registry.histogram("tiw_db_executor_queue_seconds",
+                "Time spent by requests waiting for a database worker, in seconds");
+        rejected = registry.counter("tiw_db_executor_rejected_total",
+                "Requests rejected because the database work queue was full");
+        registry.gauge("tiw_db_executor_queued", "Requests waiting for a database worker", queued::get);
+        registry.gauge("tiw_db_executor_active", "Database workers running a request", active::get);
+    }
+
+    /**
+     * Creates a new DatabaseExecutor running each task on a new virtual thread
+     *
+     * @param maxRequests    the maximum number of tasks admitted at the same time
+     * @param requestTimeout the maximum time a request may wait for its task to finish
+     * @return a new DatabaseExecutor using virtual threads
+     * @throws NullPointerException          if {@code requestTimeout} is null
+     * @throws IllegalArgumentException      if {@code maxRequests} is not positive
+     * @throws UnsupportedOperationException if the running JVM does not support virtual threads
+     */
+    public static DatabaseExecutor virtual(int maxRequests, Duration requestTimeout) {
+        if (maxRequests <= 0) throw new IllegalArgumentException("maxRequests must be positive");
+        return new DatabaseExecutor(VirtualThreads.newExecutor(), new Semaphore(maxRequests), requestTimeout);
+    }
+
+    /**
+     * Returns the instance shared by the servlets of the given context, creating it if needed from the context
+     * parameters: {@code DB_EXECUTOR} ({@code platform}, the default, or {@code virtual}), {@code DB_THREADS},
+     * {@code DB_REQUEST_TIMEOUT} (seconds, default 30) and, for platform threads, {@code DB_QUEUE} (default 64) or, for
+     * virtual threads, {@code DB_MAX_REQUESTS} (default 10000) and {@code DB_PERMIT_TIMEOUT} (seconds, default 10).
+     * <p>
+     * {@code DB_THREADS} should be left unset, so that it is read from the {@code maxTotal} attribute of the
+     * {@code jdbc/productionDb} pool and the two cannot disagree. If the pool is not a DBCP {@link BasicDataSource},
+     * it defaults to {@value #DEFAULT_THREADS}.
+     *
+     * @param context the {@link ServletContext}
+     * @return the shared DatabaseExecutor
+     */
+    public static DatabaseExecutor of(ServletContext context) {
+        synchronized (context) {
+            Object executor = context.getAttribute(ATTRIBUTE);
+            if (executor instanceof DatabaseExecutor e)
+                return e;
+            DatabaseExecutor created = create(context);
+            context.setAttribute(ATTRIBUTE, created);
+            return created;
+        }
+    }
+
+    /**
+     * Queues the given task, unless the queue is full
+     *
+     * @param task the task to run
+     * @return true if the task has been queued, false if it has been rejected
+     */
+    public boolean submit(Runnable task) {
+        if (admission != null && !admission.tryAcquire()) {
+            rejected.inc();
+            return false;
+        }
+        long submitted = System.nanoTime();
+        queued.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                queueWait.observeNanos(System.nanoTime() - submitted);
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                    if (admission != null) admission.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            if (admission != null) admission.release();
+            rejected.inc();
+            return false;
+        }
+    }
+
+    /**
+     * Returns the maximum time a request may wait for its task to finish
+     *
+     * @return the request timeout
+     */
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Returns true if tasks run on virtual threads
+     *
+     * @return true if tasks run on virtual threads
+     */
+    public boolean isVirtual() {
+        return admission != null;
+    }
+
+    /**
+     * Stops accepting tasks and waits for the queued ones to finish
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static DatabaseExecutor create(ServletContext context) {
+        String configuredThreads = context.getInitParameter("DB_THREADS");
+        int threads = configuredThreads == null ? poolSize() : Integer.parseInt(configuredThreads);
+        Duration requestTimeout = Duration.ofSeconds(intParameter(context, "DB_REQUEST_TIMEOUT", 30));
+        String mode = context.getInitParameter("DB_EXECUTOR");
+        if ("virtual".equals(mode)) {
+            if (VirtualThreads.isAvailable()) {
+                ProductionConnectionRetriever.getInstance().limitConnections(threads,
+                        Duration.ofSeconds(intParameter(context, "DB_PERMIT_TIMEOUT", 10)));
+                return virtual(intParameter(context, "DB_MAX_REQUESTS", 10000), requestTimeout);
+            }
+            logger.warn("Virtual threads are not supported by this JVM, using {} platform threads", threads);
+        } else if (mode != null && !"platform".equals(mode)) {
+            throw new IllegalArgumentException("Unknown database executor " + mode);
+        }
+        int queueCapacity = intParameter(context, "DB_QUEUE", 64);
+        logger.info("Running database requests on {} threads with a queue of {}", threads, queueCapacity);
+        return new DatabaseExecutor(threads, queueCapacity, requestTimeout);
+    }
+
+    /**
+     * Returns the maximum number of connections of the production pool
+     */
+    private static int poolSize() {
+        try {
+            DataSource ds = ProductionConnectionRetriever.getInstance().getDataSource();
+            if (ds instanceof BasicDataSource b && b.getMaxTotal() > 0)
+                return b.getMaxTotal();
+            logger.warn("Cannot read the size of the connection pool, using {} threads", DEFAULT_THREADS);
+        } catch (IllegalStateException e) {
+            logger.warn("Cannot look up the connection pool, using {} threads", DEFAULT_THREADS, e);
+        }
+        return DEFAULT_THREADS;
+    }
+
+    private static ThreadPoolExecutor platformExecutor(int threads, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r, "db-worker-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static int intParameter(ServletContext context, String name, int defaultValue) {
+        String value = context.getInitParameter(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+}
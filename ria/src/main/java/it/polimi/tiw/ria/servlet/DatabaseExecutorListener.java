@@ -0,0 +1,31 @@
+package it.polimi.tiw.ria.servlet;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Creates the {@link DatabaseExecutor} shared by the servlets of the application when the context starts and shuts it
+ * down, letting queued requests finish, when the context is destroyed.
+ *
+ * @see DatabaseExecutor#of(javax.servlet.ServletContext)
+ */
+@WebListener
+public class DatabaseExecutorListener implements ServletContextListener {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        DatabaseExecutor.of(sce.getServletContext());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        DatabaseExecutor.of(sce.getServletContext()).close();
+        sce.getServletContext().removeAttribute(DatabaseExecutor.ATTRIBUTE);
+    }
+}
@@ -0,0 +1,164 @@
+package it.polimi.tiw.ria.servlet;
+
+import com.google.gson.Gson;
+import it.polimi.tiw.api.beans.Transfer;
+import it.polimi.tiw.api.events.TransferEventBus;
+import it.polimi.tiw.api.metrics.Counter;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * Server-sent event stream of the transfers received by a user. Events are queued and written with non-blocking IO
+ * whenever the connection can accept them, so that an idle stream holds no thread. At most {@value #MAX_PENDING}
+ * events can be queued: if the client does not keep up, the stream is closed and the client is expected to reconnect
+ * and reload its data.
+ */
+class EventStream implements WriteListener, AsyncListener, Consumer<Transfer> {
+    static final int MAX_PENDING = 64;
+    private static final byte[] RETRY = "retry: 5000\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PING = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final AsyncContext ctx;
+    private final Gson gson;
+    private final Counter dropped;
+    private final Consumer<EventStream> onClose;
+    private final Deque<byte[]> pending = new ArrayDeque<>();
+    private ServletOutputStream out;
+    private TransferEventBus.Subscription subscription;
+    private boolean closed;
+
+    EventStream(AsyncContext ctx, Gson gson, Counter dropped, Consumer<EventStream> onClose) {
+        this.ctx = ctx;
+        this.gson = gson;
+        this.dropped = dropped;
+        this.onClose = onClose;
+    }
+
+    /**
+     * Starts writing to the response of the async context and subscribes to the transfers of the given user
+     */
+    synchronized void start(TransferEventBus bus, String userBase64Id) throws IOException {
+        pending.add(RETRY);
+        ctx.addListener(this);
+        subscription = bus.subscribe(userBase64Id, this);
+        out = ctx.getResponse().getOutputStream();
+        out.setWriteListener(this);
+    }
+
+    /**
+     * Queues the given transfer, closing the stream if too many events are already queued
+     */
+    @Override
+    public synchronized void accept(Transfer transfer) {
+        if (closed) return;
+        if (pending.size() >= MAX_PENDING) {
+            dropped.inc();
+            close();
+            return;
+        }
+        String event = "event: transfer\ndata: " + gson.toJson(transfer) + "\n\n";
+        pending.add(event.getBytes(StandardCharsets.UTF_8));
+        drain();
+    }
+
+    /**
+     * Sends a comment, so that proxies do not close the connection, unless events are still waiting to be sent
+     */
+    synchronized void heartbeat() {
+        if (closed || !pending.isEmpty()) return;
+        pending.add(PING);
+        drain();
+    }
+
+    /**
+     * Unsubscribes from the transfers and completes the response. Closing a stream more than once has no effect.
+     */
+    synchronized void close() {
+        if (closed) return;
+        cleanup();
+        try {
+            ctx.complete();
+        } catch (IllegalStateException ignored) {
+            // The request has already been completed by the container
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void onWritePossible() {
+        drain();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onError(Throwable t) {
+        close();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void onComplete(AsyncEvent event) {
+        cleanup();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        close();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onError(AsyncEvent event) {
+        close();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    /**
+     * Writes queued events until the connection would block
+     */
+    private void drain() {
+        if (closed || out == null) return;
+        try {
+            while (!pending.isEmpty() && out.isReady())
+                out.write(pending.poll());
+            if (pending.isEmpty() && out.isReady())
+                out.flush();
+        } catch (IOException | IllegalStateException e) {
+            close();
+        }
+    }
+
+    private void cleanup() {
+        if (closed) return;
+        closed = true;
+        pending.clear();
+        if (subscription != null) subscription.close();
+        onClose.accept(this);
+    }
+}
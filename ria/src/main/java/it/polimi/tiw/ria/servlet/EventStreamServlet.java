@@ -0,0 +1,112 @@
+package it.polimi.tiw.ria.servlet;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.google.gson.Gson;
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.events.TransferEventBus;
+import it.polimi.tiw.api.metrics.Counter;
+import it.polimi.tiw.api.metrics.MetricRegistry;
+import it.polimi.tiw.ria.auth.AuthUtils;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.annotation.WebInitParam;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static it.polimi.tiw.ria.servlet.ServletUtils.fromApiErrorToJSON;
+import static it.polimi.tiw.ria.servlet.ServletUtils.sendJson;
+
+/**
+ * Endpoint streaming, as server-sent events, the transfers received by the logged user as soon as they are committed.
+ * It accepts GET requests with the authorization token in the {@code token} query parameter, since
+ * {@code EventSource} cannot send request bodies or headers.
+ * <p>
+ * The request must provide a valid authorization token or the request will be rejected with a 401. The stream is
+ * closed when the token expires, after which the client should refresh it and reconnect.
+ * <p>
+ * Each transfer is sent as a {@code transfer} event whose data is the JSON representation of the transfer. A comment
+ * is sent every {@code heartbeatSeconds} (default 15) on idle streams. Streams use asynchronous, non-blocking IO: no
+ * thread is held while waiting for transfers.
+ */
+@WebServlet(value = "/api/events", asyncSupported = true,
+        initParams = @WebInitParam(name = "heartbeatSeconds", value = "15"))
+public class EventStreamServlet extends HttpServlet {
+    private static final Duration MAX_DURATION = Duration.ofMinutes(30);
+
+    private final transient Set<EventStream> streams = ConcurrentHashMap.newKeySet();
+    private transient ScheduledExecutorService heartbeats;
+    private transient Counter dropped;
+    private transient Gson gson;
+    private String iss, tokenSecret;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init() {
+        iss = getServletContext().getInitParameter("ISSUER");
+        tokenSecret = getServletContext().getInitParameter("TOKEN_SECRET");
+        gson = ServletUtils.gsonOf(getServletContext());
+        MetricRegistry registry = MetricRegistry.getDefault();
+        registry.gauge("tiw_sse_streams_open", "Open server-sent event streams", streams::size);
+        dropped = registry.counter("tiw_sse_streams_dropped_total",
+                "Server-sent event streams closed because the client could not keep up");
+        String heartbeat = getInitParameter("heartbeatSeconds");
+        long period = heartbeat == null ? 15 : Long.parseLong(heartbeat);
+        heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sse-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeats.scheduleAtFixedRate(() -> streams.forEach(EventStream::heartbeat), period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() {
+        heartbeats.shutdownNow();
+        streams.forEach(EventStream::close);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        DecodedJWT token;
+        try {
+            token = AuthUtils.verifyToken(req.getParameter("token"), iss, tokenSecret);
+        } catch (JWTVerificationException | NullPointerException e) {
+            sendJson(resp, 401, fromApiErrorToJSON(Errors.fromUnauthorized()));
+            return;
+        }
+        String userId = token.getClaim("userId").asString();
+        long remaining = token.getExpiresAt() == null
+                ? MAX_DURATION.toMillis()
+                : Math.min(token.getExpiresAt().getTime() - System.currentTimeMillis(), MAX_DURATION.toMillis());
+
+        resp.setStatus(200);
+        resp.setContentType("text/event-stream");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        resp.setHeader("X-Accel-Buffering", "no");
+        // The unwrapped response is used, so that events are not held back by the compression buffer
+        AsyncContext ctx = req.startAsync();
+        ctx.setTimeout(Math.max(remaining, 1000));
+        EventStream stream = new EventStream(ctx, gson, dropped, streams::remove);
+        streams.add(stream);
+        stream.start(TransferEventBus.getDefault(), userId);
+    }
+}
@@ -0,0 +1,34 @@
+package it.polimi.tiw.ria.servlet;
+
+import com.google.gson.Gson;
+import it.polimi.tiw.api.beans.BeanTypeAdapters;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Creates the {@link Gson} instance shared by all the servlets of the application and stores it in the servlet context
+ * under {@link ServletUtils#GSON_ATTRIBUTE}. The instance has the streaming adapters of the beans registered, so beans
+ * are never (de)serialized through reflection.
+ *
+ * @see ServletUtils#gsonOf(javax.servlet.ServletContext)
+ */
+@WebListener
+public class GsonContextListener implements ServletContextListener {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        sce.getServletContext().setAttribute(ServletUtils.GSON_ATTRIBUTE, BeanTypeAdapters.newGson());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        sce.getServletContext().removeAttribute(ServletUtils.GSON_ATTRIBUTE);
+    }
+}
@@ -11,7 +11,6 @@ import it.polimi.tiw.api.functional.Tuple;
 
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.Cookie;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -31,9 +30,10 @@ import static it.polimi.tiw.ria.servlet.ServletUtils.*;
  * In case of success, the servlet will create a new access token and return it together with the user details in the
  * response. Otherwise, it will return a JSON object containing information about what happened.
  */
-@WebServlet("/api/auth/login")
-public class LoginServlet extends HttpServlet {
+@WebServlet(value = "/api/auth/login", asyncSupported = true)
+public class LoginServlet extends AsyncApiServlet {
     private String iss, tokenSecret, refreshSecret;
+    private Gson gson;
 
     /**
      * {@inheritDoc}
@@ -43,6 +43,7 @@ public class LoginServlet extends HttpServlet {
         iss = getServletContext().getInitParameter("ISSUER");
         tokenSecret = getServletContext().getInitParameter("TOKEN_SECRET");
         refreshSecret = getServletContext().getInitParameter("REFRESH_SECRET");
+        gson = gsonOf(getServletContext());
     }
 
     /**
@@ -56,7 +57,7 @@ public class LoginServlet extends HttpServlet {
         }
 
         try (JsonReader jsonReader = new JsonReader(req.getReader())) {
-            LoginRequest loginRequest = new Gson().fromJson(jsonReader, LoginRequest.class);
+            LoginRequest loginRequest = gson.fromJson(jsonReader, LoginRequest.class);
             Tuple<Integer, JsonObject> res = ProductionConnectionRetriever.getInstance()
                     .with(c -> UserFacade.withDefaultObjects(c).authorize(loginRequest))
                     .match(u -> {
@@ -16,7 +16,6 @@ import it.polimi.tiw.api.functional.Tuple;
 import it.polimi.tiw.ria.auth.AuthUtils;
 
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -30,8 +29,8 @@ import static it.polimi.tiw.ria.servlet.ServletUtils.*;
  * <p>
  * If an error occurred, a suitable error JSON object is returned with the response.
  */
-@WebServlet("/api/accounts")
-public class NewAccountServlet extends HttpServlet {
+@WebServlet(value = "/api/accounts", asyncSupported = true)
+public class NewAccountServlet extends AsyncApiServlet {
     public String iss, tokenSecret;
 
     /**
@@ -12,7 +12,6 @@ import it.polimi.tiw.api.functional.Tuple;
 import it.polimi.tiw.ria.auth.AuthUtils;
 
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -33,8 +32,8 @@ import static java.util.Objects.isNull;
  * was a success, then a JSON object containing the {@code type} property set to {@code OK} will be sent in a 200
  * response. Otherwise, a suitable error object is returned in a response with suitable code.
  */
-@WebServlet("/api/contacts")
-public class NewContactServlet extends HttpServlet {
+@WebServlet(value = "/api/contacts", asyncSupported = true)
+public class NewContactServlet extends AsyncApiServlet {
     private Gson gson;
     private String iss, tokenSecret;
 
@@ -45,7 +44,7 @@ public class NewContactServlet extends HttpServlet {
     public void init() {
         iss = getServletContext().getInitParameter("ISSUER");
         tokenSecret = getServletContext().getInitParameter("TOKEN_SECRET");
-        gson = new Gson();
+        gson = gsonOf(getServletContext());
     }
 
     /**
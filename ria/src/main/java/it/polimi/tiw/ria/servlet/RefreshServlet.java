@@ -7,6 +7,8 @@ import it.polimi.tiw.api.error.ApiError;
 import it.polimi.tiw.api.error.Errors;
 import it.polimi.tiw.api.functional.Tuple;
 import it.polimi.tiw.ria.auth.AuthUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.Cookie;
@@ -30,6 +32,8 @@ import static it.polimi.tiw.ria.servlet.ServletUtils.sendJson;
  */
 @WebServlet("/api/auth/refresh")
 public class RefreshServlet extends HttpServlet {
+    private static final Logger logger = LoggerFactory.getLogger(RefreshServlet.class);
+
     private String iss, tokenSecret, refreshSecret;
 
     /**
@@ -67,8 +71,7 @@ public class RefreshServlet extends HttpServlet {
                     return Optional.empty();
                 return Optional.of(AuthUtils.newToken(userId, iss, tokenSecret));
             } catch (JWTVerificationException e) {
-                System.out.println("verification failed");
-                e.printStackTrace();
+                logger.debug("Refresh token verification failed", e);
                 return Optional.empty();
             }
         }).map(token -> {
@@ -11,7 +11,6 @@ import it.polimi.tiw.api.error.ApiError;
 import it.polimi.tiw.api.functional.Tuple;
 
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -36,8 +35,18 @@ import static it.polimi.tiw.ria.servlet.ServletUtils.*;
  *
  * @see ApiError
  */
-@WebServlet("/api/users")
-public class RegisterServlet extends HttpServlet {
+@WebServlet(value = "/api/users", asyncSupported = true)
+public class RegisterServlet extends AsyncApiServlet {
+    private Gson gson;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init() {
+        gson = gsonOf(getServletContext());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -49,7 +58,7 @@ public class RegisterServlet extends HttpServlet {
         }
 
         try (JsonReader jsonReader = new JsonReader(req.getReader())) {
-            RegistrationRequest registrationReq = new Gson().fromJson(jsonReader, RegistrationRequest.class);
+            RegistrationRequest registrationReq = gson.fromJson(jsonReader, RegistrationRequest.class);
             Tuple<Integer, JsonObject> res = ProductionConnectionRetriever.getInstance()
                     .with(c -> UserFacade.withDefaultObjects(c).register(registrationReq))
                     .match((u) -> {
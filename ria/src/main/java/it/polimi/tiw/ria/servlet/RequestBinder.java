@@ -0,0 +1,198 @@
+package it.polimi.tiw.ria.servlet;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import it.polimi.tiw.api.error.ApiError;
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.DoublePredicate;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Binds the JSON body of a request to an object in a single pass over the {@link JsonReader} tokens, without building
+ * a tree first. Each field is validated as soon as it is read, so a request is rejected at the first invalid value,
+ * without reading the rest of the body. Bodies larger than the maximum size are rejected with a 413, before reading
+ * them if they declare their length.
+ * <p>
+ * Every declared field is mandatory; unknown fields are skipped. A binder is immutable once configured and can be
+ * shared by all the requests of a servlet.
+ *
+ * <pre>
+ *     RequestBinder&lt;Request&gt; binder = RequestBinder.of(Request::new)
+ *             .string("token", (r, v) -&gt; r.token = v)
+ *             .decimal("amount", (r, v) -&gt; r.amount = v, v -&gt; v &gt; 0);
+ *     ApiResult&lt;Request&gt; request = binder.bind(req);
+ * </pre>
+ *
+ * @param <T> the type of the bound object
+ */
+public class RequestBinder<T> {
+    /**
+     * Default maximum size of a body, in characters
+     */
+    public static final int DEFAULT_MAX_BODY_SIZE = 16 * 1024;
+    private static final Pattern DECIMAL = Pattern.compile("^[+-]?\\d+(([.,])\\d+)?$");
+
+    private final Supplier<T> factory;
+    private final Map<String, Field<T>> fields = new HashMap<>();
+    private int maxBodySize = DEFAULT_MAX_BODY_SIZE;
+
+    private RequestBinder(Supplier<T> factory) {
+        this.factory = Objects.requireNonNull(factory);
+    }
+
+    /**
+     * Creates a new binder, whose objects are created by the given factory
+     *
+     * @param factory the factory of the bound objects
+     * @param <T>     the type of the bound object
+     * @return a new binder with no fields
+     * @throws NullPointerException if {@code factory} is null
+     */
+    public static <T> RequestBinder<T> of(Supplier<T> factory) {
+        return new RequestBinder<>(factory);
+    }
+
+    /**
+     * Declares a string field. Numbers are accepted and read as strings, every other value is invalid.
+     *
+     * @param name   the name of the field
+     * @param setter the function storing the value in the bound object
+     * @return this binder
+     * @throws NullPointerException if any parameter is null
+     */
+    public RequestBinder<T> string(String name, BiConsumer<T, String> setter) {
+        Objects.requireNonNull(setter);
+        fields.put(Objects.requireNonNull(name), (in, target) -> {
+            JsonToken token = in.peek();
+            if (token != JsonToken.STRING && token != JsonToken.NUMBER) return false;
+            setter.accept(target, in.nextString());
+            return true;
+        });
+        return this;
+    }
+
+    /**
+     * Declares a boolean field
+     *
+     * @param name   the name of the field
+     * @param setter the function storing the value in the bound object
+     * @return this binder
+     * @throws NullPointerException if any parameter is null
+     */
+    public RequestBinder<T> bool(String name, BiConsumer<T, Boolean> setter) {
+        Objects.requireNonNull(setter);
+        fields.put(Objects.requireNonNull(name), (in, target) -> {
+            if (in.peek() != JsonToken.BOOLEAN) return false;
+            setter.accept(target, in.nextBoolean());
+            return true;
+        });
+        return this;
+    }
+
+    /**
+     * Declares a decimal field. The value can be a number or a string, and must be written in plain decimal notation,
+     * with a dot or a comma as separator (e.g. {@code 12}, {@code "12.50"}, {@code "12,5"}).
+     *
+     * @param name   the name of the field
+     * @param setter the function storing the value in the bound object
+     * @param check  the predicate a value must satisfy to be valid
+     * @return this binder
+     * @throws NullPointerException if any parameter is null
+     */
+    public RequestBinder<T> decimal(String name, ObjDoubleConsumer<T> setter, DoublePredicate check) {
+        Objects.requireNonNull(setter);
+        Objects.requireNonNull(check);
+        fields.put(Objects.requireNonNull(name), (in, target) -> {
+            JsonToken token = in.peek();
+            if (token != JsonToken.STRING && token != JsonToken.NUMBER) return false;
+            String raw = in.nextString();
+            if (!DECIMAL.matcher(raw).matches()) return false;
+            double value = Double.parseDouble(raw.replace(',', '.'));
+            if (!check.test(value)) return false;
+            setter.accept(target, value);
+            return true;
+        });
+        return this;
+    }
+
+    /**
+     * Sets the maximum size of a body, in characters
+     *
+     * @param maxBodySize the maximum size
+     * @return this binder
+     * @throws IllegalArgumentException if {@code maxBodySize} is not positive
+     */
+    public RequestBinder<T> maxBodySize(int maxBodySize) {
+        if (maxBodySize <= 0) throw new IllegalArgumentException("Maximum body size must be positive");
+        this.maxBodySize = maxBodySize;
+        return this;
+    }
+
+    /**
+     * Binds the body of the given request. The result is an error with status 400 if the request is not JSON, is
+     * malformed, misses a field or has an invalid value, and with status 413 if the body is too large.
+     *
+     * @param req the {@link HttpServletRequest} whose body to bind
+     * @return an {@link ApiResult} containing the bound object or a suitable {@link ApiError}
+     */
+    public ApiResult<T> bind(HttpServletRequest req) {
+        if (ServletUtils.hasNotJSONContentType(req))
+            return ApiResult.error(ServletUtils.wrongTypeErrorSupplier.get());
+        if (req.getContentLengthLong() > maxBodySize)
+            return ApiResult.error(ServletUtils.bodyTooLargeSupplier.get());
+        try (Reader reader = new BoundedReader(req.getReader(), maxBodySize)) {
+            return bind(reader);
+        } catch (BoundedReader.TooLargeException e) {
+            return ApiResult.error(ServletUtils.bodyTooLargeSupplier.get());
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            return ApiResult.error(ServletUtils.invalidFormatSupplier.get());
+        }
+    }
+
+    /**
+     * Binds the JSON object read from the given reader
+     */
+    ApiResult<T> bind(Reader reader) throws IOException {
+        JsonReader in = new JsonReader(reader);
+        T target = factory.get();
+        Set<String> found = new HashSet<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            Field<T> field = fields.get(name);
+            if (field == null) {
+                in.skipValue();
+                continue;
+            }
+            if (!field.read(in, target))
+                return ApiResult.error(Errors.fromMalformedParameter(name));
+            found.add(name);
+        }
+        in.endObject();
+        if (found.size() < fields.size())
+            return ApiResult.error(ServletUtils.invalidFormatSupplier.get());
+        return ApiResult.ok(target);
+    }
+
+
+    @FunctionalInterface
+    private interface Field<T> {
+        /**
+         * Reads the value of the field into the target, returning false if the value is invalid
+         */
+        boolean read(JsonReader in, T target) throws IOException;
+    }
+}
@@ -0,0 +1,187 @@
+package it.polimi.tiw.ria.servlet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands the request and the response of an asynchronous request to the task handling it, so that they can be taken
+ * back if the request times out. Once {@link #detach() detached}, every call the task makes on them fails with an
+ * {@link IllegalStateException}, and writes to a writer or stream it obtained earlier fail with an
+ * {@link IOException}: the task never touches objects that the container has recycled for another request.
+ * <p>
+ * Calls are serialized with a lock, so {@link #detach()} waits for a write in progress to finish.
+ */
+final class RequestGuard {
+    private final ReentrantLock mutex = new ReentrantLock();
+    private final HttpServletRequest request;
+    private final HttpServletResponse response;
+    private boolean detached;
+
+    RequestGuard(HttpServletRequest request, HttpServletResponse response) {
+        this.request = proxy(HttpServletRequest.class, request);
+        this.response = proxy(HttpServletResponse.class, response);
+    }
+
+    /**
+     * Returns the request to hand to the task
+     */
+    HttpServletRequest request() {
+        return request;
+    }
+
+    /**
+     * Returns the response to hand to the task
+     */
+    HttpServletResponse response() {
+        return response;
+    }
+
+    /**
+     * Detaches the task from the request and the response, waiting for a call in progress to return
+     */
+    void detach() {
+        mutex.lock();
+        try {
+            detached = true;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    private <T> T proxy(Class<T> type, T target) {
+        return type.cast(Proxy.newProxyInstance(RequestGuard.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    mutex.lock();
+                    try {
+                        if (detached)
+                            throw new IllegalStateException("The request has timed out");
+                        Object result = method.invoke(target, args);
+                        if (result instanceof PrintWriter w)
+                            return new PrintWriter(new GuardedWriter(w));
+                        if (result instanceof ServletOutputStream s)
+                            return new GuardedOutputStream(s);
+                        return result;
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        mutex.unlock();
+                    }
+                }));
+    }
+
+    private void checkAttached() throws IOException {
+        if (detached)
+            throw new IOException("The request has timed out");
+    }
+
+    private class GuardedWriter extends Writer {
+        private final PrintWriter target;
+
+        GuardedWriter(PrintWriter target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(char[] buf, int off, int len) throws IOException {
+            mutex.lock();
+            try {
+                checkAttached();
+                target.write(buf, off, len);
+            } finally {
+                mutex.unlock();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            mutex.lock();
+            try {
+                checkAttached();
+                target.flush();
+            } finally {
+                mutex.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            mutex.lock();
+            try {
+                checkAttached();
+                target.close();
+            } finally {
+                mutex.unlock();
+            }
+        }
+    }
+
+    private class GuardedOutputStream extends ServletOutputStream {
+        private final ServletOutputStream target;
+
+        GuardedOutputStream(ServletOutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            mutex.lock();
+            try {
+                checkAttached();
+                target.write(b);
+            } finally {
+                mutex.unlock();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            mutex.lock();
+            try {
+                checkAttached();
+                target.write(b, off, len);
+            } finally {
+                mutex.unlock();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            mutex.lock();
+            try {
+                checkAttached();
+                target.flush();
+            } finally {
+                mutex.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            mutex.lock();
+            try {
+                checkAttached();
+                target.close();
+            } finally {
+                mutex.unlock();
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return !detached && target.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            target.setWriteListener(listener);
+        }
+    }
+}
@@ -5,16 +5,18 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.stream.JsonReader;
+import it.polimi.tiw.api.beans.BeanTypeAdapters;
 import it.polimi.tiw.api.error.ApiError;
 import it.polimi.tiw.api.functional.ApiResult;
 
+import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.function.Consumer;
-import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -22,10 +24,16 @@ import java.util.function.Supplier;
  * Miscellaneous utilities
  */
 public class ServletUtils {
-    private static final Supplier<ApiError> wrongTypeErrorSupplier =
+    /**
+     * Name of the servlet context attribute containing the shared {@link Gson} instance
+     */
+    public static final String GSON_ATTRIBUTE = "it.polimi.tiw.ria.gson";
+    static final Supplier<ApiError> wrongTypeErrorSupplier =
             () -> new ApiError(400, "Wrong content type");
-    private static final Supplier<ApiError> invalidFormatSupplier =
+    static final Supplier<ApiError> invalidFormatSupplier =
             () -> new ApiError(400, "Object is not formatted correctly");
+    static final Supplier<ApiError> bodyTooLargeSupplier =
+            () -> new ApiError(413, "Request body is too large");
 
     /**
      * Sends a formatted JSON error message with status code 400. To be used when the request does not contain JSON.
@@ -37,6 +45,23 @@ public class ServletUtils {
         sendJson(res, 400, fromApiErrorToJSON(wrongTypeErrorSupplier.get()));
     }
 
+    /**
+     * Returns the {@link Gson} instance shared by the application, created by {@link GsonContextListener}. If the
+     * listener has not run (e.g. when the servlets are used outside a container), an instance is created and stored in
+     * the context.
+     *
+     * @param context the {@link ServletContext}
+     * @return the shared {@link Gson} instance
+     */
+    public static Gson gsonOf(ServletContext context) {
+        Object gson = context.getAttribute(GSON_ATTRIBUTE);
+        if (gson instanceof Gson g)
+            return g;
+        Gson created = BeanTypeAdapters.newGson();
+        context.setAttribute(GSON_ATTRIBUTE, created);
+        return created;
+    }
+
     /**
      * Sends a formatted JSON error message with status code 400. To be used when the request does contain JSON, but
      * is incompatible with the format expected (e.g. excepting an object and getting a string).
@@ -76,59 +101,90 @@ public class ServletUtils {
     }
 
     /**
-     * Check that the body of the request is JSON and that it deserializes to the given class. Then apply the given
-     * {@link Predicate} to check whether the parsed object is acceptable or not.
+     * Sets the given strong entity tag on the response and checks it against the {@code If-None-Match} header of the
+     * request. If it matches, the response is completed with a 304 and true is returned: the caller must not send a
+     * body.
      *
-     * @param gson         the {@link Gson} instance to use
-     * @param req          the {@link HttpServletRequest} whose body to parse
-     * @param requestClass the class containing the data of the request
-     * @param invalidCheck the {@link Predicate} that tests whether the parsed object is invalid or not
-     * @param <T>          the type of the request class
-     * @return an {@link ApiResult} containing the parsed object or a suitable {@link ApiError}
+     * @param req  the {@link HttpServletRequest}
+     * @param res  the {@link HttpServletResponse}
+     * @param etag the entity tag of the current representation, quotes included
+     * @return true if the client already has the current representation
      */
-    public static <T> ApiResult<T> checkRequestFormat(Gson gson, HttpServletRequest req, Class<T> requestClass, Predicate<T> invalidCheck) {
-        return checkRequestFormat(gson, req, requestClass, Function.identity(), invalidCheck);
+    public static boolean checkNotModified(HttpServletRequest req, HttpServletResponse res, String etag) {
+        res.setHeader("ETag", etag);
+        res.setHeader("Cache-Control", "no-cache");
+        String header = req.getHeader("If-None-Match");
+        if (header == null) return false;
+        for (String candidate : header.split(",")) {
+            String c = candidate.trim();
+            if (c.equals("*") || c.equals(etag)) {
+                res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the given {@code Accept-Encoding} header accepts the given content coding with a non-zero
+     * quality.
+     *
+     * @param header   the value of the {@code Accept-Encoding} header, may be null
+     * @param encoding the content coding, in lower case (e.g. {@code gzip})
+     * @return true if the client accepts {@code encoding}
+     */
+    public static boolean acceptsEncoding(String header, String encoding) {
+        if (header == null) return false;
+        for (String part : header.toLowerCase(Locale.ROOT).split(",")) {
+            String[] params = part.trim().split(";");
+            if (!params[0].trim().equals(encoding)) continue;
+            for (int i = 1; i < params.length; i++) {
+                String p = params[i].trim();
+                if (p.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(p.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
     }
 
     /**
-     * Check that the body of the request is JSON and apply the mapper. Then deserialize the object to the given class
-     * and apply the {@link Predicate} to check whether the parsed object is acceptable or not.
+     * Check that the body of the request is JSON and that it deserializes to the given class. Then apply the given
+     * {@link Predicate} to check whether the parsed object is acceptable or not. The body is deserialized in a single
+     * pass and rejected with a 413 if it is larger than {@link RequestBinder#DEFAULT_MAX_BODY_SIZE}.
      *
      * @param gson         the {@link Gson} instance to use
      * @param req          the {@link HttpServletRequest} whose body to parse
      * @param requestClass the class containing the data of the request
-     * @param jsonModifier the mapper that modifies the read JSON before being deserialized to {@code requestClass}. If
-     *                     the mapper returns null, then the object is considered invalid
      * @param invalidCheck the {@link Predicate} that tests whether the parsed object is invalid or not
      * @param <T>          the type of the request class
      * @return an {@link ApiResult} containing the parsed object or a suitable {@link ApiError}
+     * @see RequestBinder
      */
-    public static <T> ApiResult<T> checkRequestFormat(Gson gson,
-                                                      HttpServletRequest req,
-                                                      Class<T> requestClass,
-                                                      Function<JsonElement, JsonElement> jsonModifier,
-                                                      Predicate<T> invalidCheck) {
+    public static <T> ApiResult<T> checkRequestFormat(Gson gson, HttpServletRequest req, Class<T> requestClass, Predicate<T> invalidCheck) {
         if (hasNotJSONContentType(req))
             return ApiResult.error(wrongTypeErrorSupplier.get());
+        if (req.getContentLengthLong() > RequestBinder.DEFAULT_MAX_BODY_SIZE)
+            return ApiResult.error(bodyTooLargeSupplier.get());
 
-        T ret;
-        try (JsonReader reader = new JsonReader(req.getReader())) {
-            JsonElement elem = gson.fromJson(reader, JsonElement.class);
-            elem = jsonModifier.apply(elem);
-            if (elem != null) {
-                ret = gson.fromJson(elem, requestClass);
-                return ret == null || invalidCheck.test(ret)
-                        ? ApiResult.error(invalidFormatSupplier.get())
-                        : ApiResult.ok(ret);
-            } else {
-                return ApiResult.error(invalidFormatSupplier.get());
-            }
+        try (JsonReader reader = new JsonReader(new BoundedReader(req.getReader(), RequestBinder.DEFAULT_MAX_BODY_SIZE))) {
+            T ret = gson.fromJson(reader, requestClass);
+            return ret == null || invalidCheck.test(ret)
+                    ? ApiResult.error(invalidFormatSupplier.get())
+                    : ApiResult.ok(ret);
         } catch (Exception e) {
-            return ApiResult.error(invalidFormatSupplier.get());
+            // Gson wraps the exceptions of the reader
+            return ApiResult.error(e.getCause() instanceof BoundedReader.TooLargeException
+                    ? bodyTooLargeSupplier.get()
+                    : invalidFormatSupplier.get());
         }
     }
 
-
     /**
      * Returns true if the given request has not a JSON Content-Type header.
      *
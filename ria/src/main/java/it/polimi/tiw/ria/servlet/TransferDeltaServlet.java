@@ -0,0 +1,103 @@
+package it.polimi.tiw.ria.servlet;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import it.polimi.tiw.api.TransferFacade;
+import it.polimi.tiw.api.beans.TransferDelta;
+import it.polimi.tiw.api.dbaccess.ProductionConnectionRetriever;
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.functional.Tuple;
+import it.polimi.tiw.ria.auth.AuthUtils;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Objects;
+
+import static it.polimi.tiw.ria.servlet.ServletUtils.*;
+
+/**
+ * Endpoint returning only the transfers of an account committed after a cursor, so that a client refreshing the
+ * transfer list reads just the new ones. It accepts POST requests containing a JSON object formatted as such:
+ *
+ * <ul>
+ *     <li>{@code accountId}: the id of the account to query</li>
+ *     <li>{@code cursor}: the cursor returned by the previous request or by {@link AccountDetailsServlet}</li>
+ *     <li>{@code token}: the identification token</li>
+ * </ul>
+ * <p>
+ * The request must provide a valid authorization code or the request will be rejected with a 401. Moreover, the user
+ * identified by the given token needs to be the owner of the account queried or the access to the resource will be
+ * prohibited and request rejected with a 403.
+ * <p>
+ * The endpoint will respond with a JSON object containing the arrays of the new incoming and outgoing transfers,
+ * formatted as in {@link AccountDetailsServlet}, the current {@code balance} of the account and the {@code cursor} to
+ * send with the next request.
+ * <p>
+ * If any error has been encountered, an error object will be attached to the response.
+ */
+@WebServlet(value = "/api/accounts/transfers/since", asyncSupported = true)
+public class TransferDeltaServlet extends AsyncApiServlet {
+    private String iss, tokenSecret;
+    private Gson gson;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init() {
+        iss = getServletContext().getInitParameter("ISSUER");
+        tokenSecret = getServletContext().getInitParameter("TOKEN_SECRET");
+        gson = gsonOf(getServletContext());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Tuple<Integer, JsonObject> res =
+                checkRequestFormat(gson, req, Request.class, r -> r.accountId == null || r.cursor == null)
+                        .flatMap(request -> validateToken(request.token)
+                                .flatMap(userId -> ProductionConnectionRetriever.getInstance()
+                                        .with(c -> TransferFacade.withDefaultObjects(c)
+                                                .since(request.accountId, request.cursor))
+                                        .flatMap(delta -> checkPermissions(delta, userId))))
+                        .match(delta -> {
+                                    JsonObject obj = new JsonObject();
+                                    obj.addProperty("type", "OK");
+                                    obj.add("incoming", listToJsonArray(gson, delta.getIncoming()));
+                                    obj.add("outgoing", listToJsonArray(gson, delta.getOutgoing()));
+                                    obj.addProperty("balance", delta.getBalance());
+                                    obj.addProperty("cursor", delta.getCursor());
+                                    return new Tuple<>(200, obj);
+                                },
+                                err -> new Tuple<>(err.statusCode(), fromApiErrorToJSON(err)));
+        sendJson(resp, res.getFirst(), res.getSecond());
+    }
+
+    private ApiResult<String> validateToken(String token) {
+        try {
+            return ApiResult.ok(Objects.requireNonNull(AuthUtils.verifyToken(token, iss, tokenSecret)
+                    .getClaim("userId")
+                    .asString()));
+        } catch (JWTVerificationException | NullPointerException e) {
+            return ApiResult.error(Errors.fromUnauthorized());
+        }
+    }
+
+    private ApiResult<TransferDelta> checkPermissions(TransferDelta delta, String userId) {
+        if (Objects.equals(delta.getOwnerId(), userId))
+            return ApiResult.ok(delta);
+        return ApiResult.error(Errors.fromPermissionDenied("account"));
+    }
+
+    private static class Request {
+        private String accountId;
+        private Long cursor;
+        private String token;
+    }
+}
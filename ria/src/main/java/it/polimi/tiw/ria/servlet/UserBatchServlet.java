@@ -0,0 +1,147 @@
+package it.polimi.tiw.ria.servlet;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import it.polimi.tiw.api.AccountFacade;
+import it.polimi.tiw.api.UserFacade;
+import it.polimi.tiw.api.beans.Account;
+import it.polimi.tiw.api.beans.User;
+import it.polimi.tiw.api.dbaccess.ProductionConnectionRetriever;
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.functional.Tuple;
+import it.polimi.tiw.ria.auth.AuthUtils;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static it.polimi.tiw.ria.servlet.ServletUtils.*;
+
+/**
+ * Endpoint for looking up many users at once, e.g. all the counterparties of a transfer history. It accepts POST
+ * requests containing a JSON object with the following properties:
+ *
+ * <ol>
+ *     <li>{@code token} the authorization token</li>
+ *     <li>{@code ids} the base64 ids of the users to look up (optional)</li>
+ *     <li>{@code accountIds} the base64 ids of accounts whose owners will be looked up (optional)</li>
+ * </ol>
+ * <p>
+ * At least one id and at most {@value #MAX_IDS} ids in total must be given, or the request will be rejected with a
+ * 400. The request must provide a valid authorization token or the request will be rejected with a 401.
+ * <p>
+ * The response will contain a JSON object with the following properties:
+ *
+ * <ol>
+ *     <li>{@code users} an array of objects with the {@code base64Id}, {@code username}, {@code name} and
+ *     {@code surname} of each user found, in the order of {@code ids} followed by the owners of {@code accountIds}</li>
+ *     <li>{@code owners} an object mapping each account found to the id of its owner</li>
+ *     <li>{@code missing} an array with the ids of the users and accounts that could not be found</li>
+ * </ol>
+ * <p>
+ * If any error has been encountered, a suitable JSON object describing the error is attached in the response.
+ */
+@WebServlet(value = "/api/users/batch", asyncSupported = true)
+public class UserBatchServlet extends AsyncApiServlet {
+    /**
+     * Maximum number of ids that can be looked up in a single request
+     */
+    public static final int MAX_IDS = 256;
+
+    private Gson gson;
+    private String iss, tokenSecret;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init() {
+        iss = getServletContext().getInitParameter("ISSUER");
+        tokenSecret = getServletContext().getInitParameter("TOKEN_SECRET");
+        gson = gsonOf(getServletContext());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Tuple<Integer, JsonObject> res =
+                checkRequestFormat(gson, req, Request.class, UserBatchServlet::isRequestInvalid)
+                        .flatMap(request -> checkToken(request).flatMap(__ ->
+                                ProductionConnectionRetriever.getInstance().with(c ->
+                                        AccountFacade.withDefaultObjects(c)
+                                                .byIds(orEmpty(request.accountIds))
+                                                .flatMap(accounts -> UserFacade.withDefaultObjects(c)
+                                                        .byIds(userIdsOf(request, accounts.getFirst()))
+                                                        .map(users -> toJson(users, accounts))))))
+                        .match(obj -> new Tuple<>(200, obj),
+                                err -> new Tuple<>(err.statusCode(), fromApiErrorToJSON(err)));
+        sendJson(resp, res.getFirst(), res.getSecond());
+    }
+
+    private static boolean isRequestInvalid(Request r) {
+        int count = orEmpty(r.ids).size() + orEmpty(r.accountIds).size();
+        return count == 0 || count > MAX_IDS;
+    }
+
+    private ApiResult<String> checkToken(Request request) {
+        try {
+            return ApiResult.ok(AuthUtils.verifyToken(request.token, iss, tokenSecret)
+                    .getClaim("userId")
+                    .asString());
+        } catch (JWTVerificationException | NullPointerException e) {
+            return ApiResult.error(Errors.fromUnauthorized());
+        }
+    }
+
+    private static List<String> orEmpty(List<String> ids) {
+        return ids == null ? List.of() : ids;
+    }
+
+    private static LinkedHashSet<String> userIdsOf(Request request, List<Account> accounts) {
+        LinkedHashSet<String> ids = new LinkedHashSet<>(orEmpty(request.ids));
+        for (Account a : accounts)
+            ids.add(a.getOwnerId());
+        return ids;
+    }
+
+    private static JsonObject toJson(Tuple<List<User>, List<String>> users,
+                                     Tuple<List<Account>, List<String>> accounts) {
+        JsonArray userArray = new JsonArray(users.getFirst().size());
+        for (User u : users.getFirst()) {
+            JsonObject o = new JsonObject();
+            o.addProperty("base64Id", u.getBase64Id());
+            o.addProperty("username", u.getUsername());
+            o.addProperty("name", u.getName());
+            o.addProperty("surname", u.getSurname());
+            userArray.add(o);
+        }
+        JsonObject owners = new JsonObject();
+        for (Account a : accounts.getFirst())
+            owners.addProperty(a.getBase64Id(), a.getOwnerId());
+        List<String> missingIds = new ArrayList<>(users.getSecond());
+        missingIds.addAll(accounts.getSecond());
+        JsonArray missing = new JsonArray(missingIds.size());
+        missingIds.forEach(missing::add);
+
+        JsonObject obj = new JsonObject();
+        obj.addProperty("type", "OK");
+        obj.add("users", userArray);
+        obj.add("owners", owners);
+        obj.add("missing", missing);
+        return obj;
+    }
+
+    private static class Request {
+        private String token;
+        private List<String> ids, accountIds;
+    }
+}
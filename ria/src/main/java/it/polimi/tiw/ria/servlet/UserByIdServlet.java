@@ -8,7 +8,6 @@ import it.polimi.tiw.api.error.Errors;
 import it.polimi.tiw.api.functional.Tuple;
 
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -20,8 +19,8 @@ import static it.polimi.tiw.ria.servlet.ServletUtils.sendJson;
  * Queries the database for a user with the id specified in the {@code id} parameter. If no such user has
  * been found, a 404 error will be sent, otherwise a JSON object containing the id of the User.
  */
-@WebServlet("/api/user/byId")
-public class UserByIdServlet extends HttpServlet {
+@WebServlet(value = "/api/user/byId", asyncSupported = true)
+public class UserByIdServlet extends AsyncApiServlet {
     /**
      * {@inheritDoc}
      */
@@ -8,7 +8,6 @@ import it.polimi.tiw.api.error.Errors;
 import it.polimi.tiw.api.functional.Tuple;
 
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -17,8 +16,8 @@ import java.io.IOException;
  * Queries the database for a user with the username specified in the {@code username} parameter. If no such user has
  * been found, a 404 error will be sent, otherwise a JSON object containing the id of the User.
  */
-@WebServlet("/api/user/byUsername")
-public class UserByUsernameServlet extends HttpServlet {
+@WebServlet(value = "/api/user/byUsername", asyncSupported = true)
+public class UserByUsernameServlet extends AsyncApiServlet {
     /**
      * {@inheritDoc}
      */
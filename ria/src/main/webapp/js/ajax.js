@@ -1,11 +1,17 @@
+// Responses of cacheable requests, keyed by url and request body (token excluded). Each entry holds the ETag sent by
+// the server and the response text.
+const ajaxResponseCache = new Map();
+
 function Ajax() {
     this._req = new XMLHttpRequest();
 
-    this._makeReq = function (method, url, data, json, callback) {
+    this._makeReq = function (method, url, data, json, callback, headers = {}) {
         this._req.onreadystatechange = () => callback(this._req);
         this._req.open(method, url);
         if (json)
             this._req.setRequestHeader("content-type", "application/json");
+        for (const [name, value] of Object.entries(headers))
+            this._req.setRequestHeader(name, value);
         if (data !== null)
             this._req.send(data);
         else
@@ -40,9 +46,26 @@ function Ajax() {
         })
     }
 
-    this.authenticatedPost = function (url, objectData, callback) {
+    // Requests rejected with a 503 were never processed, so they are sent again once after the delay in Retry-After
+    this._retryIfOverloaded = function (req, retries, retry) {
+        if (req.status !== 503 || retries <= 0)
+            return false;
+        const seconds = parseInt(req.getResponseHeader("Retry-After"));
+        setTimeout(retry, (isNaN(seconds) ? 1 : seconds) * 1000);
+        return true;
+    }
+
+    // If cacheable is true, the ETag of the response is stored and sent back in If-None-Match by the following
+    // requests with the same url and data: if the server answers 304, the callback receives the cached response as if
+    // it had been sent with a 200.
+    this.authenticatedPost = function (url, objectData, callback, cacheable = false, retries = 1) {
         if (!isLoggedIn())
             throw new Error("User is not logged in");
+        const retry = () => new Ajax().authenticatedPost(url, objectData, callback, cacheable, retries - 1);
+        if (cacheable) {
+            this._cachedPost(url, objectData, callback, retries, retry);
+            return;
+        }
         this._makeReq(
             "POST",
             url,
@@ -61,13 +84,50 @@ function Ajax() {
                             this._refreshTokenAndRetry("POST", url, objectData, callback);
                             break;
                         default:
-                            callback(req, false);
+                            if (!this._retryIfOverloaded(req, retries, retry))
+                                callback(req, false);
                     }
                 } else
                     callback(req, false);
             }
         );
     }
+
+    this._cachedPost = function (url, objectData, callback, retries, retry) {
+        const key = url + " " + JSON.stringify(objectData);
+        const cached = ajaxResponseCache.get(key);
+        this._makeReq(
+            "POST",
+            url,
+            JSON.stringify({
+                ...objectData,
+                token: getToken()
+            }),
+            true,
+            (req) => {
+                if (req.readyState !== XMLHttpRequest.DONE)
+                    return;
+                switch (req.status) {
+                    case 304:
+                        callback({readyState: XMLHttpRequest.DONE, status: 200, responseText: cached.text}, false);
+                        break;
+                    case 200:
+                        const etag = req.getResponseHeader("ETag");
+                        if (etag !== null)
+                            ajaxResponseCache.set(key, {etag: etag, text: req.responseText});
+                        callback(req, false);
+                        break;
+                    case 401:
+                        this._refreshTokenAndRetry("POST", url, objectData, callback);
+                        break;
+                    default:
+                        if (!this._retryIfOverloaded(req, retries, retry))
+                            callback(req, false);
+                }
+            },
+            cached === undefined ? {} : {"If-None-Match": cached.etag}
+        );
+    }
 }
 
 function convertFormDataToJSON(formData) {
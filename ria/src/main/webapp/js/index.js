@@ -1,4 +1,10 @@
 const volatileStorage = new Map();
+// Same as ContactDAO.MAX_PROFILES
+const MAX_PRELOADED_CONTACTS = 100;
+// Same as UserBatchServlet.MAX_IDS
+const MAX_BATCH_IDS = 256;
+// Longest wait, in milliseconds, before reopening a closed event stream
+const MAX_EVENT_RETRY_DELAY = 60000;
 
 function generateNewTableRow() {
     let row = document.createElement("tr");
@@ -98,6 +104,47 @@ function ViewOrchestrator(pageContainer,
         this._accountDetailsManager.show(account)
         this._newTransferFormManager.show(account);
     }
+
+    // Refreshes the view affected by a transfer received while the page is open
+    this.onIncomingTransfer = function (transfer) {
+        if (this._accountDetailsManager.isShowing(transfer.toId))
+            this._accountDetailsManager.refresh();
+        else if (this._accountListManager.isShowing())
+            this._accountListManager.refresh();
+    }
+}
+
+// Receives the transfers to the accounts of the user from /api/events. The browser reconnects by itself after network
+// errors; when the server rejects or closes the stream, e.g. because the token expired, the token is refreshed and the
+// stream reopened with exponential backoff.
+function TransferEventStream(onTransfer) {
+    this._onTransfer = onTransfer;
+    this._source = null;
+    this._retryDelay = 1000;
+
+    this.open = function () {
+        if (!isLoggedIn())
+            return;
+        this._source = new EventSource("/api/events?token=" + encodeURIComponent(getToken()));
+        this._source.addEventListener("open", () => this._retryDelay = 1000);
+        this._source.addEventListener("transfer", (e) => this._onTransfer(JSON.parse(e.data)));
+        this._source.addEventListener("error", () => {
+            if (this._source.readyState === EventSource.CLOSED)
+                this._reopen();
+        });
+    }
+
+    this._reopen = function () {
+        this._source.close();
+        setTimeout(() => new Ajax().get("/api/auth/refresh", (req) => {
+            if (req.readyState !== XMLHttpRequest.DONE)
+                return;
+            if (req.status === 200)
+                updateToken(JSON.parse(req.responseText).token);
+            this.open();
+        }), this._retryDelay);
+        this._retryDelay = Math.min(this._retryDelay * 2, MAX_EVENT_RETRY_DELAY);
+    }
 }
 
 function ModalManager(viewElements) {
@@ -164,6 +211,32 @@ function Dispatcher(modalManager) {
         }]
     ]
 
+    this.bootstrap = function () {
+        return new Promise((resolve, reject) => {
+            try {
+                new Ajax().authenticatedPost(
+                    "/api/session/bootstrap",
+                    {},
+                    (req, failedRefresh) => {
+                        if (req.readyState !== XMLHttpRequest.DONE)
+                            return;
+                        if (failedRefresh) {
+                            this._modal?.show(...this._modalParameters);
+                            reject("Session expired");
+                        } else if (req.status === 200)
+                            resolve(JSON.parse(req.responseText));
+                        else {
+                            console.log(req.responseText);
+                            reject("We could not load your data, please try again later");
+                        }
+                    }
+                );
+            } catch (ignored) {
+                this._modal?.show(...this._modalParameters);
+                reject("Session expired");
+            }
+        });
+    }
     this.fetchAccountList = function (userId, detailed = true) {
         return new Promise((resolve, reject) => {
             try {
@@ -190,7 +263,8 @@ function Dispatcher(modalManager) {
                                 console.log(req.responseText);
                                 reject("We could not fetch an account list, please try again later");
                         }
-                    }
+                    },
+                    true
                 );
             } catch (ignored) {
                 this._modal?.show(...this._modalParameters);
@@ -213,6 +287,29 @@ function Dispatcher(modalManager) {
                             resolve(obj);
                         } else
                             reject("Could not fetch details for this account");
+                    },
+                    true
+                );
+            } catch (ignored) {
+                this._modal?.show(...this._modalParameters);
+            }
+        });
+    }
+    this.fetchTransfersSince = function (accountId, cursor) {
+        return new Promise((resolve, reject) => {
+            try {
+                new Ajax().authenticatedPost(
+                    "/api/accounts/transfers/since",
+                    {accountId: accountId, cursor: cursor},
+                    (req, failedRefresh) => {
+                        if (req.readyState !== XMLHttpRequest.DONE)
+                            return;
+                        if (failedRefresh)
+                            this._modal?.show(...this._modalParameters);
+                        else if (req.status === 200)
+                            resolve(JSON.parse(req.responseText));
+                        else
+                            reject("Could not fetch the new transfers of this account");
                     }
                 );
             } catch (ignored) {
@@ -220,11 +317,12 @@ function Dispatcher(modalManager) {
             }
         });
     }
+
     this.fetchContacts = function (user) {
         return new Promise((resolve, reject) => {
             try {
                 new Ajax().authenticatedPost(
-                    "/api/contacts/ofUser",
+                    "/api/contacts/profiles",
                     {userId: user.base64Id},
                     (req, failedRefresh) => {
                         if (req.readyState !== XMLHttpRequest.DONE)
@@ -245,6 +343,54 @@ function Dispatcher(modalManager) {
             }
         });
     }
+    this.fetchAccountOwners = function (accountIds) {
+        return new Promise((resolve, reject) => {
+            try {
+                new Ajax().authenticatedPost(
+                    "/api/users/batch",
+                    {accountIds: accountIds},
+                    (req, failedRefresh) => {
+                        if (req.readyState !== XMLHttpRequest.DONE)
+                            return;
+                        if (failedRefresh) {
+                            this._modal?.show(...this._modalParameters);
+                        } else if (req.status === 200) {
+                            resolve(JSON.parse(req.responseText));
+                        } else {
+                            reject("We could not fetch the owners of the accounts");
+                            console.log(req.responseText);
+                        }
+                    }
+                );
+            } catch (ignored) {
+                this._modal?.show(...this._modalParameters);
+            }
+        });
+    }
+    this.suggestContacts = function (prefix) {
+        return new Promise((resolve, reject) => {
+            try {
+                new Ajax().authenticatedPost(
+                    "/api/contacts/suggest",
+                    {prefix: prefix},
+                    (req, failedRefresh) => {
+                        if (req.readyState !== XMLHttpRequest.DONE)
+                            return;
+                        if (failedRefresh) {
+                            this._modal?.show(...this._modalParameters);
+                        } else if (req.status === 200) {
+                            resolve(JSON.parse(req.responseText).suggestions);
+                        } else {
+                            reject("We could not complete the contact name");
+                            console.log(req.responseText);
+                        }
+                    }
+                );
+            } catch (ignored) {
+                this._modal?.show(...this._modalParameters);
+            }
+        });
+    }
     this.newAccount = function () {
         return new Promise((resolve, reject) => {
             try {
@@ -372,7 +518,10 @@ function AccountListManager(container, viewElements, modalManager, detailsClickC
     this.show = function () {
         if (this._viewElements.view.parent !== null)
             this._container.insertBefore(this._viewElements.view, null);
-        this._dispatcher.fetchAccountList(this._user.base64Id)
+        // The first time the list comes from the bootstrap request
+        let preloaded = volatileStorage.get('bootstrapAccounts');
+        volatileStorage.delete('bootstrapAccounts');
+        (preloaded !== undefined ? Promise.resolve(preloaded) : this._dispatcher.fetchAccountList(this._user.base64Id))
             .then(accountList => {
                 volatileStorage.set('accountList', accountList);
                 this._displayAccountList(this._detailsClickCallback)
@@ -386,6 +535,10 @@ function AccountListManager(container, viewElements, modalManager, detailsClickC
             this._container.removeChild(this._viewElements.view);
     }
 
+    this.isShowing = function () {
+        return this._viewElements.view.parentNode !== null;
+    }
+
     this.refresh = function () {
         this._clearAccountList();
         this._dispatcher.fetchAccountList(this._user.base64Id)
@@ -419,6 +572,9 @@ function AccountDetailsManager(container, viewElements, modalManager) {
     this._modalManager = modalManager;
     this._dispatcher = new Dispatcher(modalManager);
     this._currentlyShowingAccountId = undefined;
+    // Cursor returned by the last fetch and ids of the transfers shown, so that refreshes only add the new ones
+    this._cursor = undefined;
+    this._shownTransfers = new Set();
 
     this.addListeners = function (goBackCallback) {
         this._viewElements.backButton.addEventListener("click", (e) => goBackCallback(e));
@@ -431,17 +587,26 @@ function AccountDetailsManager(container, viewElements, modalManager) {
 
     this.show = function (account) {
         this._currentlyShowingAccountId = account.base64Id;
+        this._cursor = undefined;
         this._refetchAndDisplay(this._currentlyShowingAccountId)
         this._container.insertBefore(this._viewElements.view, null);
     }
 
     this.refresh = function () {
-        this._refetchAndDisplay(this._currentlyShowingAccountId, true);
+        if (this._cursor === undefined)
+            this._refetchAndDisplay(this._currentlyShowingAccountId, true);
+        else
+            this._addNewTransfers(this._currentlyShowingAccountId);
+    }
+
+    this.isShowing = function (accountId) {
+        return this._viewElements.view.parentNode !== null && this._currentlyShowingAccountId === accountId;
     }
 
     this._refetchAndDisplay = function (accountId, refreshList = false) {
         clearChildren(this._viewElements.incomingTransfers);
         clearChildren(this._viewElements.outgoingTransfers);
+        this._shownTransfers.clear();
 
         let p1 = refreshList
             ? this._dispatcher.fetchAccountList(this._user.base64Id)
@@ -450,18 +615,78 @@ function AccountDetailsManager(container, viewElements, modalManager) {
             const accountData = l.find(a => a.base64Id === accountId);
             return this._dispatcher.fetchAccountDetails(accountId)
                 .then(o => {
-                    o.incoming.forEach((t) =>
-                        this._viewElements.incomingTransfers.appendChild(this._constructRow(t, "fromId")));
-                    o.outgoing.forEach((t) =>
-                        this._viewElements.outgoingTransfers.appendChild(this._constructRow(t, "toId")));
+                    const counterparties = [];
+                    o.incoming.forEach((t) => {
+                        const tr = this._constructRow(t, "fromId");
+                        counterparties.push({tr: tr, accountId: t.fromId});
+                        this._shownTransfers.add(t.base64Id);
+                        this._viewElements.incomingTransfers.appendChild(tr);
+                    });
+                    o.outgoing.forEach((t) => {
+                        const tr = this._constructRow(t, "toId");
+                        counterparties.push({tr: tr, accountId: t.toId});
+                        this._shownTransfers.add(t.base64Id);
+                        this._viewElements.outgoingTransfers.appendChild(tr);
+                    });
+                    this._showCounterpartyOwners(counterparties);
                     this._viewElements.accountId.textContent = accountData.base64Id;
                     this._viewElements.accountBalance.textContent = accountData.balance;
                     this._currentlyShowingAccountId = accountId;
+                    this._cursor = o.cursor;
                 });
         })
             .catch(r => this._modalManager.showError(r));
     }
 
+    // Adds on top of the tables the transfers committed since the last fetch and updates the balance
+    this._addNewTransfers = function (accountId) {
+        this._dispatcher.fetchTransfersSince(accountId, this._cursor)
+            .then(o => {
+                if (accountId !== this._currentlyShowingAccountId || this._cursor === undefined)
+                    return;
+                const counterparties = [];
+                this._prependRows(o.incoming, "fromId", this._viewElements.incomingTransfers, counterparties);
+                this._prependRows(o.outgoing, "toId", this._viewElements.outgoingTransfers, counterparties);
+                this._showCounterpartyOwners(counterparties);
+                this._viewElements.accountBalance.textContent = o.balance;
+                this._cursor = Math.max(this._cursor, o.cursor);
+                const cached = volatileStorage.get('accountList')?.find(a => a.base64Id === accountId);
+                if (cached !== undefined)
+                    cached.balance = o.balance;
+            })
+            .catch(r => this._modalManager.showError(r));
+    }
+
+    // Transfers come newest first, so they are inserted starting from the oldest to keep the table ordered
+    this._prependRows = function (transfers, idToShow, tableBody, counterparties) {
+        for (let i = transfers.length - 1; i >= 0; i--) {
+            const t = transfers[i];
+            if (this._shownTransfers.has(t.base64Id))
+                continue;
+            this._shownTransfers.add(t.base64Id);
+            const tr = this._constructRow(t, idToShow);
+            counterparties.push({tr: tr, accountId: t[idToShow]});
+            tableBody.insertBefore(tr, tableBody.firstChild);
+        }
+    }
+
+    // Resolves the owners of all the accounts shown with a single request
+    this._showCounterpartyOwners = function (counterparties) {
+        const accountIds = [...new Set(counterparties.map(c => c.accountId))].slice(0, MAX_BATCH_IDS);
+        if (accountIds.length === 0)
+            return;
+        this._dispatcher.fetchAccountOwners(accountIds)
+            .then(batch => {
+                const users = new Map(batch.users.map(u => [u.base64Id, u]));
+                counterparties.forEach(c => {
+                    const owner = users.get(batch.owners[c.accountId]);
+                    if (owner !== undefined)
+                        c.tr.children[1].textContent = `${c.accountId} (${owner.username})`;
+                });
+            })
+            .catch(console.log);
+    }
+
     this._constructRow = function (t, idToShow) {
         let date = new Date(t.date).toLocaleString(
             "en-GB",
@@ -499,7 +724,9 @@ function NewTransferFormManager(container, viewElements, modalManager, afterTran
     this._modalManager = modalManager;
     this._dispatcher = new Dispatcher(modalManager);
     this._showingAccount = undefined;
-    this._contacts = [];
+    this._contacts = new Map();
+    this._contactsTruncated = false;
+    this._suggestedContacts = new Set();
     this._afterCloseCb = afterTransferSuccessful;
 
     this.addListeners = function () {
@@ -507,10 +734,22 @@ function NewTransferFormManager(container, viewElements, modalManager, afterTran
         this._viewElements.formElements.payeeId.addEventListener(
             "focus",
             () => {
-                this._dispatcher.fetchContacts(this._user)
+                let preloaded = volatileStorage.get('bootstrapContacts');
+                volatileStorage.delete('bootstrapContacts');
+                (preloaded !== undefined ? Promise.resolve(preloaded) : this._dispatcher.fetchContacts(this._user))
                     .then(contactList => this._populateContactDatalist(contactList))
                     .catch(r => this._modalManager.showError(r));
             });
+        this._viewElements.formElements.payeeId.addEventListener(
+            "input",
+            (e) => {
+                // Only the first contacts are preloaded, the others are completed by the server
+                if (!this._contactsTruncated || e.target.value === "")
+                    return;
+                this._dispatcher.suggestContacts(e.target.value)
+                    .then(suggestions => this._addContactSuggestions(suggestions))
+                    .catch(console.log);
+            });
         this._viewElements.formElements.payeeId.addEventListener(
             "change",
             (e) => this._checkPayeeId(e.target).catch(() => e.target.checkValidity())
@@ -540,12 +779,27 @@ function NewTransferFormManager(container, viewElements, modalManager, afterTran
     }
 
     this._populateContactDatalist = function (contactList) {
-        this._contacts = [];
+        this._contacts = new Map();
+        this._contactsTruncated = contactList.length >= MAX_PRELOADED_CONTACTS;
         clearChildren(this._viewElements.contacts);
         for (let i = 0; i < contactList.length; i++) {
-            this._contacts.push(contactList[i].contactBase64Id);
-            this._viewElements.contacts.appendChild(
-                this._createDatalistOption(contactList[i].contactBase64Id));
+            const profile = contactList[i];
+            this._contacts.set(profile.contactBase64Id, profile);
+            const option = this._createDatalistOption(profile.contactBase64Id);
+            option.setAttribute("label", `${profile.username} (${profile.name} ${profile.surname})`);
+            this._viewElements.contacts.appendChild(option);
+        }
+    }
+
+    this._addContactSuggestions = function (suggestions) {
+        for (let i = 0; i < suggestions.length; i++) {
+            const id = suggestions[i].contactBase64Id;
+            this._suggestedContacts.add(id);
+            if (this._viewElements.contacts.querySelector(`option[value="${CSS.escape(id)}"]`) !== null)
+                continue;
+            const option = this._createDatalistOption(id);
+            option.setAttribute("label", suggestions[i].username);
+            this._viewElements.contacts.appendChild(option);
         }
     }
 
@@ -553,6 +807,12 @@ function NewTransferFormManager(container, viewElements, modalManager, afterTran
         return new Promise((resolve, reject) => {
             if (userId === undefined || userId === "")
                 reject("You must specify a user ID");
+            // The accounts of saved contacts come with their profile, only unknown users need a request
+            const profile = this._contacts.get(userId);
+            if (profile !== undefined) {
+                resolve(profile.accountIds.map(id => ({base64Id: id})));
+                return;
+            }
             this._dispatcher.fetchAccountList(userId, false)
                 .then(list => resolve(list))
                 .catch(r => reject(r));
@@ -604,8 +864,10 @@ function NewTransferFormManager(container, viewElements, modalManager, afterTran
     }
 
     this._checkPayeeId = function (target) {
-        return this._dispatcher
-            .userById(target.value)
+        const lookup = this._contacts.has(target.value)
+            ? Promise.resolve(target.value)
+            : this._dispatcher.userById(target.value);
+        return lookup
             .then(id => {
                 target.setCustomValidity("");
                 return id;
@@ -624,6 +886,14 @@ function NewTransferFormManager(container, viewElements, modalManager, afterTran
             } else if (userId === "" || userId === undefined || userId === null) {
                 target.setCustomValidity("No user ID was specified");
                 reject();
+            } else if (this._contacts.has(userId)) {
+                if (this._contacts.get(userId).accountIds.includes(target.value)) {
+                    target.setCustomValidity("");
+                    resolve();
+                } else {
+                    target.setCustomValidity("Unable to find an account with the specified ID");
+                    reject();
+                }
             } else {
                 this._dispatcher.fetchAccountList(userId, false)
                     .then(accountList => {
@@ -699,7 +969,7 @@ function NewTransferFormManager(container, viewElements, modalManager, afterTran
     }
 
     this._isInContactList = function (id) {
-        return this._contacts.includes(id);
+        return this._contacts.has(id) || this._suggestedContacts.has(id);
     }
 
     this._addNewContact = function (contactId) {
@@ -792,5 +1062,15 @@ function NewTransferFormManager(container, viewElements, modalManager, afterTran
 
     userDetailsManager.injectUserDetails();
     logoutButtonManager.addListeners();
-    viewOrchestrator.init();
+    // Load user, accounts and contacts in one request; if it fails, each view fetches its own data
+    new Dispatcher(null).bootstrap()
+        .then(data => {
+            volatileStorage.set('bootstrapAccounts', data.accounts);
+            volatileStorage.set('bootstrapContacts', data.contacts);
+        })
+        .catch(r => console.log(r))
+        .finally(() => {
+            viewOrchestrator.init();
+            new TransferEventStream(t => viewOrchestrator.onIncomingTransfer(t)).open();
+        });
 }());
\ No newline at end of file
@@ -0,0 +1,44 @@
+package it.polimi.tiw.templated;
+
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.IThrottledTemplateProcessor;
+import org.thymeleaf.context.IContext;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Renders Thymeleaf templates in chunks of about {@code chunkSize} characters, flushing the writer after each one. When
+ * writing to a response, the first part of the page reaches the client while the rest is still being rendered, e.g.
+ * while iterating over a {@link it.polimi.tiw.api.dbaccess.TransferCursor}.
+ */
+public final class ChunkedRenderer {
+    /**
+     * Default size of a chunk in characters
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    private ChunkedRenderer() {
+    }
+
+    /**
+     * Processes the given template, flushing {@code out} each time about {@code chunkSize} characters have been written
+     *
+     * @param engine    the engine to use
+     * @param template  the template to process
+     * @param context   the context of the template
+     * @param out       where to write the result
+     * @param chunkSize the number of characters after which the output is flushed
+     * @throws IOException              if {@code out} cannot be written or flushed
+     * @throws IllegalArgumentException if {@code chunkSize} is not positive
+     */
+    public static void render(ITemplateEngine engine, String template, IContext context, Writer out, int chunkSize)
+            throws IOException {
+        if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive");
+        IThrottledTemplateProcessor processor = engine.processThrottled(template, context);
+        while (!processor.isFinished()) {
+            processor.process(chunkSize, out);
+            out.flush();
+        }
+    }
+}
@@ -1,37 +1,75 @@
 package it.polimi.tiw.templated;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serial;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.StringJoiner;
 
 /**
- * Convenience wrapper around a generic list of Strings that represents the navigation history of the user.
+ * Navigation history of the user, kept as a fixed-capacity ring buffer: once full, pushing a new url forgets the oldest
+ * one. Pushing the url the user is currently on does nothing, so reloading a page does not fill the history.
+ * <p>
+ * Both {@link #push(String)} and {@link #pop()} run in constant time. The serialized form only contains the urls
+ * actually stored, from the most recent to the oldest.
  */
-public class History {
-    private final ArrayList<String> history;
+public class History implements Serializable {
+    /**
+     * Number of urls remembered by a History created with the default constructor
+     */
+    public static final int DEFAULT_CAPACITY = 32;
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private transient String[] urls;
+    private transient int head;
+    private transient int size;
 
     /**
-     * Creates a new empty History
+     * Creates a new empty History with the default capacity
      */
     public History() {
-        history = new ArrayList<>();
+        this(DEFAULT_CAPACITY);
     }
 
     /**
-     * Pushes a new url into the History
+     * Creates a new empty History that remembers at most {@code capacity} urls
+     *
+     * @param capacity the maximum number of urls remembered
+     * @throws IllegalArgumentException if {@code capacity} is less than 2
+     */
+    public History(int capacity) {
+        if (capacity < 2) throw new IllegalArgumentException("Capacity must be at least 2");
+        urls = new String[capacity];
+    }
+
+    /**
+     * Pushes a new url into the History. If {@code url} is the current one, nothing is done.
      *
      * @param url the url to add
      * @throws NullPointerException if {@code url} is null
      */
     public void push(String url) {
         Objects.requireNonNull(url);
-        history.add(0, url);
+        if (url.equals(current())) return;
+        head = (head + 1) % urls.length;
+        urls[head] = url;
+        if (size < urls.length) size++;
     }
 
     /**
      * Pops the last url from the History. If the history is empty nothing is done
      */
     public void pop() {
-        if (!history.isEmpty()) history.remove(0);
+        if (size == 0) return;
+        urls[head] = null;
+        head = (head - 1 + urls.length) % urls.length;
+        size--;
     }
 
     /**
@@ -40,9 +78,9 @@ public class History {
      * @return the url of the page currently viewed by the user or null
      */
     public String current() {
-        if (history.isEmpty())
+        if (!hasCurrent())
             return null;
-        return history.get(0);
+        return get(0);
     }
 
     /**
@@ -54,7 +92,7 @@ public class History {
     public String last() {
         if (!hasLast())
             return null;
-        return history.get(1);
+        return get(1);
     }
 
     /**
@@ -63,7 +101,7 @@ public class History {
      * @return true if there is enough history to know the page currently viewed by the user
      */
     public boolean hasCurrent() {
-        return history.size() >= 1;
+        return size >= 1;
     }
 
     /**
@@ -72,7 +110,60 @@ public class History {
      * @return true if the history has a last viewed page.
      */
     public boolean hasLast() {
-        return history.size() >= 2;
+        return size >= 2;
+    }
+
+    /**
+     * Returns the maximum number of urls remembered
+     *
+     * @return the maximum number of urls remembered
+     */
+    public int getCapacity() {
+        return urls.length;
+    }
+
+    /**
+     * Returns the urls currently stored, from the most recent to the oldest. Pushing them back in reverse order into
+     * an empty History with the same capacity recreates this one.
+     *
+     * @return a new list containing the urls stored
+     */
+    public List<String> toList() {
+        List<String> ret = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            ret.add(get(i));
+        return ret;
+    }
+
+    /**
+     * Returns the url pushed {@code age} pushes ago
+     */
+    private String get(int age) {
+        return urls[(head - age + urls.length) % urls.length];
+    }
+
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(urls.length);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++)
+            out.writeUTF(get(i));
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int capacity = in.readInt();
+        int stored = in.readInt();
+        if (capacity < 2 || stored < 0 || stored > capacity)
+            throw new InvalidObjectException("Invalid history size");
+        urls = new String[capacity];
+        size = stored;
+        head = stored - 1;
+        for (int i = 0; i < stored; i++)
+            urls[head - i] = in.readUTF();
+        if (size == 0) head = 0;
     }
 
     /**
@@ -80,8 +171,11 @@ public class History {
      */
     @Override
     public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (int i = 0; i < size; i++)
+            joiner.add(get(i));
         return "History{" +
-                "history=" + history +
+                "history=" + joiner +
                 '}';
     }
 }
@@ -0,0 +1,166 @@
+package it.polimi.tiw.templated;
+
+import it.polimi.tiw.api.beans.User;
+import it.polimi.tiw.api.utils.IdUtils;
+
+import java.io.*;
+import java.util.Objects;
+
+/**
+ * Immutable identity of the logged-in user, stored in the session as {@code user} in place of the whole {@link User}.
+ * It only holds what is needed on every request: the id, the username and the name to display. The other details are
+ * loaded on demand through {@link UserDetailsCache}.
+ * <p>
+ * Sessions are serialized as a compact {@link Externalizable} form holding the id as a number.
+ */
+public final class SessionPrincipal implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final long id;
+    private final String username;
+    private final String displayName;
+
+    /**
+     * Creates a new SessionPrincipal
+     *
+     * @param id          the numeric id of the user
+     * @param username    the username of the user
+     * @param displayName the name to show to the user
+     * @throws NullPointerException if {@code username} or {@code displayName} are null
+     */
+    public SessionPrincipal(long id, String username, String displayName) {
+        this.id = id;
+        this.username = Objects.requireNonNull(username);
+        this.displayName = Objects.requireNonNull(displayName);
+    }
+
+    /**
+     * Creates a new SessionPrincipal for the given {@link User}
+     *
+     * @param user the {@link User} that logged in
+     * @return a new SessionPrincipal
+     * @throws NullPointerException     if {@code user} or any of its properties are null
+     * @throws IllegalArgumentException if the id of {@code user} is not valid
+     */
+    public static SessionPrincipal of(User user) {
+        Objects.requireNonNull(user);
+        if (!IdUtils.isValidBase64(user.getBase64Id()))
+            throw new IllegalArgumentException("User has an invalid id");
+        return new SessionPrincipal(IdUtils.fromBase64(user.getBase64Id()),
+                user.getUsername(),
+                user.getName() + " " + user.getSurname());
+    }
+
+    /**
+     * Getter for the numeric id of the user
+     *
+     * @return the numeric id of the user
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Getter for the base64 encoded id of the user
+     *
+     * @return the base64 encoded id of the user
+     */
+    public String getBase64Id() {
+        return IdUtils.toBase64(id);
+    }
+
+    /**
+     * Getter for the username of the user
+     *
+     * @return the username of the user
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Getter for the name to show to the user, i.e. name and surname
+     *
+     * @return the name to show to the user
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SessionPrincipal that = (SessionPrincipal) o;
+        return id == that.id && username.equals(that.username) && displayName.equals(that.displayName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, username, displayName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "SessionPrincipal{" +
+                "id=" + id +
+                ", username='" + username + '\'' +
+                '}';
+    }
+
+    @Serial
+    private Object writeReplace() {
+        return new SerializedForm(this);
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw new InvalidObjectException("SessionPrincipal must be deserialized through its serialized form");
+    }
+
+    /**
+     * Externalized form of a {@link SessionPrincipal}, so that the principal itself can stay immutable
+     */
+    static final class SerializedForm implements Externalizable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        private SessionPrincipal principal;
+
+        /**
+         * Used by deserialization
+         */
+        public SerializedForm() {
+        }
+
+        SerializedForm(SessionPrincipal principal) {
+            this.principal = principal;
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            out.writeLong(principal.id);
+            out.writeUTF(principal.username);
+            out.writeUTF(principal.displayName);
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            principal = new SessionPrincipal(in.readLong(), in.readUTF(), in.readUTF());
+        }
+
+        @Serial
+        private Object readResolve() {
+            return principal;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package it.polimi.tiw.templated;
+
+import it.polimi.tiw.api.UserFacade;
+import it.polimi.tiw.api.beans.User;
+import it.polimi.tiw.api.dbaccess.ProductionConnectionRetriever;
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.api.utils.IdUtils;
+
+import java.sql.Connection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Singleton holding the full details of recently seen users, so that pages showing them do not hit the database on
+ * every request. At most {@value #CAPACITY} users are kept, evicting the least recently used one, and each entry is
+ * reloaded after {@value #TTL_MILLIS} milliseconds.
+ * <p>
+ * Cached users never contain the salted password.
+ */
+public class UserDetailsCache {
+    static final int CAPACITY = 1024;
+    static final long TTL_MILLIS = 5 * 60 * 1000;
+    private static UserDetailsCache instance;
+
+    private final Map<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    private UserDetailsCache() {
+    }
+
+    /**
+     * Returns the singleton instance
+     *
+     * @return the singleton instance
+     */
+    public static synchronized UserDetailsCache getInstance() {
+        if (instance == null)
+            instance = new UserDetailsCache();
+        return instance;
+    }
+
+    /**
+     * Returns the details of the user identified by the given principal, loading them from database if they are not
+     * cached
+     *
+     * @param principal the {@link SessionPrincipal} of the user
+     * @return an {@link ApiResult} containing the {@link User} or an error
+     * @throws NullPointerException if {@code principal} is null
+     */
+    public ApiResult<User> get(SessionPrincipal principal) {
+        Objects.requireNonNull(principal);
+        User cached = cached(principal);
+        if (cached != null) return ApiResult.ok(cached);
+        return ProductionConnectionRetriever.getInstance().with(c -> load(principal, c));
+    }
+
+    /**
+     * Returns the details of the user identified by the given principal, loading them with the given connection if
+     * they are not cached. It should be used by code already holding a connection, so that a miss does not take a
+     * second one from the pool.
+     *
+     * @param principal  the {@link SessionPrincipal} of the user
+     * @param connection the {@link Connection} to use on a miss
+     * @return an {@link ApiResult} containing the {@link User} or an error
+     * @throws NullPointerException if any parameter is null
+     */
+    public ApiResult<User> get(SessionPrincipal principal, Connection connection) {
+        Objects.requireNonNull(principal);
+        Objects.requireNonNull(connection);
+        User cached = cached(principal);
+        return cached != null ? ApiResult.ok(cached) : load(principal, connection);
+    }
+
+    /**
+     * Adds the given {@link User} to the cache. Its salted password is cleared.
+     *
+     * @param user the {@link User} to cache
+     * @throws NullPointerException     if {@code user} is null
+     * @throws IllegalArgumentException if the id of {@code user} is not valid
+     */
+    public void put(User user) {
+        Objects.requireNonNull(user);
+        if (!IdUtils.isValidBase64(user.getBase64Id()))
+            throw new IllegalArgumentException("User has an invalid id");
+        user.setSaltedPassword(null);
+        synchronized (entries) {
+            entries.put(IdUtils.fromBase64(user.getBase64Id()), new Entry(user, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Drops the user with the given id from the cache, if present
+     *
+     * @param id the numeric id of the user
+     */
+    public void invalidate(long id) {
+        synchronized (entries) {
+            entries.remove(id);
+        }
+    }
+
+    private User cached(SessionPrincipal principal) {
+        synchronized (entries) {
+            Entry e = entries.get(principal.getId());
+            return e != null && System.currentTimeMillis() - e.loadedAt < TTL_MILLIS ? e.user : null;
+        }
+    }
+
+    private ApiResult<User> load(SessionPrincipal principal, Connection connection) {
+        return UserFacade.withDefaultObjects(connection)
+                .byId(principal.getBase64Id())
+                .peek(u -> {
+                    put(u);
+                    return ApiResult.ok(u);
+                });
+    }
+
+    private record Entry(User user, long loadedAt) {
+    }
+}
@@ -4,11 +4,14 @@ import it.polimi.tiw.api.AccountFacade;
 import it.polimi.tiw.api.TransferFacade;
 import it.polimi.tiw.api.beans.Account;
 import it.polimi.tiw.api.beans.Transfer;
-import it.polimi.tiw.api.beans.User;
 import it.polimi.tiw.api.dbaccess.ProductionConnectionRetriever;
+import it.polimi.tiw.api.dbaccess.TransferCursor;
 import it.polimi.tiw.api.error.ApiError;
 import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
 import it.polimi.tiw.api.functional.Tuple;
+import it.polimi.tiw.templated.SessionPrincipal;
+import it.polimi.tiw.templated.UserDetailsCache;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -17,23 +20,52 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Adds the following attributes to request attributes:
  *
  * <ol>
  *     <li>{@code account} the account with id specified by the {@code id} parameter</li>
- *     <li>{@code incoming} the list of incoming transfers to {@code account}</li>
- *     <li>{@code outgoing} the list of outgoing transfers from {@code account}</li>
+ *     <li>{@code incoming} an {@link Iterator} over the incoming transfers to {@code account}</li>
+ *     <li>{@code outgoing} an {@link Iterator} over the outgoing transfers from {@code account}</li>
+ *     <li>{@code userDetails} the details of the logged user, shown in the header of the page</li>
  * </ol>
  * <p>
+ * Up to {@code bufferRows} transfers of each kind (default 512) are read from their {@link TransferCursor} before the
+ * page is rendered. If both cursors are exhausted by then, or if the page shows an error, the connection is closed
+ * before rendering, so that a slow client never holds it. Otherwise the rest of the transfers are read while the page
+ * is rendered, so the connection is kept open until the rest of the chain has returned; at most {@code maxStreams}
+ * pages (default 4, half of the pool of the static webapp) are streamed this way at the same time, and the others get
+ * a 503 error, so that slow clients cannot take every connection of the pool. The details of the user are read with the same connection before
+ * rendering starts, so that the page never needs a second one.
+ * <p>
  * If the User stored inside the session is not the owner of the account, an {@link ApiError} is set as {@code error}.
  * <p>
  * Requires being executed after {@link LoginFilter}.
  */
 public class AccountDetailsFilter extends HttpFilter {
+    private transient Semaphore streams;
+    private int bufferRows;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init() {
+        bufferRows = Integer.parseInt(initParameter("bufferRows", "512"));
+        streams = new Semaphore(Integer.parseInt(initParameter("maxStreams", "4")));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -46,29 +78,89 @@ public class AccountDetailsFilter extends HttpFilter {
             return;
         }
 
-        HttpSession session = req.getSession(false);
-        User user = (User) session.getAttribute("user");
-        ApiError unavailable = Errors.fromPermissionDenied("account(" + accountId + ")");
-        ProductionConnectionRetriever.getInstance()
-                .with(c -> AccountFacade.withDefaultObjects(c)
-                        .byId(accountId)
-                        .flatMap(a -> TransferFacade.withDefaultObjects(c)
-                                .of(a.getBase64Id())
-                                .map(t -> new Tuple<>(a, t))))
-                .consume(
-                        tuple -> {
-                            Account account = tuple.getFirst();
-                            List<Transfer> incoming = tuple.getSecond().getFirst();
-                            List<Transfer> outgoing = tuple.getSecond().getSecond();
-                            if (Objects.equals(account.getOwnerId(), user.getBase64Id())) {
-                                req.setAttribute("account", account);
-                                req.setAttribute("incoming", incoming);
-                                req.setAttribute("outgoing", outgoing);
-                            } else
-                                req.setAttribute("error", unavailable);
-                        },
-                        e -> req.setAttribute("error", e)
-                );
-        chain.doFilter(req, res);
+        Connection c = ProductionConnectionRetriever.getInstance().get().match(conn -> conn, e -> {
+            req.setAttribute("error", e);
+            return null;
+        });
+        if (c == null) {
+            chain.doFilter(req, res);
+            return;
+        }
+        List<TransferCursor> cursors = new ArrayList<>(2);
+        boolean released = false, streaming = false;
+        try {
+            HttpSession session = req.getSession(false);
+            SessionPrincipal user = (SessionPrincipal) session.getAttribute("user");
+            UserDetailsCache.getInstance().get(user, c).consume(u -> req.setAttribute("userDetails", u), e -> {
+            });
+            ApiError unavailable = Errors.fromPermissionDenied("account(" + accountId + ")");
+            AccountFacade.withDefaultObjects(c)
+                    .byId(accountId)
+                    .flatMap(a -> Objects.equals(a.getOwnerId(), user.getBase64Id())
+                            ? ApiResult.ok(a)
+                            : ApiResult.<Account>error(unavailable))
+                    .flatMap(a -> TransferFacade.withDefaultObjects(c)
+                            .cursorsOf(a.getBase64Id())
+                            .map(t -> new Tuple<>(a, t)))
+                    .consume(
+                            tuple -> {
+                                cursors.add(tuple.getSecond().getFirst());
+                                cursors.add(tuple.getSecond().getSecond());
+                                req.setAttribute("account", tuple.getFirst());
+                            },
+                            e -> req.setAttribute("error", e)
+                    );
+            if (!cursors.isEmpty()) {
+                List<Transfer> incoming = prefetch(cursors.get(0));
+                List<Transfer> outgoing = prefetch(cursors.get(1));
+                if (!cursors.get(0).hasNext() && !cursors.get(1).hasNext()) {
+                    req.setAttribute("incoming", incoming.iterator());
+                    req.setAttribute("outgoing", outgoing.iterator());
+                } else if (streams.tryAcquire()) {
+                    streaming = true;
+                    req.setAttribute("incoming", concat(incoming, cursors.get(0)));
+                    req.setAttribute("outgoing", concat(outgoing, cursors.get(1)));
+                } else {
+                    req.removeAttribute("account");
+                    req.setAttribute("error", Errors.fromServiceUnavailable());
+                }
+            }
+            if (!streaming) {
+                // Nothing is left to read, so the connection is not held while the page is written
+                cursors.forEach(TransferCursor::close);
+                cursors.clear();
+                ProductionConnectionRetriever.getInstance().close(c);
+                released = true;
+            }
+            chain.doFilter(req, res);
+        } finally {
+            cursors.forEach(TransferCursor::close);
+            if (!released) ProductionConnectionRetriever.getInstance().close(c);
+            if (streaming) streams.release();
+        }
+    }
+
+    /**
+     * Reads at most {@code bufferRows} transfers from the given cursor
+     */
+    private List<Transfer> prefetch(TransferCursor cursor) {
+        List<Transfer> transfers = new ArrayList<>();
+        while (transfers.size() < bufferRows && cursor.hasNext())
+            transfers.add(cursor.next());
+        return transfers;
+    }
+
+    /**
+     * Returns an iterator over the given transfers followed by those still in the cursor
+     */
+    private static Iterator<Transfer> concat(List<Transfer> read, TransferCursor cursor) {
+        Stream<Transfer> rest = StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED),
+                false);
+        return Stream.concat(read.stream(), rest).iterator();
+    }
+
+    private String initParameter(String name, String defaultValue) {
+        String value = getInitParameter(name);
+        return value == null ? defaultValue : value;
     }
 }
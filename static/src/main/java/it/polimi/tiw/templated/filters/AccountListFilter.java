@@ -2,8 +2,8 @@ package it.polimi.tiw.templated.filters;
 
 import it.polimi.tiw.api.AccountFacade;
 import it.polimi.tiw.api.beans.Account;
-import it.polimi.tiw.api.beans.User;
 import it.polimi.tiw.api.dbaccess.ProductionConnectionRetriever;
+import it.polimi.tiw.templated.SessionPrincipal;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -14,7 +14,7 @@ import javax.servlet.http.HttpSession;
 import java.io.IOException;
 
 /**
- * Adds as the 'accountList' attributes the list of all the {@link Account} associated with the {@link User} stored
+ * Adds as the 'accountList' attributes the list of all the {@link Account} associated with the {@link SessionPrincipal} stored
  * inside the session. Requires being executed after {@link LoginFilter}.
  */
 public class AccountListFilter extends HttpFilter {
@@ -24,9 +24,9 @@ public class AccountListFilter extends HttpFilter {
     @Override
     public void doFilter(HttpServletRequest req, HttpServletResponse res, FilterChain chain) throws IOException, ServletException {
         HttpSession session = req.getSession(false);
-        User user = (User) session.getAttribute("user");
+        SessionPrincipal user = (SessionPrincipal) session.getAttribute("user");
         ProductionConnectionRetriever.getInstance()
-                .with(c -> AccountFacade.withDefaultObjects(c).ofUser(user))
+                .with(c -> AccountFacade.withDefaultObjects(c).ofUser(user.getBase64Id()))
                 .consume(
                         l -> req.setAttribute("accountList", l),
                         e -> req.setAttribute("accountList", null));
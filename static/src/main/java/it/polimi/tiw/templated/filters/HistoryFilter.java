@@ -9,9 +9,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
-import java.util.Map;
 import java.util.Objects;
-import java.util.StringJoiner;
 
 /**
  * Tracks user movement through the website. It uses a {@link History} saved into the current session as {@code history}.
@@ -40,7 +38,7 @@ public class HistoryFilter extends HttpFilter {
                 history.pop();
                 session.setAttribute("history", history);
 
-                String newReqUrl = reconstructUrl(req, queryStringWithoutRet(req));
+                String newReqUrl = reconstructUrl(req, queryStringWithoutRet(req.getQueryString()));
                 res.sendRedirect(newReqUrl);
             }
             return;
@@ -65,18 +63,23 @@ public class HistoryFilter extends HttpFilter {
     }
 
     /**
-     * Removes {@code ret} parameter from the querystring
+     * Removes the {@code ret} parameter from the querystring. The querystring is scanned as is, so the other parameters
+     * keep their original encoding and order.
      */
-    private String queryStringWithoutRet(HttpServletRequest req) {
-        Map<String, String[]> params = req.getParameterMap();
-        return params.entrySet().stream()
-                .filter(e -> !e.getKey().equals("ret"))
-                .collect(() -> new StringJoiner("&"),
-                        (acc, e) -> {
-                            for (String v : e.getValue())
-                                acc.add(e.getKey() + "=" + v);
-                        },
-                        StringJoiner::merge)
-                .toString();
+    static String queryStringWithoutRet(String qs) {
+        if (qs == null) return "";
+        StringBuilder builder = new StringBuilder(qs.length());
+        int start = 0;
+        while (start <= qs.length()) {
+            int end = qs.indexOf('&', start);
+            if (end < 0) end = qs.length();
+            boolean isRet = qs.startsWith("ret", start) && (end == start + 3 || qs.charAt(start + 3) == '=');
+            if (!isRet && end > start) {
+                if (builder.length() > 0) builder.append('&');
+                builder.append(qs, start, end);
+            }
+            start = end + 1;
+        }
+        return builder.toString();
     }
 }
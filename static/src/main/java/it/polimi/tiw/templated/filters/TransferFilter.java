@@ -3,11 +3,11 @@ package it.polimi.tiw.templated.filters;
 import it.polimi.tiw.api.AccountFacade;
 import it.polimi.tiw.api.TransferFacade;
 import it.polimi.tiw.api.beans.Transfer;
-import it.polimi.tiw.api.beans.User;
 import it.polimi.tiw.api.dbaccess.ProductionConnectionRetriever;
 import it.polimi.tiw.api.error.ApiError;
 import it.polimi.tiw.api.error.Errors;
 import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.templated.SessionPrincipal;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -38,7 +38,7 @@ public class TransferFilter extends HttpFilter {
         }
 
         HttpSession session = req.getSession(false);
-        User user = (User) session.getAttribute("user");
+        SessionPrincipal user = (SessionPrincipal) session.getAttribute("user");
         ApiError unavailable = Errors.fromPermissionDenied("transfer(" + transferId + ")");
         ProductionConnectionRetriever.getInstance()
                 .with(c -> TransferFacade.withDefaultObjects(c)
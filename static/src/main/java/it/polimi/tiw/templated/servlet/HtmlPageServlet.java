@@ -1,20 +1,51 @@
 package it.polimi.tiw.templated.servlet;
 
+import it.polimi.tiw.api.beans.User;
+import it.polimi.tiw.api.metrics.MetricRegistry;
+import it.polimi.tiw.templated.ChunkedRenderer;
+import it.polimi.tiw.templated.History;
+import it.polimi.tiw.templated.SessionPrincipal;
+import it.polimi.tiw.templated.UserDetailsCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.cache.ICache;
+import org.thymeleaf.cache.StandardCache;
+import org.thymeleaf.cache.StandardCacheManager;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.context.LazyContextVariable;
 import org.thymeleaf.context.WebContext;
 import org.thymeleaf.extras.java8time.dialect.Java8TimeDialect;
 import org.thymeleaf.templatemode.TemplateMode;
 import org.thymeleaf.templateresolver.ServletContextTemplateResolver;
 
 import javax.servlet.ServletContext;
+import javax.servlet.annotation.WebInitParam;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * This servlet tries to retrieve an HTML template, process it using Thymeleaf and send it.
+ * <p>
+ * Templates can access the full {@link User} logged in as {@code userDetails}. It is fetched from the
+ * {@link UserDetailsCache} only if the template actually reads it, unless a filter already put it in the request
+ * attributes.
+ * <p>
+ * Parsed templates are kept in a cache of {@code templateCacheSize} entries, each one valid for
+ * {@code templateCacheTtlMs} milliseconds. The servlet is loaded on startup, when every template is rendered once for
+ * each bundled locale, so that templates, fragments, expressions and messages are already cached when the first user
+ * arrives. Cache statistics are exposed as the {@code tiw_thymeleaf_cache_*} metrics.
+ * <p>
+ * Pages are sent in chunks of {@code chunkSize} characters (see {@link ChunkedRenderer}), so that the top of a long page
+ * is shown while the rest is still being rendered.
  */
 @WebServlet(value = {
         "/index.html",
@@ -23,9 +54,20 @@ import java.io.IOException;
         "/login.html",
         "/rejectTransfer.html",
         "/confirmTransfer.html"
+}, loadOnStartup = 1, initParams = {
+        @WebInitParam(name = "templateCacheSize", value = "64"),
+        @WebInitParam(name = "templateCacheTtlMs", value = "3600000"),
+        @WebInitParam(name = "expressionCacheSize", value = "1000"),
+        @WebInitParam(name = "chunkSize", value = "4096")
 })
 public class HtmlPageServlet extends HttpServlet {
+    private static final Logger logger = LoggerFactory.getLogger(HtmlPageServlet.class);
+    private static final List<String> TEMPLATES = List.of(
+            "index", "details", "confirmTransfer", "rejectTransfer", "login", "register", "fragments");
+    private static final List<Locale> LOCALES = List.of(Locale.ENGLISH, Locale.ITALIAN);
+
     private TemplateEngine templateEngine;
+    private int chunkSize;
 
     /**
      * {@inheritDoc}
@@ -36,10 +78,59 @@ public class HtmlPageServlet extends HttpServlet {
         resolver.setTemplateMode(TemplateMode.HTML);
         resolver.setPrefix("/WEB-INF/templates/");
         resolver.setSuffix(".html");
+        resolver.setCacheable(true);
+        resolver.setCacheTTLMs(Long.parseLong(getInitParameter("templateCacheTtlMs")));
+
+        StandardCacheManager cacheManager = new StandardCacheManager();
+        cacheManager.setTemplateCacheMaxSize(Integer.parseInt(getInitParameter("templateCacheSize")));
+        cacheManager.setTemplateCacheEnableCounters(true);
+        cacheManager.setExpressionCacheMaxSize(Integer.parseInt(getInitParameter("expressionCacheSize")));
+        cacheManager.setExpressionCacheEnableCounters(true);
 
+        this.chunkSize = Integer.parseInt(getInitParameter("chunkSize"));
         this.templateEngine = new TemplateEngine();
         this.templateEngine.addDialect(new Java8TimeDialect());
         this.templateEngine.setTemplateResolver(resolver);
+        this.templateEngine.setCacheManager(cacheManager);
+
+        registerCacheMetrics("template", cacheManager.getTemplateCache());
+        registerCacheMetrics("expression", cacheManager.getExpressionCache());
+        warmUp();
+    }
+
+    /**
+     * Renders every template once for each locale with placeholder data. Rendering may fail halfway because of the
+     * missing request, but by then the template and its messages have been parsed and cached.
+     */
+    private void warmUp() {
+        long start = System.nanoTime();
+        History history = new History();
+        history.push("/index.html");
+        history.push("/details.html");
+        Map<String, Object> variables = Map.of(
+                "session", Map.of("history", history, "user", new SessionPrincipal(0, "", "")),
+                "param", Collections.emptyMap(),
+                "accountList", Collections.emptyList());
+        for (Locale locale : LOCALES)
+            for (String template : TEMPLATES) {
+                try {
+                    templateEngine.process("/" + template + ".html", new Context(locale, variables), Writer.nullWriter());
+                } catch (RuntimeException e) {
+                    logger.debug("Warm-up of {} for {} stopped early", template, locale, e);
+                }
+            }
+        logger.info("Templates warmed up in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void registerCacheMetrics(String name, ICache<?, ?> cache) {
+        if (!(cache instanceof StandardCache<?, ?> c)) return;
+        MetricRegistry registry = MetricRegistry.getDefault();
+        registry.gauge("tiw_thymeleaf_cache_hits", "Lookups that found an entry in a Thymeleaf cache",
+                c::getHitCount, "cache", name);
+        registry.gauge("tiw_thymeleaf_cache_misses", "Lookups that did not find an entry in a Thymeleaf cache",
+                c::getMissCount, "cache", name);
+        registry.gauge("tiw_thymeleaf_cache_size", "Entries in a Thymeleaf cache",
+                c::size, "cache", name);
     }
 
     /**
@@ -59,7 +150,15 @@ public class HtmlPageServlet extends HttpServlet {
     private void templatePage(HttpServletRequest req, HttpServletResponse res) throws IOException {
         ServletContext context = getServletContext();
         WebContext ctx = new WebContext(req, res, context, req.getLocale());
+        SessionPrincipal principal = ServletUtils.tryExtractFromSession(req, "user", SessionPrincipal.class);
+        if (principal != null && req.getAttribute("userDetails") == null)
+            ctx.setVariable("userDetails", new LazyContextVariable<User>() {
+                @Override
+                protected User loadValue() {
+                    return UserDetailsCache.getInstance().get(principal).match(u -> u, e -> null);
+                }
+            });
 
-        templateEngine.process(req.getServletPath(), ctx, res.getWriter());
+        ChunkedRenderer.render(templateEngine, req.getServletPath(), ctx, res.getWriter(), chunkSize);
     }
 }
\ No newline at end of file
@@ -4,6 +4,8 @@ import it.polimi.tiw.api.UserFacade;
 import it.polimi.tiw.api.beans.LoginRequest;
 import it.polimi.tiw.api.beans.User;
 import it.polimi.tiw.api.dbaccess.ProductionConnectionRetriever;
+import it.polimi.tiw.templated.SessionPrincipal;
+import it.polimi.tiw.templated.UserDetailsCache;
 
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -29,7 +31,8 @@ import java.io.IOException;
  *     <li>"server": if the server was unable to fulfill the request (e.g. database is unavailable)</li>
  * </ol>
  * <p>
- * If the user is correctly authenticated, a session will be created for tracking this user.
+ * If the user is correctly authenticated, a session will be created for tracking this user. Only a
+ * {@link SessionPrincipal} is stored in it, while the rest of the {@link User} is put in the {@link UserDetailsCache}.
  *
  * The servlet will refuse the request with a 400 if a user is already logged in. To log out a user, please use
  * {@link LogoutServlet}.
@@ -38,7 +41,7 @@ import java.io.IOException;
 public class LoginServlet extends HttpServlet {
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-        User logged = ServletUtils.tryExtractFromSession(req, "user", User.class);
+        SessionPrincipal logged = ServletUtils.tryExtractFromSession(req, "user", SessionPrincipal.class);
         if (logged != null) {
             resp.sendError(400);
             return;
@@ -52,7 +55,8 @@ public class LoginServlet extends HttpServlet {
                 .with(c -> UserFacade.withDefaultObjects(c).authorize(loginRequest))
                 .match(u -> {
                     HttpSession session = req.getSession(true);
-                    session.setAttribute("user", u);
+                    session.setAttribute("user", SessionPrincipal.of(u));
+                    UserDetailsCache.getInstance().put(u);
                     return "/index.html";
                 }, e -> switch (e.statusCode()) {
                     case 400 -> "/login.html?e=user";
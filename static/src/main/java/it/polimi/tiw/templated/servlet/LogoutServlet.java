@@ -1,5 +1,8 @@
 package it.polimi.tiw.templated.servlet;
 
+import it.polimi.tiw.templated.SessionPrincipal;
+import it.polimi.tiw.templated.UserDetailsCache;
+
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -8,7 +11,8 @@ import javax.servlet.http.HttpSession;
 import java.io.IOException;
 
 /**
- * Drops all user-related data from the session, if there is one
+ * Drops all user-related data from the session, if there is one, and the details of the user from the
+ * {@link UserDetailsCache}
  */
 @WebServlet("/logout")
 public class LogoutServlet extends HttpServlet {
@@ -20,6 +24,8 @@ public class LogoutServlet extends HttpServlet {
         HttpSession session = req.getSession(false);
         if (session == null)
             return;
+        if (session.getAttribute("user") instanceof SessionPrincipal principal)
+            UserDetailsCache.getInstance().invalidate(principal.getId());
         session.invalidate();
         resp.sendRedirect("/login.html");
     }
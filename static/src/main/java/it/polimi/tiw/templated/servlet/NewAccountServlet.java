@@ -2,8 +2,8 @@ package it.polimi.tiw.templated.servlet;
 
 import it.polimi.tiw.api.AccountFacade;
 import it.polimi.tiw.api.beans.Account;
-import it.polimi.tiw.api.beans.User;
 import it.polimi.tiw.api.dbaccess.ProductionConnectionRetriever;
+import it.polimi.tiw.templated.SessionPrincipal;
 
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -12,8 +12,8 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
 /**
- * Endpoint for creating a new {@link Account} for the currently logged in {@link User}. It requires a Session with a
- * valid user. If such requirements are not met, the request will be rejected with a 403.
+ * Endpoint for creating a new {@link Account} for the currently logged in {@link SessionPrincipal}. It requires a
+ * Session with a valid user. If such requirements are not met, the request will be rejected with a 403.
  * <p>
  * After creating the new account, it will redirect to {@code index.html}. If an error occurred, it will be signaled to
  * the redirect using the query string parameter.
@@ -25,7 +25,7 @@ public class NewAccountServlet extends HttpServlet {
      */
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-        User u = ServletUtils.tryExtractFromSession(req, "user", User.class);
+        SessionPrincipal u = ServletUtils.tryExtractFromSession(req, "user", SessionPrincipal.class);
         if (u == null) {
             resp.sendError(403);
             return;
@@ -2,10 +2,10 @@ package it.polimi.tiw.templated.servlet;
 
 import it.polimi.tiw.api.TransferFacade;
 import it.polimi.tiw.api.beans.NewTransferRequest;
-import it.polimi.tiw.api.beans.User;
 import it.polimi.tiw.api.dbaccess.ProductionConnectionRetriever;
 import it.polimi.tiw.api.error.Errors;
 import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.templated.SessionPrincipal;
 
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -38,8 +38,8 @@ import java.util.regex.Pattern;
  *     <li>{@code server}: if the server for some reason could not process the request</li>
  * </ol>
  * <p>
- * This servlet requires a valid {@link HttpSession} with a valid {@link User} saved in it, otherwise it will send
- * a {@code 403 Forbidden} error page.
+ * This servlet requires a valid {@link HttpSession} with a valid {@link SessionPrincipal} saved in it, otherwise it
+ * will send a {@code 403 Forbidden} error page.
  */
 @WebServlet("/newTransfer")
 public class NewTransferServlet extends HttpServlet {
@@ -58,7 +58,7 @@ public class NewTransferServlet extends HttpServlet {
      */
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-        User user = ServletUtils.tryExtractFromSession(req, "user", User.class);
+        SessionPrincipal user = ServletUtils.tryExtractFromSession(req, "user", SessionPrincipal.class);
         String accountId = ServletUtils.tryExtractFromSession(req, "currentlyShownAccount", String.class);
         if (user == null || accountId == null) {
             resp.sendError(403);
@@ -78,7 +78,7 @@ public class NewTransferServlet extends HttpServlet {
         resp.sendRedirect(redirect);
     }
 
-    private ApiResult<NewTransferRequest> parseRequest(User user, String currentAccountId, HttpServletRequest req) {
+    private ApiResult<NewTransferRequest> parseRequest(SessionPrincipal user, String currentAccountId, HttpServletRequest req) {
         NewTransferRequest request = new NewTransferRequest();
         request.setFromUserId(user.getBase64Id());
         request.setFromAccountId(currentAccountId);
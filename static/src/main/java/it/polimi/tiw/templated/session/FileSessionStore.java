@@ -0,0 +1,138 @@
+package it.polimi.tiw.templated.session;
+
+import it.polimi.tiw.api.error.ApiError;
+import it.polimi.tiw.api.error.ApiSubError;
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * {@link SessionStore} that writes each session to its own file in a directory. Writes are atomic, so the directory
+ * can be shared by several local instances, e.g. when testing the application behind a load balancer on a single
+ * machine. Expired sessions are removed when read and when the store is created.
+ * <p>
+ * Files carry no version: a session that is still stored is always overwritten, while a session deleted before a
+ * save starts is not written again. Use the {@link JdbcSessionStore} where concurrent logouts must always win.
+ */
+public class FileSessionStore implements SessionStore {
+    private static final Logger logger = LoggerFactory.getLogger(FileSessionStore.class);
+    private static final Pattern VALID_ID = Pattern.compile("^[A-Za-z0-9_-]{1,64}$");
+    private static final String SUFFIX = ".session";
+
+    private final Path directory;
+
+    /**
+     * Creates a new FileSessionStore in the given directory, creating it if needed
+     *
+     * @param directory the directory containing the sessions
+     * @throws NullPointerException if {@code directory} is null
+     * @throws UncheckedIOException if the directory cannot be created
+     */
+    public FileSessionStore(Path directory) {
+        this.directory = Objects.requireNonNull(directory);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        sweep(System.currentTimeMillis());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ApiResult<SessionData> load(String id) {
+        Path file = fileOf(id);
+        if (file == null || !Files.isRegularFile(file))
+            return ApiResult.error(Errors.fromNotFound("session"));
+        try {
+            SessionData data = SessionCodec.decode(Files.readAllBytes(file));
+            if (data.isExpired(System.currentTimeMillis())) {
+                Files.deleteIfExists(file);
+                return ApiResult.error(Errors.fromNotFound("session"));
+            }
+            data.setVersion(1);
+            return ApiResult.ok(data);
+        } catch (NoSuchFileException e) {
+            return ApiResult.error(Errors.fromNotFound("session"));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Deleting unreadable session {}: {}", file, e.getMessage());
+            delete(id);
+            return ApiResult.error(Errors.fromNotFound("session"));
+        } catch (IOException e) {
+            return ApiResult.error(new ApiError(500,
+                    "Error while reading the session",
+                    new ApiSubError(e.getClass().getSimpleName(), e.getMessage() == null ? "" : e.getMessage())));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Writes are always durable. Only sessions that have never been stored create a new file.
+     */
+    @Override
+    public void save(String id, SessionData data, boolean durable) {
+        Path file = fileOf(id);
+        if (file == null) throw new IllegalArgumentException("Invalid session id");
+        if (data.getVersion() != 0 && !Files.isRegularFile(file)) return;
+        try {
+            Path tmp = Files.createTempFile(directory, "session-", ".tmp");
+            Files.write(tmp, SessionCodec.encode(data));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Cannot save session to {}", file, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete(String id) {
+        Path file = fileOf(id);
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Cannot delete session {}", file, e);
+        }
+    }
+
+    /**
+     * Removes all the sessions expired at the given time
+     *
+     * @param now the current time in milliseconds since the epoch
+     */
+    public void sweep(long now) {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(f -> f.getFileName().toString().endsWith(SUFFIX)).forEach(f -> {
+                try {
+                    if (SessionCodec.decode(Files.readAllBytes(f)).isExpired(now))
+                        Files.deleteIfExists(f);
+                } catch (IOException | IllegalArgumentException e) {
+                    logger.debug("Skipping unreadable session {}", f, e);
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Cannot sweep sessions in {}", directory, e);
+        }
+    }
+
+    /**
+     * Returns the file containing the session with the given id, or null if the id is not valid
+     */
+    private Path fileOf(String id) {
+        if (id == null || !VALID_ID.matcher(id).matches()) return null;
+        return directory.resolve(id + SUFFIX);
+    }
+}
@@ -0,0 +1,78 @@
+package it.polimi.tiw.templated.session;
+
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link SessionStore} that keeps encoded sessions in memory. Sessions are not shared between nodes, so it is meant for
+ * single-node deployments. Expired sessions are swept every {@value #SWEEP_EVERY} saves.
+ */
+public class InMemorySessionStore implements SessionStore {
+    static final int SWEEP_EVERY = 1024;
+
+    private final Map<String, Entry> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger saves = new AtomicInteger();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ApiResult<SessionData> load(String id) {
+        Entry e = id == null ? null : sessions.get(id);
+        long now = System.currentTimeMillis();
+        if (e == null || e.expires <= now) {
+            if (e != null) sessions.remove(id, e);
+            return ApiResult.error(Errors.fromNotFound("session"));
+        }
+        try {
+            SessionData data = SessionCodec.decode(e.data);
+            data.setVersion(e.version);
+            return ApiResult.ok(data);
+        } catch (IllegalArgumentException ex) {
+            sessions.remove(id, e);
+            return ApiResult.error(Errors.fromNotFound("session"));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(String id, SessionData data, boolean durable) {
+        Objects.requireNonNull(id);
+        byte[] encoded = SessionCodec.encode(data);
+        if (data.getVersion() == 0)
+            sessions.put(id, new Entry(encoded, data.getExpirationTime(), 1));
+        else
+            sessions.computeIfPresent(id, (__, e) -> !durable && e.version != data.getVersion()
+                    ? e
+                    : new Entry(encoded, data.getExpirationTime(), e.version + 1));
+        if (saves.incrementAndGet() % SWEEP_EVERY == 0)
+            sweep(System.currentTimeMillis());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete(String id) {
+        if (id != null) sessions.remove(id);
+    }
+
+    /**
+     * Removes all the sessions expired at the given time
+     *
+     * @param now the current time in milliseconds since the epoch
+     */
+    public void sweep(long now) {
+        sessions.values().removeIf(e -> e.expires <= now);
+    }
+
+    private record Entry(byte[] data, long expires, long version) {
+    }
+}
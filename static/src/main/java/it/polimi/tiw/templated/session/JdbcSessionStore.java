@@ -0,0 +1,258 @@
+package it.polimi.tiw.templated.session;
+
+import it.polimi.tiw.api.dbaccess.ConnectionRetriever;
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link SessionStore} backed by the {@code tiw_app.sessions} table, shared by every node.
+ * <p>
+ * Non-durable saves are buffered and written in a single batch every flush interval; a session saved several times in
+ * the meantime is written once. Durable saves, deletes and sessions never stored before are written immediately.
+ * Expired rows are deleted every sweep interval.
+ * <p>
+ * Each row has a version, bumped on every write. Buffered writes only update the row if its version is still the one
+ * the session was loaded with, and no write creates a row again once it has been deleted, so a logout always wins
+ * over the other requests of the same session. For the same reason, a session with a pending write is served from
+ * the buffer, so that each node sees its own writes, only while its row still exists with that version.
+ * <p>
+ * Writes are serialized with a {@link ReentrantLock} rather than {@code synchronized}, so that a virtual thread
+ * waiting on the database does not pin its carrier thread.
+ */
+public class JdbcSessionStore implements SessionStore {
+    private static final Logger logger = LoggerFactory.getLogger(JdbcSessionStore.class);
+
+    private final ConnectionRetriever retriever;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * Creates a new JdbcSessionStore
+     *
+     * @param retriever     the {@link ConnectionRetriever} to use
+     * @param flushInterval how often buffered writes are flushed
+     * @param sweepInterval how often expired sessions are deleted
+     * @throws NullPointerException if any parameter is null
+     */
+    public JdbcSessionStore(ConnectionRetriever retriever, Duration flushInterval, Duration sweepInterval) {
+        this.retriever = Objects.requireNonNull(retriever);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-store-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush,
+                flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> sweep(System.currentTimeMillis()),
+                sweepInterval.toMillis(), sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ApiResult<SessionData> load(String id) {
+        if (id == null) return ApiResult.error(Errors.fromNotFound("session"));
+        long now = System.currentTimeMillis();
+        ApiResult<Pending> stored = retriever.with(c -> {
+            String sql = "select data, expires, version from tiw_app.sessions where id = ?";
+            try (PreparedStatement s = c.prepareStatement(sql)) {
+                s.setString(1, id);
+                try (ResultSet r = s.executeQuery()) {
+                    if (!r.next())
+                        return ApiResult.error(Errors.fromNotFound("session"));
+                    return ApiResult.ok(new Pending(r.getBytes("data"), r.getLong("expires"), r.getLong("version")));
+                }
+            } catch (SQLException e) {
+                return ApiResult.error(Errors.fromSQLException(e));
+            }
+        }).map(row -> {
+            Pending p = pending.get(id);
+            if (p == null) return row;
+            if (p.version == row.version) return p;
+            // Someone else wrote the row after the buffered session was loaded
+            pending.remove(id, p);
+            return row;
+        });
+        return stored.flatMap(s -> {
+            if (s.expires <= now) return ApiResult.error(Errors.fromNotFound("session"));
+            try {
+                SessionData data = SessionCodec.decode(s.data);
+                data.setVersion(s.version);
+                return ApiResult.ok(data);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Deleting unreadable session: {}", e.getMessage());
+                delete(id);
+                return ApiResult.error(Errors.fromNotFound("session"));
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(String id, SessionData data, boolean durable) {
+        Objects.requireNonNull(id);
+        Pending p = new Pending(SessionCodec.encode(data), data.getExpirationTime(), data.getVersion());
+        if (!durable && p.version > 0) {
+            pending.put(id, p);
+            return;
+        }
+        writeLock.lock();
+        try {
+            pending.remove(id);
+            write(List.of(Map.entry(id, p)), false);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete(String id) {
+        if (id == null) return;
+        writeLock.lock();
+        try {
+            pending.remove(id);
+            retriever.with(c -> {
+                try (PreparedStatement s = c.prepareStatement("delete from tiw_app.sessions where id = ?")) {
+                    s.setString(1, id);
+                    return ApiResult.ok(s.executeUpdate());
+                } catch (SQLException e) {
+                    return ApiResult.error(Errors.fromSQLException(e));
+                }
+            }).consume(__ -> {
+            }, e -> logger.warn("Cannot delete session: {}", e.errorMessage()));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes all the buffered sessions in a single batch. Sessions saved again while the batch is being written stay
+     * buffered for the next flush, while those whose row has been deleted or updated by someone else are dropped.
+     */
+    public void flush() {
+        writeLock.lock();
+        try {
+            if (pending.isEmpty()) return;
+            List<Map.Entry<String, Pending>> batch = new ArrayList<>(pending.entrySet().size());
+            for (Map.Entry<String, Pending> e : pending.entrySet())
+                batch.add(Map.entry(e.getKey(), e.getValue()));
+            if (write(batch, true))
+                for (Map.Entry<String, Pending> e : batch)
+                    pending.remove(e.getKey(), e.getValue());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes all the sessions expired at the given time
+     *
+     * @param now the current time in milliseconds since the epoch
+     */
+    public void sweep(long now) {
+        retriever.with(c -> {
+            try (PreparedStatement s = c.prepareStatement("delete from tiw_app.sessions where expires <= ?")) {
+                s.setLong(1, now);
+                return ApiResult.ok(s.executeUpdate());
+            } catch (SQLException e) {
+                return ApiResult.error(Errors.fromSQLException(e));
+            }
+        }).consume(n -> {
+            if (n > 0) logger.debug("Swept {} expired sessions", n);
+        }, e -> logger.warn("Cannot sweep sessions: {}", e.errorMessage()));
+    }
+
+    /**
+     * Flushes the buffered sessions and stops the background tasks
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Writes the given sessions, returning true on success. Sessions never stored before are inserted, the others
+     * update their row only if it still exists and, if {@code conditional}, if its version has not changed since they
+     * were loaded.
+     */
+    private boolean write(List<Map.Entry<String, Pending>> sessions, boolean conditional) {
+        String insert = "insert into tiw_app.sessions(data, expires, id, version) values(?, ?, ?, 1)";
+        String update = "update tiw_app.sessions set data = ?, expires = ?, version = version + 1 where id = ?" +
+                (conditional ? " and version = ?" : "");
+        return retriever.with(c -> {
+            try {
+                boolean prevAutoCommit = c.getAutoCommit();
+                c.setAutoCommit(false);
+                try (PreparedStatement i = c.prepareStatement(insert);
+                     PreparedStatement u = c.prepareStatement(update)) {
+                    boolean inserts = false, updates = false;
+                    for (Map.Entry<String, Pending> e : sessions) {
+                        Pending p = e.getValue();
+                        PreparedStatement s = p.version == 0 ? i : u;
+                        s.setBytes(1, p.data);
+                        s.setLong(2, p.expires);
+                        s.setString(3, e.getKey());
+                        if (p.version == 0)
+                            inserts = true;
+                        else {
+                            if (conditional) s.setLong(4, p.version);
+                            updates = true;
+                        }
+                        s.addBatch();
+                    }
+                    int dropped = 0;
+                    if (inserts) i.executeBatch();
+                    if (updates)
+                        for (int n : u.executeBatch())
+                            if (n == 0) dropped++;
+                    c.commit();
+                    if (dropped > 0) logger.debug("Dropped {} stale sessions", dropped);
+                    return ApiResult.ok(true);
+                } catch (SQLException e) {
+                    c.rollback();
+                    throw e;
+                } finally {
+                    c.setAutoCommit(prevAutoCommit);
+                }
+            } catch (SQLException e) {
+                return ApiResult.error(Errors.fromSQLException(e));
+            }
+        }).match(ok -> ok, e -> {
+            logger.warn("Cannot write {} sessions: {}", sessions.size(), e.errorMessage());
+            return false;
+        });
+    }
+
+    private record Pending(byte[] data, long expires, long version) {
+    }
+}
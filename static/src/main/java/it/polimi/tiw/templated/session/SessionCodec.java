@@ -0,0 +1,123 @@
+package it.polimi.tiw.templated.session;
+
+import it.polimi.tiw.templated.History;
+import it.polimi.tiw.templated.SessionPrincipal;
+
+import java.io.*;
+import java.util.List;
+
+/**
+ * Binary encoding of {@link SessionData}. Instead of Java serialization, each attribute is written as its name, a
+ * one-byte type tag and its fields, so a logged-in session with a full history takes a few hundred bytes.
+ * <p>
+ * Supported attribute types are {@link String}, {@link SessionPrincipal} and {@link History}.
+ */
+public final class SessionCodec {
+    private static final int VERSION = 1;
+    private static final int STRING = 0;
+    private static final int PRINCIPAL = 1;
+    private static final int HISTORY = 2;
+
+    private SessionCodec() {
+    }
+
+    /**
+     * Returns true if the given value can be stored as a session attribute
+     *
+     * @param value the value to check
+     * @return true if {@code value} can be encoded
+     */
+    public static boolean isSupported(Object value) {
+        return value instanceof String || value instanceof SessionPrincipal || value instanceof History;
+    }
+
+    /**
+     * Encodes the given {@link SessionData}
+     *
+     * @param data the {@link SessionData} to encode
+     * @return the encoded session
+     * @throws NullPointerException if {@code data} is null
+     */
+    public static byte[] encode(SessionData data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeLong(data.getCreationTime());
+            out.writeLong(data.getLastAccessedTime());
+            out.writeInt(data.getMaxInactiveInterval());
+            out.writeShort(data.getAttributeNames().size());
+            for (String name : data.getAttributeNames()) {
+                out.writeUTF(name);
+                writeValue(out, data.getAttribute(name));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a session encoded by {@link #encode(SessionData)}
+     *
+     * @param encoded the encoded session
+     * @return the decoded {@link SessionData}
+     * @throws NullPointerException     if {@code encoded} is null
+     * @throws IllegalArgumentException if {@code encoded} is not a valid session
+     */
+    public static SessionData decode(byte[] encoded) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+            int version = in.readUnsignedByte();
+            if (version != VERSION)
+                throw new IllegalArgumentException("Unknown session version " + version);
+            SessionData data = new SessionData(in.readLong(), in.readLong(), in.readInt());
+            int attributes = in.readUnsignedShort();
+            for (int i = 0; i < attributes; i++) {
+                String name = in.readUTF();
+                data.setAttribute(name, readValue(in));
+            }
+            return data;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed session", e);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof String s) {
+            out.writeByte(STRING);
+            out.writeUTF(s);
+        } else if (value instanceof SessionPrincipal p) {
+            out.writeByte(PRINCIPAL);
+            out.writeLong(p.getId());
+            out.writeUTF(p.getUsername());
+            out.writeUTF(p.getDisplayName());
+        } else if (value instanceof History h) {
+            List<String> urls = h.toList();
+            out.writeByte(HISTORY);
+            out.writeShort(h.getCapacity());
+            out.writeShort(urls.size());
+            for (String url : urls)
+                out.writeUTF(url);
+        } else
+            throw new IllegalArgumentException("Cannot encode " + value.getClass().getName());
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case STRING:
+                return in.readUTF();
+            case PRINCIPAL:
+                return new SessionPrincipal(in.readLong(), in.readUTF(), in.readUTF());
+            case HISTORY:
+                History h = new History(in.readUnsignedShort());
+                String[] urls = new String[in.readUnsignedShort()];
+                for (int i = 0; i < urls.length; i++)
+                    urls[i] = in.readUTF();
+                for (int i = urls.length - 1; i >= 0; i--)
+                    h.push(urls[i]);
+                return h;
+            default:
+                throw new IOException("Unknown attribute type " + tag);
+        }
+    }
+}
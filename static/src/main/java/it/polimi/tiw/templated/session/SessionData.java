@@ -0,0 +1,153 @@
+package it.polimi.tiw.templated.session;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * State of a session as saved in a {@link SessionStore}: its timestamps and its attributes. Only the attribute types
+ * supported by {@link SessionCodec} can be stored.
+ */
+public class SessionData {
+    private final long creationTime;
+    private long lastAccessedTime;
+    private int maxInactiveInterval;
+    private long version;
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    /**
+     * Creates a new SessionData without attributes
+     *
+     * @param creationTime        creation time in milliseconds since the epoch
+     * @param lastAccessedTime    last access time in milliseconds since the epoch
+     * @param maxInactiveInterval seconds of inactivity after which the session expires; non-positive values mean never
+     */
+    public SessionData(long creationTime, long lastAccessedTime, int maxInactiveInterval) {
+        this.creationTime = creationTime;
+        this.lastAccessedTime = lastAccessedTime;
+        this.maxInactiveInterval = maxInactiveInterval;
+    }
+
+    /**
+     * Getter for the creation time
+     *
+     * @return the creation time in milliseconds since the epoch
+     */
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    /**
+     * Getter for the last access time
+     *
+     * @return the last access time in milliseconds since the epoch
+     */
+    public long getLastAccessedTime() {
+        return lastAccessedTime;
+    }
+
+    /**
+     * Setter for the last access time
+     *
+     * @param lastAccessedTime the last access time in milliseconds since the epoch
+     */
+    public void setLastAccessedTime(long lastAccessedTime) {
+        this.lastAccessedTime = lastAccessedTime;
+    }
+
+    /**
+     * Getter for the maximum inactive interval
+     *
+     * @return seconds of inactivity after which the session expires
+     */
+    public int getMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    /**
+     * Setter for the maximum inactive interval
+     *
+     * @param maxInactiveInterval seconds of inactivity after which the session expires; non-positive values mean never
+     */
+    public void setMaxInactiveInterval(int maxInactiveInterval) {
+        this.maxInactiveInterval = maxInactiveInterval;
+    }
+
+    /**
+     * Getter for the version of the stored session this data was loaded from
+     *
+     * @return the version of the stored session, or 0 if the session has never been stored
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Setter for the version of the stored session this data was loaded from
+     *
+     * @param version the version of the stored session, or 0 if the session has never been stored
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Returns the moment this session expires if it is not accessed again
+     *
+     * @return the expiration time in milliseconds since the epoch, or {@link Long#MAX_VALUE} if it never expires
+     */
+    public long getExpirationTime() {
+        if (maxInactiveInterval <= 0) return Long.MAX_VALUE;
+        return lastAccessedTime + maxInactiveInterval * 1000L;
+    }
+
+    /**
+     * Returns true if the session is expired at the given time
+     *
+     * @param now the current time in milliseconds since the epoch
+     * @return true if the session is expired
+     */
+    public boolean isExpired(long now) {
+        return getExpirationTime() <= now;
+    }
+
+    /**
+     * Returns the attribute with the given name
+     *
+     * @param name the name of the attribute
+     * @return the value of the attribute, or null if it is not set
+     */
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    /**
+     * Sets the attribute with the given name. A null value removes it.
+     *
+     * @param name  the name of the attribute
+     * @param value the value of the attribute
+     * @throws NullPointerException     if {@code name} is null
+     * @throws IllegalArgumentException if {@code value} cannot be encoded by {@link SessionCodec}
+     */
+    public void setAttribute(String name, Object value) {
+        Objects.requireNonNull(name);
+        if (value == null) {
+            attributes.remove(name);
+            return;
+        }
+        if (!SessionCodec.isSupported(value))
+            throw new IllegalArgumentException("Cannot store " + value.getClass().getName() + " in a session");
+        attributes.put(name, value);
+    }
+
+    /**
+     * Returns the names of the attributes set
+     *
+     * @return an unmodifiable view of the names of the attributes
+     */
+    public Set<String> getAttributeNames() {
+        return Collections.unmodifiableSet(attributes.keySet());
+    }
+}
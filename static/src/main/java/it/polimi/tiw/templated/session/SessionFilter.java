@@ -0,0 +1,214 @@
+package it.polimi.tiw.templated.session;
+
+import it.polimi.tiw.api.dbaccess.ProductionConnectionRetriever;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Replaces the sessions of the container with sessions kept in a {@link SessionStore}, identified by the
+ * {@value #COOKIE} cookie. Code down the chain keeps using {@link HttpServletRequest#getSession()}, which returns a
+ * session loaded from the store; at the end of the request it is saved back, or deleted if it was invalidated.
+ * <p>
+ * The store is chosen with the {@code store} init parameter:
+ *
+ * <ol>
+ *     <li>{@code memory} (default): an {@link InMemorySessionStore}, for single-node deployments</li>
+ *     <li>{@code jdbc}: a {@link JdbcSessionStore} on the production database, flushing buffered writes every
+ *     {@code flushMillis} (default 100) and sweeping expired sessions every {@code sweepSeconds} (default 60)</li>
+ *     <li>{@code file}: a {@link FileSessionStore} in the {@code directory} init parameter</li>
+ * </ol>
+ * <p>
+ * Sessions expire after {@code timeout} seconds of inactivity (default 1800). It must be mapped before every filter
+ * that uses the session.
+ */
+public class SessionFilter extends HttpFilter {
+    /**
+     * Name of the cookie containing the session id
+     */
+    public static final String COOKIE = "TIWSESSION";
+    private static final Logger logger = LoggerFactory.getLogger(SessionFilter.class);
+
+    private transient SessionStore store;
+    private transient SecureRandom random;
+    private int timeout;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init() {
+        random = new SecureRandom();
+        timeout = Integer.parseInt(initParameter("timeout", "1800"));
+        String type = initParameter("store", "memory");
+        store = switch (type) {
+            case "memory" -> new InMemorySessionStore();
+            case "jdbc" -> new JdbcSessionStore(ProductionConnectionRetriever.getInstance(),
+                    Duration.ofMillis(Long.parseLong(initParameter("flushMillis", "100"))),
+                    Duration.ofSeconds(Long.parseLong(initParameter("sweepSeconds", "60"))));
+            case "file" -> new FileSessionStore(Path.of(initParameter("directory",
+                    System.getProperty("java.io.tmpdir") + "/tiw-sessions")));
+            default -> throw new IllegalArgumentException("Unknown session store " + type);
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() {
+        store.close();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doFilter(HttpServletRequest req, HttpServletResponse res, FilterChain chain) throws IOException, ServletException {
+        SessionRequest wrapped = new SessionRequest(req, res, requestedId(req));
+        try {
+            chain.doFilter(wrapped, res);
+        } finally {
+            wrapped.commit();
+        }
+    }
+
+    private String initParameter(String name, String defaultValue) {
+        String value = getInitParameter(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private static String requestedId(HttpServletRequest req) {
+        Cookie[] cookies = req.getCookies();
+        if (cookies == null) return null;
+        for (Cookie c : cookies)
+            if (COOKIE.equals(c.getName()))
+                return c.getValue();
+        return null;
+    }
+
+    private String newId() {
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Request whose sessions come from the store
+     */
+    private class SessionRequest extends HttpServletRequestWrapper {
+        private final HttpServletResponse res;
+        private final String requestedId;
+        private final List<String> invalidated = new ArrayList<>();
+        private StoredSession session;
+        private boolean loaded;
+
+        SessionRequest(HttpServletRequest req, HttpServletResponse res, String requestedId) {
+            super(req);
+            this.res = res;
+            this.requestedId = requestedId;
+        }
+
+        @Override
+        public HttpSession getSession(boolean create) {
+            if (!loaded) {
+                loaded = true;
+                if (requestedId != null)
+                    session = store.load(requestedId)
+                            .match(data -> new StoredSession(requestedId, data, getServletContext(), false),
+                                    e -> {
+                                        if (e.statusCode() != 404)
+                                            logger.warn("Cannot load session: {}", e.errorMessage());
+                                        return null;
+                                    });
+            }
+            if (session != null && session.isInvalid()) {
+                invalidated.add(session.getId());
+                session = null;
+            }
+            if (session == null && create) {
+                long now = System.currentTimeMillis();
+                session = new StoredSession(newId(), new SessionData(now, now, timeout), getServletContext(), true);
+                res.addCookie(cookie(session.getId(), -1));
+            }
+            return session;
+        }
+
+        @Override
+        public HttpSession getSession() {
+            return getSession(true);
+        }
+
+        @Override
+        public String changeSessionId() {
+            HttpSession current = getSession(false);
+            if (current == null) throw new IllegalStateException("No session to change the id of");
+            // The data moves to a session that has never been stored
+            session.getData().setVersion(0);
+            StoredSession moved = new StoredSession(newId(), session.getData(), getServletContext(), true);
+            invalidated.add(session.getId());
+            session = moved;
+            res.addCookie(cookie(moved.getId(), -1));
+            return moved.getId();
+        }
+
+        @Override
+        public String getRequestedSessionId() {
+            return requestedId;
+        }
+
+        @Override
+        public boolean isRequestedSessionIdValid() {
+            getSession(false);
+            return session != null && session.getId().equals(requestedId);
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromCookie() {
+            return requestedId != null;
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromURL() {
+            return false;
+        }
+
+        /**
+         * Saves the session, if one was used, and deletes the invalidated ones
+         */
+        void commit() {
+            if (session != null && session.isInvalid()) {
+                invalidated.add(session.getId());
+                session = null;
+                if (!res.isCommitted())
+                    res.addCookie(cookie("", 0));
+            }
+            for (String id : invalidated)
+                store.delete(id);
+            if (session != null) {
+                session.getData().setLastAccessedTime(System.currentTimeMillis());
+                store.save(session.getId(), session.getData(), session.needsDurableSave());
+            }
+        }
+
+        private Cookie cookie(String value, int maxAge) {
+            Cookie c = new Cookie(COOKIE, value);
+            String path = getContextPath();
+            c.setPath(path == null || path.isEmpty() ? "/" : path);
+            c.setHttpOnly(true);
+            c.setSecure(isSecure());
+            c.setMaxAge(maxAge);
+            return c;
+        }
+    }
+}
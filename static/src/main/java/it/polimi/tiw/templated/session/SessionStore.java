@@ -0,0 +1,50 @@
+package it.polimi.tiw.templated.session;
+
+import it.polimi.tiw.api.error.ApiError;
+import it.polimi.tiw.api.functional.ApiResult;
+
+/**
+ * Storage for sessions that lives outside the servlet container, so that any node can serve any request.
+ * <p>
+ * Every request works on its own copy of the session: concurrent requests of the same session are not merged. Each
+ * stored session has a version, bumped on every save, that is used to resolve conflicts: a deleted session is never
+ * brought back by a request that loaded it before, and a delayed save does not overwrite a newer one.
+ */
+public interface SessionStore extends AutoCloseable {
+    /**
+     * Returns the session with the given id. An {@link ApiError} with code 404 is returned if there is no such
+     * session, if it is expired or if it cannot be decoded; in the last case the session is also deleted.
+     *
+     * @param id the id of the session
+     * @return an {@link ApiResult} containing the session or an error
+     */
+    ApiResult<SessionData> load(String id);
+
+    /**
+     * Saves the given session. If {@code durable} is false, the store may delay the write, e.g. to batch it with
+     * others; otherwise the session must be visible to every node when this method returns.
+     * <p>
+     * A session that has never been stored ({@link SessionData#getVersion()} is 0) is created. Otherwise, the session
+     * is only updated if it is still in the store; a non-durable save is also dropped if the session has been saved
+     * by someone else since it was loaded.
+     *
+     * @param id      the id of the session
+     * @param data    the session to save
+     * @param durable whether the write must be completed before returning
+     */
+    void save(String id, SessionData data, boolean durable);
+
+    /**
+     * Deletes the session with the given id, if present
+     *
+     * @param id the id of the session
+     */
+    void delete(String id);
+
+    /**
+     * Writes any pending change and releases the resources of the store
+     */
+    @Override
+    default void close() {
+    }
+}
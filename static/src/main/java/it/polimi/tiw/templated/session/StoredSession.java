@@ -0,0 +1,148 @@
+package it.polimi.tiw.templated.session;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionContext;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Objects;
+
+/**
+ * {@link HttpSession} backed by a {@link SessionData} loaded from a {@link SessionStore}. Changes are kept in memory
+ * and saved by {@link SessionFilter} at the end of the request.
+ */
+class StoredSession implements HttpSession {
+    private final String id;
+    private final SessionData data;
+    private final ServletContext context;
+    private final boolean isNew;
+    private final Object initialUser;
+    private boolean invalid;
+
+    StoredSession(String id, SessionData data, ServletContext context, boolean isNew) {
+        this.id = Objects.requireNonNull(id);
+        this.data = Objects.requireNonNull(data);
+        this.context = context;
+        this.isNew = isNew;
+        this.initialUser = data.getAttribute("user");
+    }
+
+    SessionData getData() {
+        return data;
+    }
+
+    boolean isInvalid() {
+        return invalid;
+    }
+
+    /**
+     * Returns true if the session must be visible to other nodes as soon as the request ends: when it has just been
+     * created or when the user logged in or out
+     */
+    boolean needsDurableSave() {
+        return isNew || !Objects.equals(initialUser, data.getAttribute("user"));
+    }
+
+    private void checkValid() {
+        if (invalid) throw new IllegalStateException("Session has been invalidated");
+    }
+
+    @Override
+    public long getCreationTime() {
+        checkValid();
+        return data.getCreationTime();
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        checkValid();
+        return data.getLastAccessedTime();
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return context;
+    }
+
+    @Override
+    public void setMaxInactiveInterval(int interval) {
+        data.setMaxInactiveInterval(interval);
+    }
+
+    @Override
+    public int getMaxInactiveInterval() {
+        return data.getMaxInactiveInterval();
+    }
+
+    @Override
+    @Deprecated
+    public HttpSessionContext getSessionContext() {
+        return null;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        checkValid();
+        return data.getAttribute(name);
+    }
+
+    @Override
+    @Deprecated
+    public Object getValue(String name) {
+        return getAttribute(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        checkValid();
+        return Collections.enumeration(data.getAttributeNames());
+    }
+
+    @Override
+    @Deprecated
+    public String[] getValueNames() {
+        checkValid();
+        return data.getAttributeNames().toArray(new String[0]);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        checkValid();
+        data.setAttribute(name, value);
+    }
+
+    @Override
+    @Deprecated
+    public void putValue(String name, Object value) {
+        setAttribute(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        checkValid();
+        data.setAttribute(name, null);
+    }
+
+    @Override
+    @Deprecated
+    public void removeValue(String name) {
+        removeAttribute(name);
+    }
+
+    @Override
+    public void invalidate() {
+        checkValid();
+        invalid = true;
+    }
+
+    @Override
+    public boolean isNew() {
+        checkValid();
+        return isNew;
+    }
+}
@@ -0,0 +1,189 @@
+package it.polimi.tiw.templated.session;
+
+import it.polimi.tiw.api.dbaccess.ConnectionRetriever;
+import it.polimi.tiw.api.error.Errors;
+import it.polimi.tiw.api.functional.ApiResult;
+import it.polimi.tiw.templated.SessionPrincipal;
+import it.polimi.tiw.testdb.EmbeddedDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcSessionStoreTest {
+    private EmbeddedDatabase database;
+    private JdbcSessionStore node1;
+    private JdbcSessionStore node2;
+    private ExecutorService workers;
+
+    @BeforeEach
+    void setup() {
+        database = EmbeddedDatabase.create();
+        DatabaseRetriever retriever = new DatabaseRetriever(database);
+        node1 = new JdbcSessionStore(retriever, Duration.ofHours(1), Duration.ofHours(1));
+        node2 = new JdbcSessionStore(retriever, Duration.ofHours(1), Duration.ofHours(1));
+        workers = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        workers.shutdownNow();
+        node1.close();
+        node2.close();
+        database.close();
+    }
+
+    @Test
+    void save_concurrentWithLogout_neverRestoresSession() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            JdbcSessionStore saver = i % 2 == 0 ? node1 : node2;
+            String id = "session-" + i;
+            node1.save(id, loggedIn(), true);
+            SessionData stale = saver.load(id).get();
+            stale.setAttribute("from", "/home");
+
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?> save = workers.submit(() -> {
+                start.await();
+                saver.save(id, stale, false);
+                return null;
+            });
+            Future<?> logout = workers.submit(() -> {
+                start.await();
+                node1.delete(id);
+                return null;
+            });
+            start.countDown();
+            save.get();
+            logout.get();
+
+            assertNotFound(saver.load(id));
+            node1.flush();
+            node2.flush();
+            assertNotFound(node1.load(id));
+            assertNotFound(node2.load(id));
+        }
+    }
+
+    @Test
+    void flush_afterDeleteOnOtherNode_dropsBufferedSave() {
+        node1.save("s", loggedIn(), true);
+        SessionData stale = node2.load("s").get();
+        node1.delete("s");
+        node2.save("s", stale, false);
+        node2.flush();
+        assertNotFound(node1.load("s"));
+    }
+
+    @Test
+    void flush_staleSave_doesNotOverwriteLogin() {
+        long now = System.currentTimeMillis();
+        node1.save("s", new SessionData(now, now, 1800), true);
+        SessionData stale = node2.load("s").get();
+        SessionData login = node1.load("s").get();
+        login.setAttribute("user", new SessionPrincipal(1, "alexbradd", "Alex"));
+        node1.save("s", login, true);
+
+        node2.save("s", stale, false);
+        node2.flush();
+        assertInstanceOf(SessionPrincipal.class, node1.load("s").get().getAttribute("user"));
+    }
+
+    @Test
+    void save_sameBase_coalescesBufferedWrites() {
+        long now = System.currentTimeMillis();
+        node1.save("s", new SessionData(now, now, 1800), true);
+        SessionData first = node1.load("s").get();
+        first.setAttribute("from", "/first");
+        node1.save("s", first, false);
+        SessionData second = node1.load("s").get();
+        assertEquals(first.getVersion(), second.getVersion());
+        second.setAttribute("from", "/second");
+        node1.save("s", second, false);
+        node1.flush();
+        assertEquals("/second", node2.load("s").get().getAttribute("from"));
+    }
+
+    @Test
+    void load_malformedRow_deletesItAndReturnsNotFound() throws SQLException {
+        try (Connection c = database.getConnection();
+             PreparedStatement s = c.prepareStatement("insert into sessions(id, data, expires) values(?, ?, ?)")) {
+            s.setString(1, "s");
+            s.setBytes(2, new byte[]{42, 1, 2});
+            s.setLong(3, Long.MAX_VALUE);
+            s.executeUpdate();
+        }
+        assertNotFound(node1.load("s"));
+        try (Connection c = database.getConnection();
+             PreparedStatement s = c.prepareStatement("select count(*) from sessions where id = ?")) {
+            s.setString(1, "s");
+            try (ResultSet r = s.executeQuery()) {
+                assertTrue(r.next());
+                assertEquals(0, r.getInt(1));
+            }
+        }
+    }
+
+    private static SessionData loggedIn() {
+        long now = System.currentTimeMillis();
+        SessionData data = new SessionData(now, now, 1800);
+        data.setAttribute("user", new SessionPrincipal(1, "alexbradd", "Alex"));
+        return data;
+    }
+
+    private static void assertNotFound(ApiResult<SessionData> result) {
+        result.consume(d -> fail("Session " + d.getAttributeNames() + " was restored"),
+                e -> assertEquals(404, e.statusCode()));
+    }
+
+    /**
+     * {@link ConnectionRetriever} opening a new connection to the embedded database each time
+     */
+    private static final class DatabaseRetriever implements ConnectionRetriever {
+        private final EmbeddedDatabase database;
+
+        DatabaseRetriever(EmbeddedDatabase database) {
+            this.database = database;
+        }
+
+        @Override
+        public ApiResult<Connection> get() {
+            try {
+                return ApiResult.ok(database.getConnection());
+            } catch (SQLException e) {
+                return ApiResult.error(Errors.fromSQLException(e));
+            }
+        }
+
+        @Override
+        public <T> ApiResult<T> with(Function<Connection, ApiResult<T>> mapper) {
+            return get().match(c -> {
+                try {
+                    return mapper.apply(c);
+                } finally {
+                    close(c);
+                }
+            }, ApiResult::error);
+        }
+
+        @Override
+        public void close(Connection connection) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+}
@@ -29,6 +29,7 @@ CREATE TABLE `accounts`
     `id`      bigint         NOT NULL,
     `ownerId` bigint         NOT NULL,
     `balance` float unsigned NOT NULL,
+    `version` bigint         NOT NULL DEFAULT 0,
     PRIMARY KEY (`id`),
     KEY `ownerId_idx` (`ownerId`),
     CONSTRAINT `ownerId` FOREIGN KEY (`ownerId`) REFERENCES `users` (`id`)
@@ -44,11 +45,11 @@ CREATE TABLE `accounts`
 LOCK TABLES `accounts` WRITE;
 /*!40000 ALTER TABLE `accounts`
     DISABLE KEYS */;
-INSERT INTO `accounts`
-VALUES (1, 1, 490),
-       (2, 1, 500),
-       (3, 2, 110),
-       (4, 3, 50);
+INSERT INTO `accounts` (`id`, `ownerId`, `balance`, `version`)
+VALUES (1, 1, 490, 3),
+       (2, 1, 500, 4),
+       (3, 2, 110, 1),
+       (4, 3, 50, 0);
 /*!40000 ALTER TABLE `accounts`
     ENABLE KEYS */;
 UNLOCK TABLES;
@@ -86,6 +87,26 @@ VALUES (1, 2);
     ENABLE KEYS */;
 UNLOCK TABLES;
 
+--
+-- Table structure for table `sessions`
+--
+
+DROP TABLE IF EXISTS `sessions`;
+/*!40101 SET @saved_cs_client = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `sessions`
+(
+    `id`      varchar(64)     NOT NULL,
+    `data`    varbinary(8192) NOT NULL,
+    `expires` bigint          NOT NULL,
+    `version` bigint          NOT NULL DEFAULT 1,
+    PRIMARY KEY (`id`),
+    KEY `expires_idx` (`expires`)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4
+  COLLATE = utf8mb4_0900_ai_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `transfers`
 --
@@ -103,9 +124,11 @@ CREATE TABLE `transfers`
     `fromId`      bigint         NOT NULL,
     `fromBalance` float unsigned NOT NULL,
     `causal`      varchar(1024)  NOT NULL,
+    `toSeq`       bigint         NOT NULL DEFAULT 0,
+    `fromSeq`     bigint         NOT NULL DEFAULT 0,
     PRIMARY KEY (`id`),
-    KEY `toId_idx` (`toId`),
-    KEY `fromId_idx` (`fromId`),
+    KEY `toId_idx` (`toId`, `toSeq`),
+    KEY `fromId_idx` (`fromId`, `fromSeq`),
     CONSTRAINT `fromId` FOREIGN KEY (`fromId`) REFERENCES `accounts` (`id`) ON DELETE CASCADE ON UPDATE CASCADE,
     CONSTRAINT `toId` FOREIGN KEY (`toId`) REFERENCES `accounts` (`id`) ON DELETE CASCADE ON UPDATE CASCADE
 ) ENGINE = InnoDB
@@ -121,10 +144,10 @@ LOCK TABLES `transfers` WRITE;
 /*!40000 ALTER TABLE `transfers`
     DISABLE KEYS */;
 INSERT INTO `transfers`
-VALUES (1, '2022-07-11 22:43:36', 10, 2, 500, 1, 500, 'Intra-account transfer'),
-       (2, '2022-07-11 22:45:19', 15, 2, 510, 1, 490, 'asdf'),
-       (3, '2022-07-12 00:30:29', 15, 1, 475, 2, 525, 'Rettifica'),
-       (4, '2022-07-12 00:45:46', 10, 3, 100, 2, 510, 'Buona fortuna per l\'esame di TIW!');
+VALUES (1, '2022-07-11 22:43:36', 10, 2, 500, 1, 500, 'Intra-account transfer', 1, 1),
+       (2, '2022-07-11 22:45:19', 15, 2, 510, 1, 490, 'asdf', 2, 2),
+       (3, '2022-07-12 00:30:29', 15, 1, 475, 2, 525, 'Rettifica', 3, 3),
+       (4, '2022-07-12 00:45:46', 10, 3, 100, 2, 510, 'Buona fortuna per l\'esame di TIW!', 1, 4);
 /*!40000 ALTER TABLE `transfers`
     ENABLE KEYS */;
 UNLOCK TABLES;
@@ -144,6 +167,7 @@ CREATE TABLE `users`
     `email`    varchar(128) NOT NULL,
     `name`     varchar(128) NOT NULL,
     `surname`  varchar(128) NOT NULL,
+    `accountsVersion` bigint NOT NULL DEFAULT 0,
     PRIMARY KEY (`id`),
     UNIQUE KEY `id_UNIQUE` (`id`),
     UNIQUE KEY `username_UNIQUE` (`username`)
@@ -159,7 +183,7 @@ CREATE TABLE `users`
 LOCK TABLES `users` WRITE;
 /*!40000 ALTER TABLE `users`
     DISABLE KEYS */;
-INSERT INTO `users`
+INSERT INTO `users` (`id`, `username`, `password`, `email`, `name`, `surname`)
 VALUES (1, 'alexbradd',
         'd74ff0ee8da3b9806b18c877dbf29bbde50b5bd8e4dad7a3a725000feb82e8f1f991e16947615c7c3491edb613a668abd3125903da2aab4c5e2815a802df76532e14141725d1d5427efb66385fcc14c8e8cc95bda6ae78d3e732bfe85e2fa295:f991e16947615c7c3491edb613a668abd3125903da2aab4c5e2815a802df76532e14141725d1d5427efb66385fcc14c8e8cc95bda6ae78d3e732bfe85e2fa295',
         'my.fake.mail@polimi.it', 'Alexandru', 'Bradatan'),
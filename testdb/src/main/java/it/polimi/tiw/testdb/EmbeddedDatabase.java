@@ -0,0 +1,197 @@
+package it.polimi.tiw.testdb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory H2 database running in MySQL compatibility mode, populated from the {@code testDB.sql} dump found in the
+ * root of the repository. Each instance is backed by its own, independent, database.
+ * <p>
+ * The dump is written for MySQL, so it is massaged before being executed: MySQL-only statements (e.g. {@code USE} or
+ * {@code LOCK TABLES}) are dropped, table options are stripped, MySQL's {@code float unsigned} is mapped to the
+ * equivalent single precision {@code real} and tables are created in dependency order.
+ */
+public class EmbeddedDatabase implements AutoCloseable {
+    /**
+     * Classpath location of the dump used to populate the database
+     */
+    public static final String DUMP_RESOURCE = "/testDB.sql";
+
+    private static final AtomicInteger counter = new AtomicInteger();
+    private static final Pattern VERSIONED_COMMENT = Pattern.compile("/\\*!.*?\\*/", Pattern.DOTALL);
+    private static final Pattern LINE_COMMENT = Pattern.compile("^--.*$", Pattern.MULTILINE);
+    private static final Pattern TABLE_OPTIONS = Pattern.compile("\\)\\s*ENGINE\\s*=.*$", Pattern.DOTALL);
+    private static final Pattern UNSIGNED_FLOAT = Pattern.compile("float\\s+unsigned", Pattern.CASE_INSENSITIVE);
+
+    private final String url;
+    private final Connection keepAlive;
+
+    private EmbeddedDatabase(String url) throws SQLException {
+        this.url = url;
+        this.keepAlive = DriverManager.getConnection(url);
+    }
+
+    /**
+     * Creates a new database with a unique name and populates it with the default dump.
+     *
+     * @return a new EmbeddedDatabase
+     * @throws IllegalStateException if the dump could not be read or executed
+     */
+    public static EmbeddedDatabase create() {
+        return create("tiw_app_" + counter.incrementAndGet());
+    }
+
+    /**
+     * Creates a new database with the given name and populates it with the default dump.
+     *
+     * @param name the name of the database
+     * @return a new EmbeddedDatabase
+     * @throws NullPointerException  if {@code name} is null
+     * @throws IllegalStateException if the dump could not be read or executed
+     */
+    public static EmbeddedDatabase create(String name) {
+        Objects.requireNonNull(name);
+        String url = "jdbc:h2:mem:" + name +
+                ";MODE=MySQL" +
+                ";DATABASE_TO_LOWER=TRUE" +
+                ";CASE_INSENSITIVE_IDENTIFIERS=TRUE" +
+                ";DB_CLOSE_DELAY=-1" +
+                ";LOCK_TIMEOUT=10000";
+        try {
+            EmbeddedDatabase db = new EmbeddedDatabase(url);
+            db.load(readDump());
+            return db;
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Unable to set up embedded database", e);
+        }
+    }
+
+    /**
+     * Returns the JDBC url of this database
+     *
+     * @return the JDBC url of this database
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Opens a new {@link Connection} to this database. The default schema of the connection is {@code tiw_app}.
+     *
+     * @return a new {@link Connection}
+     * @throws SQLException if the connection could not be opened
+     */
+    public Connection getConnection() throws SQLException {
+        Connection c = DriverManager.getConnection(url);
+        c.setSchema("tiw_app");
+        return c;
+    }
+
+    /**
+     * Drops the database and all its data.
+     */
+    @Override
+    public void close() {
+        try (Statement s = keepAlive.createStatement()) {
+            s.execute("shutdown");
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /**
+     * Reads the dump from the classpath
+     */
+    private static String readDump() throws IOException {
+        try (InputStream in = EmbeddedDatabase.class.getResourceAsStream(DUMP_RESOURCE)) {
+            if (in == null)
+                throw new IOException("Cannot find " + DUMP_RESOURCE + " in classpath");
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Translates the MySQL dump and executes it. Statements that fail (e.g. because of a foreign key referencing a
+     * table not yet created) are retried until no more progress can be made.
+     */
+    private void load(String dump) throws SQLException {
+        List<String> pending = translate(dump);
+        try (Statement s = keepAlive.createStatement()) {
+            s.execute("create schema if not exists tiw_app");
+            s.execute("set schema tiw_app");
+            while (!pending.isEmpty()) {
+                List<String> failed = new ArrayList<>();
+                SQLException last = null;
+                for (String sql : pending) {
+                    try {
+                        s.execute(sql);
+                    } catch (SQLException e) {
+                        failed.add(sql);
+                        last = e;
+                    }
+                }
+                if (failed.size() == pending.size())
+                    throw last;
+                pending = failed;
+            }
+        }
+    }
+
+    /**
+     * Splits the dump in statements, dropping or rewriting the MySQL specific ones
+     */
+    private static List<String> translate(String dump) {
+        String cleaned = LINE_COMMENT.matcher(VERSIONED_COMMENT.matcher(dump).replaceAll("")).replaceAll("");
+        List<String> statements = new ArrayList<>();
+        for (String raw : splitStatements(cleaned)) {
+            String sql = raw.strip();
+            String lower = sql.toLowerCase();
+            if (sql.isEmpty() ||
+                    lower.startsWith("create database") ||
+                    lower.startsWith("use ") ||
+                    lower.startsWith("lock tables") ||
+                    lower.startsWith("unlock tables"))
+                continue;
+            if (lower.startsWith("create table")) {
+                sql = TABLE_OPTIONS.matcher(sql).replaceFirst(")");
+                sql = UNSIGNED_FLOAT.matcher(sql).replaceAll("real");
+            }
+            statements.add(sql.replace("\\'", "''"));
+        }
+        return statements;
+    }
+
+    /**
+     * Splits on semicolons that are not inside string literals
+     */
+    private static List<String> splitStatements(String sql) {
+        List<String> ret = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inString = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\\' && inString && i + 1 < sql.length()) {
+                current.append(c).append(sql.charAt(++i));
+                continue;
+            }
+            if (c == '\'')
+                inString = !inString;
+            if (c == ';' && !inString) {
+                ret.add(current.toString());
+                current.setLength(0);
+            } else
+                current.append(c);
+        }
+        ret.add(current.toString());
+        return ret;
+    }
+}